@@ -1,12 +1,15 @@
 package io.github.kuggek.engine;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 import io.github.kuggek.engine.core.assets.DefaultAssets;
 import io.github.kuggek.engine.core.assets.SQLiteAssetManager;
 import io.github.kuggek.engine.core.config.EngineProjectConfiguration;
 import io.github.kuggek.engine.core.config.ProjectPaths;
+import io.github.kuggek.engine.core.profiling.EngineRecording;
 import io.github.kuggek.engine.ecs.GameScene;
+import io.github.kuggek.engine.rendering.HeadlessWindow;
 import io.github.kuggek.engine.rendering.Window;
 import io.github.kuggek.engine.rendering.objects.SkyBox;
 import io.github.kuggek.engine.rendering.objects.Texture;
@@ -19,15 +22,30 @@ public class GameEngine {
     private Window window;
     private EngineProjectConfiguration projectConfig;
 
-    // Game loop timing variables
+    // Game loop timing variables. All times are in nanoseconds.
     private long currentTime;
     private long previousTime;
     private long deltaTime;
     private long timeTaken;
-    private boolean running = false;
+    private long nextFrameTime;
+    private volatile boolean running = false;
+
+    // How close to the frame deadline the loop stops sleeping and starts yielding instead, 
+    // because sleeping is not accurate enough on most platforms.
+    private static final long SPIN_THRESHOLD = 1_000_000;
 
     private Thread gameLoopThread;
 
+    /**
+     * Runs the project at the given path. Options after the project path:
+     * <ul>
+     * <li>{@code --headless} runs only physics and scripts, without a window or OpenGL.</li>
+     * <li>{@code --tick-rate=<n>} overrides the target FPS of the project. A value of 0 runs the
+     * game loop unthrottled.</li>
+     * <li>{@code --jfr=<file>} starts a flight recording with the engine recording profile. 
+     * The recording is written to the file when the JVM exits.</li>
+     * </ul>
+     */
     public static void main(String[] args) throws Exception {
         if (args.length == 0) {
             throw new IllegalArgumentException("No project path provided.");
@@ -35,16 +53,36 @@ public class GameEngine {
 
         EngineProjectConfiguration config = EngineProjectConfiguration.loadProjectConfiguration(args[0]);
         System.out.println(config.getProjectAbsolutePath());
+
+        boolean headless = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--headless")) {
+                headless = true;
+            } else if (args[i].startsWith("--tick-rate=")) {
+                config.setTargetFPS(Integer.parseInt(args[i].substring("--tick-rate=".length())));
+            } else if (args[i].startsWith("--jfr=")) {
+                EngineRecording.start(Path.of(args[i].substring("--jfr=".length())));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
         ScriptLoader.compileAndPackageScripts("scripts.jar", ProjectPaths.SCRIPTS_PATH);
         ScriptLoader.addJarToClasspath("scripts.jar");
 
         DefaultAssets.loadDefaultAssets(SQLiteAssetManager.getInstance());
 
         GameEngine engine = new GameEngine();
-        engine.initialize(config);
+        if (headless) {
+            engine.initializeHeadless(config);
+        } else {
+            engine.initialize(config);
+        }
         engine.startGameLoop();
 
-        engine.getSubsystems().getRenderingEngine().setSkyBox(SkyBox.unwrapSkyboxTexture(Texture.loadTexture("assets/textures/skybox2.png")));
+        if (!headless) {
+            engine.getSubsystems().getRenderingEngine().setSkyBox(SkyBox.unwrapSkyboxTexture(Texture.loadTexture("assets/textures/skybox2.png")));
+        }
     }
 
     public void initialize(EngineProjectConfiguration config) throws IOException {
@@ -71,6 +109,9 @@ public class GameEngine {
         subsystems = new EngineSubsystems(window.getKeyInput());
 
         subsystems.getRenderingEngine().linkToWindow(window);
+        if (config.getTargetFPS() > 0) {
+            subsystems.getRenderingEngine().setFrameBudget(1_000_000_000L / config.getTargetFPS());
+        }
         subsystems.getRenderingEngine().render();
 
         projectConfig = config;
@@ -78,6 +119,32 @@ public class GameEngine {
         setupScene(scene);
     }
 
+    /**
+     * Initialize the game engine without a window or rendering engine. Only physics and scripts 
+     * are updated. The game loop runs at the target FPS of the configuration, or unthrottled if 
+     * the target FPS is not positive.
+     * @param config The configuration for the engine.
+     * @throws IOException If the initial scene cannot be loaded.
+     */
+    public void initializeHeadless(EngineProjectConfiguration config) throws IOException {
+        initializeHeadless(config, GameScene.loadScene(config.getInitialSceneName()));
+    }
+
+    public void initializeHeadless(EngineProjectConfiguration config, GameScene scene) {
+        window = new HeadlessWindow();
+        window.setWindowSettings(config);
+
+        subsystems = new EngineSubsystems(window.getKeyInput(), true);
+
+        projectConfig = config;
+
+        setupScene(scene);
+    }
+
+    public boolean isHeadless() {
+        return subsystems.isHeadless();
+    }
+
     /**
      * Starts the game engine. This will start the game loop and run the game until the window is closed.
      * {@link #initialize(EngineProjectConfiguration)} must be called before this method.
@@ -92,35 +159,64 @@ public class GameEngine {
         }
 
         gameLoopThread = new Thread(() -> {
-            previousTime = System.currentTimeMillis();
+            previousTime = System.nanoTime();
+            nextFrameTime = previousTime;
 
             running = true;
             // Game loop
             while (running) {
-                currentTime = System.currentTimeMillis();
+                currentTime = System.nanoTime();
                 deltaTime = currentTime - previousTime;
                 previousTime = currentTime;
 
                 // Update the engine subsystems. Time taken is in nanoseconds.
-                timeTaken = subsystems.update(deltaTime / 1000.0f);
+                timeTaken = subsystems.update(deltaTime / 1_000_000_000.0f);
 
                 window.getKeyInput().clear();
-    
-                // Sleep to maintain target FPS
-                long sleepTime = (1000 / projectConfig.getTargetFPS()) - (timeTaken / 1000000);
-                if (sleepTime > 0) {
-                    try {
-                        Thread.sleep(sleepTime);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
+
+                waitForNextFrame();
             }
         });
 
         gameLoopThread.start();
     }
 
+    /**
+     * Waits until the start of the next frame to maintain the target FPS. Frames are scheduled 
+     * against fixed deadlines, so that the sleeping inaccuracy of single frames doesn't add up.
+     * If the target FPS is not positive, the loop runs unthrottled.
+     */
+    private void waitForNextFrame() {
+        int targetFPS = projectConfig.getTargetFPS();
+        if (targetFPS <= 0) {
+            return;
+        }
+
+        long frameDuration = 1_000_000_000L / targetFPS;
+        nextFrameTime += frameDuration;
+
+        long now = System.nanoTime();
+        // If we have fallen behind by more than a frame, don't try to catch up by rushing frames
+        if (now - nextFrameTime > frameDuration) {
+            nextFrameTime = now;
+            return;
+        }
+
+        long remaining = nextFrameTime - now;
+        if (remaining > SPIN_THRESHOLD) {
+            try {
+                long sleepTime = remaining - SPIN_THRESHOLD;
+                Thread.sleep(sleepTime / 1_000_000, (int) (sleepTime % 1_000_000));
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        while (System.nanoTime() < nextFrameTime) {
+            Thread.yield();
+        }
+    }
+
     public EngineSubsystems getSubsystems() {
         return subsystems;
     }
@@ -146,6 +242,10 @@ public class GameEngine {
      */
     public void destroy() {
         stopGameLoop();
+        if (!subsystems.isHeadless()) {
+            subsystems.getRenderingEngine().shutdown();
+        }
+        subsystems.shutdown();
         window.destroy();
     }
 
@@ -1,10 +1,24 @@
 package io.github.kuggek.engine.core;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.joml.Matrix4f;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
 
+/**
+ * The position, rotation and scale of a game object relative to its parent. 
+ * <p>
+ * The world matrix of a transform is cached and only recomputed after the transform or one of
+ * its ancestors has changed: changing a transform marks the world matrices of it and all of its
+ * descendants as changed. The engine updates all world matrices once per frame in a single pass
+ * over the hierarchy, see {@link TransformHierarchy}, so reading them afterwards is cheap and
+ * safe from several threads. Only that pass updates the cached matrices. Outside of it a changed
+ * matrix is calculated on every read into scratch matrices of the transform that is read, so
+ * reads never change the state of other transforms.
+ */
 public class Transform {
     private Vector3f position;
     private Quaternionf rotation;
@@ -12,10 +26,44 @@ public class Transform {
 
     private Vector3f helperVector;
 
+    // Local matrix, relative to the parent
     private Matrix4f modelMatrix;
     private boolean modelMatrixChanged;
 
+    private Matrix4f worldMatrix;
+    private boolean worldMatrixChanged;
+
+    // The interpolated world matrix and the interpolation factor it was calculated for, 
+    // NaN if it has not been calculated since the world matrix last changed
+    private Matrix4f interpolatedWorldMatrix;
+    private float interpolatedAlpha;
+
     private Transform parent;
+    List<Transform> children;
+
+    // The store this transform is a handle into, if any, see TransformStore
+    private TransformStore store;
+    private int storeIndex;
+
+    // The state of the transform before the latest simulation step. Used for interpolating
+    // between simulation steps when rendering.
+    private Vector3f previousPosition;
+    private Quaternionf previousRotation;
+    private Vector3f previousScale;
+    private boolean hasPreviousState;
+
+    private Vector3f interpolatedPosition;
+    private Quaternionf interpolatedRotation;
+    private Vector3f interpolatedScale;
+
+    // Scratch state for reading changed matrices outside of the update pass
+    private Matrix4f localReadMatrix;
+    private Matrix4f worldReadMatrix;
+    private Matrix4f ancestorMatrix;
+    private Vector3f readPosition;
+    private Quaternionf readRotation;
+    private Vector3f readScale;
+    private float[] storeScratch;
 
     public Transform() {
         position = new Vector3f();
@@ -23,86 +71,158 @@ public class Transform {
         scale = new Vector3f(1, 1, 1);
         helperVector = new Vector3f();
         modelMatrix = new Matrix4f();
+        modelMatrixChanged = true;
+        worldMatrix = new Matrix4f();
+        worldMatrixChanged = true;
+        interpolatedWorldMatrix = new Matrix4f();
+        interpolatedAlpha = Float.NaN;
+        children = new ArrayList<>();
+        storeIndex = -1;
+
+        previousPosition = new Vector3f();
+        previousRotation = new Quaternionf();
+        previousScale = new Vector3f(1, 1, 1);
+        hasPreviousState = false;
+
+        interpolatedPosition = new Vector3f();
+        interpolatedRotation = new Quaternionf();
+        interpolatedScale = new Vector3f();
+
+        localReadMatrix = new Matrix4f();
+        worldReadMatrix = new Matrix4f();
+        ancestorMatrix = new Matrix4f();
+        readPosition = new Vector3f();
+        readRotation = new Quaternionf();
+        readScale = new Vector3f();
+    }
+
+    /**
+     * Marks the local matrix and the world matrices of this transform and its descendants as
+     * changed.
+     */
+    private void changed() {
+        modelMatrixChanged = true;
+        invalidateWorldMatrix();
+        if (store != null) {
+            store.setLocal(storeIndex, position, rotation, scale);
+        }
+    }
+
+    /**
+     * Makes the transform a handle into the store and writes its current state to the store.
+     */
+    void bind(TransformStore store, int index) {
+        this.store = store;
+        this.storeIndex = index;
+        if (storeScratch == null) {
+            storeScratch = new float[TransformStore.SCRATCH_SIZE];
+        }
+        store.setLocal(index, position, rotation, scale);
+        writePreviousState();
+    }
+
+    void unbind() {
+        store = null;
+        storeIndex = -1;
+    }
+
+    private void writePreviousState() {
+        if (hasPreviousState) {
+            store.setPrevious(storeIndex, previousPosition, previousRotation, previousScale);
+        } else {
+            store.setPrevious(storeIndex, null, null, null);
+        }
+    }
+
+    private void invalidateWorldMatrix() {
+        // Descendants of a changed transform are always changed as well
+        if (worldMatrixChanged) {
+            return;
+        }
+        worldMatrixChanged = true;
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).invalidateWorldMatrix();
+        }
     }
 
     public void setPosition(float x, float y, float z) {
         position.set(x, y, z);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void setPosition(Vector3f position) {
         this.position.set(position);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void setPosition(Vector4f position) {
         this.position.set(position.x, position.y, position.z);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void setPosition(float[] position) {
         this.position.set(position[0], position[1], position[2]);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void setRotation(float x, float y, float z) {
         rotation.identity().rotateXYZ(x, y, z);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void setRotation(Vector3f rotation) {
         this.rotation.identity().rotateXYZ(rotation.x, rotation.y, rotation.z);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void setRotation(Quaternionf rotation) {
         this.rotation.set(rotation);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void setRotation(float[] rotation) {
         this.rotation.set(rotation[0], rotation[1], rotation[2], rotation[3]);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void setScale(float x, float y, float z) {
         scale.set(x, y, z);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void setScale(Vector3f scale) {
         this.scale.set(scale);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void translate(float x, float y, float z) {
         position.add(x, y, z);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void rotate(float x, float y, float z) {
         rotation.rotateXYZ(x, y, z);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void scale(float x, float y, float z) {
         scale.mul(x, y, z);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void translate(Vector3f translation) {
         position.add(translation);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void rotate(Vector3f rotation) {
         this.rotation.rotateXYZ(rotation.x, rotation.y, rotation.z);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void scale(Vector3f scale) {
         this.scale.mul(scale);
-        modelMatrixChanged = true;
+        changed();
     }
 
     /**
@@ -113,36 +233,221 @@ public class Transform {
     public void moveTowards(Vector3f direction, float distance) {
         helperVector.set(direction).normalize().mul(distance);
         position.add(helperVector);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void moveTowards(float xDir, float yDir, float zDir, float distance) {
-        moveTowards(new Vector3f(xDir, yDir, zDir), distance);
+        helperVector.set(xDir, yDir, zDir).normalize().mul(distance);
+        position.add(helperVector);
+        changed();
     }
 
     public Vector3f getForward() {
-        return new Vector3f(0, 0, -1).rotate(rotation);
+        return getForward(new Vector3f());
+    }
+
+    public Vector3f getForward(Vector3f dest) {
+        return dest.set(0, 0, -1).rotate(rotation);
     }
 
     public Vector3f getRight() {
-        return new Vector3f(1, 0, 0).rotate(rotation);
+        return getRight(new Vector3f());
+    }
+
+    public Vector3f getRight(Vector3f dest) {
+        return dest.set(1, 0, 0).rotate(rotation);
     }
 
     public Vector3f getUp() {
-        return new Vector3f(0, 1, 0).rotate(rotation);
+        return getUp(new Vector3f());
+    }
+
+    public Vector3f getUp(Vector3f dest) {
+        return dest.set(0, 1, 0).rotate(rotation);
+    }
+
+    /**
+     * Get the local matrix of the transform, relative to its parent.
+     * @return The cached local matrix, or a scratch matrix that the next read overwrites if the
+     * transform has changed since the last update. Must not be modified.
+     */
+    public Matrix4f getLocalModelMatrix() {
+        if (modelMatrixChanged) {
+            return composeLocalMatrix(localReadMatrix);
+        }
+        return modelMatrix;
     }
 
+    /**
+     * Get the world matrix of the transform, which includes the transforms of its ancestors.
+     * @return The cached world matrix, or a scratch matrix that the next read overwrites if the
+     * transform has changed since the last update. Must not be modified.
+     */
     public Matrix4f getModelMatrix() {
+        TransformStore current = store;
+        if (current != null && current.isValid()) {
+            return current.getWorldMatrix(storeIndex, worldMatrix, storeScratch);
+        }
+        if (!worldMatrixChanged) {
+            return worldMatrix;
+        }
+        // Calculated up to the closest unchanged ancestor, without touching the caches
+        Matrix4f dest = composeLocalMatrix(worldReadMatrix);
+        for (Transform ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            if (!ancestor.worldMatrixChanged) {
+                // Ancestors of an unchanged transform are unchanged as well
+                return ancestor.worldMatrix.mul(dest, dest);
+            }
+            ancestor.composeLocalMatrix(ancestorMatrix).mul(dest, dest);
+        }
+        return dest;
+    }
+
+    /**
+     * Composes the local matrix into the destination, using the cached one if it is up to date.
+     */
+    private Matrix4f composeLocalMatrix(Matrix4f dest) {
+        if (!modelMatrixChanged) {
+            return dest.set(modelMatrix);
+        }
+        // Model matrix is calculated as translation * rotation * scale
+        return dest.translation(position).rotate(rotation).scale(scale);
+    }
+
+    /**
+     * Composes the local matrix interpolated between the previous and the current state into the
+     * destination. The interpolated position, rotation and scale are stored in the given objects.
+     */
+    private Matrix4f composeInterpolatedLocalMatrix(float alpha, Matrix4f dest,
+            Vector3f positionDest, Quaternionf rotationDest, Vector3f scaleDest) {
+        if (!hasPreviousState) {
+            return composeLocalMatrix(dest);
+        }
+        previousPosition.lerp(position, alpha, positionDest);
+        previousRotation.slerp(rotation, alpha, rotationDest);
+        previousScale.lerp(scale, alpha, scaleDest);
+        return dest.translation(positionDest).rotate(rotationDest).scale(scaleDest);
+    }
+
+    /**
+     * Recalculates the world matrix if it has changed. The world matrix of the parent must be 
+     * up to date. Only called by the update pass.
+     */
+    void updateWorldMatrix() {
+        if (!worldMatrixChanged) {
+            return;
+        }
         if (modelMatrixChanged) {
-            // Model matrix is calculated as translation * rotation * scale
-            modelMatrix.identity().translate(position).rotate(rotation).scale(scale);
+            composeLocalMatrix(modelMatrix);
             modelMatrixChanged = false;
         }
-
         if (parent == null) {
-            return modelMatrix;
+            worldMatrix.set(modelMatrix);
         } else {
-            return parent.getModelMatrix().mul(modelMatrix, new Matrix4f());
+            parent.worldMatrix.mul(modelMatrix, worldMatrix);
+        }
+        worldMatrixChanged = false;
+        interpolatedAlpha = Float.NaN;
+    }
+
+    /**
+     * Recalculates the interpolated world matrix if it was calculated for a different 
+     * interpolation factor. The world matrix of this transform and the interpolated world matrix
+     * of the parent must be up to date. Only called by the update pass.
+     */
+    void updateInterpolatedWorldMatrix(float alpha) {
+        if (interpolatedAlpha == alpha) {
+            return;
+        }
+        Matrix4f dest = composeInterpolatedLocalMatrix(alpha, interpolatedWorldMatrix,
+            interpolatedPosition, interpolatedRotation, interpolatedScale);
+        if (parent != null) {
+            parent.interpolatedWorldMatrix.mul(dest, dest);
+        }
+        interpolatedAlpha = alpha;
+    }
+
+    /**
+     * Get the position of the transform in world space.
+     * @param dest The vector to store the result in.
+     * @return The destination vector.
+     */
+    public Vector3f getWorldPosition(Vector3f dest) {
+        return getModelMatrix().getTranslation(dest);
+    }
+
+    /**
+     * Get the rotation of the transform in world space.
+     * @param dest The quaternion to store the result in.
+     * @return The destination quaternion.
+     */
+    public Quaternionf getWorldRotation(Quaternionf dest) {
+        return getModelMatrix().getNormalizedRotation(dest);
+    }
+
+    /**
+     * Get the scale of the transform in world space. Only exact if no ancestor is both rotated
+     * and scaled non-uniformly.
+     * @param dest The vector to store the result in.
+     * @return The destination vector.
+     */
+    public Vector3f getWorldScale(Vector3f dest) {
+        return getModelMatrix().getScale(dest);
+    }
+
+    /**
+     * Calculates the model matrix of the transform interpolated between the state before the 
+     * latest simulation step and the current state. If no previous state has been stored, this
+     * is the same as {@link #getModelMatrix()}. The update pass caches the result for the latest
+     * interpolation factor; if the transform has changed since, it is calculated on every read.
+     * @param alpha The interpolation factor between 0 (previous state) and 1 (current state).
+     * @param dest The matrix to store the result in.
+     * @return The destination matrix.
+     */
+    public Matrix4f getInterpolatedModelMatrix(float alpha, Matrix4f dest) {
+        TransformStore current = store;
+        if (current != null && current.isValid()) {
+            return current.getInterpolatedWorldMatrix(storeIndex, alpha, dest, storeScratch);
+        }
+        if (!worldMatrixChanged && interpolatedAlpha == alpha) {
+            return dest.set(interpolatedWorldMatrix);
+        }
+        composeInterpolatedLocalMatrix(alpha, dest, readPosition, readRotation, readScale);
+        for (Transform ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            if (!ancestor.worldMatrixChanged && ancestor.interpolatedAlpha == alpha) {
+                return ancestor.interpolatedWorldMatrix.mul(dest, dest);
+            }
+            ancestor.composeInterpolatedLocalMatrix(alpha, ancestorMatrix, readPosition, readRotation, readScale)
+                .mul(dest, dest);
+        }
+        return dest;
+    }
+
+    /**
+     * Stores the current position, rotation and scale as the previous state of the transform.
+     * The physics engine calls this before writing the result of a simulation step so that 
+     * rendering can interpolate between the last two simulation states.
+     */
+    public void storePreviousState() {
+        previousPosition.set(position);
+        previousRotation.set(rotation);
+        previousScale.set(scale);
+        hasPreviousState = true;
+        invalidateWorldMatrix();
+        if (store != null) {
+            writePreviousState();
+        }
+    }
+
+    /**
+     * Forgets the stored previous state, so that the transform is rendered at its current state
+     * without interpolation. 
+     */
+    public void clearPreviousState() {
+        hasPreviousState = false;
+        invalidateWorldMatrix();
+        if (store != null) {
+            writePreviousState();
         }
     }
 
@@ -150,30 +455,67 @@ public class Transform {
         return new Vector3f(position);
     }
 
+    public Vector3f getPosition(Vector3f dest) {
+        return dest.set(position);
+    }
+
     public Quaternionf getRotation() {
         return new Quaternionf(rotation);
     }
 
+    public Quaternionf getRotation(Quaternionf dest) {
+        return dest.set(rotation);
+    }
+
     public Vector3f getScale() {
         return new Vector3f(scale);
     }
 
+    public Vector3f getScale(Vector3f dest) {
+        return dest.set(scale);
+    }
+
     public void lookAt(Vector3f target) {
         Vector3f forward = new Vector3f(target).sub(position).normalize();
         Vector3f right = new Vector3f(0, 1, 0).cross(forward).normalize();
         Vector3f up = new Vector3f(forward).cross(right).normalize();
         rotation.identity().lookAlong(forward, up);
-        modelMatrixChanged = true;
+        changed();
     }
 
     public void set(Transform transform) {
         this.position.set(transform.position);
         this.rotation.set(transform.rotation);
         this.scale.set(transform.scale);
-        modelMatrixChanged = true;
+
+        // Copying a transform is a teleport, so don't interpolate from the old state
+        clearPreviousState();
+        changed();
     }
 
+    /**
+     * Set the parent of the transform. Also adds the transform to the children of the parent, 
+     * which are used to propagate changes down the hierarchy.
+     * @param parent The new parent or null.
+     */
     public void setParent(Transform parent) {
+        if (this.parent == parent) {
+            return;
+        }
+        if (this.parent != null) {
+            this.parent.children.remove(this);
+        }
         this.parent = parent;
+        if (parent != null) {
+            parent.children.add(this);
+        }
+        invalidateWorldMatrix();
+        if (store != null) {
+            store.invalidate();
+        }
+    }
+
+    public Transform getParent() {
+        return parent;
     }
 }
@@ -0,0 +1,91 @@
+package io.github.kuggek.engine.core;
+
+import java.util.Arrays;
+
+/**
+ * A flattened transform hierarchy for updating world matrices in one pass. The transforms are
+ * kept in an array in depth-first order, so every parent comes before its children and each
+ * world matrix can be computed from the already updated matrix of its parent without recursion.
+ * <p>
+ * The owner of the hierarchy marks it as invalid when its structure changes and rebuilds it
+ * before the next update. Not thread safe.
+ */
+public class TransformHierarchy {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Transform[] transforms;
+    private int size;
+    private boolean structureChanged;
+
+    public TransformHierarchy() {
+        transforms = new Transform[INITIAL_CAPACITY];
+        structureChanged = true;
+    }
+
+    /**
+     * Marks the structure of the hierarchy as changed, e.g. because a transform was added,
+     * removed or moved to another parent.
+     */
+    public void invalidate() {
+        structureChanged = true;
+    }
+
+    /**
+     * @return True if the structure has changed since the hierarchy was last rebuilt with 
+     * {@link #clear()} and {@link #add(Transform)}.
+     */
+    public boolean isInvalid() {
+        return structureChanged;
+    }
+
+    /**
+     * Removes all transforms from the hierarchy and marks it as up to date.
+     */
+    public void clear() {
+        Arrays.fill(transforms, 0, size, null);
+        size = 0;
+        structureChanged = false;
+    }
+
+    /**
+     * Adds a root transform and all of its descendants to the hierarchy in depth-first order.
+     * @param root A transform without a parent.
+     */
+    public void add(Transform root) {
+        append(root);
+        for (int i = 0; i < root.children.size(); i++) {
+            add(root.children.get(i));
+        }
+    }
+
+    /**
+     * Updates the world matrices and the interpolated world matrices of all transforms in the
+     * hierarchy. World matrices are only recalculated for transforms that have changed since 
+     * the last update, interpolated ones whenever the interpolation factor changes.
+     * @param alpha The interpolation factor between the previous and the current state, see
+     * {@link Transform#getInterpolatedModelMatrix(float, org.joml.Matrix4f)}.
+     */
+    public void update(float alpha) {
+        Transform[] current = transforms;
+        for (int i = 0; i < size; i++) {
+            Transform transform = current[i];
+            transform.updateWorldMatrix();
+            transform.updateInterpolatedWorldMatrix(alpha);
+        }
+    }
+
+    private void append(Transform transform) {
+        if (size == transforms.length) {
+            transforms = Arrays.copyOf(transforms, size * 2);
+        }
+        transforms[size++] = transform;
+    }
+
+    /**
+     * @return The amount of transforms in the hierarchy as of the last update.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,454 @@
+package io.github.kuggek.engine.core;
+
+import java.util.Arrays;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import io.github.kuggek.engine.core.tasks.TaskScheduler;
+
+/**
+ * Structure of arrays storage for the matrices of a transform hierarchy. The position, rotation
+ * and scale of each transform and its local, world and interpolated world matrices are kept in
+ * contiguous float arrays in depth-first order, so that a parent always comes before its
+ * children and the subtree of a transform is a contiguous range.
+ * <p>
+ * Transforms added to the store become handles into it: changes to a transform are written
+ * through to the arrays, and its world matrices are read from them. All changed matrices are
+ * composed in one batched pass over the arrays by {@link #update(float, TaskScheduler)}, split
+ * across the workers of the scheduler by root subtree when the store is large.
+ * <p>
+ * The store must be rebuilt when the structure of the hierarchy changes. Until then it is
+ * invalid and its transforms fall back to calculating their matrices themselves.
+ */
+public class TransformStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Transforms below this amount are updated on the calling thread
+    private static final int PARALLEL_THRESHOLD = 16384;
+    private static final int MIN_ROOTS_PER_CHUNK = 256;
+
+    /**
+     * The amount of floats of the scratch arrays for reading changed matrices outside of the
+     * batched update.
+     */
+    static final int SCRATCH_SIZE = 32;
+
+    private static final byte LOCAL_CHANGED = 1;
+    private static final byte WORLD_CHANGED = 2;
+    private static final byte INTERPOLATED_CHANGED = 4;
+
+    private Transform[] transforms;
+    private int size;
+
+    private float[] positions;
+    private float[] rotations;
+    private float[] scales;
+    private float[] previousPositions;
+    private float[] previousRotations;
+    private float[] previousScales;
+    private boolean[] hasPreviousState;
+
+    private float[] localMatrices;
+    private float[] worldMatrices;
+    private float[] interpolatedMatrices;
+
+    // The index of the parent of each transform or -1, and the end of its subtree (exclusive)
+    private int[] parents;
+    private int[] subtreeEnds;
+    private byte[] flags;
+
+    private int[] roots;
+    private int rootCount;
+
+    // The interpolation factor of the interpolated matrices, NaN if never updated
+    private float interpolatedAlpha;
+
+    private volatile boolean valid;
+
+    public TransformStore() {
+        allocate(INITIAL_CAPACITY);
+        roots = new int[INITIAL_CAPACITY];
+        interpolatedAlpha = Float.NaN;
+    }
+
+    private void allocate(int capacity) {
+        transforms = new Transform[capacity];
+        positions = new float[capacity * 3];
+        rotations = new float[capacity * 4];
+        scales = new float[capacity * 3];
+        previousPositions = new float[capacity * 3];
+        previousRotations = new float[capacity * 4];
+        previousScales = new float[capacity * 3];
+        hasPreviousState = new boolean[capacity];
+        localMatrices = new float[capacity * 16];
+        worldMatrices = new float[capacity * 16];
+        interpolatedMatrices = new float[capacity * 16];
+        parents = new int[capacity];
+        subtreeEnds = new int[capacity];
+        flags = new byte[capacity];
+    }
+
+    /**
+     * Marks the store as invalid, e.g. because a transform was added, removed or moved to
+     * another parent. Its transforms calculate their matrices themselves until it is rebuilt.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Releases all transforms from the store, so that they calculate their matrices themselves.
+     */
+    public void clear() {
+        valid = false;
+        for (int i = 0; i < size; i++) {
+            transforms[i].unbind();
+            transforms[i] = null;
+        }
+        size = 0;
+        rootCount = 0;
+    }
+
+    /**
+     * Rebuilds the store from the given root transforms and their descendants. Transforms that
+     * were in the store before are released first.
+     * @param rootTransforms The transforms without a parent.
+     * @param count The amount of root transforms.
+     */
+    public void rebuild(Transform[] rootTransforms, int count) {
+        clear();
+        if (roots.length < count) {
+            roots = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            roots[rootCount++] = size;
+            add(rootTransforms[i], -1);
+        }
+        interpolatedAlpha = Float.NaN;
+        valid = true;
+    }
+
+    private void add(Transform transform, int parent) {
+        if (size == transforms.length) {
+            grow();
+        }
+        int index = size++;
+        transforms[index] = transform;
+        parents[index] = parent;
+        // Only the transform itself until its children are added
+        subtreeEnds[index] = index + 1;
+        transform.bind(this, index);
+        flags[index] = LOCAL_CHANGED | WORLD_CHANGED | INTERPOLATED_CHANGED;
+
+        for (int i = 0; i < transform.children.size(); i++) {
+            add(transform.children.get(i), index);
+        }
+        subtreeEnds[index] = size;
+    }
+
+    private void grow() {
+        int capacity = transforms.length * 2;
+        transforms = Arrays.copyOf(transforms, capacity);
+        positions = Arrays.copyOf(positions, capacity * 3);
+        rotations = Arrays.copyOf(rotations, capacity * 4);
+        scales = Arrays.copyOf(scales, capacity * 3);
+        previousPositions = Arrays.copyOf(previousPositions, capacity * 3);
+        previousRotations = Arrays.copyOf(previousRotations, capacity * 4);
+        previousScales = Arrays.copyOf(previousScales, capacity * 3);
+        hasPreviousState = Arrays.copyOf(hasPreviousState, capacity);
+        localMatrices = Arrays.copyOf(localMatrices, capacity * 16);
+        worldMatrices = Arrays.copyOf(worldMatrices, capacity * 16);
+        interpolatedMatrices = Arrays.copyOf(interpolatedMatrices, capacity * 16);
+        parents = Arrays.copyOf(parents, capacity);
+        subtreeEnds = Arrays.copyOf(subtreeEnds, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the local state of a transform and marks the matrices of its subtree as changed.
+     */
+    void setLocal(int index, Vector3f position, Quaternionf rotation, Vector3f scale) {
+        write(position, positions, index);
+        write(rotation, rotations, index);
+        write(scale, scales, index);
+        flags[index] |= LOCAL_CHANGED;
+        markSubtree(index, (byte) (WORLD_CHANGED | INTERPOLATED_CHANGED));
+    }
+
+    /**
+     * Writes the previous state of a transform, or clears it if the given values are null.
+     */
+    void setPrevious(int index, Vector3f position, Quaternionf rotation, Vector3f scale) {
+        if (position == null) {
+            hasPreviousState[index] = false;
+        } else {
+            write(position, previousPositions, index);
+            write(rotation, previousRotations, index);
+            write(scale, previousScales, index);
+            hasPreviousState[index] = true;
+        }
+        markSubtree(index, INTERPOLATED_CHANGED);
+    }
+
+    private static void write(Vector3f vector, float[] array, int index) {
+        int o = index * 3;
+        array[o] = vector.x;
+        array[o + 1] = vector.y;
+        array[o + 2] = vector.z;
+    }
+
+    private static void write(Quaternionf quaternion, float[] array, int index) {
+        int o = index * 4;
+        array[o] = quaternion.x;
+        array[o + 1] = quaternion.y;
+        array[o + 2] = quaternion.z;
+        array[o + 3] = quaternion.w;
+    }
+
+    private void markSubtree(int index, byte flag) {
+        int end = subtreeEnds[index];
+        for (int i = index; i < end; i++) {
+            flags[i] |= flag;
+        }
+    }
+
+    /**
+     * Copies the world matrix of a transform into the destination. If it has changed since the
+     * last update, it is calculated up the hierarchy in the scratch array instead. Reads never
+     * change the store, only {@link #update(float, TaskScheduler)} clears the changed flags.
+     * @param scratch At least {@link #SCRATCH_SIZE} floats, owned by the caller.
+     */
+    Matrix4f getWorldMatrix(int index, Matrix4f dest, float[] scratch) {
+        if ((flags[index] & WORLD_CHANGED) == 0) {
+            return dest.set(worldMatrices, index * 16);
+        }
+        getLocal(index, scratch, 0);
+        for (int parent = parents[index]; parent >= 0; parent = parents[parent]) {
+            if ((flags[parent] & WORLD_CHANGED) == 0) {
+                // Ancestors of an unchanged transform are unchanged as well
+                mulAffineInPlace(worldMatrices, parent * 16, scratch, 0);
+                break;
+            }
+            getLocal(parent, scratch, 16);
+            mulAffineInPlace(scratch, 16, scratch, 0);
+        }
+        return dest.set(scratch);
+    }
+
+    /**
+     * Copies the interpolated world matrix of a transform into the destination. Uses the result
+     * of the last update if nothing has changed since, otherwise calculates it up the hierarchy
+     * in the scratch array without changing the store.
+     * @param scratch At least {@link #SCRATCH_SIZE} floats, owned by the caller.
+     */
+    Matrix4f getInterpolatedWorldMatrix(int index, float alpha, Matrix4f dest, float[] scratch) {
+        if (flags[index] == 0 && interpolatedAlpha == alpha) {
+            return dest.set(interpolatedMatrices, index * 16);
+        }
+        interpolateLocal(index, alpha, scratch, 0);
+        for (int parent = parents[index]; parent >= 0; parent = parents[parent]) {
+            if (flags[parent] == 0 && interpolatedAlpha == alpha) {
+                mulAffineInPlace(interpolatedMatrices, parent * 16, scratch, 0);
+                break;
+            }
+            interpolateLocal(parent, alpha, scratch, 16);
+            mulAffineInPlace(scratch, 16, scratch, 0);
+        }
+        return dest.set(scratch);
+    }
+
+    /**
+     * Composes all changed matrices and the interpolated matrices of all transforms.
+     * @param alpha The interpolation factor between the previous and the current state.
+     * @param scheduler Used to split the work by root subtree for large stores, or null.
+     */
+    public void update(float alpha, TaskScheduler scheduler) {
+        if (!valid) {
+            return;
+        }
+        boolean interpolateAll = alpha != interpolatedAlpha;
+        TaskScheduler.RangeAction action = (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int root = roots[r];
+                updateRange(root, subtreeEnds[root], alpha, interpolateAll);
+            }
+        };
+        if (scheduler != null && size >= PARALLEL_THRESHOLD) {
+            scheduler.parallelFor(rootCount, MIN_ROOTS_PER_CHUNK, action);
+        } else {
+            action.run(0, rootCount);
+        }
+        interpolatedAlpha = alpha;
+    }
+
+    private void updateRange(int from, int to, float alpha, boolean interpolateAll) {
+        for (int i = from; i < to; i++) {
+            byte flag = flags[i];
+            int parent = parents[i];
+            if ((flag & LOCAL_CHANGED) != 0) {
+                composeLocal(i, localMatrices, i * 16);
+            }
+            if ((flag & WORLD_CHANGED) != 0) {
+                composeWorld(i, parent);
+            }
+            if (interpolateAll || flag != 0) {
+                composeInterpolated(i, parent, alpha);
+            }
+            flags[i] = 0;
+        }
+    }
+
+    /**
+     * Copies the local matrix of a transform into the destination, composing it if it has
+     * changed since the last update.
+     */
+    private void getLocal(int index, float[] m, int o) {
+        if ((flags[index] & LOCAL_CHANGED) != 0) {
+            composeLocal(index, m, o);
+        } else {
+            System.arraycopy(localMatrices, index * 16, m, o, 16);
+        }
+    }
+
+    /**
+     * local = translation * rotation * scale, column major like JOML.
+     */
+    private void composeLocal(int index, float[] m, int o) {
+        int p = index * 3;
+        int q = index * 4;
+        composeTRS(positions[p], positions[p + 1], positions[p + 2],
+            rotations[q], rotations[q + 1], rotations[q + 2], rotations[q + 3],
+            scales[p], scales[p + 1], scales[p + 2], m, o);
+    }
+
+    private static void composeTRS(float px, float py, float pz, float qx, float qy, float qz, float qw,
+            float sx, float sy, float sz, float[] m, int o) {
+        float w2 = qw * qw, x2 = qx * qx, y2 = qy * qy, z2 = qz * qz;
+        float dzw = 2 * qz * qw, dxy = 2 * qx * qy, dxz = 2 * qx * qz;
+        float dyw = 2 * qy * qw, dyz = 2 * qy * qz, dxw = 2 * qx * qw;
+        m[o] = (w2 + x2 - z2 - y2) * sx;
+        m[o + 1] = (dxy + dzw) * sx;
+        m[o + 2] = (dxz - dyw) * sx;
+        m[o + 3] = 0;
+        m[o + 4] = (dxy - dzw) * sy;
+        m[o + 5] = (y2 - z2 + w2 - x2) * sy;
+        m[o + 6] = (dyz + dxw) * sy;
+        m[o + 7] = 0;
+        m[o + 8] = (dyw + dxz) * sz;
+        m[o + 9] = (dyz - dxw) * sz;
+        m[o + 10] = (z2 - y2 - x2 + w2) * sz;
+        m[o + 11] = 0;
+        m[o + 12] = px;
+        m[o + 13] = py;
+        m[o + 14] = pz;
+        m[o + 15] = 1;
+    }
+
+    private void composeWorld(int index, int parent) {
+        int o = index * 16;
+        if (parent < 0) {
+            System.arraycopy(localMatrices, o, worldMatrices, o, 16);
+        } else {
+            mulAffine(worldMatrices, parent * 16, localMatrices, o, worldMatrices, o);
+        }
+    }
+
+    private void composeInterpolated(int index, int parent, float alpha) {
+        int o = index * 16;
+        if (hasPreviousState[index]) {
+            interpolateLocal(index, alpha, interpolatedMatrices, o);
+        } else {
+            System.arraycopy(localMatrices, o, interpolatedMatrices, o, 16);
+        }
+        if (parent >= 0) {
+            // The parent's matrix is complete, since parents come first
+            mulAffineInPlace(interpolatedMatrices, parent * 16, interpolatedMatrices, o);
+        }
+    }
+
+    /**
+     * Interpolates the local state of a transform between its previous and current state and
+     * composes it into the destination.
+     */
+    private void interpolateLocal(int index, float alpha, float[] dest, int o) {
+        if (!hasPreviousState[index]) {
+            getLocal(index, dest, o);
+            return;
+        }
+        int p = index * 3;
+        int q = index * 4;
+        float px = lerp(previousPositions[p], positions[p], alpha);
+        float py = lerp(previousPositions[p + 1], positions[p + 1], alpha);
+        float pz = lerp(previousPositions[p + 2], positions[p + 2], alpha);
+        float sx = lerp(previousScales[p], scales[p], alpha);
+        float sy = lerp(previousScales[p + 1], scales[p + 1], alpha);
+        float sz = lerp(previousScales[p + 2], scales[p + 2], alpha);
+
+        // Spherical interpolation of the rotation, as in JOML's Quaternionf.slerp
+        float ax = previousRotations[q], ay = previousRotations[q + 1], az = previousRotations[q + 2], aw = previousRotations[q + 3];
+        float bx = rotations[q], by = rotations[q + 1], bz = rotations[q + 2], bw = rotations[q + 3];
+        float cosom = ax * bx + ay * by + az * bz + aw * bw;
+        float absCosom = Math.abs(cosom);
+        float scale0;
+        float scale1;
+        if (1.0f - absCosom > 1E-6f) {
+            float sinSqr = 1.0f - absCosom * absCosom;
+            float sinom = (float) (1.0 / Math.sqrt(sinSqr));
+            float omega = (float) Math.atan2(sinSqr * sinom, absCosom);
+            scale0 = (float) (Math.sin((1.0 - alpha) * omega) * sinom);
+            scale1 = (float) (Math.sin(alpha * omega) * sinom);
+        } else {
+            scale0 = 1.0f - alpha;
+            scale1 = alpha;
+        }
+        scale1 = cosom >= 0.0f ? scale1 : -scale1;
+        composeTRS(px, py, pz, scale0 * ax + scale1 * bx, scale0 * ay + scale1 * by,
+            scale0 * az + scale1 * bz, scale0 * aw + scale1 * bw, sx, sy, sz, dest, o);
+    }
+
+    private static float lerp(float from, float to, float alpha) {
+        return from + (to - from) * alpha;
+    }
+
+    /**
+     * dest = left * right for affine matrices. dest must not overlap left or right.
+     */
+    private static void mulAffine(float[] l, int lo, float[] r, int ro, float[] d, int o) {
+        for (int c = 0; c < 4; c++) {
+            int rc = ro + c * 4;
+            float r0 = r[rc], r1 = r[rc + 1], r2 = r[rc + 2];
+            float w = c == 3 ? 1 : 0;
+            d[o + c * 4] = l[lo] * r0 + l[lo + 4] * r1 + l[lo + 8] * r2 + l[lo + 12] * w;
+            d[o + c * 4 + 1] = l[lo + 1] * r0 + l[lo + 5] * r1 + l[lo + 9] * r2 + l[lo + 13] * w;
+            d[o + c * 4 + 2] = l[lo + 2] * r0 + l[lo + 6] * r1 + l[lo + 10] * r2 + l[lo + 14] * w;
+            d[o + c * 4 + 3] = w;
+        }
+    }
+
+    /**
+     * m[o] = l[lo] * m[o] for affine matrices. The two matrices must not overlap.
+     */
+    private static void mulAffineInPlace(float[] l, int lo, float[] m, int o) {
+        for (int c = 0; c < 4; c++) {
+            int rc = o + c * 4;
+            // Each column only depends on itself, so it can be overwritten right away
+            float r0 = m[rc], r1 = m[rc + 1], r2 = m[rc + 2];
+            float w = c == 3 ? 1 : 0;
+            m[rc] = l[lo] * r0 + l[lo + 4] * r1 + l[lo + 8] * r2 + l[lo + 12] * w;
+            m[rc + 1] = l[lo + 1] * r0 + l[lo + 5] * r1 + l[lo + 9] * r2 + l[lo + 13] * w;
+            m[rc + 2] = l[lo + 2] * r0 + l[lo + 6] * r1 + l[lo + 10] * r2 + l[lo + 14] * w;
+            m[rc + 3] = w;
+        }
+    }
+}
@@ -15,6 +15,8 @@ import java.util.Map;
 import org.joml.Vector4f;
 
 import io.github.kuggek.engine.core.config.ProjectPaths;
+import io.github.kuggek.engine.core.profiling.Profiler;
+import io.github.kuggek.engine.core.profiling.events.AssetFetchEvent;
 import io.github.kuggek.engine.rendering.objects.Material;
 import io.github.kuggek.engine.rendering.objects.Mesh;
 import io.github.kuggek.engine.rendering.objects.Texture;
@@ -78,17 +80,25 @@ public class SQLiteAssetManager implements AssetManager {
     }
 
     @Override
-    public Mesh fetchMesh(int ID) throws Exception {
-        String query = fetchQuery("fetchMesh.sql");
-        PreparedStatement statement = conn.prepareStatement(query);
-        statement.setInt(1, ID);
-        ResultSet res = statement.executeQuery();
-        if (!res.isBeforeFirst()) {
-            throw new SQLException("Mesh not found in database");
+    public synchronized Mesh fetchMesh(int ID) throws Exception {
+        Profiler.getInstance().begin("Asset fetch");
+        AssetFetchEvent event = new AssetFetchEvent();
+        event.begin();
+        try {
+            String query = fetchQuery("fetchMesh.sql");
+            PreparedStatement statement = conn.prepareStatement(query);
+            statement.setInt(1, ID);
+            ResultSet res = statement.executeQuery();
+            if (!res.isBeforeFirst()) {
+                throw new SQLException("Mesh not found in database");
+            }
+            Mesh mesh = resultSetToMesh(res);
+            res.close();
+            commitFetchEvent(event, "Mesh", ID, sizeOf(mesh));
+            return mesh;
+        } finally {
+            Profiler.getInstance().end("Asset fetch");
         }
-        Mesh mesh = resultSetToMesh(res);
-        res.close();
-        return mesh;
     }
 
     @Override
@@ -107,17 +117,25 @@ public class SQLiteAssetManager implements AssetManager {
     }
 
     @Override
-    public Texture fetchTexture(int ID) throws Exception {
-        String query = fetchQuery("fetchTexture.sql");
-        PreparedStatement statement = conn.prepareStatement(query);
-        statement.setInt(1, ID);
-        ResultSet res = statement.executeQuery();
-        if (!res.isBeforeFirst()) {
-            throw new SQLException("Texture not found in database");
+    public synchronized Texture fetchTexture(int ID) throws Exception {
+        Profiler.getInstance().begin("Asset fetch");
+        AssetFetchEvent event = new AssetFetchEvent();
+        event.begin();
+        try {
+            String query = fetchQuery("fetchTexture.sql");
+            PreparedStatement statement = conn.prepareStatement(query);
+            statement.setInt(1, ID);
+            ResultSet res = statement.executeQuery();
+            if (!res.isBeforeFirst()) {
+                throw new SQLException("Texture not found in database");
+            }
+            Texture tex = resultSetToTexture(res);
+            res.close();
+            commitFetchEvent(event, "Texture", ID, sizeOf(tex));
+            return tex;
+        } finally {
+            Profiler.getInstance().end("Asset fetch");
         }
-        Texture tex = resultSetToTexture(res);
-        res.close();
-        return tex;
     }
 
     @Override
@@ -286,6 +304,39 @@ public class SQLiteAssetManager implements AssetManager {
         }
     }
 
+    private void commitFetchEvent(AssetFetchEvent event, String assetType, int ID, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.assetType = assetType;
+            event.assetID = ID;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    private static long sizeOf(Mesh mesh) {
+        long floats = mesh.getPositions().length + mesh.getTextureCoords().length + mesh.getNormals().length;
+        if (mesh.getTangents() != null) {
+            floats += mesh.getTangents().length;
+        }
+        return floats * Float.BYTES + (long) mesh.getIndices().length * Integer.BYTES;
+    }
+
+    private static long sizeOf(Texture texture) {
+        return (long) texture.getPixels().length * Integer.BYTES;
+    }
+
+    private static long sizeOf(Material material) {
+        // The shininess and the RGBA colors that are set
+        long floats = 1 + colorFloats(material.getAmbient()) + colorFloats(material.getDiffuse())
+            + colorFloats(material.getSpecular());
+        return floats * Float.BYTES;
+    }
+
+    private static int colorFloats(Vector4f color) {
+        return color != null ? 4 : 0;
+    }
+
     private Texture resultSetToTexture(ResultSet res) throws SQLException {
         int ID = res.getInt("id");
         String fileName = res.getString("file_name");
@@ -463,17 +514,25 @@ public class SQLiteAssetManager implements AssetManager {
     }
 
     @Override
-    public Material fetchMaterial(int ID) throws Exception {
-        String query = fetchQuery("fetchMaterial.sql");
-        PreparedStatement statement = conn.prepareStatement(query);
-        statement.setInt(1, ID);
-        ResultSet res = statement.executeQuery();
-        if (!res.isBeforeFirst()) {
-            throw new SQLException("Material not found in database");
+    public synchronized Material fetchMaterial(int ID) throws Exception {
+        Profiler.getInstance().begin("Asset fetch");
+        AssetFetchEvent event = new AssetFetchEvent();
+        event.begin();
+        try {
+            String query = fetchQuery("fetchMaterial.sql");
+            PreparedStatement statement = conn.prepareStatement(query);
+            statement.setInt(1, ID);
+            ResultSet res = statement.executeQuery();
+            if (!res.isBeforeFirst()) {
+                throw new SQLException("Material not found in database");
+            }
+            Material material = resultSetToMaterial(res);
+            res.close();
+            commitFetchEvent(event, "Material", ID, sizeOf(material));
+            return material;
+        } finally {
+            Profiler.getInstance().end("Asset fetch");
         }
-        Material material = resultSetToMaterial(res);
-        res.close();
-        return material;
     }
 
     @Override
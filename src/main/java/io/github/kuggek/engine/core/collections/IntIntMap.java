@@ -0,0 +1,220 @@
+package io.github.kuggek.engine.core.collections;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+
+/**
+ * A hash map from primitive int keys to primitive int values. Neither keys nor values are boxed
+ * and entries are stored in flat arrays with linear probing. Lookups of missing keys return a
+ * configurable missing value, e.g. -1 for OpenGL names.
+ * <p>
+ * Iterating with {@link #forEach(IntIntConsumer)} does not allocate. The map must not be
+ * modified during iteration. Not thread safe.
+ */
+public class IntIntMap {
+
+    /**
+     * Action on an entry of the map.
+     */
+    @FunctionalInterface
+    public interface IntIntConsumer {
+        void accept(int key, int value);
+    }
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+    private int modifications;
+
+    private final int missingValue;
+
+    /**
+     * Creates a map that returns -1 for missing keys.
+     */
+    public IntIntMap() {
+        this(DEFAULT_CAPACITY, -1);
+    }
+
+    /**
+     * @param expectedSize The amount of entries the map can hold without resizing.
+     * @param missingValue The value returned for keys that are not in the map.
+     */
+    public IntIntMap(int expectedSize, int missingValue) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative");
+        }
+        this.missingValue = missingValue;
+        int capacity = Integer.highestOneBit(Math.max(4, (int) Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(Math.max(capacity, 4));
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slotOf(int key) {
+        int slot = IntObjectMap.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    /**
+     * @param key The key.
+     * @return The value of the key or the missing value if the map does not contain the key.
+     */
+    public int get(int key) {
+        int slot = slotOf(key);
+        return slot < 0 ? missingValue : values[slot];
+    }
+
+    /**
+     * @param key The key.
+     * @param defaultValue The value to return if the map does not contain the key.
+     * @return The value of the key or the default value.
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        int slot = slotOf(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * Associates the value with the key.
+     * @param key The key.
+     * @param value The value.
+     * @return The previous value of the key or the missing value if there was none.
+     */
+    public int put(int key, int value) {
+        int slot = IntObjectMap.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        ++modifications;
+        if (++size > resizeThreshold) {
+            resize(keys.length * 2);
+        }
+        return missingValue;
+    }
+
+    /**
+     * Removes the key from the map.
+     * @param key The key.
+     * @return The removed value or the missing value if the map did not contain the key.
+     */
+    public int remove(int key) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return missingValue;
+        }
+        int previous = values[slot];
+
+        // Shift the following entries of the probe sequence back, so no tombstones are needed
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (used[next]) {
+            int ideal = IntObjectMap.hash(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[gap] = false;
+        --size;
+        ++modifications;
+        return previous;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = IntObjectMap.hash(oldKeys[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+        ++modifications;
+    }
+
+    /**
+     * Runs the action for each entry of the map in no particular order.
+     * @param action The action to run.
+     */
+    public void forEach(IntIntConsumer action) {
+        int expectedModifications = modifications;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+        if (modifications != expectedModifications) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * @return A new array containing the values of the map.
+     */
+    public int[] valuesToArray() {
+        int[] result = new int[size];
+        int index = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[index++] = values[i];
+            }
+        }
+        return result;
+    }
+}
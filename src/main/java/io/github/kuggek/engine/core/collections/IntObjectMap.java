@@ -0,0 +1,302 @@
+package io.github.kuggek.engine.core.collections;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A hash map from primitive int keys to objects. Keys are not boxed and entries are stored in
+ * flat arrays with linear probing, so lookups do not chase pointers. Null values are not allowed,
+ * a null result from {@link #get(int)} always means the key is not in the map.
+ * <p>
+ * Iterating with {@link #forEach(IntObjectConsumer)} or {@link #forEachValue(Consumer)} does not
+ * allocate. The map must not be modified during iteration. Not thread safe.
+ * @param <V> The type of the values.
+ */
+public class IntObjectMap<V> {
+
+    /**
+     * Action on an entry of the map.
+     */
+    @FunctionalInterface
+    public interface IntObjectConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+    private int modifications;
+
+    private final Collection<V> valuesView = new ValuesView();
+
+    public IntObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize The amount of entries the map can hold without resizing.
+     */
+    public IntObjectMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative");
+        }
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(capacity, 4);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    static int hash(int key) {
+        // Spread sequential IDs over the table, since they are the common case
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int slotOf(int key) {
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param key The key.
+     * @return The value of the key or null if the map does not contain the key.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = slotOf(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * Associates the value with the key.
+     * @param key The key.
+     * @param value The value, must not be null.
+     * @return The previous value of the key or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not allowed");
+        }
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        ++modifications;
+        if (++size > resizeThreshold) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Associates the value with the key if the key is not in the map yet.
+     * @param key The key.
+     * @param value The value, must not be null.
+     * @return The current value of the key or null if the value was added.
+     */
+    public V putIfAbsent(int key, V value) {
+        V current = get(key);
+        if (current != null) {
+            return current;
+        }
+        put(key, value);
+        return null;
+    }
+
+    /**
+     * Removes the key from the map.
+     * @param key The key.
+     * @return The removed value or null if the map did not contain the key.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return null;
+        }
+        V previous = (V) values[slot];
+
+        // Shift the following entries of the probe sequence back, so no tombstones are needed
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int ideal = hash(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+        --size;
+        ++modifications;
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = (V) oldValues[i];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+        ++modifications;
+    }
+
+    /**
+     * Runs the action for each entry of the map in no particular order.
+     * @param action The action to run.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(IntObjectConsumer<? super V> action) {
+        int expectedModifications = modifications;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+        if (modifications != expectedModifications) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Runs the action for each value of the map in no particular order.
+     * @param action The action to run.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        int expectedModifications = modifications;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept((V) values[i]);
+            }
+        }
+        if (modifications != expectedModifications) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * @return A read-only view of the values of the map, which reflects later changes.
+     */
+    public Collection<V> values() {
+        return valuesView;
+    }
+
+    private class ValuesView extends AbstractCollection<V> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            for (Object value : values) {
+                if (value != null && value.equals(o)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEach(Consumer<? super V> action) {
+            forEachValue(action);
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new Iterator<V>() {
+                private final int expectedModifications = modifications;
+                private int slot = nextSlot(0);
+
+                private int nextSlot(int from) {
+                    while (from < values.length && values[from] == null) {
+                        ++from;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return slot < values.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public V next() {
+                    if (modifications != expectedModifications) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (slot >= values.length) {
+                        throw new NoSuchElementException();
+                    }
+                    V value = (V) values[slot];
+                    slot = nextSlot(slot + 1);
+                    return value;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.kuggek.engine.core.profiling;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.kuggek.engine.core.assets.ResourceManager;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Helpers for recording the engine's JDK Flight Recorder events. The engine events are 
+ * configured by the recording profile {@value #PROFILE_PATH}, which is applied on top of the 
+ * JDK "default" profile.
+ */
+public class EngineRecording {
+
+    public static final String PROFILE_PATH = "jfr/engine.jfc";
+
+    /**
+     * Get the settings of the engine recording profile merged with the JDK default profile.
+     * @return The recording settings.
+     * @throws IOException If the profile cannot be read.
+     * @throws ParseException If the profile is not a valid recording profile.
+     */
+    public static Map<String, String> getSettings() throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        String profile = ResourceManager.readFile(PROFILE_PATH);
+        settings.putAll(Configuration.create(new StringReader(profile)).getSettings());
+        return settings;
+    }
+
+    /**
+     * Starts a continuous recording with the engine recording profile. Only the latest data 
+     * is kept, and it is written to the destination when the recording is stopped or the 
+     * JVM exits.
+     * @param destination The file to write the recording to.
+     * @param maxAge How long recorded data is kept.
+     * @return The started recording.
+     * @throws IOException If the profile cannot be read or the destination is not writable.
+     * @throws ParseException If the profile is not a valid recording profile.
+     */
+    public static Recording start(Path destination, Duration maxAge) throws IOException, ParseException {
+        Recording recording = new Recording(getSettings());
+        recording.setName("Kuggek Engine");
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setDestination(destination);
+        recording.setDumpOnExit(true);
+        recording.start();
+        return recording;
+    }
+
+    public static Recording start(Path destination) throws IOException, ParseException {
+        return start(destination, Duration.ofMinutes(10));
+    }
+}
@@ -0,0 +1,381 @@
+package io.github.kuggek.engine.core.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lightweight frame profiler. Code is measured with named scopes that can be nested:
+ * <pre>
+ * Profiler profiler = Profiler.getInstance();
+ * profiler.begin("Physics step");
+ * ...
+ * profiler.end("Physics step");
+ * </pre>
+ * The time spent in each scope is summed up per frame and recorded into a rolling histogram
+ * when the frame ends, along with the bytes allocated by each registered thread during the
+ * frame. Scopes can be used from any thread.
+ */
+public class Profiler {
+
+    private static final Profiler instance = new Profiler();
+
+    /**
+     * The name of the scope covering a whole frame, from {@link #beginFrame()} to {@link #endFrame()}.
+     */
+    public static final String FRAME = "Frame";
+
+    private static final int DEFAULT_WINDOW_SIZE = 300;
+
+    private volatile boolean enabled = true;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+
+    private final Map<String, Scope> scopes;
+    private final ThreadLocal<ScopeStack> scopeStacks;
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final Map<Thread, ThreadAllocation> threads;
+
+    private RollingHistogram frameHistogram;
+    private long frameStart;
+    private long frameCount;
+
+    private static class Scope {
+        private final String name;
+        private volatile String parent;
+        private final LongAdder frameTime = new LongAdder();
+        private volatile RollingHistogram histogram;
+
+        private Scope(String name, int windowSize) {
+            this.name = name;
+            this.histogram = new RollingHistogram(windowSize);
+        }
+    }
+
+    /**
+     * The scopes that are currently open on a thread, innermost last.
+     */
+    private static class ScopeStack {
+        private Scope[] scopes = new Scope[16];
+        private long[] starts = new long[16];
+        private int size;
+
+        private void push(Scope scope, long start) {
+            if (size == scopes.length) {
+                scopes = Arrays.copyOf(scopes, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+            }
+            scopes[size] = scope;
+            starts[size] = start;
+            ++size;
+        }
+    }
+
+    private static class ThreadAllocation {
+        private long previousBytes;
+        private RollingHistogram histogram;
+    }
+
+    private Profiler() {
+        scopes = new ConcurrentHashMap<>();
+        scopeStacks = ThreadLocal.withInitial(ScopeStack::new);
+        threads = new ConcurrentHashMap<>();
+        frameHistogram = new RollingHistogram(windowSize);
+
+        com.sun.management.ThreadMXBean bean = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean sunBean) {
+            try {
+                if (sunBean.isThreadAllocatedMemorySupported()) {
+                    sunBean.setThreadAllocatedMemoryEnabled(true);
+                    bean = sunBean;
+                }
+            } catch (UnsupportedOperationException | SecurityException e) {
+                System.out.println("Thread allocation tracking not available: " + e.getMessage());
+            }
+        }
+        threadBean = bean;
+    }
+
+    public static Profiler getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable the profiler. While disabled, scopes and frames are not recorded.
+     * @param enabled True to enable the profiler.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Set the amount of latest frames the statistics are calculated from. Clears all
+     * recorded samples.
+     * @param windowSize The amount of frames.
+     */
+    public synchronized void setWindowSize(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.windowSize = windowSize;
+        frameHistogram = new RollingHistogram(windowSize);
+        for (Scope scope : scopes.values()) {
+            scope.histogram = new RollingHistogram(windowSize);
+        }
+        for (ThreadAllocation allocation : threads.values()) {
+            allocation.histogram = new RollingHistogram(windowSize);
+        }
+    }
+
+    /**
+     * Opens a named scope on the current thread. Every call must be matched by a call to
+     * {@link #end(String)} with the same name on the same thread. Scopes opened inside another
+     * scope are considered its children.
+     * @param name The name of the scope.
+     */
+    public void begin(String name) {
+        if (!enabled) {
+            return;
+        }
+        ScopeStack stack = scopeStacks.get();
+        Scope scope = scopes.get(name);
+        if (scope == null) {
+            scope = scopes.computeIfAbsent(name, n -> new Scope(n, windowSize));
+        }
+        if (scope.parent == null && stack.size > 0) {
+            scope.parent = stack.scopes[stack.size - 1].name;
+        }
+        stack.push(scope, System.nanoTime());
+    }
+
+    /**
+     * Closes the innermost scope of the current thread and adds the time spent in it to the
+     * current frame. Does nothing if the innermost scope has a different name, e.g. because
+     * the profiler was enabled in between.
+     * @param name The name of the scope.
+     */
+    public void end(String name) {
+        long now = System.nanoTime();
+        ScopeStack stack = scopeStacks.get();
+        if (stack.size == 0) {
+            return;
+        }
+        int top = stack.size - 1;
+        Scope scope = stack.scopes[top];
+        if (!scope.name.equals(name)) {
+            return;
+        }
+        stack.scopes[top] = null;
+        stack.size = top;
+        scope.frameTime.add(now - stack.starts[top]);
+    }
+
+    /**
+     * Marks the start of a frame. The calling thread is registered for allocation tracking.
+     */
+    public synchronized void beginFrame() {
+        if (!enabled) {
+            return;
+        }
+        registerThread(Thread.currentThread());
+        frameStart = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a frame and records the time spent in each scope and the bytes
+     * allocated by each registered thread during the frame.
+     */
+    public synchronized void endFrame() {
+        if (!enabled || frameStart == 0) {
+            return;
+        }
+        frameHistogram.record(System.nanoTime() - frameStart);
+        frameStart = 0;
+        ++frameCount;
+
+        for (Scope scope : scopes.values()) {
+            scope.histogram.record(scope.frameTime.sumThenReset());
+        }
+
+        if (threadBean == null) {
+            return;
+        }
+        var iterator = threads.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            long bytes = threadBean.getThreadAllocatedBytes(entry.getKey().threadId());
+            if (bytes < 0 || !entry.getKey().isAlive()) {
+                iterator.remove();
+                continue;
+            }
+            ThreadAllocation allocation = entry.getValue();
+            allocation.histogram.record(bytes - allocation.previousBytes);
+            allocation.previousBytes = bytes;
+        }
+    }
+
+    /**
+     * Track the bytes allocated by the given thread per frame. Threads that have ended are
+     * removed automatically.
+     * @param thread The thread to track.
+     */
+    public void registerThread(Thread thread) {
+        if (threadBean == null || threads.containsKey(thread)) {
+            return;
+        }
+        ThreadAllocation allocation = new ThreadAllocation();
+        allocation.previousBytes = threadBean.getThreadAllocatedBytes(thread.threadId());
+        allocation.histogram = new RollingHistogram(windowSize);
+        threads.putIfAbsent(thread, allocation);
+    }
+
+    /**
+     * @return True if the bytes allocated per thread can be tracked on this JVM.
+     */
+    public boolean isAllocationTrackingSupported() {
+        return threadBean != null;
+    }
+
+    /**
+     * @return The amount of frames recorded since the profiler was created or reset.
+     */
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Get the frame time statistics of the latest frames.
+     * @return The statistics of whole frames.
+     */
+    public synchronized ProfilerStatistics getFrameStatistics() {
+        return frameHistogram.getStatistics(FRAME);
+    }
+
+    /**
+     * Get the per-frame time statistics of a scope.
+     * @param name The name of the scope.
+     * @return The statistics or null if the scope has never been opened.
+     */
+    public ProfilerStatistics getStatistics(String name) {
+        Scope scope = scopes.get(name);
+        if (scope == null) {
+            return null;
+        }
+        return scope.histogram.getStatistics(name);
+    }
+
+    /**
+     * @return The per-frame time statistics of all scopes, sorted by name.
+     */
+    public List<ProfilerStatistics> getAllStatistics() {
+        List<ProfilerStatistics> statistics = new ArrayList<>();
+        for (Scope scope : scopes.values()) {
+            statistics.add(scope.histogram.getStatistics(scope.name));
+        }
+        statistics.sort((a, b) -> a.name().compareTo(b.name()));
+        return statistics;
+    }
+
+    /**
+     * Get the name of the scope the given scope was first opened in.
+     * @param name The name of the scope.
+     * @return The name of the parent scope or null if the scope is a root scope.
+     */
+    public String getParent(String name) {
+        Scope scope = scopes.get(name);
+        return scope == null ? null : scope.parent;
+    }
+
+    public Set<String> getScopeNames() {
+        return Collections.unmodifiableSet(scopes.keySet());
+    }
+
+    /**
+     * @return The statistics of the bytes allocated per frame by each registered thread,
+     * keyed by thread name.
+     */
+    public Map<String, ProfilerStatistics> getAllocationStatistics() {
+        Map<String, ProfilerStatistics> statistics = new HashMap<>();
+        for (var entry : threads.entrySet()) {
+            String name = entry.getKey().getName();
+            statistics.put(name, entry.getValue().histogram.getStatistics(name));
+        }
+        return statistics;
+    }
+
+    /**
+     * Creates a human readable report of the frame, scope and allocation statistics.
+     * @return The report.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-32s %10s %10s %10s %10s%n", "Scope (ms)", "mean", "p50", "p99", "max"));
+        appendTimes(report, getFrameStatistics(), 0);
+
+        // Print the scopes as a tree, children below their parents
+        Map<String, List<ProfilerStatistics>> children = new HashMap<>();
+        for (ProfilerStatistics statistics : getAllStatistics()) {
+            children.computeIfAbsent(getParent(statistics.name()), k -> new ArrayList<>()).add(statistics);
+        }
+        appendChildren(report, children, null, 1);
+
+        if (isAllocationTrackingSupported()) {
+            report.append(String.format("%-32s %10s %10s %10s %10s%n", "Thread (KB allocated)", "mean", "p50", "p99", "max"));
+            for (ProfilerStatistics statistics : getAllocationStatistics().values()) {
+                report.append(String.format("%-32s %10.1f %10.1f %10.1f %10.1f%n", statistics.name(),
+                    statistics.mean() / 1024.0, statistics.p50() / 1024.0,
+                    statistics.p99() / 1024.0, statistics.max() / 1024.0));
+            }
+        }
+        return report.toString();
+    }
+
+    private void appendChildren(StringBuilder report, Map<String, List<ProfilerStatistics>> children, String parent, int depth) {
+        List<ProfilerStatistics> scopesOfParent = children.remove(parent);
+        if (scopesOfParent == null) {
+            return;
+        }
+        for (ProfilerStatistics statistics : scopesOfParent) {
+            appendTimes(report, statistics, depth);
+            appendChildren(report, children, statistics.name(), depth + 1);
+        }
+    }
+
+    private void appendTimes(StringBuilder report, ProfilerStatistics statistics, int depth) {
+        String name = "  ".repeat(depth) + statistics.name();
+        report.append(String.format("%-32s %10.3f %10.3f %10.3f %10.3f%n", name,
+            statistics.mean() / 1e6, statistics.p50() / 1e6, statistics.p99() / 1e6, statistics.max() / 1e6));
+    }
+
+    /**
+     * Clears all recorded statistics. Registered threads stay registered.
+     */
+    public synchronized void reset() {
+        scopes.clear();
+        frameHistogram.clear();
+        frameStart = 0;
+        frameCount = 0;
+        if (threadBean == null) {
+            return;
+        }
+        for (var entry : threads.entrySet()) {
+            entry.getValue().histogram.clear();
+            entry.getValue().previousBytes = threadBean.getThreadAllocatedBytes(entry.getKey().threadId());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.kuggek.engine.core.profiling;
+
+/**
+ * Statistics of a profiled value over the latest frames. Times are in nanoseconds and 
+ * allocations in bytes.
+ * @param name The name of the profiled scope or thread.
+ * @param last The value of the latest frame.
+ * @param mean The mean value per frame.
+ * @param p50 The median value per frame.
+ * @param p99 The 99th percentile value per frame.
+ * @param max The maximum value per frame.
+ * @param samples The amount of frames the statistics are calculated from.
+ */
+public record ProfilerStatistics(String name, long last, long mean, long p50, long p99, long max, int samples) {}
@@ -0,0 +1,97 @@
+package io.github.kuggek.engine.core.profiling;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latest samples of a value in a ring buffer and calculates percentiles over them. 
+ * Older samples are overwritten once the buffer is full, so the statistics always describe the 
+ * most recent window of samples.
+ */
+public class RollingHistogram {
+
+    private final long[] samples;
+    private final long[] sortHelper;
+    private int next;
+    private int count;
+
+    /**
+     * @param windowSize The amount of latest samples to keep.
+     */
+    public RollingHistogram(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        samples = new long[windowSize];
+        sortHelper = new long[windowSize];
+    }
+
+    public synchronized void record(long value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            ++count;
+        }
+    }
+
+    /**
+     * Get the value below which the given fraction of samples fall.
+     * @param percentile The percentile between 0 and 1, e.g. 0.99 for p99.
+     * @return The percentile value or 0 if there are no samples.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        System.arraycopy(samples, 0, sortHelper, 0, count);
+        Arrays.sort(sortHelper, 0, count);
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return sortHelper[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    public synchronized long getMax() {
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+
+    public synchronized long getMean() {
+        if (count == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+        }
+        return sum / count;
+    }
+
+    /**
+     * @return The latest sample or 0 if there are no samples.
+     */
+    public synchronized long getLast() {
+        if (count == 0) {
+            return 0;
+        }
+        return samples[(next - 1 + samples.length) % samples.length];
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        count = 0;
+    }
+
+    /**
+     * Get the statistics of the samples in the window.
+     * @param name The name to give the statistics.
+     * @return The statistics.
+     */
+    public synchronized ProfilerStatistics getStatistics(String name) {
+        return new ProfilerStatistics(name, getLast(), getMean(), getPercentile(0.5), getPercentile(0.99), getMax(), count);
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.kuggek.engine.core.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Covers fetching a single asset from an asset manager.
+ */
+@Name("io.github.kuggek.engine.AssetFetch")
+@Label("Asset Fetch")
+@Category({"Kuggek Engine", "Assets"})
+@Description("Fetching a single asset from the asset database")
+public class AssetFetchEvent extends jdk.jfr.Event {
+
+    @Label("Asset Type")
+    public String assetType;
+
+    @Label("Asset ID")
+    public int assetID;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,29 @@
+package io.github.kuggek.engine.core.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Covers the collision detection and response of a single physics step.
+ */
+@Name("io.github.kuggek.engine.CollisionPass")
+@Label("Collision Pass")
+@Category({"Kuggek Engine", "Physics"})
+@Description("Collision detection and response of a single physics step")
+@StackTrace(false)
+public class CollisionPassEvent extends jdk.jfr.Event {
+
+    @Label("Pairs")
+    @Description("Amount of collider pairs reported by the broadphase")
+    public int pairs;
+
+    @Label("Colliding Pairs")
+    public int collidingPairs;
+
+    @Label("Contacts")
+    @Description("Total amount of contact points of all colliding pairs")
+    public int contacts;
+}
@@ -0,0 +1,25 @@
+package io.github.kuggek.engine.core.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Covers a single engine update, from the start of the frame to the end of the render submit.
+ */
+@Name("io.github.kuggek.engine.Frame")
+@Label("Frame")
+@Category({"Kuggek Engine", "Frame"})
+@Description("A single update of the engine subsystems")
+@StackTrace(false)
+public class FrameEvent extends jdk.jfr.Event {
+
+    @Label("Frame Number")
+    public long frameNumber;
+
+    @Label("Physics Steps")
+    @Description("Amount of fixed physics steps taken during the frame")
+    public int physicsSteps;
+}
@@ -0,0 +1,27 @@
+package io.github.kuggek.engine.core.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Covers uploading a single resource to the GPU.
+ */
+@Name("io.github.kuggek.engine.GLUpload")
+@Label("GL Resource Upload")
+@Category({"Kuggek Engine", "Rendering"})
+@Description("Uploading a mesh, tangent or texture resource to the GPU")
+public class GLUploadEvent extends jdk.jfr.Event {
+
+    @Label("Resource Type")
+    public String resourceType;
+
+    @Label("Asset ID")
+    public int assetID;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
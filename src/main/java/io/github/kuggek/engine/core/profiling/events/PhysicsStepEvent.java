@@ -0,0 +1,32 @@
+package io.github.kuggek.engine.core.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Covers a single fixed step of the physics simulation.
+ */
+@Name("io.github.kuggek.engine.PhysicsStep")
+@Label("Physics Step")
+@Category({"Kuggek Engine", "Physics"})
+@Description("A single fixed step of the physics simulation")
+@StackTrace(false)
+public class PhysicsStepEvent extends jdk.jfr.Event {
+
+    @Label("Time Step")
+    @Timespan(Timespan.NANOSECONDS)
+    public long timeStep;
+
+    @Label("Bodies")
+    public int bodies;
+
+    @Label("Colliders")
+    public int colliders;
+
+    @Label("Sleeping Bodies")
+    public int sleepingBodies;
+}
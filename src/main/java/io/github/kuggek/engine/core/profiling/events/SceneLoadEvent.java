@@ -0,0 +1,22 @@
+package io.github.kuggek.engine.core.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Covers reading and deserializing a scene file.
+ */
+@Name("io.github.kuggek.engine.SceneLoad")
+@Label("Scene Load")
+@Category({"Kuggek Engine", "Scene"})
+@Description("Reading and deserializing a scene file")
+public class SceneLoadEvent extends jdk.jfr.Event {
+
+    @Label("Scene Name")
+    public String sceneName;
+
+    @Label("Game Objects")
+    public int gameObjects;
+}
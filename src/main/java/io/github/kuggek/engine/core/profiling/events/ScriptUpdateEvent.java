@@ -0,0 +1,25 @@
+package io.github.kuggek.engine.core.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Covers the start or update call of a single script.
+ */
+@Name("io.github.kuggek.engine.ScriptUpdate")
+@Label("Script Update")
+@Category({"Kuggek Engine", "Scripting"})
+@Description("The start or update call of a single script")
+@StackTrace(false)
+public class ScriptUpdateEvent extends jdk.jfr.Event {
+
+    @Label("Script Class")
+    public Class<?> scriptClass;
+
+    @Label("Start")
+    @Description("True if the script was started, false if it was updated")
+    public boolean start;
+}
@@ -0,0 +1,131 @@
+package io.github.kuggek.engine.core.tasks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.github.kuggek.engine.core.profiling.ProfilerStatistics;
+import io.github.kuggek.engine.core.profiling.RollingHistogram;
+
+/**
+ * A unit of work in a {@link TaskGraph}. A task declares which types of data (usually component
+ * types) it reads and writes. Tasks that access the same type, and at least one of them writes
+ * it, are never run at the same time. Declaring {@code Object.class} conflicts with every type.
+ */
+public class Task {
+
+    private final String name;
+    private final Runnable action;
+    private final Set<Class<?>> reads;
+    private final Set<Class<?>> writes;
+    private final List<Task> explicitDependencies;
+
+    private volatile long lastDuration;
+    private final RollingHistogram timings;
+
+    Task(String name, Runnable action, int timingWindow) {
+        this.name = name;
+        this.action = action;
+        this.reads = new LinkedHashSet<>();
+        this.writes = new LinkedHashSet<>();
+        this.explicitDependencies = new ArrayList<>();
+        this.timings = new RollingHistogram(timingWindow);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    Runnable getAction() {
+        return action;
+    }
+
+    /**
+     * Declare types that this task reads.
+     * @param types The types read by this task.
+     * @return This task.
+     */
+    public Task reads(Class<?>... types) {
+        Collections.addAll(reads, types);
+        return this;
+    }
+
+    /**
+     * Declare types that this task writes. Writing a type implies reading it.
+     * @param types The types written by this task.
+     * @return This task.
+     */
+    public Task writes(Class<?>... types) {
+        Collections.addAll(writes, types);
+        return this;
+    }
+
+    /**
+     * Make this task always run after the given tasks, even if their declared accesses don't
+     * conflict.
+     * @param tasks The tasks to run before this task.
+     * @return This task.
+     */
+    public Task after(Task... tasks) {
+        Collections.addAll(explicitDependencies, tasks);
+        return this;
+    }
+
+    public Set<Class<?>> getReads() {
+        return Collections.unmodifiableSet(reads);
+    }
+
+    public Set<Class<?>> getWrites() {
+        return Collections.unmodifiableSet(writes);
+    }
+
+    List<Task> getExplicitDependencies() {
+        return explicitDependencies;
+    }
+
+    /**
+     * Check if this task and the given task can not run at the same time.
+     * @param other The other task.
+     * @return True if one of the tasks writes a type that the other reads or writes.
+     */
+    public boolean conflictsWith(Task other) {
+        return writesAny(other.writes) || writesAny(other.reads) || other.writesAny(reads);
+    }
+
+    private boolean writesAny(Set<Class<?>> types) {
+        for (Class<?> written : writes) {
+            for (Class<?> type : types) {
+                if (written.isAssignableFrom(type) || type.isAssignableFrom(written)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    void recordDuration(long nanos) {
+        lastDuration = nanos;
+        timings.record(nanos);
+    }
+
+    /**
+     * @return The duration of the latest run of this task in nanoseconds.
+     */
+    public long getLastDuration() {
+        return lastDuration;
+    }
+
+    /**
+     * @return The duration statistics of the latest runs of this task in nanoseconds.
+     */
+    public ProfilerStatistics getStatistics() {
+        return timings.getStatistics(name);
+    }
+
+    @Override
+    public String toString() {
+        return "Task[" + name + "]";
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.kuggek.engine.core.tasks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of tasks and the order they have to run in. Tasks are added in their logical order, 
+ * and each task depends on every earlier task it conflicts with (see 
+ * {@link Task#conflictsWith(Task)}) and on its explicit dependencies. Tasks without a path 
+ * between them can run in parallel. Run the graph with {@link TaskScheduler#run(TaskGraph)}.
+ */
+public class TaskGraph {
+
+    private static final int DEFAULT_TIMING_WINDOW = 300;
+
+    private final List<Task> tasks;
+
+    // Built lazily from the tasks, see build()
+    private boolean built;
+    private int[][] successors;
+    private int[] dependencyCounts;
+
+    public TaskGraph() {
+        tasks = new ArrayList<>();
+    }
+
+    /**
+     * Add a task to the end of the graph. Declare its accesses on the returned task before 
+     * the graph is run for the first time.
+     * @param name The name of the task, also used as its profiler scope.
+     * @param action The work of the task.
+     * @return The added task.
+     */
+    public Task addTask(String name, Runnable action) {
+        Task task = new Task(name, action, DEFAULT_TIMING_WINDOW);
+        tasks.add(task);
+        built = false;
+        return task;
+    }
+
+    public List<Task> getTasks() {
+        return Collections.unmodifiableList(tasks);
+    }
+
+    public Task getTask(String name) {
+        for (Task task : tasks) {
+            if (task.getName().equals(name)) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Rebuild the dependencies of the graph. Needs to be called if the accesses of a task are 
+     * changed after the graph has been run.
+     */
+    public void invalidate() {
+        built = false;
+    }
+
+    void build() {
+        if (built) {
+            return;
+        }
+        int n = tasks.size();
+        List<List<Integer>> successorLists = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            successorLists.add(new ArrayList<>());
+        }
+        dependencyCounts = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            Task task = tasks.get(i);
+            for (int j = 0; j < i; j++) {
+                Task earlier = tasks.get(j);
+                if (task.conflictsWith(earlier) || task.getExplicitDependencies().contains(earlier)) {
+                    successorLists.get(j).add(i);
+                    ++dependencyCounts[i];
+                }
+            }
+            for (Task dependency : task.getExplicitDependencies()) {
+                if (tasks.indexOf(dependency) > i) {
+                    throw new IllegalStateException(task + " can't depend on " + dependency + " which is added after it");
+                }
+                if (!tasks.contains(dependency)) {
+                    throw new IllegalStateException(task + " depends on " + dependency + " which is not in the graph");
+                }
+            }
+        }
+
+        successors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            successors[i] = successorLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        built = true;
+    }
+
+    int[][] getSuccessors() {
+        return successors;
+    }
+
+    int[] getDependencyCounts() {
+        return dependencyCounts;
+    }
+}
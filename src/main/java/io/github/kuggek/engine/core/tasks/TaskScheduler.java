@@ -0,0 +1,224 @@
+package io.github.kuggek.engine.core.tasks;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.kuggek.engine.core.profiling.Profiler;
+
+/**
+ * Runs task graphs on a work-stealing thread pool. Tasks whose dependencies have finished are
+ * forked to the pool right away, so independent tasks run concurrently. Tasks can split their
+ * own work further with {@link #parallelFor(int, int, RangeAction)}.
+ */
+public class TaskScheduler {
+
+    /**
+     * Work on a range of indices.
+     */
+    @FunctionalInterface
+    public interface RangeAction {
+        /**
+         * @param from The first index, inclusive.
+         * @param to The last index, exclusive.
+         */
+        void run(int from, int to);
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a scheduler with one worker per available processor, minus one for the thread
+     * that waits for the graphs to finish.
+     */
+    public TaskScheduler() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * @param parallelism The amount of worker threads.
+     */
+    public TaskScheduler(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        AtomicInteger workerCount = new AtomicInteger();
+        pool = new ForkJoinPool(parallelism, p -> {
+            WorkerThread thread = new WorkerThread(p);
+            thread.setName("Engine worker " + workerCount.incrementAndGet());
+            return thread;
+        }, null, false);
+    }
+
+    private static class WorkerThread extends ForkJoinWorkerThread {
+        private WorkerThread(ForkJoinPool pool) {
+            super(pool);
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            Profiler.getInstance().registerThread(this);
+        }
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Runs all tasks of the graph and waits until they have finished. If a task throws, the
+     * tasks depending on it are skipped and the exception is rethrown once the rest of the
+     * graph has finished.
+     * @param graph The graph to run.
+     * @throws IllegalStateException If the calling thread is interrupted while waiting. The
+     * interrupt flag is restored and tasks that are already running may still finish.
+     */
+    public void run(TaskGraph graph) {
+        graph.build();
+        List<Task> tasks = graph.getTasks();
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        int[] dependencyCounts = graph.getDependencyCounts();
+        GraphRun run = new GraphRun(tasks, graph.getSuccessors(), dependencyCounts);
+        // The roots are taken from the graph, since the remaining dependencies of the run are
+        // already being counted down by the tasks started before
+        for (int i = 0; i < tasks.size(); i++) {
+            if (dependencyCounts[i] == 0) {
+                pool.execute(run.taskAction(i));
+            }
+        }
+
+        try {
+            run.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the task graph to finish", e);
+        }
+
+        Throwable failure = run.failure.get();
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (failure instanceof Error error) {
+            throw error;
+        } else if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    /**
+     * The state of a single run of a task graph.
+     */
+    private class GraphRun {
+        private final List<Task> tasks;
+        private final int[][] successors;
+        private final AtomicInteger[] remainingDependencies;
+        private final CountDownLatch done;
+        private final AtomicReference<Throwable> failure;
+
+        private GraphRun(List<Task> tasks, int[][] successors, int[] dependencyCounts) {
+            this.tasks = tasks;
+            this.successors = successors;
+            this.remainingDependencies = new AtomicInteger[tasks.size()];
+            for (int i = 0; i < tasks.size(); i++) {
+                remainingDependencies[i] = new AtomicInteger(dependencyCounts[i]);
+            }
+            this.done = new CountDownLatch(tasks.size());
+            this.failure = new AtomicReference<>();
+        }
+
+        private ForkJoinTask<?> taskAction(int index) {
+            return ForkJoinTask.adapt(() -> execute(index));
+        }
+
+        private void execute(int index) {
+            Task task = tasks.get(index);
+            if (failure.get() == null) {
+                Profiler profiler = Profiler.getInstance();
+                profiler.begin(task.getName());
+                long start = System.nanoTime();
+                try {
+                    task.getAction().run();
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    task.recordDuration(System.nanoTime() - start);
+                    profiler.end(task.getName());
+                }
+            }
+
+            for (int successor : successors[index]) {
+                if (remainingDependencies[successor].decrementAndGet() == 0) {
+                    taskAction(successor).fork();
+                }
+            }
+            done.countDown();
+        }
+    }
+
+    /**
+     * Runs the action over the range [0, count) split into chunks of at least the given size.
+     * The chunks are run in parallel on the pool and this method returns once all of them have
+     * finished. Can be called from inside a task.
+     * @param count The size of the range.
+     * @param minChunkSize The smallest amount of indices to process in one chunk.
+     * @param action The work to run for each chunk.
+     */
+    public void parallelFor(int count, int minChunkSize, RangeAction action) {
+        if (count <= 0) {
+            return;
+        }
+        minChunkSize = Math.max(1, minChunkSize);
+        if (count <= minChunkSize || pool.getParallelism() == 1) {
+            action.run(0, count);
+            return;
+        }
+
+        RangeTask root = new RangeTask(0, count, minChunkSize, action);
+        if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+            root.invoke();
+        } else {
+            pool.invoke(root);
+        }
+    }
+
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int minChunkSize;
+        private final transient RangeAction action;
+
+        private RangeTask(int from, int to, int minChunkSize, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.minChunkSize = minChunkSize;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= minChunkSize * 2) {
+                action.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, middle, minChunkSize, action), new RangeTask(middle, to, minChunkSize, action));
+        }
+    }
+
+    /**
+     * Stops the worker threads. Tasks that are already running are finished first.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,206 @@
+package io.github.kuggek.engine.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The set of component types a game object has. Game objects with the same component types
+ * share the same archetype instance, so archetypes can be compared by reference. Each component
+ * type of an archetype has a column index, which is where components of that type are stored
+ * in {@link GameObject}s and {@link ArchetypeTable}s of the archetype.
+ * <p>
+ * Archetypes are immutable. Adding or removing a component type results in another archetype,
+ * and those transitions are cached so that changing the components of a game object does not
+ * need to look up the archetype again.
+ */
+public final class Archetype {
+
+    private static final Map<BitSet, Archetype> archetypes = new HashMap<>();
+    private static final List<Archetype> archetypesByIndex = new ArrayList<>();
+
+    /**
+     * The archetype of a game object without components.
+     */
+    public static final Archetype EMPTY = intern(new BitSet());
+
+    private static final int NO_COLUMN = -1;
+
+    private final int index;
+    private final BitSet signature;
+    private final int[] typeIDs;
+    private final int[] columns;
+
+    // Cached transitions, indexed by component type ID
+    private volatile Archetype[] withType = new Archetype[0];
+    private volatile Archetype[] withoutType = new Archetype[0];
+
+    private Archetype(int index, BitSet signature) {
+        this.index = index;
+        this.signature = signature;
+        this.typeIDs = signature.stream().toArray();
+        this.columns = new int[signature.length()];
+        Arrays.fill(columns, NO_COLUMN);
+        for (int i = 0; i < typeIDs.length; i++) {
+            columns[typeIDs[i]] = i;
+        }
+    }
+
+    private static Archetype intern(BitSet signature) {
+        synchronized (archetypes) {
+            Archetype archetype = archetypes.get(signature);
+            if (archetype == null) {
+                archetype = new Archetype(archetypesByIndex.size(), signature);
+                archetypes.put(signature, archetype);
+                archetypesByIndex.add(archetype);
+            }
+            return archetype;
+        }
+    }
+
+    /**
+     * Get the archetype with the given component types.
+     * @param types The exact classes of the components.
+     * @return The archetype.
+     */
+    @SafeVarargs
+    public static Archetype of(Class<? extends GameComponent>... types) {
+        BitSet signature = new BitSet();
+        for (Class<? extends GameComponent> type : types) {
+            signature.set(ComponentTypes.getID(type));
+        }
+        return intern(signature);
+    }
+
+    /**
+     * @return The amount of archetypes created so far.
+     */
+    public static int getArchetypeCount() {
+        synchronized (archetypes) {
+            return archetypesByIndex.size();
+        }
+    }
+
+    /**
+     * Get the running index of this archetype. Indices are assigned in creation order starting
+     * from 0, so they can be used to index arrays.
+     * @return The index of this archetype.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the column of a component type in this archetype.
+     * @param typeID The ID of the component type, see {@link ComponentTypes#getID(Class)}.
+     * @return The column index or -1 if the archetype does not contain the type.
+     */
+    public int getColumn(int typeID) {
+        if (typeID < 0 || typeID >= columns.length) {
+            return NO_COLUMN;
+        }
+        return columns[typeID];
+    }
+
+    public boolean has(int typeID) {
+        return getColumn(typeID) != NO_COLUMN;
+    }
+
+    /**
+     * Check if this archetype contains all the component types of another archetype.
+     * @param other The other archetype.
+     * @return True if this archetype is a superset of the other archetype.
+     */
+    public boolean contains(Archetype other) {
+        for (int typeID : other.typeIDs) {
+            if (!has(typeID)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The amount of component types in this archetype.
+     */
+    public int size() {
+        return typeIDs.length;
+    }
+
+    /**
+     * Get the ID of the component type stored in the given column.
+     * @param column The column index.
+     * @return The ID of the component type.
+     */
+    public int getTypeID(int column) {
+        return typeIDs[column];
+    }
+
+    /**
+     * @return The component classes of this archetype in column order.
+     */
+    public List<Class<? extends GameComponent>> getComponentTypes() {
+        List<Class<? extends GameComponent>> types = new ArrayList<>(typeIDs.length);
+        for (int typeID : typeIDs) {
+            types.add(ComponentTypes.getType(typeID));
+        }
+        return Collections.unmodifiableList(types);
+    }
+
+    /**
+     * Get the archetype that has the component types of this archetype and the given type.
+     * @param typeID The ID of the component type to add.
+     * @return The resulting archetype, or this archetype if it already contains the type.
+     */
+    public Archetype with(int typeID) {
+        if (has(typeID)) {
+            return this;
+        }
+        Archetype[] cache = withType;
+        if (typeID < cache.length && cache[typeID] != null) {
+            return cache[typeID];
+        }
+        BitSet newSignature = (BitSet) signature.clone();
+        newSignature.set(typeID);
+        Archetype archetype = intern(newSignature);
+        withType = cacheTransition(cache, typeID, archetype);
+        return archetype;
+    }
+
+    /**
+     * Get the archetype that has the component types of this archetype except the given type.
+     * @param typeID The ID of the component type to remove.
+     * @return The resulting archetype, or this archetype if it does not contain the type.
+     */
+    public Archetype without(int typeID) {
+        if (!has(typeID)) {
+            return this;
+        }
+        Archetype[] cache = withoutType;
+        if (typeID < cache.length && cache[typeID] != null) {
+            return cache[typeID];
+        }
+        BitSet newSignature = (BitSet) signature.clone();
+        newSignature.clear(typeID);
+        Archetype archetype = intern(newSignature);
+        withoutType = cacheTransition(cache, typeID, archetype);
+        return archetype;
+    }
+
+    private static Archetype[] cacheTransition(Archetype[] cache, int typeID, Archetype archetype) {
+        // A copy is published so that readers never see a partially filled array. Losing a
+        // concurrently cached transition only means it is looked up again later.
+        Archetype[] newCache = Arrays.copyOf(cache, Math.max(cache.length, typeID + 1));
+        newCache[typeID] = archetype;
+        return newCache;
+    }
+
+    @Override
+    public String toString() {
+        return "Archetype" + getComponentTypes().stream().map(Class::getSimpleName).toList();
+    }
+}
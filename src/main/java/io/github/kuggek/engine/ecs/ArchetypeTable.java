@@ -0,0 +1,101 @@
+package io.github.kuggek.engine.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Stores the game objects of one archetype in a {@link ComponentStore}. Components of the same
+ * type are packed into one array per column, so iterating over the components of a type touches
+ * a single contiguous array. Row {@code i} of every column belongs to entity {@code i}.
+ * <p>
+ * The arrays are returned directly and must not be modified. Only the first {@link #size()}
+ * elements of each array are valid.
+ */
+public class ArchetypeTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Archetype archetype;
+    private GameObject[] entities;
+    private final GameComponent[][] columns;
+    private int size;
+
+    ArchetypeTable(Archetype archetype) {
+        this.archetype = archetype;
+        this.entities = new GameObject[INITIAL_CAPACITY];
+        this.columns = new GameComponent[archetype.size()][INITIAL_CAPACITY];
+    }
+
+    public Archetype getArchetype() {
+        return archetype;
+    }
+
+    /**
+     * @return The amount of game objects in this table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The game objects of this table. Only the first {@link #size()} elements are valid.
+     */
+    public GameObject[] getEntities() {
+        return entities;
+    }
+
+    /**
+     * Get the components stored in a column.
+     * @param column The column index, see {@link Archetype#getColumn(int)}.
+     * @return The components of the column. Only the first {@link #size()} elements are valid.
+     */
+    public GameComponent[] getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * Appends a game object and its components to the table.
+     * @param gameObject The game object.
+     * @param components The components of the game object in column order.
+     * @return The row of the game object.
+     */
+    int add(GameObject gameObject, GameComponent[] components) {
+        if (size == entities.length) {
+            int capacity = entities.length * 2;
+            entities = Arrays.copyOf(entities, capacity);
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = Arrays.copyOf(columns[column], capacity);
+            }
+        }
+        entities[size] = gameObject;
+        for (int column = 0; column < columns.length; column++) {
+            columns[column][size] = components[column];
+        }
+        return size++;
+    }
+
+    /**
+     * Removes a row by moving the last row into its place.
+     * @param row The row to remove.
+     * @return The game object that was moved into the row, or null if the last row was removed.
+     */
+    GameObject remove(int row) {
+        int last = --size;
+        GameObject moved = null;
+        if (row != last) {
+            moved = entities[last];
+            entities[row] = moved;
+            for (GameComponent[] column : columns) {
+                column[row] = column[last];
+            }
+        }
+        entities[last] = null;
+        for (GameComponent[] column : columns) {
+            column[last] = null;
+        }
+        return moved;
+    }
+
+    void set(int row, int column, GameComponent component) {
+        columns[column][row] = component;
+    }
+}
@@ -0,0 +1,235 @@
+package io.github.kuggek.engine.ecs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.github.kuggek.engine.ecs.components.ComponentIDField;
+import io.github.kuggek.engine.ecs.components.EditableComponentField;
+import io.github.kuggek.engine.ecs.components.ReadableComponentField;
+
+/**
+ * The fields of a component class that are annotated with {@link EditableComponentField} or
+ * {@link ReadableComponentField}, along with handles to read and write them. The fields of a
+ * class are looked up once and cached, so serializing or inspecting components does not use
+ * reflection after the first component of a class. The no-argument constructor of the class is
+ * cached the same way, so components can be created by type without reflection.
+ */
+public final class ComponentFields {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final ClassValue<ComponentFields> cache = new ClassValue<>() {
+        @Override
+        protected ComponentFields computeValue(Class<?> type) {
+            return new ComponentFields(type);
+        }
+    };
+
+    /**
+     * A single annotated field of a component class.
+     * @param name The name of the field.
+     * @param field The reflected field.
+     * @param handle A var handle to the field.
+     * @param editable True if the field is annotated with {@link EditableComponentField}.
+     * @param id True if the field is annotated with {@link ComponentIDField}.
+     * @param getter The getter of the field, adapted to {@code (Object) Object}.
+     * @param setter The setter of the field, adapted to {@code (Object, Object) void}, or null 
+     * if the field is final.
+     */
+    public record ComponentField(String name, Field field, VarHandle handle, boolean editable,
+            boolean id, MethodHandle getter, MethodHandle setter) {
+
+        /**
+         * Read the value of the field.
+         * @param component The component to read from.
+         * @return The value of the field, boxed if the field is primitive.
+         */
+        public Object get(GameComponent component) {
+            try {
+                return (Object) getter.invokeExact((Object) component);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        /**
+         * Write the value of the field.
+         * @param component The component to write to.
+         * @param value The new value, boxed if the field is primitive.
+         */
+        public void set(GameComponent component, Object value) {
+            if (setter == null) {
+                throw new IllegalStateException("Field " + name + " is final");
+            }
+            try {
+                setter.invokeExact((Object) component, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        public Class<?> type() {
+            return field.getType();
+        }
+    }
+
+    private final List<ComponentField> fields;
+    private final List<ComponentField> idFields;
+    private final Set<Field> reflectedFields;
+    private final Class<?> componentClass;
+    private final MethodHandle constructor;
+
+    private ComponentFields(Class<?> componentClass) {
+        List<ComponentField> found = new ArrayList<>();
+        List<ComponentField> foundIDs = new ArrayList<>();
+        Set<Field> foundReflected = new LinkedHashSet<>();
+        Class<?> type = componentClass;
+        while (type != null) {
+            for (Field field : type.getDeclaredFields()) {
+                boolean editable = field.isAnnotationPresent(EditableComponentField.class);
+                if (editable || field.isAnnotationPresent(ReadableComponentField.class)) {
+                    foundReflected.add(field);
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    ComponentField componentField = createField(field, editable);
+                    if (componentField != null) {
+                        found.add(componentField);
+                        if (componentField.id()) {
+                            foundIDs.add(componentField);
+                        }
+                    }
+                }
+            }
+            type = type.getSuperclass();
+        }
+        this.fields = Collections.unmodifiableList(found);
+        this.idFields = Collections.unmodifiableList(foundIDs);
+        this.reflectedFields = Collections.unmodifiableSet(foundReflected);
+        this.componentClass = componentClass;
+        this.constructor = findConstructor(componentClass);
+    }
+
+    private static MethodHandle findConstructor(Class<?> componentClass) {
+        if (Modifier.isAbstract(componentClass.getModifiers())) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(componentClass, MethodHandles.lookup());
+            return lookup.findConstructor(componentClass, MethodType.methodType(void.class)).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // The class can still be read and written, it just can't be created by type
+            return null;
+        }
+    }
+
+    private static ComponentField createField(Field field, boolean editable) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+            VarHandle handle = lookup.unreflectVarHandle(field);
+            MethodHandle getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+            MethodHandle setter = null;
+            if (!Modifier.isFinal(field.getModifiers())) {
+                setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            }
+            boolean id = field.isAnnotationPresent(ComponentIDField.class);
+            return new ComponentField(field.getName(), field, handle, editable, id, getter, setter);
+        } catch (IllegalAccessException e) {
+            System.out.println("Illegal access exception for field " + field.getName());
+            return null;
+        }
+    }
+
+    /**
+     * Get the annotated fields of a component class.
+     * @param componentClass The component class.
+     * @return The cached fields of the class.
+     */
+    public static ComponentFields of(Class<? extends GameComponent> componentClass) {
+        return cache.get(componentClass);
+    }
+
+    /**
+     * @return The annotated fields, starting with the fields declared by the class itself
+     * followed by the fields of its superclasses.
+     */
+    public List<ComponentField> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return The annotated fields that are also annotated with {@link ComponentIDField}.
+     */
+    public List<ComponentField> getIDFields() {
+        return idFields;
+    }
+
+    /**
+     * Get a field by its name.
+     * @param name The name of the field.
+     * @return The field or null if the class has no annotated field with the name.
+     */
+    public ComponentField getField(String name) {
+        for (ComponentField field : fields) {
+            if (field.name().equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The reflected fields, for code that needs the annotations or generic types.
+     */
+    public Set<Field> getReflectedFields() {
+        return reflectedFields;
+    }
+
+    /**
+     * @return The component class the fields belong to.
+     */
+    @SuppressWarnings("unchecked")
+    public Class<? extends GameComponent> getComponentClass() {
+        return (Class<? extends GameComponent>) componentClass;
+    }
+
+    /**
+     * @return True if the class has a no-argument constructor that {@link #newInstance()} can use.
+     */
+    public boolean isInstantiable() {
+        return constructor != null;
+    }
+
+    /**
+     * Create a new component of the class with its no-argument constructor.
+     * @return The new component.
+     * @throws IllegalStateException If the class has no accessible no-argument constructor.
+     */
+    public GameComponent newInstance() {
+        if (constructor == null) {
+            throw new IllegalStateException(componentClass.getName() + " has no no-argument constructor");
+        }
+        try {
+            return (GameComponent) (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
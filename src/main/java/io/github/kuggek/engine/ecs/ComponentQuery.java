@@ -0,0 +1,172 @@
+package io.github.kuggek.engine.ecs;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Iterates over the game objects of a {@link ComponentStore} that have components of all the
+ * queried types. Matching tables are cached and only new tables are checked on later
+ * iterations, so a query should be created once and reused.
+ * <p>
+ * Components are matched by their exact class, like {@link GameObject#getComponentOfType(Class)}.
+ * Disabled game objects are included. Components must not be added or removed during iteration.
+ */
+public class ComponentQuery {
+
+    /**
+     * Action on three components of the same game object.
+     */
+    @FunctionalInterface
+    public interface TriConsumer<A, B, C> {
+        void accept(A a, B b, C c);
+    }
+
+    private final ComponentStore store;
+    private final Archetype archetype;
+
+    private ArchetypeTable[] matchingTables;
+    private int matchingTableCount;
+    private int checkedTableCount;
+
+    ComponentQuery(ComponentStore store, Archetype archetype) {
+        this.store = store;
+        this.archetype = archetype;
+        this.matchingTables = new ArchetypeTable[4];
+    }
+
+    private void update() {
+        int tableCount = store.getTableCount();
+        for (; checkedTableCount < tableCount; checkedTableCount++) {
+            ArchetypeTable table = store.getTable(checkedTableCount);
+            if (table.getArchetype().contains(archetype)) {
+                if (matchingTableCount == matchingTables.length) {
+                    matchingTables = Arrays.copyOf(matchingTables, matchingTableCount * 2);
+                }
+                matchingTables[matchingTableCount++] = table;
+            }
+        }
+    }
+
+    /**
+     * @return The amount of game objects matching the query.
+     */
+    public int count() {
+        update();
+        int count = 0;
+        for (int i = 0; i < matchingTableCount; i++) {
+            count += matchingTables[i].size();
+        }
+        return count;
+    }
+
+    /**
+     * Runs the action for each matching table. This is the fastest way to iterate, as the
+     * columns of a table can be looped over directly. The column of a component type can be
+     * found with {@link Archetype#getColumn(int)}.
+     * @param action The action to run for each table.
+     */
+    public void forEachTable(Consumer<ArchetypeTable> action) {
+        update();
+        for (int i = 0; i < matchingTableCount; i++) {
+            if (matchingTables[i].size() > 0) {
+                action.accept(matchingTables[i]);
+            }
+        }
+    }
+
+    /**
+     * Runs the action for each matching game object.
+     * @param action The action to run.
+     */
+    public void forEachEntity(Consumer<GameObject> action) {
+        update();
+        for (int i = 0; i < matchingTableCount; i++) {
+            ArchetypeTable table = matchingTables[i];
+            GameObject[] entities = table.getEntities();
+            for (int row = 0, size = table.size(); row < size; row++) {
+                action.accept(entities[row]);
+            }
+        }
+    }
+
+    /**
+     * Runs the action for the component of the given type of each matching game object.
+     * @param <A> The component type.
+     * @param typeA The component class, which must be one of the queried types.
+     * @param action The action to run.
+     */
+    public <A extends GameComponent> void forEach(Class<A> typeA, Consumer<? super A> action) {
+        update();
+        int a = queriedTypeID(typeA);
+        for (int i = 0; i < matchingTableCount; i++) {
+            ArchetypeTable table = matchingTables[i];
+            GameComponent[] columnA = table.getColumn(table.getArchetype().getColumn(a));
+            for (int row = 0, size = table.size(); row < size; row++) {
+                action.accept(typeA.cast(columnA[row]));
+            }
+        }
+    }
+
+    /**
+     * Runs the action for the components of the given types of each matching game object.
+     * @param typeA The first component class, which must be one of the queried types.
+     * @param typeB The second component class, which must be one of the queried types.
+     * @param action The action to run.
+     */
+    public <A extends GameComponent, B extends GameComponent> void forEach(Class<A> typeA, Class<B> typeB,
+            BiConsumer<? super A, ? super B> action) {
+        update();
+        int a = queriedTypeID(typeA);
+        int b = queriedTypeID(typeB);
+        for (int i = 0; i < matchingTableCount; i++) {
+            ArchetypeTable table = matchingTables[i];
+            Archetype tableArchetype = table.getArchetype();
+            GameComponent[] columnA = table.getColumn(tableArchetype.getColumn(a));
+            GameComponent[] columnB = table.getColumn(tableArchetype.getColumn(b));
+            for (int row = 0, size = table.size(); row < size; row++) {
+                action.accept(typeA.cast(columnA[row]), typeB.cast(columnB[row]));
+            }
+        }
+    }
+
+    /**
+     * Runs the action for the components of the given types of each matching game object.
+     * @param typeA The first component class, which must be one of the queried types.
+     * @param typeB The second component class, which must be one of the queried types.
+     * @param typeC The third component class, which must be one of the queried types.
+     * @param action The action to run.
+     */
+    public <A extends GameComponent, B extends GameComponent, C extends GameComponent> void forEach(Class<A> typeA,
+            Class<B> typeB, Class<C> typeC, TriConsumer<? super A, ? super B, ? super C> action) {
+        update();
+        int a = queriedTypeID(typeA);
+        int b = queriedTypeID(typeB);
+        int c = queriedTypeID(typeC);
+        for (int i = 0; i < matchingTableCount; i++) {
+            ArchetypeTable table = matchingTables[i];
+            Archetype tableArchetype = table.getArchetype();
+            GameComponent[] columnA = table.getColumn(tableArchetype.getColumn(a));
+            GameComponent[] columnB = table.getColumn(tableArchetype.getColumn(b));
+            GameComponent[] columnC = table.getColumn(tableArchetype.getColumn(c));
+            for (int row = 0, size = table.size(); row < size; row++) {
+                action.accept(typeA.cast(columnA[row]), typeB.cast(columnB[row]), typeC.cast(columnC[row]));
+            }
+        }
+    }
+
+    private int queriedTypeID(Class<? extends GameComponent> type) {
+        int typeID = ComponentTypes.getID(type);
+        if (!archetype.has(typeID)) {
+            throw new IllegalArgumentException(type.getName() + " is not part of the query");
+        }
+        return typeID;
+    }
+
+    /**
+     * @return The archetype containing the queried component types.
+     */
+    public Archetype getArchetype() {
+        return archetype;
+    }
+}
@@ -0,0 +1,132 @@
+package io.github.kuggek.engine.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stores the game objects of a scene grouped by their {@link Archetype}. Game objects with the
+ * same component types are packed into the same {@link ArchetypeTable}, so the components of
+ * a type can be iterated without hashing or copying, see {@link #query(Class...)}.
+ * <p>
+ * Game objects move between tables when components are added or removed. The store is not
+ * thread safe and must not be modified while it is being iterated.
+ */
+public class ComponentStore {
+
+    // Indexed by archetype index, null for archetypes this store has no game objects of
+    private ArchetypeTable[] tablesByArchetype;
+    private final List<ArchetypeTable> tables;
+    private int entityCount;
+
+    public ComponentStore() {
+        tablesByArchetype = new ArchetypeTable[16];
+        tables = new ArrayList<>();
+    }
+
+    /**
+     * Adds a game object to the store. The game object is moved to another table whenever its
+     * components change.
+     * @param gameObject The game object to add.
+     */
+    public void add(GameObject gameObject) {
+        if (gameObject.store == this) {
+            return;
+        }
+        if (gameObject.store != null) {
+            throw new IllegalArgumentException("Game object " + gameObject.getID() + " is already in another component store");
+        }
+        gameObject.store = this;
+        gameObject.storeRow = getTable(gameObject.getArchetype()).add(gameObject, gameObject.components);
+        ++entityCount;
+    }
+
+    /**
+     * Removes a game object from the store.
+     * @param gameObject The game object to remove.
+     */
+    public void remove(GameObject gameObject) {
+        if (gameObject.store != this) {
+            return;
+        }
+        removeRow(getTable(gameObject.getArchetype()), gameObject.storeRow);
+        gameObject.store = null;
+        gameObject.storeRow = -1;
+        --entityCount;
+    }
+
+    /**
+     * Moves a game object to the table of its new archetype. Called by the game object after its
+     * archetype has changed.
+     * @param gameObject The game object.
+     * @param previous The archetype the game object had before.
+     */
+    void move(GameObject gameObject, Archetype previous) {
+        removeRow(getTable(previous), gameObject.storeRow);
+        gameObject.storeRow = getTable(gameObject.getArchetype()).add(gameObject, gameObject.components);
+    }
+
+    /**
+     * Replaces a component of a game object without changing its archetype.
+     */
+    void set(GameObject gameObject, int column, GameComponent component) {
+        getTable(gameObject.getArchetype()).set(gameObject.storeRow, column, component);
+    }
+
+    private void removeRow(ArchetypeTable table, int row) {
+        GameObject moved = table.remove(row);
+        if (moved != null) {
+            moved.storeRow = row;
+        }
+    }
+
+    private ArchetypeTable getTable(Archetype archetype) {
+        int index = archetype.getIndex();
+        if (index >= tablesByArchetype.length) {
+            tablesByArchetype = Arrays.copyOf(tablesByArchetype, Math.max(index + 1, tablesByArchetype.length * 2));
+        }
+        ArchetypeTable table = tablesByArchetype[index];
+        if (table == null) {
+            table = new ArchetypeTable(archetype);
+            tablesByArchetype[index] = table;
+            // Tables are only ever appended, so queries only need to check the ones added since
+            tables.add(table);
+        }
+        return table;
+    }
+
+    /**
+     * Creates a query over the game objects that have components of all the given types. The
+     * query stays valid and picks up new game objects as the store changes, so it can be kept
+     * and reused.
+     * @param types The exact classes of the components to query for.
+     * @return The query.
+     */
+    @SafeVarargs
+    public final ComponentQuery query(Class<? extends GameComponent>... types) {
+        return new ComponentQuery(this, Archetype.of(types));
+    }
+
+    /**
+     * @return All tables of this store, including empty ones.
+     */
+    public List<ArchetypeTable> getTables() {
+        return Collections.unmodifiableList(tables);
+    }
+
+    int getTableCount() {
+        return tables.size();
+    }
+
+    ArchetypeTable getTable(int index) {
+        return tables.get(index);
+    }
+
+    /**
+     * @return The amount of game objects in the store.
+     */
+    public int getEntityCount() {
+        return entityCount;
+    }
+}
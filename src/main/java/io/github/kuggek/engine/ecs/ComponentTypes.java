@@ -0,0 +1,65 @@
+package io.github.kuggek.engine.ecs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns a small integer ID to each component class. The IDs are used to index component
+ * storage arrays instead of hashing classes. IDs are assigned the first time a class is seen
+ * and stay the same for the lifetime of the program.
+ */
+public final class ComponentTypes {
+
+    private static final List<Class<? extends GameComponent>> types = new ArrayList<>();
+    private static final Map<Class<?>, Integer> assignedIDs = new HashMap<>();
+
+    private static final ClassValue<Integer> IDs = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            if (!GameComponent.class.isAssignableFrom(type)) {
+                throw new IllegalArgumentException(type.getName() + " is not a game component");
+            }
+            // Computed values can race, so the IDs themselves are assigned under a lock
+            synchronized (types) {
+                return assignedIDs.computeIfAbsent(type, t -> {
+                    types.add(t.asSubclass(GameComponent.class));
+                    return types.size() - 1;
+                });
+            }
+        }
+    };
+
+    private ComponentTypes() {
+    }
+
+    /**
+     * Get the ID of a component class.
+     * @param type The exact class of the component.
+     * @return The ID of the class.
+     */
+    public static int getID(Class<? extends GameComponent> type) {
+        return IDs.get(type);
+    }
+
+    /**
+     * Get the component class with the given ID.
+     * @param ID The ID of the class.
+     * @return The component class.
+     */
+    public static Class<? extends GameComponent> getType(int ID) {
+        synchronized (types) {
+            return types.get(ID);
+        }
+    }
+
+    /**
+     * @return The amount of component classes that have been assigned an ID so far.
+     */
+    public static int getTypeCount() {
+        synchronized (types) {
+            return types.size();
+        }
+    }
+}
@@ -2,7 +2,7 @@ package io.github.kuggek.engine.ecs;
 
 import java.lang.reflect.Field;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -69,6 +69,15 @@ public abstract class GameComponent {
 
     }
 
+    /**
+     * Subclasses can override this method to bring any state that is not stored in component
+     * fields back in line after a pooled component has been reset to its prefab's field values, 
+     * e.g. to clear velocities. Called before the game object is enabled again.
+     */
+    protected void onReset() {
+
+    }
+
 
     public static void awake(GameComponent component, EngineRuntimeSettings settings) {
         component.onAwake(settings);
@@ -78,25 +87,20 @@ public abstract class GameComponent {
         component.onDispose(settings);
     }
 
+    public static void reset(GameComponent component) {
+        component.onReset();
+    }
+
     /**
      * Get all fields of a component that are annotated with {@link EditableComponentField} or
      * {@link ReadableComponentField}. 
-     * This method will return all fields of the component class and all superclasses
+     * This method will return all fields of the component class and all superclasses.
+     * The fields are looked up once per class and cached.
      * @param componentClass
-     * @return
+     * @return A read-only set of the fields
      */
     public static Set<Field> getComponentFields(Class<? extends GameComponent> componentClass) {
-        Set<Field> fields = new HashSet<>();
-        Class<?> type = componentClass;
-        while (type != null) {
-            for (Field field : type.getDeclaredFields()) {
-                if (field.isAnnotationPresent(EditableComponentField.class) || field.isAnnotationPresent(ReadableComponentField.class)) {
-                    fields.add(field);
-                }
-            }
-            type = type.getSuperclass();
-        }
-        return fields;
+        return ComponentFields.of(componentClass).getReflectedFields();
     }
 
     /**
@@ -107,22 +111,29 @@ public abstract class GameComponent {
      * @return A map of field names to field values.
      */
     public static Map<String, Object> getComponentFieldValues(GameComponent component) {
-        Map<String, Object> fieldValues = new HashMap<>();
-        Set<Field> fields = getComponentFields(component.getClass());
-        for (Field field : fields) {
-            try {
-                field.setAccessible(true);
-                Object fieldValue = field.get(component);
-                fieldValues.put(field.getName(), fieldValue);
-            } catch (IllegalArgumentException e) {
-                System.out.println("Illegal argument exception for field " + field.getName());
-            } catch (IllegalAccessException e) {
-                System.out.println("Illegal access exception for field " + field.getName());
-            }
+        List<ComponentFields.ComponentField> fields = ComponentFields.of(component.getClass()).getFields();
+        Map<String, Object> fieldValues = new HashMap<>(fields.size() * 2);
+        for (ComponentFields.ComponentField field : fields) {
+            fieldValues.put(field.name(), field.get(component));
         }
         return fieldValues;
     }
 
+    /**
+     * Set the value of a field of a component that is annotated with {@link EditableComponentField}.
+     * @param component The component to set the field value of.
+     * @param fieldName The name of the field.
+     * @param value The new value, boxed if the field is primitive.
+     * @throws IllegalArgumentException If the component has no editable field with the name.
+     */
+    public static void setComponentFieldValue(GameComponent component, String fieldName, Object value) {
+        ComponentFields.ComponentField field = ComponentFields.of(component.getClass()).getField(fieldName);
+        if (field == null || !field.editable()) {
+            throw new IllegalArgumentException("No editable field " + fieldName + " in " + component.getClass().getName());
+        }
+        field.set(component, value);
+    }
+
     public void setDisabled(boolean disabled) {
         this.disabled = disabled;
 
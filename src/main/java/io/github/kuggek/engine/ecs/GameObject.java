@@ -1,10 +1,15 @@
 package io.github.kuggek.engine.ecs;
 
-import java.util.HashMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 import io.github.kuggek.engine.core.Transform;
 
@@ -13,25 +18,44 @@ public class GameObject {
 
     private String name = "GameObject";
 
-    private Map<Class<? extends GameComponent>, GameComponent> components;
+    private static final GameComponent[] NO_COMPONENTS = new GameComponent[0];
+    private static final long[] NO_TAGS = new long[0];
+
+    // The components are stored in the column order of the archetype
+    private Archetype archetype;
+    GameComponent[] components;
+
+    // The component store this game object is in and its row in the store's archetype table
+    ComponentStore store;
+    int storeRow = -1;
     
     private Transform transform;
 
     private Optional<GameObjectManager> manager;
 
-    private Set<String> tags;
+    // One bit per tag ID, see Tags
+    private long[] tagBits;
+    private int tagCount;
+    private Set<String> tagsView;
 
     private GameObject parent;
     private Set<GameObject> children;
+    private Set<GameObject> childrenView;
+
+    // The scene this game object has been added to, which indexes it by its tags and parent
+    GameScene scene;
 
     private boolean disabled;
 
     public GameObject(int ID, GameObjectManager manager) {
         this.ID = ID;
-        this.components = new HashMap<>();
+        this.archetype = Archetype.EMPTY;
+        this.components = NO_COMPONENTS;
         this.transform = new Transform();
-        this.tags = new HashSet<>();
+        this.tagBits = NO_TAGS;
+        this.tagsView = new TagsView();
         this.children = new HashSet<>();
+        this.childrenView = Collections.unmodifiableSet(children);
         this.manager = Optional.ofNullable(manager);
         this.disabled = false;
     }
@@ -44,8 +68,33 @@ public class GameObject {
         this.manager = Optional.ofNullable(manager);
     }
 
+    /**
+     * Returns a copy of the components of the game object. Prefer 
+     * {@link #forEachComponent(Consumer)} in code that runs every frame.
+     * @return A read-only copy of the components.
+     */
     public Set<GameComponent> getComponents() {
-        return Set.copyOf(components.values());
+        return Set.of(components);
+    }
+
+    /**
+     * Runs the action for each component of the game object without copying them. Components 
+     * added or removed by the action are not visited.
+     * @param action The action to run.
+     */
+    public void forEachComponent(Consumer<? super GameComponent> action) {
+        GameComponent[] current = components;
+        for (GameComponent component : current) {
+            action.accept(component);
+        }
+    }
+
+    /**
+     * Get the archetype of the game object, which describes the types of its components.
+     * @return The archetype.
+     */
+    public Archetype getArchetype() {
+        return archetype;
     }
 
     public int getID() {
@@ -53,19 +102,127 @@ public class GameObject {
     }
 
     public void addTag(String tag) {
-        tags.add(tag);
+        addTag(Tags.getID(tag));
+    }
+
+    /**
+     * Add a tag by its ID.
+     * @param tagID The ID of the tag, see {@link Tags}.
+     */
+    public void addTag(int tagID) {
+        int word = tagID >>> 6;
+        if (word >= tagBits.length) {
+            tagBits = Arrays.copyOf(tagBits, word + 1);
+        }
+        long bit = 1L << tagID;
+        if ((tagBits[word] & bit) != 0) {
+            return;
+        }
+        tagBits[word] |= bit;
+        ++tagCount;
+        if (scene != null) {
+            scene.onTagAdded(this, tagID);
+        }
     }
 
     public void removeTag(String tag) {
-        tags.remove(tag);
+        int tagID = Tags.find(tag);
+        if (tagID >= 0) {
+            removeTag(tagID);
+        }
+    }
+
+    /**
+     * Remove a tag by its ID.
+     * @param tagID The ID of the tag, see {@link Tags}.
+     */
+    public void removeTag(int tagID) {
+        if (!hasTag(tagID)) {
+            return;
+        }
+        tagBits[tagID >>> 6] &= ~(1L << tagID);
+        --tagCount;
+        if (scene != null) {
+            scene.onTagRemoved(this, tagID);
+        }
+    }
+
+    /**
+     * Replaces the tags of the game object, without allocating if the tags are already known.
+     * @param tagIDs The IDs of the new tags in ascending order, see {@link Tags}.
+     */
+    void setTags(int[] tagIDs) {
+        for (int word = 0; word < tagBits.length; word++) {
+            long bits = tagBits[word];
+            while (bits != 0) {
+                int tagID = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (Arrays.binarySearch(tagIDs, tagID) < 0) {
+                    removeTag(tagID);
+                }
+                bits &= bits - 1;
+            }
+        }
+        for (int tagID : tagIDs) {
+            addTag(tagID);
+        }
     }
 
     public boolean hasTag(String tag) {
-        return tags.contains(tag);
+        int tagID = Tags.find(tag);
+        return tagID >= 0 && hasTag(tagID);
+    }
+
+    /**
+     * Check for a tag by its ID. Faster than {@link #hasTag(String)}, since the tag does not 
+     * have to be looked up.
+     * @param tagID The ID of the tag, see {@link Tags}.
+     * @return True if the game object has the tag.
+     */
+    public boolean hasTag(int tagID) {
+        int word = tagID >>> 6;
+        return word < tagBits.length && (tagBits[word] & (1L << tagID)) != 0;
+    }
+
+    /**
+     * Runs the action for the ID of each tag of the game object in ascending order. The action
+     * must not change the tags of the game object.
+     * @param action The action to run.
+     */
+    public void forEachTag(IntConsumer action) {
+        for (int word = 0; word < tagBits.length; word++) {
+            long bits = tagBits[word];
+            while (bits != 0) {
+                action.accept((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
     }
 
     public Set<String> getTags() {
-        return Set.copyOf(tags);
+        return Set.copyOf(tagsView);
+    }
+
+    /**
+     * @return A new array of the IDs of the tags of the game object in ascending order.
+     */
+    public int[] getTagIDs() {
+        int[] tagIDs = new int[tagCount];
+        int index = 0;
+        for (int word = 0; word < tagBits.length; word++) {
+            long bits = tagBits[word];
+            while (bits != 0) {
+                tagIDs[index++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return tagIDs;
+    }
+
+    /**
+     * @return A read-only view of the tags of the game object, which reflects later changes.
+     */
+    public Set<String> getTagsView() {
+        return tagsView;
     }
 
     /**
@@ -76,7 +233,17 @@ public class GameObject {
      * and can be safely cast to that type.
      */
     public <T extends GameComponent> Optional<T> getComponentOfType(Class<T> type) {
-        return Optional.ofNullable(type.cast(components.get(type)));
+        return Optional.ofNullable(getComponent(type));
+    }
+
+    /**
+     * Get a component of a specific type from the game object without wrapping it in an optional.
+     * @param type The type of the component to get.
+     * @return The component or null if the game object has no component of the type.
+     */
+    public <T extends GameComponent> T getComponent(Class<T> type) {
+        int column = archetype.getColumn(ComponentTypes.getID(type));
+        return column < 0 ? null : type.cast(components[column]);
     }
 
     /**
@@ -85,7 +252,7 @@ public class GameObject {
      * @return True if the game object has a component of the specified type, false otherwise.
      */
     public boolean hasComponentOfType(Class<? extends GameComponent> type) {
-        return components.containsKey(type);
+        return archetype.has(ComponentTypes.getID(type));
     }
 
     /**
@@ -96,7 +263,7 @@ public class GameObject {
      */
     public void addComponent(GameComponent component, boolean force) {
         if (!force) {
-            if (components.containsKey(component.getClass())) {
+            if (hasComponentOfType(component.getClass())) {
                 return;
             }
         }
@@ -112,13 +279,13 @@ public class GameObject {
         component.gameObject = this;
         component.transform = transform;
         component.setDisabled(disabled); 
-        components.put(component.getClass(), component);
+        putComponent(component);
         manager.ifPresent(m -> m.createComponent(component));
     }
 
     public void addComponentOfType(Class<? extends GameComponent> type, boolean force) {
         try {
-            addComponent(type.getDeclaredConstructor().newInstance(), force);
+            addComponent(ComponentFields.of(type).newInstance(), force);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -129,7 +296,7 @@ public class GameObject {
      * @param component
      */
     public void removeComponent(GameComponent component) {
-        components.remove(component.getClass());
+        takeComponent(component.getClass());
         manager.ifPresent(m -> m.disposeComponent(component));
     }
 
@@ -138,7 +305,62 @@ public class GameObject {
      * @param type The type of the component to remove.
      */
     public void removeComponentOfType(Class<? extends GameComponent> type) {
-        components.remove(type);
+        takeComponent(type);
+    }
+
+    /**
+     * Stores a component, replacing the previous component of the same type. If the game object
+     * did not have a component of the type, it moves to a new archetype.
+     */
+    private void putComponent(GameComponent component) {
+        int typeID = ComponentTypes.getID(component.getClass());
+        int column = archetype.getColumn(typeID);
+        if (column >= 0) {
+            components[column] = component;
+            if (store != null) {
+                store.set(this, column, component);
+            }
+            return;
+        }
+
+        Archetype previous = archetype;
+        Archetype next = previous.with(typeID);
+        GameComponent[] nextComponents = new GameComponent[next.size()];
+        for (int i = 0; i < components.length; i++) {
+            nextComponents[next.getColumn(previous.getTypeID(i))] = components[i];
+        }
+        nextComponents[next.getColumn(typeID)] = component;
+        setArchetype(previous, next, nextComponents);
+    }
+
+    /**
+     * Removes the component of the given type and moves the game object to the archetype
+     * without that type.
+     */
+    private void takeComponent(Class<? extends GameComponent> type) {
+        int typeID = ComponentTypes.getID(type);
+        if (!archetype.has(typeID)) {
+            return;
+        }
+
+        Archetype previous = archetype;
+        Archetype next = previous.without(typeID);
+        GameComponent[] nextComponents = next.size() == 0 ? NO_COMPONENTS : new GameComponent[next.size()];
+        for (int i = 0; i < components.length; i++) {
+            int column = next.getColumn(previous.getTypeID(i));
+            if (column >= 0) {
+                nextComponents[column] = components[i];
+            }
+        }
+        setArchetype(previous, next, nextComponents);
+    }
+
+    private void setArchetype(Archetype previous, Archetype next, GameComponent[] nextComponents) {
+        archetype = next;
+        components = nextComponents;
+        if (store != null) {
+            store.move(this, previous);
+        }
     }
 
     public Transform getTransform() {
@@ -160,21 +382,26 @@ public class GameObject {
      */
     public void destroy() {
         // Dispose of all components.
+        GameComponent[] destroyedComponents = components;
         manager.ifPresent(m -> {
             m.removeGameObject(this);
-            components.values().forEach(m::disposeComponent);
+            Arrays.stream(destroyedComponents).forEach(m::disposeComponent);
         });
 
-        components.clear();
+        if (store != null) {
+            store.remove(this);
+        }
+        archetype = Archetype.EMPTY;
+        components = NO_COMPONENTS;
         
-        ID = -1;
-        transform = null;
-
         // Unlink from parent.
         unlinkFromParent(this);
 
-        // Destroy all children.
-        for (GameObject child : children) {
+        ID = -1;
+        transform = null;
+
+        // Destroy all children. They unlink themselves, so iterate over a copy.
+        for (GameObject child : getChildren()) {
             child.destroy();
         }
     }
@@ -183,10 +410,31 @@ public class GameObject {
         return parent;
     }
 
+    /**
+     * Returns a copy of the children of the game object. Prefer {@link #getChildrenView()} or
+     * {@link #forEachChild(Consumer)} in code that runs every frame.
+     * @return A read-only copy of the children.
+     */
     public Set<GameObject> getChildren() {
         return Set.copyOf(children);
     }
 
+    /**
+     * @return A read-only view of the children of the game object, which reflects later changes.
+     */
+    public Set<GameObject> getChildrenView() {
+        return childrenView;
+    }
+
+    /**
+     * Runs the action for each child of the game object. The action must not link or unlink
+     * children of this game object.
+     * @param action The action to run.
+     */
+    public void forEachChild(Consumer<? super GameObject> action) {
+        children.forEach(action);
+    }
+
     public void deleteChildren() {
         for (GameObject child : children) {
             child.destroy();
@@ -213,6 +461,9 @@ public class GameObject {
         child.parent = parent;
         parent.children.add(child);
         child.transform.setParent(parent.transform);
+        if (child.scene != null) {
+            child.scene.onParentChanged(child);
+        }
     }
 
     /**
@@ -225,6 +476,9 @@ public class GameObject {
             child.parent.children.remove(child);
             child.parent = null;
             child.transform.setParent(null);
+            if (child.scene != null) {
+                child.scene.onParentChanged(child);
+            }
         }
     }
 
@@ -237,6 +491,9 @@ public class GameObject {
         for (GameObject child : parent.getChildren()) {
             child.parent = null;
             child.transform.setParent(null);
+            if (child.scene != null) {
+                child.scene.onParentChanged(child);
+            }
         }
         parent.children.clear();
     }
@@ -248,7 +505,7 @@ public class GameObject {
     public void setDisabled(boolean disabled) {
         this.disabled = disabled;
 
-        for (GameComponent component : components.values()) {
+        for (GameComponent component : components) {
             component.setDisabled(disabled);
         }
     }
@@ -260,4 +517,59 @@ public class GameObject {
     public void setName(String name) {
         this.name = name;
     }
+
+    /**
+     * A read-only set view of the tag bits.
+     */
+    private class TagsView extends AbstractSet<String> {
+
+        @Override
+        public int size() {
+            return tagCount;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String && hasTag((String) o);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int next = nextTag(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public String next() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    String tag = Tags.getName(next);
+                    next = nextTag(next + 1);
+                    return tag;
+                }
+            };
+        }
+
+        private int nextTag(int from) {
+            int word = from >>> 6;
+            if (word >= tagBits.length) {
+                return -1;
+            }
+            long bits = tagBits[word] & (-1L << from);
+            while (true) {
+                if (bits != 0) {
+                    return (word << 6) + Long.numberOfTrailingZeros(bits);
+                }
+                if (++word >= tagBits.length) {
+                    return -1;
+                }
+                bits = tagBits[word];
+            }
+        }
+    }
 }
@@ -3,15 +3,26 @@ package io.github.kuggek.engine.ecs;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.TreeMap;
-import java.util.Map;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import io.github.kuggek.engine.core.Transform;
+import io.github.kuggek.engine.core.TransformHierarchy;
+import io.github.kuggek.engine.core.TransformStore;
+import io.github.kuggek.engine.core.collections.IntObjectMap;
 import io.github.kuggek.engine.core.config.ProjectPaths;
+import io.github.kuggek.engine.core.profiling.events.SceneLoadEvent;
+import io.github.kuggek.engine.core.tasks.TaskScheduler;
 import io.github.kuggek.engine.core.json.GameSceneAdapters;
 import io.github.kuggek.engine.subsystems.GameSceneSettings;
 
@@ -20,12 +31,70 @@ public class GameScene implements GameSceneSettings {
 
     private String name;
 
-    private Map<Integer, GameObject> gameObjects;
+    private IntObjectMap<GameObject> gameObjects;
+
+    // Maintained as game objects are added, removed and linked, so they never need to be searched
+    private Set<GameObject> rootLevelGameObjects;
+    private Set<GameObject> rootLevelGameObjectsView;
+    // Indexed by tag ID, see Tags
+    private TaggedGameObjects[] gameObjectsByTag;
+
+    private ComponentStore componentStore;
+
+    private TransformHierarchy transformHierarchy;
+
+    // Optional structure of arrays storage of the transforms, null if disabled
+    private TransformStore transformStore;
+    private Transform[] rootTransforms;
+
+    // One past the highest ID used by a game object or an ID field of a component in the scene
+    private AtomicInteger nextID;
+
+    private static class TaggedGameObjects {
+        private final Set<GameObject> gameObjects = new LinkedHashSet<>();
+        private final Set<GameObject> view = Collections.unmodifiableSet(gameObjects);
+    }
+
+    /**
+     * A view of a tag that no game object in the scene had when the view was requested. It
+     * looks up the game objects on every access, so it picks them up once the tag is added.
+     */
+    private class PendingTagView extends AbstractSet<GameObject> {
+        private final int tagID;
+
+        private PendingTagView(int tagID) {
+            this.tagID = tagID;
+        }
+
+        @Override
+        public int size() {
+            TaggedGameObjects tagged = findTagged(tagID);
+            return tagged == null ? 0 : tagged.gameObjects.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            TaggedGameObjects tagged = findTagged(tagID);
+            return tagged != null && tagged.gameObjects.contains(o);
+        }
+
+        @Override
+        public Iterator<GameObject> iterator() {
+            TaggedGameObjects tagged = findTagged(tagID);
+            return tagged == null ? Collections.emptyIterator() : tagged.view.iterator();
+        }
+    }
 
     public GameScene(int ID, String name) {
         this.ID = ID;
         this.name = name;
-        this.gameObjects = new TreeMap<>();
+        this.gameObjects = new IntObjectMap<>();
+        this.rootLevelGameObjects = new LinkedHashSet<>();
+        this.rootLevelGameObjectsView = Collections.unmodifiableSet(rootLevelGameObjects);
+        this.gameObjectsByTag = new TaggedGameObjects[16];
+        this.componentStore = new ComponentStore();
+        this.transformHierarchy = new TransformHierarchy();
+        this.nextID = new AtomicInteger(1);
     }
 
     public int getID() {
@@ -49,11 +118,16 @@ public class GameScene implements GameSceneSettings {
      * @param ID The ID of the game object to remove
      * @return True if the game object was removed, false if it was not in the scene
      */
-    public boolean removeGameObject(Integer ID) {
+    public boolean removeGameObject(int ID) {
         GameObject gameObject = gameObjects.remove(ID);
         if (gameObject == null) {
             return false;
         }
+        componentStore.remove(gameObject);
+        rootLevelGameObjects.remove(gameObject);
+        invalidateTransforms();
+        gameObject.forEachTag(tagID -> onTagRemoved(gameObject, tagID));
+        gameObject.scene = null;
 
         for (GameObject child : gameObject.getChildren()) {
             removeGameObject(child);
@@ -71,35 +145,270 @@ public class GameScene implements GameSceneSettings {
     }
 
     /**
-     * Adds a game object and all of its children to the scene
+     * Adds a game object and all of its children to the scene. The IDs of the whole subtree are
+     * checked first, so if any of them is taken nothing is added.
      * @param gameObject The game object to add
+     * @throws IllegalArgumentException If a game object of the subtree has the ID of a game
+     * object in the scene or of another game object in the subtree.
      */
     public void addGameObject(GameObject gameObject) {
-        GameObject occupier = gameObjects.putIfAbsent(gameObject.getID(), gameObject);
-        if (occupier != null) {
-            throw new IllegalArgumentException("A game object with the ID " + gameObject.getID() + " already exists in the scene");
+        checkIDsAvailable(gameObject, gameObject.getChildrenView().isEmpty() ? null : new IntObjectMap<>());
+        insertGameObject(gameObject);
+    }
+
+    /**
+     * @param subtreeIDs The IDs seen in the subtree so far, may be null for a single game object
+     * without children.
+     */
+    private void checkIDsAvailable(GameObject gameObject, IntObjectMap<GameObject> subtreeIDs) {
+        int ID = gameObject.getID();
+        if (gameObjects.containsKey(ID)) {
+            throw new IllegalArgumentException("A game object with the ID " + ID + " already exists in the scene");
+        }
+        if (gameObject.store != null && gameObject.store != componentStore) {
+            throw new IllegalArgumentException("Game object " + ID + " is already in another scene");
+        }
+        if (subtreeIDs == null) {
+            return;
         }
+        if (subtreeIDs.putIfAbsent(ID, gameObject) != null) {
+            throw new IllegalArgumentException("More than one game object with the ID " + ID + " is being added");
+        }
+        for (GameObject child : gameObject.getChildrenView()) {
+            checkIDsAvailable(child, subtreeIDs);
+        }
+    }
 
-        for (GameObject child : gameObject.getChildren()) {
-            addGameObject(child);
+    private void insertGameObject(GameObject gameObject) {
+        gameObjects.put(gameObject.getID(), gameObject);
+        componentStore.add(gameObject);
+        gameObject.scene = this;
+        reserveIDs(gameObject);
+        if (gameObject.getParent() == null) {
+            rootLevelGameObjects.add(gameObject);
+        }
+        invalidateTransforms();
+        gameObject.forEachTag(tagID -> onTagAdded(gameObject, tagID));
+
+        for (GameObject child : gameObject.getChildrenView()) {
+            insertGameObject(child);
+        }
+    }
+
+    private void reserveIDs(GameObject gameObject) {
+        reserveID(gameObject.getID());
+        gameObject.forEachComponent(component -> {
+            for (ComponentFields.ComponentField field : ComponentFields.of(component.getClass()).getIDFields()) {
+                Object value = field.get(component);
+                if (value instanceof Integer) {
+                    reserveID((Integer) value);
+                }
+            }
+        });
+    }
+
+    private void reserveID(int ID) {
+        if (ID >= 0) {
+            nextID.accumulateAndGet(ID + 1, Math::max);
         }
     }
 
+    @Override
+    public int generateID() {
+        return nextID.getAndIncrement();
+    }
+
     /**
-     * Returns a read-only set of all game objects in the scene
+     * Returns a read-only copy of all game objects in the scene. Prefer 
+     * {@link #getGameObjectsView()} or {@link #forEachGameObject(Consumer)} in code that 
+     * runs every frame.
      * @return A read-only set of all game objects in the scene
      */
     public Set<GameObject> getGameObjects() {
         return Set.copyOf(gameObjects.values());
     }
 
+    /**
+     * Returns a read-only view of all game objects in the scene, which reflects later changes.
+     * The scene must not be modified while the view is iterated.
+     * @return A read-only view of all game objects in the scene
+     */
+    public Collection<GameObject> getGameObjectsView() {
+        return gameObjects.values();
+    }
+
+    /**
+     * Runs the action for each game object in the scene in no particular order. The action
+     * must not add or remove game objects.
+     * @param action The action to run
+     */
+    public void forEachGameObject(Consumer<? super GameObject> action) {
+        gameObjects.forEachValue(action);
+    }
+
     @Override
     public GameObject getGameObject(int ID) {
         return gameObjects.get(ID);
     }
 
+    /**
+     * Get the store that packs the game objects of the scene by their component types.
+     * @return The component store of the scene.
+     */
+    public ComponentStore getComponentStore() {
+        return componentStore;
+    }
+
+    @Override
+    @SafeVarargs
+    public final ComponentQuery query(Class<? extends GameComponent>... types) {
+        return componentStore.query(types);
+    }
+
+    /**
+     * Returns a read-only copy of the game objects in the scene that have no parent.
+     * @return A read-only set of the root level game objects
+     */
     public Set<GameObject> getRootLevelGameObjects() {
-        return gameObjects.values().stream().filter(gameObject -> gameObject.getParent() == null).collect(Collectors.toSet());
+        return Set.copyOf(rootLevelGameObjects);
+    }
+
+    /**
+     * Returns a read-only view of the game objects in the scene that have no parent, which 
+     * reflects later changes.
+     * @return A read-only view of the root level game objects
+     */
+    public Set<GameObject> getRootLevelGameObjectsView() {
+        return rootLevelGameObjectsView;
+    }
+
+    @Override
+    public Set<GameObject> getGameObjectsWithTag(String tag) {
+        return getGameObjectsWithTag(Tags.getID(tag));
+    }
+
+    @Override
+    public Set<GameObject> getGameObjectsWithTag(int tagID) {
+        TaggedGameObjects tagged = findTagged(tagID);
+        // Reads never create entries, since they may come from several scripts at once
+        return tagged != null ? tagged.view : new PendingTagView(tagID);
+    }
+
+    @Override
+    public void forEachGameObjectWithTag(String tag, Consumer<? super GameObject> action) {
+        int tagID = Tags.find(tag);
+        if (tagID >= 0) {
+            forEachGameObjectWithTag(tagID, action);
+        }
+    }
+
+    @Override
+    public void forEachGameObjectWithTag(int tagID, Consumer<? super GameObject> action) {
+        TaggedGameObjects tagged = findTagged(tagID);
+        if (tagged != null) {
+            tagged.gameObjects.forEach(action);
+        }
+    }
+
+    private TaggedGameObjects findTagged(int tagID) {
+        return tagID >= 0 && tagID < gameObjectsByTag.length ? gameObjectsByTag[tagID] : null;
+    }
+
+    void onTagAdded(GameObject gameObject, int tagID) {
+        if (tagID >= gameObjectsByTag.length) {
+            gameObjectsByTag = Arrays.copyOf(gameObjectsByTag, Math.max(tagID + 1, gameObjectsByTag.length * 2));
+        }
+        TaggedGameObjects tagged = gameObjectsByTag[tagID];
+        if (tagged == null) {
+            tagged = new TaggedGameObjects();
+            gameObjectsByTag[tagID] = tagged;
+        }
+        tagged.gameObjects.add(gameObject);
+    }
+
+    void onTagRemoved(GameObject gameObject, int tagID) {
+        TaggedGameObjects tagged = findTagged(tagID);
+        if (tagged != null) {
+            tagged.gameObjects.remove(gameObject);
+        }
+    }
+
+    void onParentChanged(GameObject gameObject) {
+        invalidateTransforms();
+        if (gameObject.getParent() == null) {
+            rootLevelGameObjects.add(gameObject);
+        } else {
+            rootLevelGameObjects.remove(gameObject);
+        }
+    }
+
+    private void invalidateTransforms() {
+        transformHierarchy.invalidate();
+        if (transformStore != null) {
+            transformStore.invalidate();
+        }
+    }
+
+    /**
+     * Enables or disables the structure of arrays storage of the transforms of the scene. When
+     * enabled, the transforms become handles into a {@link TransformStore} that is updated in 
+     * batches, which pays off for scenes with many moving game objects.
+     * @param enabled True to enable the store
+     */
+    public void setTransformStoreEnabled(boolean enabled) {
+        if (enabled && transformStore == null) {
+            transformStore = new TransformStore();
+        } else if (!enabled && transformStore != null) {
+            transformStore.clear();
+            transformStore = null;
+            transformHierarchy.invalidate();
+        }
+    }
+
+    public boolean isTransformStoreEnabled() {
+        return transformStore != null;
+    }
+
+    /**
+     * Updates the world matrices of the transforms of all game objects in the scene in a single
+     * pass over the hierarchy, see {@link TransformHierarchy}. Called by the engine once per 
+     * frame before rendering.
+     * @param alpha The interpolation factor between the previous and the current simulation state
+     */
+    public void updateTransforms(float alpha) {
+        updateTransforms(alpha, null);
+    }
+
+    /**
+     * Updates the world matrices of the transforms of all game objects in the scene. If the
+     * transform store is enabled, the matrices are composed in batches on the workers of the
+     * scheduler, see {@link TransformStore}.
+     * @param alpha The interpolation factor between the previous and the current simulation state
+     * @param scheduler The scheduler to split large updates across, or null
+     */
+    public void updateTransforms(float alpha, TaskScheduler scheduler) {
+        if (transformStore != null) {
+            if (!transformStore.isValid()) {
+                if (rootTransforms == null || rootTransforms.length < rootLevelGameObjects.size()) {
+                    rootTransforms = new Transform[Math.max(16, rootLevelGameObjects.size() * 2)];
+                }
+                int count = 0;
+                for (GameObject gameObject : rootLevelGameObjects) {
+                    rootTransforms[count++] = gameObject.getTransform();
+                }
+                transformStore.rebuild(rootTransforms, count);
+                Arrays.fill(rootTransforms, 0, count, null);
+            }
+            transformStore.update(alpha, scheduler);
+            return;
+        }
+        if (transformHierarchy.isInvalid()) {
+            transformHierarchy.clear();
+            for (GameObject gameObject : rootLevelGameObjects) {
+                transformHierarchy.add(gameObject.getTransform());
+            }
+        }
+        transformHierarchy.update(alpha);
     }
 
     /**
@@ -109,13 +418,24 @@ public class GameScene implements GameSceneSettings {
      * @throws IOException If the file cannot be read
      */
     public static GameScene loadScene(String sceneName) throws IOException {
+        SceneLoadEvent event = new SceneLoadEvent();
+        event.begin();
+
         GsonBuilder builder = new GsonBuilder();
         GameSceneAdapters.registerAdapters(builder);
         Gson gson = builder.create();
 
         String path = ProjectPaths.concatenatePaths(ProjectPaths.SCENES_PATH, sceneName + ".json");
         String jsonString = Files.readString(Paths.get(path));
-        return gson.fromJson(jsonString, GameScene.class);
+        GameScene scene = gson.fromJson(jsonString, GameScene.class);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.sceneName = sceneName;
+            event.gameObjects = scene.gameObjects.size();
+            event.commit();
+        }
+        return scene;
     }
 
     /**
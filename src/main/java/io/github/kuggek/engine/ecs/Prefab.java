@@ -0,0 +1,301 @@
+package io.github.kuggek.engine.ecs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntSupplier;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+import io.github.kuggek.engine.core.Transform;
+import io.github.kuggek.engine.core.collections.IntIntMap;
+import io.github.kuggek.engine.ecs.components.ComponentIDField;
+import io.github.kuggek.engine.subsystems.GameSceneSettings;
+
+/**
+ * A template of a game object and its children, captured once and instantiated any number of
+ * times. The template stores the name, tags, transform and disabled state of each game object
+ * and the values of the component fields of each component, see {@link ComponentFields}.
+ * Other state of the components is not part of the template.
+ * <p>
+ * Field values are copied when the template is captured and again when they are applied, so
+ * instances never share state with the template or each other. Vectors, quaternions and
+ * matrices are copied into the existing objects of a component and collections are refilled,
+ * which keeps {@link #reset(GameObject[], Vector3f)} free of allocations for the common field types.
+ * Values of other mutable types are shared.
+ * <p>
+ * Instances get new game object IDs, and fields annotated with {@link ComponentIDField} are
+ * remapped, so that e.g. a physics body still refers to the collider of its own instance.
+ *
+ * @see PrefabPool
+ */
+public class Prefab {
+
+    private record ComponentTemplate(ComponentFields fields, Object[] values) {}
+
+    // A captured game object. Parent is the index of the parent node, or -1 for the root.
+    private record Node(int ID, String name, int[] tags, Transform transform, boolean disabled,
+            ComponentTemplate[] components, int parent) {}
+
+    // The captured game objects, parents before their children and the root first
+    private final Node[] nodes;
+
+    private Prefab(Node[] nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Captures a game object and all of its children into a prefab. Later changes to the game
+     * objects don't affect the prefab.
+     * @param root The root game object of the prefab.
+     * @return The prefab.
+     * @throws IllegalArgumentException If a component of the game objects has no no-argument
+     * constructor.
+     */
+    public static Prefab capture(GameObject root) {
+        List<Node> nodes = new ArrayList<>();
+        capture(root, -1, nodes);
+        return new Prefab(nodes.toArray(new Node[0]));
+    }
+
+    private static void capture(GameObject gameObject, int parent, List<Node> nodes) {
+        Transform transform = new Transform();
+        transform.set(gameObject.getTransform());
+
+        GameComponent[] components = gameObject.components;
+        ComponentTemplate[] templates = new ComponentTemplate[components.length];
+        for (int i = 0; i < components.length; i++) {
+            GameComponent component = components[i];
+            ComponentFields fields = ComponentFields.of(component.getClass());
+            if (!fields.isInstantiable()) {
+                throw new IllegalArgumentException("Cannot capture " + component.getClass().getName()
+                    + " in a prefab, it has no no-argument constructor");
+            }
+            List<ComponentFields.ComponentField> fieldList = fields.getFields();
+            Object[] values = new Object[fieldList.size()];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = copyValue(fieldList.get(j).get(component));
+            }
+            templates[i] = new ComponentTemplate(fields, values);
+        }
+
+        int index = nodes.size();
+        nodes.add(new Node(gameObject.getID(), gameObject.getName(),
+            gameObject.getTagIDs(), transform, gameObject.isDisabled(),
+            templates, parent));
+
+        // Sorted, so the order of the nodes doesn't depend on the iteration order of the children
+        List<GameObject> children = new ArrayList<>(gameObject.getChildrenView());
+        children.sort(Comparator.comparingInt(GameObject::getID));
+        for (GameObject child : children) {
+            capture(child, index, nodes);
+        }
+    }
+
+    /**
+     * @return The amount of game objects in each instance of the prefab.
+     */
+    public int getSize() {
+        return nodes.length;
+    }
+
+    /**
+     * Creates a new instance of the prefab with IDs generated by the given scene. The instance
+     * still has to be added to the scene, e.g. by spawning it through the command buffer.
+     * @param scene The scene the instance will be added to.
+     * @return The root game object of the instance.
+     */
+    public GameObject instantiate(GameSceneSettings scene) {
+        return instantiate(scene::generateID);
+    }
+
+    /**
+     * Creates a new instance of the prefab.
+     * @param idGenerator Generates the IDs of the game objects and the remapped component IDs.
+     * @return The root game object of the instance.
+     */
+    public GameObject instantiate(IntSupplier idGenerator) {
+        return instantiateAll(idGenerator)[0];
+    }
+
+    /**
+     * Creates a new instance of the prefab.
+     * @param idGenerator Generates the IDs of the game objects and the remapped component IDs.
+     * @return The game objects of the instance in the order of the prefab's nodes, the root first.
+     */
+    GameObject[] instantiateAll(IntSupplier idGenerator) {
+        IntIntMap remappedIDs = new IntIntMap();
+        GameObject[] gameObjects = new GameObject[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            int ID = idGenerator.getAsInt();
+            remappedIDs.put(nodes[i].ID(), ID);
+            gameObjects[i] = new GameObject(ID);
+        }
+
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = nodes[i];
+            GameObject gameObject = gameObjects[i];
+            gameObject.setName(node.name());
+            for (int tag : node.tags()) {
+                gameObject.addTag(tag);
+            }
+            gameObject.setDisabled(node.disabled());
+            gameObject.setTransform(node.transform());
+
+            for (ComponentTemplate template : node.components()) {
+                GameComponent component = template.fields().newInstance();
+                apply(template, component, remappedIDs, idGenerator);
+                gameObject.addComponent(component, true);
+            }
+            if (node.parent() >= 0) {
+                GameObject.link(gameObjects[node.parent()], gameObject);
+            }
+        }
+        return gameObjects;
+    }
+
+    /**
+     * Resets an instance of the prefab to the state of the prefab, including the names and tags
+     * of the game objects. The game objects keep their IDs, components and links, and the ID
+     * fields of the components keep their values. The components are notified through
+     * {@link GameComponent#onReset()} before the disabled state of the game objects is restored.
+     * @param gameObjects The game objects of the instance as returned by
+     * {@link #instantiateAll(IntSupplier)}.
+     * @param position The position of the root game object, or null to use the prefab's.
+     */
+    void reset(GameObject[] gameObjects, Vector3f position) {
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = nodes[i];
+            GameObject gameObject = gameObjects[i];
+            gameObject.setName(node.name());
+            gameObject.setTags(node.tags());
+            gameObject.setTransform(node.transform());
+            if (i == 0 && position != null) {
+                gameObject.getTransform().setPosition(position);
+            }
+            for (ComponentTemplate template : node.components()) {
+                GameComponent component = gameObject.getComponent(template.fields().getComponentClass());
+                if (component != null) {
+                    apply(template, component, null, null);
+                }
+            }
+        }
+        // Only after all fields are restored, since components may look at each other
+        for (GameObject gameObject : gameObjects) {
+            gameObject.forEachComponent(GameComponent::reset);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            if (gameObjects[i].isDisabled() != nodes[i].disabled()) {
+                gameObjects[i].setDisabled(nodes[i].disabled());
+            }
+        }
+    }
+
+    /**
+     * Applies the field values of the template to the component. If remappedIDs is null, the
+     * ID fields are left as they are.
+     */
+    private static void apply(ComponentTemplate template, GameComponent component,
+            IntIntMap remappedIDs, IntSupplier idGenerator) {
+        List<ComponentFields.ComponentField> fields = template.fields().getFields();
+        Object[] values = template.values();
+        for (int i = 0; i < values.length; i++) {
+            ComponentFields.ComponentField field = fields.get(i);
+            if (field.setter() == null) {
+                continue;
+            }
+            if (field.id()) {
+                if (remappedIDs != null) {
+                    field.set(component, remapID(values[i], remappedIDs, idGenerator));
+                }
+                continue;
+            }
+            Object current = field.get(component);
+            Object value = values[i];
+            if (!copyInto(value, current)) {
+                field.set(component, copyValue(value));
+            }
+        }
+    }
+
+    private static Object remapID(Object value, IntIntMap remappedIDs, IntSupplier idGenerator) {
+        if (!(value instanceof Integer) || (Integer) value < 0) {
+            return value;
+        }
+        int ID = (Integer) value;
+        int remapped = remappedIDs.get(ID);
+        if (remapped == remappedIDs.getMissingValue()) {
+            // Refers to something outside the prefab, e.g. a collider ID that doesn't match
+            // the ID of its game object
+            remapped = idGenerator.getAsInt();
+            remappedIDs.put(ID, remapped);
+        }
+        return remapped;
+    }
+
+    /**
+     * Copies the value into the existing mutable object, if both are of the same kind.
+     * @return True if the value was copied.
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean copyInto(Object value, Object current) {
+        if (value == null || current == null || value == current) {
+            return false;
+        }
+        if (value instanceof Vector3f && current instanceof Vector3f) {
+            ((Vector3f) current).set((Vector3f) value);
+        } else if (value instanceof Quaternionf && current instanceof Quaternionf) {
+            ((Quaternionf) current).set((Quaternionf) value);
+        } else if (value instanceof Vector4f && current instanceof Vector4f) {
+            ((Vector4f) current).set((Vector4f) value);
+        } else if (value instanceof Vector2f && current instanceof Vector2f) {
+            ((Vector2f) current).set((Vector2f) value);
+        } else if (value instanceof Matrix4f && current instanceof Matrix4f) {
+            ((Matrix4f) current).set((Matrix4f) value);
+        } else if (value instanceof Map && current instanceof Map) {
+            Map<Object, Object> map = (Map<Object, Object>) current;
+            map.clear();
+            map.putAll((Map<Object, Object>) value);
+        } else if (value instanceof Collection && current instanceof Collection) {
+            Collection<Object> collection = (Collection<Object>) current;
+            collection.clear();
+            collection.addAll((Collection<Object>) value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return A copy of the value if it is of a known mutable type, otherwise the value itself.
+     */
+    private static Object copyValue(Object value) {
+        if (value instanceof Vector3f) {
+            return new Vector3f((Vector3f) value);
+        } else if (value instanceof Quaternionf) {
+            return new Quaternionf((Quaternionf) value);
+        } else if (value instanceof Vector4f) {
+            return new Vector4f((Vector4f) value);
+        } else if (value instanceof Vector2f) {
+            return new Vector2f((Vector2f) value);
+        } else if (value instanceof Matrix4f) {
+            return new Matrix4f((Matrix4f) value);
+        } else if (value instanceof Map) {
+            return new HashMap<>((Map<?, ?>) value);
+        } else if (value instanceof Set) {
+            return new LinkedHashSet<>((Set<?>) value);
+        } else if (value instanceof List) {
+            return new ArrayList<>((List<?>) value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.kuggek.engine.ecs;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.joml.Vector3f;
+
+import io.github.kuggek.engine.subsystems.EngineRuntimeSettings;
+
+/**
+ * A pool of instances of a {@link Prefab}. Released instances are disabled instead of destroyed
+ * and stay in the scene with their components registered in the subsystems. Acquiring an
+ * instance resets a released one to the state of the prefab, so game objects that are spawned
+ * and despawned all the time, like bullets or particles, are only allocated until the pool has
+ * grown to the amount that is alive at once.
+ * <p>
+ * New instances are spawned through the command buffer, so they join the scene at the end of the
+ * frame. Released instances are reused right away. The pool belongs to the current scene; after
+ * the scene is changed a new pool should be created.
+ * <p>
+ * Not thread safe. Acquiring and releasing instances changes their game objects, components and
+ * physics bodies, so the pool may only be used where changing other game objects is allowed:
+ * from scripts that are not {@link io.github.kuggek.engine.scripting.ParallelScript parallel},
+ * or from a parallel script through
+ * {@link io.github.kuggek.engine.subsystems.EngineRuntimeSettings#defer(Runnable)}.
+ */
+public class PrefabPool {
+
+    private static class Instance {
+        private final GameObject[] gameObjects;
+        private boolean pooled;
+
+        private Instance(GameObject[] gameObjects) {
+            this.gameObjects = gameObjects;
+        }
+
+        private GameObject getRoot() {
+            return gameObjects[0];
+        }
+
+        private boolean isDestroyed() {
+            return getRoot().getTransform() == null;
+        }
+    }
+
+    private final Prefab prefab;
+    private final EngineRuntimeSettings settings;
+
+    private final Deque<Instance> available;
+    private final Map<GameObject, Instance> instances;
+
+    /**
+     * @param prefab The prefab to create instances of.
+     * @param settings The engine settings, used to generate IDs and spawn new instances.
+     */
+    public PrefabPool(Prefab prefab, EngineRuntimeSettings settings) {
+        if (prefab == null || settings == null) {
+            throw new IllegalArgumentException("Prefab and settings must not be null");
+        }
+        this.prefab = prefab;
+        this.settings = settings;
+        this.available = new ArrayDeque<>();
+        this.instances = new IdentityHashMap<>();
+    }
+
+    public Prefab getPrefab() {
+        return prefab;
+    }
+
+    /**
+     * Spawns released instances up front, so that acquiring them later does not allocate.
+     * @param count The amount of instances to add to the pool.
+     */
+    public void prewarm(int count) {
+        for (int i = 0; i < count; i++) {
+            Instance instance = create(null);
+            for (GameObject gameObject : instance.gameObjects) {
+                gameObject.setDisabled(true);
+            }
+            instance.pooled = true;
+            available.push(instance);
+        }
+    }
+
+    /**
+     * Get an instance of the prefab at the prefab's position.
+     * @return The root game object of the instance.
+     */
+    public GameObject acquire() {
+        return acquire(null);
+    }
+
+    /**
+     * Get an instance of the prefab at the given position. A released instance is reset and
+     * enabled if there is one, otherwise a new instance is spawned.
+     * @param position The position of the root game object, or null to use the prefab's.
+     * @return The root game object of the instance.
+     */
+    public GameObject acquire(Vector3f position) {
+        Instance instance;
+        while ((instance = available.poll()) != null) {
+            if (!instance.isDestroyed()) {
+                prefab.reset(instance.gameObjects, position);
+                instance.pooled = false;
+                return instance.getRoot();
+            }
+            instances.remove(instance.getRoot());
+        }
+        return create(position).getRoot();
+    }
+
+    /**
+     * Returns an instance to the pool. Its game objects are disabled until it is acquired again.
+     * @param gameObject The root game object of the instance.
+     * @throws IllegalArgumentException If the game object is not an acquired instance of the pool.
+     */
+    public void release(GameObject gameObject) {
+        Instance instance = instances.get(gameObject);
+        if (instance == null) {
+            throw new IllegalArgumentException("Game object " + gameObject.getID() + " is not an instance of the pool");
+        }
+        if (instance.pooled) {
+            throw new IllegalArgumentException("Game object " + gameObject.getID() + " has already been released");
+        }
+        if (instance.isDestroyed()) {
+            instances.remove(gameObject);
+            return;
+        }
+        for (GameObject member : instance.gameObjects) {
+            member.setDisabled(true);
+        }
+        instance.pooled = true;
+        available.push(instance);
+    }
+
+    /**
+     * @return The amount of released instances that can be acquired without spawning.
+     */
+    public int getAvailableCount() {
+        return available.size();
+    }
+
+    /**
+     * @return The amount of instances created by the pool, acquired or not.
+     */
+    public int getInstanceCount() {
+        return instances.size();
+    }
+
+    private Instance create(Vector3f position) {
+        Instance instance = new Instance(prefab.instantiateAll(settings.getGameSceneSettings()::generateID));
+        if (position != null) {
+            instance.getRoot().getTransform().setPosition(position);
+        }
+        instances.put(instance.getRoot(), instance);
+        settings.getCommandBuffer().spawn(instance.getRoot());
+        return instance;
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.kuggek.engine.ecs;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns tags to small integer IDs. Game objects store their tags as bits indexed by these IDs
+ * and scenes index their game objects by them, so checking a tag is a bit test and looking up
+ * the game objects with a tag is an array access. IDs are assigned the first time a tag is seen
+ * and stay the same for the lifetime of the program.
+ * <p>
+ * Code that checks tags every frame should look up the ID of a tag once and use the int
+ * overloads, e.g. {@link GameObject#hasTag(int)}.
+ */
+public final class Tags {
+
+    private static final Map<String, Integer> IDs = new ConcurrentHashMap<>();
+
+    // Copied on write, so names can be read without locking
+    private static volatile String[] names = new String[0];
+
+    private Tags() {
+    }
+
+    /**
+     * Get the ID of a tag, assigning a new ID if the tag has not been seen before.
+     * @param tag The tag.
+     * @return The ID of the tag.
+     */
+    public static int getID(String tag) {
+        if (tag == null) {
+            throw new IllegalArgumentException("Tag must not be null");
+        }
+        Integer ID = IDs.get(tag);
+        if (ID != null) {
+            return ID;
+        }
+        synchronized (IDs) {
+            return IDs.computeIfAbsent(tag, t -> {
+                String[] current = names;
+                String[] next = Arrays.copyOf(current, current.length + 1);
+                next[current.length] = t;
+                names = next;
+                return current.length;
+            });
+        }
+    }
+
+    /**
+     * Get the ID of a tag without assigning one.
+     * @param tag The tag.
+     * @return The ID of the tag or -1 if the tag has not been seen before.
+     */
+    public static int find(String tag) {
+        Integer ID = tag == null ? null : IDs.get(tag);
+        return ID == null ? -1 : ID;
+    }
+
+    /**
+     * Get the tag with the given ID.
+     * @param ID The ID of the tag.
+     * @return The tag.
+     */
+    public static String getName(int ID) {
+        return names[ID];
+    }
+
+    /**
+     * @return The amount of tags that have been assigned an ID so far.
+     */
+    public static int getTagCount() {
+        return names.length;
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.kuggek.engine.ecs.components;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a readable or editable component field of type int or Integer that holds an ID from the
+ * ID space of the scene, e.g. the ID of a collider. The IDs are remapped to new, unused IDs when
+ * a prefab is instantiated, so that the instances don't collide with each other. Negative and
+ * null values are treated as unset and are not remapped.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ComponentIDField {
+
+}
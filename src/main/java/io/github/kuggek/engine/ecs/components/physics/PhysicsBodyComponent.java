@@ -2,15 +2,20 @@ package io.github.kuggek.engine.ecs.components.physics;
 
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DMatrix3C;
 import org.ode4j.math.DQuaternion;
 import org.ode4j.math.DQuaternionC;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.DBody;
+import org.ode4j.ode.DMassC;
 import org.ode4j.ode.DWorld;
 import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.OdeMath;
 import org.ode4j.ode.internal.DxMass;
 
 import io.github.kuggek.engine.ecs.GameComponent;
+import io.github.kuggek.engine.ecs.components.ComponentIDField;
 import io.github.kuggek.engine.ecs.components.EditableComponentField;
 import io.github.kuggek.engine.physics.PhysicsBody;
 import io.github.kuggek.engine.subsystems.EngineRuntimeSettings;
@@ -29,10 +34,20 @@ public class PhysicsBodyComponent extends GameComponent implements PhysicsBody {
     private boolean influencedByGravity;
 
     @EditableComponentField
+    @ComponentIDField
     private Integer colliderID;
 
     private DBody body;
 
+    // Cached so the collision response doesn't have to copy the ODE mass every step
+    private double inverseMass;
+    private final DMatrix3 inverseInertia = new DMatrix3();
+    private final DMatrix3 worldInverseInertia = new DMatrix3();
+    private final DMatrix3 rotatedInertia = new DMatrix3();
+
+    private final Vector3f syncedPosition = new Vector3f();
+    private final Quaternionf syncedRotation = new Quaternionf();
+
     public PhysicsBodyComponent() {
         super();
         this.isKinematic = false;
@@ -76,6 +91,20 @@ public class PhysicsBodyComponent extends GameComponent implements PhysicsBody {
         }
     }
 
+    @Override
+    protected void onReset() {
+        if (body == null) {
+            return;
+        }
+        body.setLinearVel(0, 0, 0);
+        body.setAngularVel(0, 0, 0);
+        body.setForce(0, 0, 0);
+        body.setTorque(0, 0, 0);
+        body.setGravityMode(influencedByGravity);
+        setMass(mass);
+        syncToGameObject();
+    }
+
     /**
      * Get whether the physics body is influenced by gravity or not. 
      * Note that this only has an effect if the body is not kinematic.
@@ -228,6 +257,36 @@ public class PhysicsBodyComponent extends GameComponent implements PhysicsBody {
         DxMass odeMass = (DxMass)body.getMass();
         odeMass.setMass(newMass);
         body.setMass(odeMass);
+        updateInverseMass();
+    }
+
+    public double getInverseMass() {
+        return isKinematic ? 0 : inverseMass;
+    }
+
+    public DMatrix3C getInverseInertia() {
+        return inverseInertia;
+    }
+
+    public DMatrix3C getWorldInverseInertia() {
+        return worldInverseInertia;
+    }
+
+    public void updateWorldInverseInertia() {
+        if (isKinematic) {
+            worldInverseInertia.setZero();
+            return;
+        }
+        // R * I^-1 * R^T
+        DMatrix3C rotation = body.getRotation();
+        OdeMath.dMultiply2_333(rotatedInertia, inverseInertia, rotation);
+        OdeMath.dMultiply0_333(worldInverseInertia, rotation, rotatedInertia);
+    }
+
+    private void updateInverseMass() {
+        DMassC odeMass = body.getMass();
+        inverseMass = 1 / odeMass.getMass();
+        OdeMath.dInvertMatrix3(inverseInertia, odeMass.getI());
     }
 
     /**
@@ -242,10 +301,20 @@ public class PhysicsBodyComponent extends GameComponent implements PhysicsBody {
      * Synchronize the position and rotation of the game object to the position and rotation of the physics body.
      */
     public void syncToPhysicsBody() {
+        transform.storePreviousState();
         transform.setPosition(getPhysPosition());
         transform.setRotation(getPhysRotation());
     }
 
+    public boolean hasGameObjectMoved() {
+        Vector3f position = transform.getPosition(syncedPosition);
+        Quaternionf rotation = transform.getRotation(syncedRotation);
+        DVector3C pos = body.getPosition();
+        DQuaternionC quat = body.getQuaternion();
+        return position.x != (float) pos.get0() || position.y != (float) pos.get1() || position.z != (float) pos.get2()
+            || rotation.x != (float) quat.get1() || rotation.y != (float) quat.get2() || rotation.z != (float) quat.get3() || rotation.w != (float) quat.get0();
+    }
+
     /**
      * Link the physics body to the given ODE world so that it can participate in the physics simulation.
      * @param world The ODE world to link to.
@@ -263,35 +332,58 @@ public class PhysicsBodyComponent extends GameComponent implements PhysicsBody {
             odeBody.setDynamic();
         }
         odeBody.setGravityMode(this.influencedByGravity);
+        updateInverseMass();
+        if (isDisabled()) {
+            // E.g. pooled game objects are spawned disabled
+            odeBody.disable();
+        }
 
         this.syncToGameObject();
     }
 
     public void setLinearVel(float x, float y, float z) {
         body.setLinearVel(x, y, z);
+        wake();
     }
     public void setLinearVel(Vector3f vel) {
         body.setLinearVel(vel.x, vel.y, vel.z);
+        wake();
     }
     public void addLinearVel(float x, float y, float z) {
         body.addLinearVel(x, y, z);
+        wake();
     }
     public void addLinearVel(Vector3f vel) {
         body.addLinearVel(vel.x, vel.y, vel.z);
+        wake();
     }
     public void setAngularVel(float x, float y, float z) {
         body.setAngularVel(x, y, z);
+        wake();
     }
     public void setAngularVel(Vector3f vel) {
         body.setAngularVel(vel.x, vel.y, vel.z);
+        wake();
     }
     public void addAngularVel(float x, float y, float z) {
         DVector3C currentVel = body.getAngularVel();
         body.setAngularVel(currentVel.get0() + x, currentVel.get1() + y, currentVel.get2() + z);
+        wake();
     }
     public void addAngularVel(Vector3f vel) {
         DVector3C currentVel = body.getAngularVel();
         body.setAngularVel(currentVel.get0() + vel.x, currentVel.get1() + vel.y, currentVel.get2() + vel.z);
+        wake();
+    }
+
+    /**
+     * Sleeping bodies are disabled in ODE, enabling the body makes the physics engine wake it
+     * and the bodies it rests on.
+     */
+    private void wake() {
+        if (!isDisabled()) {
+            body.enable();
+        }
     }
     public void setLinearDamping(float damping) {
         body.setLinearDamping(damping);
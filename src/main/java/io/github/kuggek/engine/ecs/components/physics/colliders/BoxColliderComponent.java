@@ -36,4 +36,9 @@ public class BoxColliderComponent extends PhysicsColliderComponent {
     protected void onAwake(EngineRuntimeSettings settings) {
         setScale(scale);
     }
+
+    @Override
+    protected void onReset() {
+        setScale(scale);
+    }
 }
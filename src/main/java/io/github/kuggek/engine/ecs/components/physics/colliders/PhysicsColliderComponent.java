@@ -18,6 +18,7 @@ import org.ode4j.ode.DSphere;
 import org.ode4j.ode.OdeHelper;
 
 import io.github.kuggek.engine.ecs.GameComponent;
+import io.github.kuggek.engine.ecs.components.ComponentIDField;
 import io.github.kuggek.engine.ecs.components.EditableComponentField;
 import io.github.kuggek.engine.ecs.components.ReadableComponentField;
 import io.github.kuggek.engine.physics.PhysicsCollider;
@@ -25,6 +26,7 @@ import io.github.kuggek.engine.physics.PhysicsCollider;
 public class PhysicsColliderComponent extends GameComponent implements PhysicsCollider {
 
     @ReadableComponentField
+    @ComponentIDField
     private Integer ID;
     
     private ColliderType colliderType;
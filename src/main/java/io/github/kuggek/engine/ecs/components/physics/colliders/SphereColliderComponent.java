@@ -38,4 +38,9 @@ public class SphereColliderComponent extends PhysicsColliderComponent {
     protected void onAwake(EngineRuntimeSettings settings) {
         setRadius(radius);
     }
+
+    @Override
+    protected void onReset() {
+        setRadius(radius);
+    }
 }
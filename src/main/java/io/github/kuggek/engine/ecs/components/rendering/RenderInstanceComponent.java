@@ -55,6 +55,10 @@ public class RenderInstanceComponent extends GameComponent implements RenderInst
         return transform.getModelMatrix();
     }
 
+    public Matrix4f getInterpolatedModelMatrix(float alpha, Matrix4f dest) {
+        return transform.getInterpolatedModelMatrix(alpha, dest);
+    }
+
     public int getMeshID() {
         return meshID;
     }
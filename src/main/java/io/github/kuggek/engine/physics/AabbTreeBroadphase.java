@@ -0,0 +1,454 @@
+package io.github.kuggek.engine.physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ode4j.ode.DAABBC;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DGeom;
+
+/**
+ * A broadphase that keeps the geoms in a dynamic bounding volume tree. Each geom is stored with
+ * a bounding box enlarged by a margin, so the tree only has to change when a geom moves further
+ * than the margin. Inserting picks the sibling that grows the surface area of the tree the
+ * least and the tree is kept balanced with rotations, so finding the overlapping pairs takes
+ * O(n log n) instead of testing every pair.
+ * <p>
+ * The nodes are kept in flat arrays, with the bounds of node i at {@code bounds[6 * i]} as
+ * min x, y, z and max x, y, z. The geoms are not added to an ODE space.
+ */
+class AabbTreeBroadphase implements Broadphase {
+
+    private static final int NULL = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final double margin;
+
+    private double[] bounds;
+    private int[] parents;
+    private int[] children1;
+    private int[] children2;
+    // Height of the subtree, 0 for leaves and -1 for free nodes
+    private int[] heights;
+    private DGeom[] nodeGeoms;
+    // Position of the geom of a leaf in the geom list
+    private int[] nodeIndices;
+    private int root;
+    private int freeList;
+    private int nodeCount;
+
+    // The leaves, iterated in order so pairs are reported in a stable order
+    private DGeom[] geoms;
+    private int[] leaves;
+    private int geomCount;
+    private final Map<DGeom, Integer> geomIndices;
+
+    // Reused stack for traversing the tree
+    private int[] stack;
+
+    AabbTreeBroadphase(double margin) {
+        this.margin = margin;
+        bounds = new double[6 * INITIAL_CAPACITY];
+        parents = new int[INITIAL_CAPACITY];
+        children1 = new int[INITIAL_CAPACITY];
+        children2 = new int[INITIAL_CAPACITY];
+        heights = new int[INITIAL_CAPACITY];
+        nodeGeoms = new DGeom[INITIAL_CAPACITY];
+        nodeIndices = new int[INITIAL_CAPACITY];
+        root = NULL;
+        freeList = NULL;
+        geoms = new DGeom[INITIAL_CAPACITY];
+        leaves = new int[INITIAL_CAPACITY];
+        geomIndices = new HashMap<>();
+        stack = new int[64];
+    }
+
+    @Override
+    public void add(DGeom geom) {
+        if (geomIndices.containsKey(geom)) {
+            return;
+        }
+        int leaf = allocateNode();
+        nodeGeoms[leaf] = geom;
+        heights[leaf] = 0;
+        setFatBounds(leaf, geom.getAABB());
+        insertLeaf(leaf);
+
+        if (geomCount == geoms.length) {
+            geoms = Arrays.copyOf(geoms, geomCount * 2);
+            leaves = Arrays.copyOf(leaves, geomCount * 2);
+        }
+        geoms[geomCount] = geom;
+        leaves[geomCount] = leaf;
+        nodeIndices[leaf] = geomCount;
+        geomIndices.put(geom, geomCount);
+        ++geomCount;
+    }
+
+    @Override
+    public void remove(DGeom geom) {
+        Integer index = geomIndices.remove(geom);
+        if (index == null) {
+            return;
+        }
+        int leaf = leaves[index];
+        removeLeaf(leaf);
+        freeNode(leaf);
+
+        // Move the last geom into the gap
+        int last = --geomCount;
+        if (index != last) {
+            geoms[index] = geoms[last];
+            leaves[index] = leaves[last];
+            nodeIndices[leaves[index]] = index;
+            geomIndices.put(geoms[index], index);
+        }
+        geoms[last] = null;
+    }
+
+    @Override
+    public void collide(DGeom.DNearCallback callback) {
+        // Move the leaves whose geoms have left their enlarged bounds
+        for (int i = 0; i < geomCount; i++) {
+            int leaf = leaves[i];
+            DAABBC aabb = geoms[i].getAABB();
+            if (!contains(leaf, aabb)) {
+                removeLeaf(leaf);
+                setFatBounds(leaf, aabb);
+                insertLeaf(leaf);
+            }
+        }
+
+        // Leaves are numbered by their position in the geom list to report each pair once.
+        // Geoms of disabled, e.g. sleeping, bodies don't search the tree, their pairs with
+        // geoms of enabled bodies are reported when the other geom searches.
+        for (int i = 0; i < geomCount; i++) {
+            DGeom geom = geoms[i];
+            if (!geom.isEnabled() || hasDisabledBody(geom)) {
+                continue;
+            }
+            query(i, geom, geom.getAABB(), callback);
+        }
+    }
+
+    private void query(int index, DGeom geom, DAABBC aabb, DGeom.DNearCallback callback) {
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (node == NULL || !overlaps(node, aabb)) {
+                continue;
+            }
+            if (heights[node] == 0) {
+                DGeom other = nodeGeoms[node];
+                if ((nodeIndices[node] > index || hasDisabledBody(other)) && shouldCollide(geom, other)
+                        && !aabb.isDisjoint(other.getAABB())) {
+                    callback.call(null, geom, other);
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = children1[node];
+                stack[top++] = children2[node];
+            }
+        }
+    }
+
+    private static boolean hasDisabledBody(DGeom geom) {
+        DBody body = geom.getBody();
+        return body != null && !body.isEnabled();
+    }
+
+    private static boolean shouldCollide(DGeom geom1, DGeom geom2) {
+        if (!geom2.isEnabled()) {
+            return false;
+        }
+        DBody body1 = geom1.getBody();
+        DBody body2 = geom2.getBody();
+        if (body1 != null && body1 == body2) {
+            return false;
+        }
+        if (body1 != null && body2 != null && !body1.isEnabled() && !body2.isEnabled()) {
+            return false;
+        }
+        return (geom1.getCategoryBits() & geom2.getCollideBits()) != 0
+            || (geom2.getCategoryBits() & geom1.getCollideBits()) != 0;
+    }
+
+    @Override
+    public List<DGeom> getGeoms() {
+        return new ArrayList<>(Arrays.asList(geoms).subList(0, geomCount));
+    }
+
+    @Override
+    public void destroy() {
+        for (int i = 0; i < geomCount; i++) {
+            geoms[i].destroy();
+        }
+        Arrays.fill(geoms, null);
+        Arrays.fill(nodeGeoms, null);
+        geomIndices.clear();
+        geomCount = 0;
+        root = NULL;
+        nodeCount = 0;
+        freeList = NULL;
+    }
+
+    /**
+     * @return The height of the tree, 0 for an empty tree or a single leaf.
+     */
+    int getHeight() {
+        return root == NULL ? 0 : heights[root];
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL) {
+            int capacity = parents.length;
+            if (nodeCount == capacity) {
+                int newCapacity = capacity * 2;
+                bounds = Arrays.copyOf(bounds, 6 * newCapacity);
+                parents = Arrays.copyOf(parents, newCapacity);
+                children1 = Arrays.copyOf(children1, newCapacity);
+                children2 = Arrays.copyOf(children2, newCapacity);
+                heights = Arrays.copyOf(heights, newCapacity);
+                nodeGeoms = Arrays.copyOf(nodeGeoms, newCapacity);
+                nodeIndices = Arrays.copyOf(nodeIndices, newCapacity);
+            }
+            freeList = nodeCount++;
+            parents[freeList] = NULL;
+        }
+        int node = freeList;
+        freeList = parents[node];
+        parents[node] = NULL;
+        children1[node] = NULL;
+        children2[node] = NULL;
+        heights[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parents[node] = freeList;
+        heights[node] = -1;
+        nodeGeoms[node] = null;
+        freeList = node;
+    }
+
+    private void setFatBounds(int node, DAABBC aabb) {
+        int b = 6 * node;
+        bounds[b] = aabb.getMin0() - margin;
+        bounds[b + 1] = aabb.getMin1() - margin;
+        bounds[b + 2] = aabb.getMin2() - margin;
+        bounds[b + 3] = aabb.getMax0() + margin;
+        bounds[b + 4] = aabb.getMax1() + margin;
+        bounds[b + 5] = aabb.getMax2() + margin;
+    }
+
+    private boolean contains(int node, DAABBC aabb) {
+        int b = 6 * node;
+        return bounds[b] <= aabb.getMin0() && bounds[b + 1] <= aabb.getMin1() && bounds[b + 2] <= aabb.getMin2()
+            && bounds[b + 3] >= aabb.getMax0() && bounds[b + 4] >= aabb.getMax1() && bounds[b + 5] >= aabb.getMax2();
+    }
+
+    private boolean overlaps(int node, DAABBC aabb) {
+        int b = 6 * node;
+        return bounds[b] <= aabb.getMax0() && bounds[b + 1] <= aabb.getMax1() && bounds[b + 2] <= aabb.getMax2()
+            && bounds[b + 3] >= aabb.getMin0() && bounds[b + 4] >= aabb.getMin1() && bounds[b + 5] >= aabb.getMin2();
+    }
+
+    private double area(int node) {
+        int b = 6 * node;
+        return surfaceArea(bounds[b + 3] - bounds[b], bounds[b + 4] - bounds[b + 1], bounds[b + 5] - bounds[b + 2]);
+    }
+
+    private double combinedArea(int node1, int node2) {
+        int a = 6 * node1;
+        int b = 6 * node2;
+        double x = Math.max(bounds[a + 3], bounds[b + 3]) - Math.min(bounds[a], bounds[b]);
+        double y = Math.max(bounds[a + 4], bounds[b + 4]) - Math.min(bounds[a + 1], bounds[b + 1]);
+        double z = Math.max(bounds[a + 5], bounds[b + 5]) - Math.min(bounds[a + 2], bounds[b + 2]);
+        return surfaceArea(x, y, z);
+    }
+
+    private static double surfaceArea(double x, double y, double z) {
+        return 2 * (x * y + y * z + z * x);
+    }
+
+    private void combine(int target, int node1, int node2) {
+        int t = 6 * target;
+        int a = 6 * node1;
+        int b = 6 * node2;
+        for (int i = 0; i < 3; i++) {
+            bounds[t + i] = Math.min(bounds[a + i], bounds[b + i]);
+            bounds[t + 3 + i] = Math.max(bounds[a + 3 + i], bounds[b + 3 + i]);
+        }
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parents[leaf] = NULL;
+            return;
+        }
+
+        // Descend to the sibling where inserting the leaf increases the total area the least
+        int index = root;
+        while (heights[index] > 0) {
+            int child1 = children1[index];
+            int child2 = children2[index];
+
+            double area = area(index);
+            double combined = combinedArea(index, leaf);
+            // Cost of making a new parent for this node and the leaf
+            double cost = 2 * combined;
+            // Minimum cost of pushing the leaf further down the tree
+            double inheritance = 2 * (combined - area);
+
+            double cost1 = descendCost(child1, leaf) + inheritance;
+            double cost2 = descendCost(child2, leaf) + inheritance;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? child1 : child2;
+        }
+        int sibling = index;
+
+        int oldParent = parents[sibling];
+        int newParent = allocateNode();
+        parents[newParent] = oldParent;
+        combine(newParent, leaf, sibling);
+        heights[newParent] = heights[sibling] + 1;
+        children1[newParent] = sibling;
+        children2[newParent] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+
+        if (oldParent != NULL) {
+            if (children1[oldParent] == sibling) {
+                children1[oldParent] = newParent;
+            } else {
+                children2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+
+        refit(parents[leaf]);
+    }
+
+    private double descendCost(int child, int leaf) {
+        double combined = combinedArea(child, leaf);
+        return heights[child] == 0 ? combined : combined - area(child);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+
+        int parent = parents[leaf];
+        int grandParent = parents[parent];
+        int sibling = children1[parent] == leaf ? children2[parent] : children1[parent];
+
+        if (grandParent != NULL) {
+            if (children1[grandParent] == parent) {
+                children1[grandParent] = sibling;
+            } else {
+                children2[grandParent] = sibling;
+            }
+            parents[sibling] = grandParent;
+            freeNode(parent);
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parents[sibling] = NULL;
+            freeNode(parent);
+        }
+        parents[leaf] = NULL;
+    }
+
+    /**
+     * Balances the tree and fixes the heights and bounds from the given node up to the root.
+     */
+    private void refit(int index) {
+        while (index != NULL) {
+            index = balance(index);
+
+            int child1 = children1[index];
+            int child2 = children2[index];
+            heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+            combine(index, child1, child2);
+
+            index = parents[index];
+        }
+    }
+
+    /**
+     * Rotates the subtree at node a if one of its children is more than one level higher than
+     * the other.
+     * @return The node at the position of a after the rotation.
+     */
+    private int balance(int a) {
+        if (heights[a] < 2) {
+            return a;
+        }
+        int b = children1[a];
+        int c = children2[a];
+        int balance = heights[c] - heights[b];
+        if (balance > 1) {
+            return rotate(a, c, b);
+        }
+        if (balance < -1) {
+            return rotate(a, b, c);
+        }
+        return a;
+    }
+
+    /**
+     * Promotes the higher child up to the position of a.
+     * @param a The unbalanced node.
+     * @param up The higher child of a, which takes its place.
+     * @param other The other child of a.
+     * @return The promoted node.
+     */
+    private int rotate(int a, int up, int other) {
+        int f = children1[up];
+        int g = children2[up];
+
+        children1[up] = a;
+        parents[up] = parents[a];
+        parents[a] = up;
+
+        int parent = parents[up];
+        if (parent != NULL) {
+            if (children1[parent] == a) {
+                children1[parent] = up;
+            } else {
+                children2[parent] = up;
+            }
+        } else {
+            root = up;
+        }
+
+        // Keep the higher grandchild under the promoted node and move the other one down
+        int kept = heights[f] > heights[g] ? f : g;
+        int moved = kept == f ? g : f;
+        children2[up] = kept;
+        if (children1[a] == up) {
+            children1[a] = moved;
+        } else {
+            children2[a] = moved;
+        }
+        parents[moved] = a;
+
+        combine(a, children1[a], children2[a]);
+        combine(up, a, kept);
+        heights[a] = 1 + Math.max(heights[other], heights[moved]);
+        heights[up] = 1 + Math.max(heights[a], heights[kept]);
+        return up;
+    }
+}
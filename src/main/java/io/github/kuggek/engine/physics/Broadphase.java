@@ -0,0 +1,42 @@
+package io.github.kuggek.engine.physics;
+
+import java.util.List;
+
+import org.ode4j.ode.DGeom;
+
+/**
+ * Finds the pairs of colliders whose bounding boxes overlap, so only those have to be tested
+ * for actual contact. Created from {@link BroadphaseSettings}.
+ */
+public interface Broadphase {
+
+    /**
+     * Add a geom to the broadphase.
+     * @param geom The geom, which must not be in another broadphase or space.
+     */
+    void add(DGeom geom);
+
+    /**
+     * Remove a geom from the broadphase without destroying it.
+     * @param geom The geom.
+     */
+    void remove(DGeom geom);
+
+    /**
+     * Call the callback for every pair of enabled geoms whose bounding boxes overlap, except
+     * for geoms attached to the same body, geoms whose category and collide bits exclude each
+     * other and geoms whose bodies are both disabled.
+     * @param callback The callback.
+     */
+    void collide(DGeom.DNearCallback callback);
+
+    /**
+     * @return The geoms in the broadphase.
+     */
+    List<DGeom> getGeoms();
+
+    /**
+     * Destroy the broadphase and all geoms that are still in it.
+     */
+    void destroy();
+}
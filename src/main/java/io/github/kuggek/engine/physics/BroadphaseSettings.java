@@ -0,0 +1,199 @@
+package io.github.kuggek.engine.physics;
+
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DHashSpace;
+import org.ode4j.ode.DSapSpace;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Selects and configures the broadphase of the physics engine, see
+ * {@link PhysicsSettings#setBroadphase(BroadphaseSettings)}. Instances are immutable and
+ * created with the static factory methods.
+ */
+public final class BroadphaseSettings {
+
+    public enum Type {
+        /** Tests every pair of colliders. Only suitable for a few dozen colliders. */
+        SIMPLE,
+        /** ODE's multi-resolution hash space. A good default for scenes of any size. */
+        HASH,
+        /** ODE's sweep and prune space. Fast for colliders spread out along the sorted axes. */
+        SWEEP_AND_PRUNE,
+        /** ODE's quadtree space. Fast for colliders spread over a known area of the xy plane. */
+        QUAD_TREE,
+        /** A dynamic bounding volume tree owned by the engine. Fast for most scenes. */
+        AABB_TREE
+    }
+
+    private static final BroadphaseSettings SIMPLE = new BroadphaseSettings(Type.SIMPLE, 0, 0, null, null, null, 0, 0);
+
+    private final Type type;
+    private final int hashMinLevel;
+    private final int hashMaxLevel;
+    private final DSapSpace.AXES sweepAxes;
+    private final Vector3fc quadTreeCenter;
+    private final Vector3fc quadTreeExtents;
+    private final int quadTreeDepth;
+    private final float treeMargin;
+
+    private BroadphaseSettings(Type type, int hashMinLevel, int hashMaxLevel, DSapSpace.AXES sweepAxes,
+            Vector3fc quadTreeCenter, Vector3fc quadTreeExtents, int quadTreeDepth, float treeMargin) {
+        this.type = type;
+        this.hashMinLevel = hashMinLevel;
+        this.hashMaxLevel = hashMaxLevel;
+        this.sweepAxes = sweepAxes;
+        this.quadTreeCenter = quadTreeCenter;
+        this.quadTreeExtents = quadTreeExtents;
+        this.quadTreeDepth = quadTreeDepth;
+        this.treeMargin = treeMargin;
+    }
+
+    /**
+     * @return Settings for testing every pair of colliders.
+     */
+    public static BroadphaseSettings simple() {
+        return SIMPLE;
+    }
+
+    /**
+     * @return Settings for a hash space with cells from 1/8 to 1024 units.
+     */
+    public static BroadphaseSettings hash() {
+        return hash(-3, 10);
+    }
+
+    /**
+     * Get settings for a hash space. Colliders are sorted into cells with sizes from
+     * 2^minLevel to 2^maxLevel, so the levels should cover the sizes of the colliders.
+     * @param minLevel The base 2 logarithm of the smallest cell size.
+     * @param maxLevel The base 2 logarithm of the largest cell size.
+     * @return The settings.
+     */
+    public static BroadphaseSettings hash(int minLevel, int maxLevel) {
+        if (minLevel > maxLevel) {
+            throw new IllegalArgumentException("Min level must not be greater than max level");
+        }
+        return new BroadphaseSettings(Type.HASH, minLevel, maxLevel, null, null, null, 0, 0);
+    }
+
+    /**
+     * @return Settings for a sweep and prune space sorting along x, then z, then y.
+     */
+    public static BroadphaseSettings sweepAndPrune() {
+        return sweepAndPrune(DSapSpace.AXES.XZY);
+    }
+
+    /**
+     * Get settings for a sweep and prune space.
+     * @param axes The order of the axes to sort the colliders along. The first axis should be
+     * the one the colliders are spread out along the most.
+     * @return The settings.
+     */
+    public static BroadphaseSettings sweepAndPrune(DSapSpace.AXES axes) {
+        if (axes == null) {
+            throw new IllegalArgumentException("Axes must not be null");
+        }
+        return new BroadphaseSettings(Type.SWEEP_AND_PRUNE, 0, 0, axes, null, null, 0, 0);
+    }
+
+    /**
+     * Get settings for a quadtree space covering the given area on the xy plane.
+     * <p>
+     * ODE's quadtree always splits along the x and y axes and treats z as up. The engine uses y
+     * as up, so the tree partitions the width and height of the scene and not its depth. Geoms
+     * can't be given to ODE with their axes swapped, so scenes spread out over the ground
+     * (the xz plane) should use {@link #hash()} or {@link #aabbTree()} instead.
+     * @param center The center of the area. Only x and y are used for partitioning.
+     * @param extents The half size of the area. Only x and y are used for partitioning.
+     * @param depth The depth of the tree.
+     * @return The settings.
+     */
+    public static BroadphaseSettings quadTree(Vector3fc center, Vector3fc extents, int depth) {
+        if (center == null || extents == null) {
+            throw new IllegalArgumentException("Center and extents must not be null");
+        }
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be at least 1");
+        }
+        return new BroadphaseSettings(Type.QUAD_TREE, 0, 0, null, new Vector3f(center), new Vector3f(extents), depth, 0);
+    }
+
+    /**
+     * @return Settings for an AABB tree with a margin of 0.1 units.
+     */
+    public static BroadphaseSettings aabbTree() {
+        return aabbTree(0.1f);
+    }
+
+    /**
+     * Get settings for an AABB tree. Larger margins mean the tree has to be updated less often
+     * when colliders move, but more pairs that don't overlap are tested.
+     * @param margin The amount the bounding boxes stored in the tree are enlarged by.
+     * @return The settings.
+     */
+    public static BroadphaseSettings aabbTree(float margin) {
+        if (!(margin >= 0)) {
+            throw new IllegalArgumentException("Margin must not be negative");
+        }
+        return new BroadphaseSettings(Type.AABB_TREE, 0, 0, null, null, null, 0, margin);
+    }
+
+    /**
+     * Create a new, empty broadphase with these settings.
+     * @return The broadphase.
+     */
+    public Broadphase createBroadphase() {
+        switch (type) {
+            case HASH: {
+                DHashSpace space = OdeHelper.createHashSpace();
+                space.setLevels(hashMinLevel, hashMaxLevel);
+                return new OdeSpaceBroadphase(space);
+            }
+            case SWEEP_AND_PRUNE:
+                return new OdeSpaceBroadphase(OdeHelper.createSapSpace(sweepAxes));
+            case QUAD_TREE: {
+                DVector3 center = new DVector3(quadTreeCenter.x(), quadTreeCenter.y(), quadTreeCenter.z());
+                DVector3 extents = new DVector3(quadTreeExtents.x(), quadTreeExtents.y(), quadTreeExtents.z());
+                return new OdeSpaceBroadphase(OdeHelper.createQuadTreeSpace(center, extents, quadTreeDepth));
+            }
+            case AABB_TREE:
+                return new AabbTreeBroadphase(treeMargin);
+            default:
+                return new OdeSpaceBroadphase(OdeHelper.createSimpleSpace());
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getHashMinLevel() {
+        return hashMinLevel;
+    }
+
+    public int getHashMaxLevel() {
+        return hashMaxLevel;
+    }
+
+    public DSapSpace.AXES getSweepAxes() {
+        return sweepAxes;
+    }
+
+    public Vector3fc getQuadTreeCenter() {
+        return quadTreeCenter;
+    }
+
+    public Vector3fc getQuadTreeExtents() {
+        return quadTreeExtents;
+    }
+
+    public int getQuadTreeDepth() {
+        return quadTreeDepth;
+    }
+
+    public float getTreeMargin() {
+        return treeMargin;
+    }
+}
@@ -1,233 +1,346 @@
 package io.github.kuggek.engine.physics;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
-import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DMatrix3C;
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.DBody;
 import org.ode4j.ode.DBox;
 import org.ode4j.ode.DGeom;
-import org.ode4j.ode.DMassC;
-import org.ode4j.ode.DSpace;
 import org.ode4j.ode.DSphere;
 import org.ode4j.ode.OdeMath;
 
+import io.github.kuggek.engine.core.profiling.events.CollisionPassEvent;
+
+/**
+ * Finds the contacts between colliders and resolves them with a sequential impulse solver.
+ * The contacts of each pair of colliders are kept across steps, so the solver starts from the
+ * impulses of the previous step and resting contacts settle within a few iterations. Penetrating
+ * bodies are moved apart after solving. An instance keeps all of its working memory
+ * between passes, so once it has seen the largest amount of colliding pairs a pass doesn't
+ * allocate anything.
+ */
 public class Collisions {
 
-    public static Map<PhysicsBody, DVector3> collideSpace(DSpace space) {
-        Map<PhysicsBody, DVector3> corrections = new HashMap<>();
-        space.collide(null, (_data, o1, o2) -> {
+    // Fraction of the penetration that is resolved per step
+    private static final double CORRECTION_FACTOR = 0.8;
+    // Penetration that is left unresolved, so resting contacts don't jitter
+    private static final double PENETRATION_SLOP = 0.005;
+    // Closing speed below which contacts don't bounce, so bodies can come to rest
+    private static final double RESTITUTION_THRESHOLD = 1;
+    // Contacts of consecutive steps closer than this are treated as the same contact
+    private static final double CONTACT_MATCH_DISTANCE = 0.1;
+
+    private final ContactBuffer contacts;
+    private final ContactCache cache;
+    private final DGeom.DNearCallback nearCallback;
+    private final SleepManager sleepManager;
+
+    private int iterations = 10;
+    // Counts the passes to find the manifolds whose pair stopped colliding
+    private long stamp;
+
+    // Scratch vectors of the solver
+    private final DVector3 vel1 = new DVector3();
+    private final DVector3 vel2 = new DVector3();
+    private final DVector3 relVel = new DVector3();
+    private final DVector3 impulse = new DVector3();
+    private final DVector3 cross = new DVector3();
+    private final DVector3 inertiaCross = new DVector3();
+
+    // Pairs, colliding pairs and contacts
+    private int pairs;
+    private int collidingPairs;
+    private int contactCount;
+
+    public Collisions() {
+        this(null);
+    }
 
-            // Get collision info
-            Optional<Collision> potentialCollision = Collisions.collide(o1, o2);
+    /**
+     * @param sleepManager Skips the pairs of sleeping bodies that can't be woken and wakes the
+     * ones that are touched. May be null.
+     */
+    Collisions(SleepManager sleepManager) {
+        this.sleepManager = sleepManager;
+        contacts = new ContactBuffer();
+        cache = new ContactCache();
+        nearCallback = this::collidePair;
+    }
 
-            if (potentialCollision.isEmpty()) {
-                return;
-            }
+    /**
+     * Find the contacts between the pairs of colliders found by the broadphase and resolve them
+     * by changing the velocities of the bodies and moving penetrating bodies apart. The world
+     * space inertia of the bodies must be up to date, see {@link PhysicsBody#updateWorldInverseInertia()}.
+     * @param broadphase The broadphase.
+     */
+    public void collide(Broadphase broadphase) {
+        CollisionPassEvent passEvent = beginPass();
+        broadphase.collide(nearCallback);
+        cache.removeStale(stamp);
+        solve();
+        endPass(passEvent);
+    }
 
-            // Call onCollision for both colliders
-            PhysicsCollider collider1 = (PhysicsCollider) o1.getData();
-            PhysicsCollider collider2 = (PhysicsCollider) o2.getData();
-               
-            if (collider1 != null) {
-                collider1.onCollision(collider2);
-            }         
-            if (collider2 != null) {
-                collider2.onCollision(collider1);
-            }
+    /**
+     * Get the amount of iterations of the solver per step.
+     * @return The amount of iterations.
+     */
+    public int getIterations() {
+        return iterations;
+    }
 
-            Collision collision = potentialCollision.get();
+    /**
+     * Set the amount of iterations of the solver per step. More iterations make stacks and
+     * piles more stable but take longer.
+     * @param iterations The amount of iterations. Must be at least 1.
+     */
+    public void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Solver iterations must be at least 1");
+        }
+        this.iterations = iterations;
+    }
 
-            DBody b1 = collision.getGeom1().getBody();
-            DBody b2 = collision.getGeom2().getBody();
+    /**
+     * Forget the contacts of all pairs.
+     */
+    public void clear() {
+        cache.clear();
+    }
 
-            if (b1 == null || b2 == null) {
-                return;
-            }
+    private CollisionPassEvent beginPass() {
+        ++stamp;
+        pairs = 0;
+        collidingPairs = 0;
+        contactCount = 0;
+        CollisionPassEvent passEvent = new CollisionPassEvent();
+        passEvent.begin();
+        return passEvent;
+    }
 
-            if (b1.isKinematic() && b2.isKinematic()) {
-                return;
-            }
+    private void endPass(CollisionPassEvent passEvent) {
+        passEvent.end();
+        if (passEvent.shouldCommit()) {
+            passEvent.pairs = pairs;
+            passEvent.collidingPairs = collidingPairs;
+            passEvent.contacts = contactCount;
+            passEvent.commit();
+        }
+    }
 
-            DMassC mass1 = b1.getMass();
-            DMassC mass2 = b2.getMass();
-
-            // If one of the bodies is kinematic, set it's inverse mass to 0 
-            // to avoid applying an impulse to it and to avoid division by 0.
-            double invMass1 = b1.isKinematic() ? 0 : 1 / mass1.getMass();
-            double invMass2 = b2.isKinematic() ? 0 : 1 / mass2.getMass();
-
-            // Get the inverse inertia matrices
-            DMatrix3 I1inv = new DMatrix3(); 
-            OdeMath.dInvertMatrix3(I1inv, mass1.getI());
-            DMatrix3 I2inv = new DMatrix3();
-            OdeMath.dInvertMatrix3(I2inv, mass2.getI());
-
-            DVector3 b1NewLinearVel = new DVector3();
-            DVector3 b2NewLinearVel = new DVector3();
-            DVector3 b1NewAngularVel = new DVector3(b1.getAngularVel());
-            DVector3 b2NewAngularVel = new DVector3(b2.getAngularVel());
-
-            PhysicsBody body1 = (PhysicsBody) b1.getData();
-            PhysicsBody body2 = (PhysicsBody) b2.getData();
-
-            // Calculate the coefficient of restitution
-            double e = body1.getRestitution() * body2.getRestitution();
-
-            for (int i = 0; i < collision.getContactPoints().size(); i++) {
-                DVector3 contactPoint = collision.getContactPoints().get(i);
-                DVector3 normal = collision.getNormals().get(i);
-                DVector3 r1 = contactPoint.reSub(b1.getPosition());
-                DVector3 r2 = contactPoint.reSub(b2.getPosition());
-
-                DVector3 relVel = calculateRelativeVelocityAt(b1, b2, contactPoint);
-
-                // Check if the bodies are moving away from each other
-                double velocityAlongNormal = relVel.dot(normal);
-                if (velocityAlongNormal > 0) {
-                    continue;
-                }
-
-                // Calculate impulse, if one of the bodies is kinematic, we ignore it's contribution
-                double impulseScalar;
-                if (b1.isKinematic()) {
-                    impulseScalar = calculateImpulseAt(relVel, normal, e, 0, invMass2, new DVector3(0, 0, 0), r2, I1inv, I2inv);
-                } else if (b2.isKinematic()) {
-                    impulseScalar = calculateImpulseAt(relVel, normal, e, invMass1, r1, I1inv);
-                } else {
-                    impulseScalar = calculateImpulseAt(relVel, normal, e, invMass2, r2, I2inv);
-                }
-                
-                // Apply impulses
-                DVector3 matrixRes = new DVector3();
-                DVector3 correction = normal.reScale(collision.getPenetrationDepth());
-
-                if (!b1.isKinematic()) { 
-                    // Apply linear velocity impulseScalar
-                    b1NewLinearVel.add(normal.reScale(- impulseScalar * invMass1));
-
-                    // Apply angular impulseScalar
-                    OdeMath.dMultiply0_133(matrixRes, r1.cross(normal.reScale(impulseScalar)), I1inv);
-                    b1NewAngularVel.sub(matrixRes);
-
-                    // Positional correction.
-                    corrections.put(body1, corrections.getOrDefault(body1, new DVector3()).reSub(correction));
-                }   
-                
-                if (!b2.isKinematic()) {
-                    // Apply linear velocity impulseScalar
-                    b2NewLinearVel.add(normal.reScale(impulseScalar * invMass2));
-
-                    // Apply angular impulseScalar
-                    OdeMath.dMultiply0_133(matrixRes, r2.cross(normal.reScale(impulseScalar)), I2inv);
-                    b1NewAngularVel.add(matrixRes);
-                    
-                    // Positional correction.
-                    corrections.put(body2, corrections.getOrDefault(body2, new DVector3()).reAdd(correction));
-                }          
-            }
+    private void collidePair(Object data, DGeom o1, DGeom o2) {
+        ++pairs;
+
+        if (sleepManager != null && !sleepManager.shouldCollide(o1.getBody(), o2.getBody())) {
+            return;
+        }
+
+        // Get collision info
+        if (!findContacts(o1, o2, contacts)) {
+            return;
+        }
+        ++collidingPairs;
+        contactCount += contacts.count;
+
+        // Call onCollision for both colliders
+        PhysicsCollider collider1 = (PhysicsCollider) o1.getData();
+        PhysicsCollider collider2 = (PhysicsCollider) o2.getData();
 
-            b1.addLinearVel(b1NewLinearVel);
-            b2.addLinearVel(b2NewLinearVel);
+        if (collider1 != null) {
+            collider1.onCollision(collider2);
+        }
+        if (collider2 != null) {
+            collider2.onCollision(collider1);
+        }
 
-            b1.setAngularVel(b1NewAngularVel);
-            b2.setAngularVel(b2NewAngularVel);             
-        });
+        DBody b1 = contacts.geom1.getBody();
+        DBody b2 = contacts.geom2.getBody();
 
-        return corrections;
+        if (b1 == null || b2 == null) {
+            return;
+        }
+
+        if (b1.isKinematic() && b2.isKinematic()) {
+            return;
+        }
+
+        if (sleepManager != null) {
+            // Wakes the bodies if one of them is sleeping and connects their islands
+            sleepManager.touch(b1, b2);
+        }
+
+        ContactManifold manifold = cache.get(contacts.geom1, contacts.geom2);
+        manifold.update(contacts, CONTACT_MATCH_DISTANCE * CONTACT_MATCH_DISTANCE);
+        manifold.stamp = stamp;
+        manifold.body1 = b1;
+        manifold.body2 = b2;
+        manifold.physBody1 = (PhysicsBody) b1.getData();
+        manifold.physBody2 = (PhysicsBody) b2.getData();
+        manifold.restitution = manifold.physBody1.getRestitution() * manifold.physBody2.getRestitution();
+    }
+
+    private void solve() {
+        int count = cache.size();
+        for (int i = 0; i < count; i++) {
+            prepare(cache.get(i));
+        }
+        // Start from the impulses of the last step
+        for (int i = 0; i < count; i++) {
+            ContactManifold manifold = cache.get(i);
+            for (int j = 0; j < manifold.count; j++) {
+                applyImpulse(manifold, j, manifold.normalImpulses[j]);
+            }
+        }
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < count; i++) {
+                solveManifold(cache.get(i));
+            }
+        }
+        // Move the bodies apart instead of adding velocity, which would keep resting bodies moving
+        for (int i = 0; i < count; i++) {
+            correctPositions(cache.get(i));
+        }
     }
 
-    
     /**
-     * Calculate the relative velocity at a contact point
-     * @param lin1 Linear velocity of body 1
-     * @param ang1 Angular velocity of body 1
-     * @param lin2 Linear velocity of body 2
-     * @param ang2 Angular velocity of body 2
-     * @param com1 Center of mass of body 1
-     * @param com2 Center of mass of body 2
-     * @param contactPoint Point of contact
-     * @return Relative velocity at the contact point
+     * Calculate the lever arms, effective masses and target velocities of the contacts.
      */
-    private static DVector3 calculateRelativeVelocityAt(DBody b1, DBody b2, DVector3C contactPoint) {
-        DVector3 vel1 = new DVector3();
-        b1.getPointVel(contactPoint, vel1);
-        DVector3 vel2 = new DVector3();
-        b2.getPointVel(contactPoint, vel2);
-        return vel2.reSub(vel1);
+    private void prepare(ContactManifold manifold) {
+        DBody b1 = manifold.body1;
+        DBody b2 = manifold.body2;
+        PhysicsBody body1 = manifold.physBody1;
+        PhysicsBody body2 = manifold.physBody2;
+        double massSum = body1.getInverseMass() + body2.getInverseMass();
+
+        for (int i = 0; i < manifold.count; i++) {
+            DVector3 contactPoint = manifold.points[i];
+            DVector3 normal = manifold.normals[i];
+            DVector3 r1 = manifold.r1[i];
+            DVector3 r2 = manifold.r2[i];
+            r1.eqDiff(contactPoint, b1.getPosition());
+            r2.eqDiff(contactPoint, b2.getPosition());
+
+            double k = massSum
+                + angularMass(r1, normal, body1.getWorldInverseInertia())
+                + angularMass(r2, normal, body2.getWorldInverseInertia());
+            manifold.normalMasses[i] = k > 0 ? 1 / k : 0;
+
+            // Let fast bodies bounce off
+            double velocityAlongNormal = relativeVelocity(manifold, i).dot(normal);
+            manifold.biases[i] = velocityAlongNormal < -RESTITUTION_THRESHOLD
+                ? -manifold.restitution * velocityAlongNormal
+                : 0;
+        }
+    }
+
+    private void solveManifold(ContactManifold manifold) {
+        for (int i = 0; i < manifold.count; i++) {
+            double velocityAlongNormal = relativeVelocity(manifold, i).dot(manifold.normals[i]);
+            double lambda = manifold.normalMasses[i] * (manifold.biases[i] - velocityAlongNormal);
+
+            // The accumulated impulse may only push the bodies apart
+            double previous = manifold.normalImpulses[i];
+            double accumulated = Math.max(previous + lambda, 0);
+            manifold.normalImpulses[i] = accumulated;
+            applyImpulse(manifold, i, accumulated - previous);
+        }
     }
 
     /**
-     * Calculate the impulse at a contact point between two bodies
-     * @param relVel Relative velocity at the contact point
-     * @param normal Normal of the contact point
-     * @param e Combined restitution of the two bodies
-     * @param invMass1 Inverse mass of body 1
-     * @param invMass2 Inverse mass of body 2
-     * @param r1 Vector from the center of mass of body 1 to the contact point
-     * @param r2 Vector from the center of mass of body 2 to the contact point
-     * @param I1inv Inverse inertia matrix of body 1
-     * @param I2inv Inverse inertia matrix of body 2
-     * @return Impulse scalar
+     * Move the bodies of a pair apart by a part of their penetration, split by their mass. The
+     * deepest contact of the pair decides the distance and direction.
      */
-    private static double calculateImpulseAt(DVector3C relVel, DVector3C normal, double e, double invMass1, double invMass2, DVector3C r1, DVector3C r2, DMatrix3C I1inv, DMatrix3C I2inv) {
-        DVector3 matrixMulPortion1 = new DVector3();
-        OdeMath.dMultiply0_133(matrixMulPortion1, r1.cross(normal), I1inv);
+    private void correctPositions(ContactManifold manifold) {
+        double invMass1 = manifold.physBody1.getInverseMass();
+        double invMass2 = manifold.physBody2.getInverseMass();
+        int deepest = 0;
+        for (int i = 1; i < manifold.count; i++) {
+            if (manifold.depths[i] > manifold.depths[deepest]) {
+                deepest = i;
+            }
+        }
+        double penetration = Math.max(manifold.depths[deepest] - PENETRATION_SLOP, 0);
+        if (penetration == 0 || invMass1 + invMass2 == 0) {
+            return;
+        }
+        double correction = CORRECTION_FACTOR * penetration / (invMass1 + invMass2);
+        DVector3C normal = manifold.normals[deepest];
+        if (!manifold.body1.isKinematic()) {
+            moveBody(manifold.body1, normal, -correction * invMass1);
+        }
+        if (!manifold.body2.isKinematic()) {
+            moveBody(manifold.body2, normal, correction * invMass2);
+        }
+    }
+
+    private static void moveBody(DBody body, DVector3C direction, double distance) {
+        DVector3C position = body.getPosition();
+        body.setPosition(
+            position.get0() + direction.get0() * distance,
+            position.get1() + direction.get1() * distance,
+            position.get2() + direction.get2() * distance);
+    }
 
-        DVector3 matrixMulPortion2 = new DVector3();
-        OdeMath.dMultiply0_133(matrixMulPortion2, r2.cross(normal), I2inv);
+    /**
+     * @return The angular part of the effective mass along the normal, n . (I^-1 (r x n)) x r
+     */
+    private double angularMass(DVector3C r, DVector3C normal, DMatrix3C inverseInertia) {
+        cross.eqCross(r, normal);
+        OdeMath.dMultiply0_331(inertiaCross, inverseInertia, cross);
+        return inertiaCross.dot(cross);
+    }
 
-        double numerator = -(1 + e) * relVel.dot(normal);
-        double denominator = (invMass1 + invMass2) + (matrixMulPortion1.cross(r1).reAdd(matrixMulPortion2.cross(r2))).dot(normal);
-        return numerator / denominator;
+    private DVector3 relativeVelocity(ContactManifold manifold, int contact) {
+        // v + w x r, DBody.getPointVel allocates
+        vel1.eqCross(manifold.body1.getAngularVel(), manifold.r1[contact]).add(manifold.body1.getLinearVel());
+        vel2.eqCross(manifold.body2.getAngularVel(), manifold.r2[contact]).add(manifold.body2.getLinearVel());
+        return relVel.eqDiff(vel2, vel1);
     }
 
     /**
-     * Calculate the impulse at a contact point for a single body
-     * @param vel Velocity of the body
-     * @param normal Normal of the contact point
-     * @param e Restitution
-     * @param invMass Inverse mass of the body
-     * @param r1 Vector from the center of mass to the contact point
-     * @param I1inv Inverse inertia matrix of the body
-     * @return Impulse scalar
+     * Apply an impulse along the normal of a contact, pushing the second body away from the first.
      */
-    private static double calculateImpulseAt(DVector3C vel, DVector3C normal, double e, double invMass, DVector3C r1, DMatrix3C I1inv) {
-        DVector3 matrixMulPortion1 = new DVector3();
-        OdeMath.dMultiply0_133(matrixMulPortion1, r1.cross(normal), I1inv);
+    private void applyImpulse(ContactManifold manifold, int contact, double magnitude) {
+        if (magnitude == 0) {
+            return;
+        }
+        impulse.set(manifold.normals[contact]).scale(magnitude);
+        if (!manifold.body1.isKinematic()) {
+            applyImpulse(manifold.body1, manifold.physBody1, manifold.r1[contact], -1);
+        }
+        if (!manifold.body2.isKinematic()) {
+            applyImpulse(manifold.body2, manifold.physBody2, manifold.r2[contact], 1);
+        }
+    }
 
-        double numerator = -(1 + e) * vel.dot(normal);
-        double denominator = invMass + matrixMulPortion1.cross(r1).dot(normal);
-        return numerator / denominator;
+    private void applyImpulse(DBody body, PhysicsBody physBody, DVector3C r, double sign) {
+        double invMass = sign * physBody.getInverseMass();
+        DVector3C linearVel = body.getLinearVel();
+        body.setLinearVel(
+            linearVel.get0() + invMass * impulse.get0(),
+            linearVel.get1() + invMass * impulse.get1(),
+            linearVel.get2() + invMass * impulse.get2());
+
+        cross.eqCross(r, impulse);
+        OdeMath.dMultiply0_331(inertiaCross, physBody.getWorldInverseInertia(), cross);
+        DVector3C angularVel = body.getAngularVel();
+        body.setAngularVel(
+            angularVel.get0() + sign * inertiaCross.get0(),
+            angularVel.get1() + sign * inertiaCross.get1(),
+            angularVel.get2() + sign * inertiaCross.get2());
     }
 
     /**
-     * Check for collision between two geometries. 
+     * Check for collision between two geometries.
      * @param geom1 Geometry 1
      * @param geom2 Geometry 2
      * @return Empty if no collision, otherwise contanins a Collision object with the details of the collision.
      */
     public static Optional<Collision> collide(DGeom geom1, DGeom geom2) {
-        if (geom1 instanceof DSphere && geom2 instanceof DSphere) {
-            return collideSphereToSphere((DSphere) geom1, (DSphere) geom2);
-        } 
-        else if (geom1 instanceof DSphere && geom2 instanceof DBox) {
-            return collideSphereToBox((DSphere) geom1, (DBox) geom2);
-        } 
-        else if (geom1 instanceof DBox && geom2 instanceof DSphere) {
-            return collideSphereToBox((DSphere) geom2, (DBox) geom1);
-        } 
-        else if (geom1 instanceof DBox && geom2 instanceof DBox) {
-            return collideBoxToBox((DBox) geom1, (DBox) geom2);
-        } 
-        else {
-            return Optional.empty();
-        }
+        ContactBuffer contacts = new ContactBuffer();
+        return toCollision(findContacts(geom1, geom2, contacts), contacts);
     }
 
     /**
@@ -237,47 +350,98 @@ public class Collisions {
      * @return
      */
     public static Optional<Collision> collideSphereToSphere(DSphere sphere1, DSphere sphere2) {
-        if (sphere1.getRadius() + sphere2.getRadius() < sphere1.getPosition().distance(sphere2.getPosition())) {
-            return Optional.empty();
-        } // No collision (spheres are too far apart)
+        ContactBuffer contacts = new ContactBuffer();
+        return toCollision(findSphereToSphere(sphere1, sphere2, contacts), contacts);
+    }
 
+    /**
+     * Sphere to box collision.
+     * @param sphere
+     * @param box
+     * @return
+     */
+    public static Optional<Collision> collideSphereToBox(DSphere sphere, DBox box) {
+        ContactBuffer contacts = new ContactBuffer();
+        return toCollision(findSphereToBox(sphere, box, contacts), contacts);
+    }
+
+    /**
+     * Box to box collision.
+     * @param box1
+     * @param box2
+     * @return
+     */
+    public static Optional<Collision> collideBoxToBox(DBox box1, DBox box2) {
+        ContactBuffer contacts = new ContactBuffer();
+        return toCollision(findBoxToBox(box1, box2, contacts), contacts);
+    }
+
+    private static Optional<Collision> toCollision(boolean found, ContactBuffer contacts) {
+        return found ? Optional.of(contacts.toCollision()) : Optional.empty();
+    }
+
+    /**
+     * Find the contacts between two geometries without allocating anything.
+     * @param geom1 Geometry 1
+     * @param geom2 Geometry 2
+     * @param contacts The buffer to store the contacts in.
+     * @return Whether the geometries collide.
+     */
+    static boolean findContacts(DGeom geom1, DGeom geom2, ContactBuffer contacts) {
+        if (geom1 instanceof DSphere && geom2 instanceof DSphere) {
+            return findSphereToSphere((DSphere) geom1, (DSphere) geom2, contacts);
+        }
+        else if (geom1 instanceof DSphere && geom2 instanceof DBox) {
+            return findSphereToBox((DSphere) geom1, (DBox) geom2, contacts);
+        }
+        else if (geom1 instanceof DBox && geom2 instanceof DSphere) {
+            return findSphereToBox((DSphere) geom2, (DBox) geom1, contacts);
+        }
+        else if (geom1 instanceof DBox && geom2 instanceof DBox) {
+            return findBoxToBox((DBox) geom1, (DBox) geom2, contacts);
+        }
+        else {
+            return false;
+        }
+    }
+
+    private static boolean findSphereToSphere(DSphere sphere1, DSphere sphere2, ContactBuffer contacts) {
         DVector3C pos1 = sphere1.getPosition();
         DVector3C pos2 = sphere2.getPosition();
         double radius1 = sphere1.getRadius();
         double radius2 = sphere2.getRadius();
+        double distance = pos1.distance(pos2);
+
+        if (radius1 + radius2 < distance) {
+            return false;
+        } // No collision (spheres are too far apart)
 
-        DVector3 n = new DVector3();
+        contacts.begin(sphere1, sphere2);
+        DVector3 n = contacts.normals[0];
         n.eqDiff(pos2, pos1);
         if (n.length() == 0) {
             n.set(0, 1, 0);
         } else {
-            n = n.normalize();
+            n.normalize();
         }
 
-        DVector3 contactPoint = new DVector3();
-        contactPoint.eqSum(pos1, n.scale(radius1));
-
-        double penetrationDepth = Math.abs(radius1 + radius2 - pos1.distance(pos2)); 
-
-        return Optional.of(new Collision(sphere1, sphere2, List.of(contactPoint), List.of(n), penetrationDepth));
+        contacts.points[0].set(n).scale(radius1).add(pos1);
+        contacts.penetrationDepth = Math.abs(radius1 + radius2 - distance);
+        contacts.count = 1;
+        return true;
     }
 
-    /**
-     * Sphere to box collision.
-     * @param sphere
-     * @param box
-     * @return
-     */
-    public static Optional<Collision> collideSphereToBox(DSphere sphere, DBox box) {
+    private static boolean findSphereToBox(DSphere sphere, DBox box, ContactBuffer contacts) {
         // Transform the sphere's position to the box's local space
         DVector3C spherePos = sphere.getPosition();
         DVector3C rPos = box.getPosition();
         DMatrix3C rRot = box.getRotation();
-        DVector3 localSpherePos = spherePos.reSub(rPos);
+        DVector3 localSpherePos = contacts.local;
+        localSpherePos.eqDiff(spherePos, rPos);
         OdeMath.dMultiply1_331(localSpherePos, rRot, localSpherePos);
 
         // Get the closest point on the box to the sphere.
-        DVector3 closestPoint = new DVector3();
+        DVector3 closestPoint = contacts.points[0];
         DVector3C lengths = box.getLengths();
         double halfLengthX = lengths.get0() / 2;
         double halfLengthY = lengths.get1() / 2;
@@ -288,35 +452,32 @@ public class Collisions {
 
         // Transform the closest point back to world space
         OdeMath.dMultiply0_331(closestPoint, rRot, closestPoint);
-        
+
         closestPoint.eqSum(closestPoint, rPos);
 
-        if (closestPoint.distance(spherePos) > sphere.getRadius()) {
-            return Optional.empty();
+        double contactToSphereDistance = closestPoint.distance(spherePos);
+        if (contactToSphereDistance > sphere.getRadius()) {
+            return false;
         } // No collision (sphere is too far from box)
 
-        DVector3 n = spherePos.reSub(closestPoint);
+        contacts.begin(box, sphere);
+        DVector3 n = contacts.normals[0];
+        n.eqDiff(spherePos, closestPoint);
         // The DVector3 function normalize() will throw an exception if the vector is zero
         if (n.length() == 0) {
             System.out.println("Zero length vector");
             n.set(0, 1, 0);
         } else {
-            n = n.normalize();
+            n.normalize();
         }
 
-        double contactToSphereDistance = spherePos.reSub(closestPoint).length();
-        double penetrationDepth = Math.abs(sphere.getRadius() - contactToSphereDistance);
-        return Optional.of(new Collision(box, sphere, List.of(closestPoint), List.of(n), penetrationDepth));
+        contacts.penetrationDepth = Math.abs(sphere.getRadius() - contactToSphereDistance);
+        contacts.count = 1;
+        return true;
     }
 
-    /**
-     * Box to box collision.
-     * @param box1
-     * @param box2
-     * @return
-     */
-    public static Optional<Collision> collideBoxToBox(DBox box1, DBox box2) {
+    private static boolean findBoxToBox(DBox box1, DBox box2, ContactBuffer contacts) {
         System.err.println("Box to box collision not implemented yet.");
-        return Optional.empty();
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package io.github.kuggek.engine.physics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DGeom;
+
+/**
+ * Holds the contacts between two colliders found by the narrowphase. A buffer is reused for
+ * every pair of colliders, so its contents are only valid until the next pair is tested.
+ */
+final class ContactBuffer {
+
+    /** The most contacts a single pair of colliders can produce. */
+    static final int MAX_CONTACTS = 4;
+
+    DGeom geom1;
+    DGeom geom2;
+    int count;
+    final DVector3[] points;
+    final DVector3[] normals;
+    double penetrationDepth;
+
+    // Scratch vector for the narrowphase
+    final DVector3 local = new DVector3();
+
+    ContactBuffer() {
+        points = new DVector3[MAX_CONTACTS];
+        normals = new DVector3[MAX_CONTACTS];
+        for (int i = 0; i < MAX_CONTACTS; i++) {
+            points[i] = new DVector3();
+            normals[i] = new DVector3();
+        }
+    }
+
+    /**
+     * Start collecting the contacts between two colliders.
+     * @param geom1 The first collider.
+     * @param geom2 The second collider.
+     */
+    void begin(DGeom geom1, DGeom geom2) {
+        this.geom1 = geom1;
+        this.geom2 = geom2;
+        this.count = 0;
+        this.penetrationDepth = 0;
+    }
+
+    /**
+     * Copy the contacts into a new collision.
+     * @return The collision.
+     */
+    Collision toCollision() {
+        List<DVector3> contactPoints = new ArrayList<>(count);
+        List<DVector3> contactNormals = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            contactPoints.add(new DVector3(points[i]));
+            contactNormals.add(new DVector3(normals[i]));
+        }
+        return new Collision(geom1, geom2, contactPoints, contactNormals, penetrationDepth);
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.kuggek.engine.physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ode4j.ode.DGeom;
+
+/**
+ * The contact manifolds of the colliding pairs, keyed by the pair of colliders regardless of
+ * their order. Manifolds whose pair stops colliding are removed and reused, so a stable scene
+ * doesn't allocate. The table uses open addressing with linear probing like
+ * {@link io.github.kuggek.engine.core.collections.IntObjectMap}.
+ */
+final class ContactCache {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private ContactManifold[] table;
+    private int mask;
+    private int resizeThreshold;
+
+    // The manifolds in the order they were created, for iterating deterministically
+    private final List<ContactManifold> manifolds;
+    private final List<ContactManifold> pool;
+
+    ContactCache() {
+        manifolds = new ArrayList<>();
+        pool = new ArrayList<>();
+        allocate(64);
+    }
+
+    private void allocate(int capacity) {
+        table = new ContactManifold[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int hash(DGeom geom1, DGeom geom2) {
+        // Symmetric, so both orders of a pair find the same manifold
+        int h = (System.identityHashCode(geom1) + System.identityHashCode(geom2)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(ContactManifold manifold, DGeom geom1, DGeom geom2) {
+        return manifold.geom1 == geom1 && manifold.geom2 == geom2
+            || manifold.geom1 == geom2 && manifold.geom2 == geom1;
+    }
+
+    /**
+     * Get the manifold of a pair of colliders, creating an empty one if the pair has none.
+     * @param geom1 The first collider.
+     * @param geom2 The second collider.
+     * @return The manifold.
+     */
+    ContactManifold get(DGeom geom1, DGeom geom2) {
+        int hash = hash(geom1, geom2);
+        int slot = hash & mask;
+        ContactManifold manifold;
+        while ((manifold = table[slot]) != null) {
+            if (manifold.hash == hash && matches(manifold, geom1, geom2)) {
+                return manifold;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        manifold = pool.isEmpty() ? new ContactManifold() : pool.remove(pool.size() - 1);
+        manifold.geom1 = geom1;
+        manifold.geom2 = geom2;
+        manifold.hash = hash;
+        table[slot] = manifold;
+        manifolds.add(manifold);
+        if (manifolds.size() > resizeThreshold) {
+            resize(table.length * 2);
+        }
+        return manifold;
+    }
+
+    /**
+     * Remove the manifolds of the pairs that were not found colliding in the given step.
+     * @param stamp The step.
+     */
+    void removeStale(long stamp) {
+        int kept = 0;
+        for (int i = 0; i < manifolds.size(); i++) {
+            ContactManifold manifold = manifolds.get(i);
+            if (manifold.stamp == stamp) {
+                manifolds.set(kept++, manifold);
+            } else {
+                removeFromTable(manifold);
+                manifold.reset();
+                pool.add(manifold);
+            }
+        }
+        // Compacting keeps the order the remaining manifolds were created in
+        for (int i = manifolds.size() - 1; i >= kept; i--) {
+            manifolds.remove(i);
+        }
+    }
+
+    private void removeFromTable(ContactManifold manifold) {
+        int slot = manifold.hash & mask;
+        while (table[slot] != manifold) {
+            slot = (slot + 1) & mask;
+        }
+        // Shift the following entries of the probe sequence back, so no tombstones are needed
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (table[next] != null) {
+            int ideal = table[next].hash & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                table[gap] = table[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        allocate(capacity);
+        for (int i = 0; i < manifolds.size(); i++) {
+            ContactManifold manifold = manifolds.get(i);
+            int slot = manifold.hash & mask;
+            while (table[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = manifold;
+        }
+    }
+
+    int size() {
+        return manifolds.size();
+    }
+
+    ContactManifold get(int index) {
+        return manifolds.get(index);
+    }
+
+    void clear() {
+        for (int i = 0; i < manifolds.size(); i++) {
+            ContactManifold manifold = manifolds.get(i);
+            manifold.reset();
+            pool.add(manifold);
+        }
+        manifolds.clear();
+        Arrays.fill(table, null);
+    }
+}
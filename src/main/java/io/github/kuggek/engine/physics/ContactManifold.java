@@ -0,0 +1,105 @@
+package io.github.kuggek.engine.physics;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DGeom;
+
+/**
+ * The contacts between a pair of colliders, kept across steps so the solver can start from the
+ * impulses it found in the previous step. Manifolds are pooled by the {@link ContactCache}.
+ */
+final class ContactManifold {
+
+    DGeom geom1;
+    DGeom geom2;
+    DBody body1;
+    DBody body2;
+    PhysicsBody physBody1;
+    PhysicsBody physBody2;
+
+    // The step the pair was last found colliding in
+    long stamp;
+    int hash;
+
+    double restitution;
+
+    int count;
+    final DVector3[] points;
+    final DVector3[] normals;
+    final double[] depths;
+    // Accumulated impulse along the normal, carried over to the next step
+    final double[] normalImpulses;
+    private final double[] matchedImpulses;
+
+    // Solver state, calculated each step before iterating
+    final DVector3[] r1;
+    final DVector3[] r2;
+    final double[] normalMasses;
+    final double[] biases;
+
+    ContactManifold() {
+        int max = ContactBuffer.MAX_CONTACTS;
+        points = new DVector3[max];
+        normals = new DVector3[max];
+        r1 = new DVector3[max];
+        r2 = new DVector3[max];
+        for (int i = 0; i < max; i++) {
+            points[i] = new DVector3();
+            normals[i] = new DVector3();
+            r1[i] = new DVector3();
+            r2[i] = new DVector3();
+        }
+        depths = new double[max];
+        normalImpulses = new double[max];
+        matchedImpulses = new double[max];
+        normalMasses = new double[max];
+        biases = new double[max];
+    }
+
+    /**
+     * Replace the contacts with the ones in the buffer. A new contact keeps the accumulated
+     * impulse of the closest old contact within the matching distance. The pair may be reported
+     * in the other order than in the last step, the impulses stay valid since the normal and the
+     * bodies are swapped together.
+     * @param contacts The new contacts.
+     * @param matchDistanceSq The squared distance within which contacts are considered the same.
+     */
+    void update(ContactBuffer contacts, double matchDistanceSq) {
+        geom1 = contacts.geom1;
+        geom2 = contacts.geom2;
+
+        for (int i = 0; i < contacts.count; i++) {
+            DVector3 point = contacts.points[i];
+            double impulse = 0;
+            double closest = matchDistanceSq;
+            for (int j = 0; j < count; j++) {
+                double dx = point.get0() - points[j].get0();
+                double dy = point.get1() - points[j].get1();
+                double dz = point.get2() - points[j].get2();
+                double distanceSq = dx * dx + dy * dy + dz * dz;
+                if (distanceSq <= closest) {
+                    closest = distanceSq;
+                    impulse = normalImpulses[j];
+                }
+            }
+            matchedImpulses[i] = impulse;
+        }
+        for (int i = 0; i < contacts.count; i++) {
+            points[i].set(contacts.points[i]);
+            normals[i].set(contacts.normals[i]);
+            depths[i] = contacts.penetrationDepth;
+            normalImpulses[i] = matchedImpulses[i];
+        }
+        count = contacts.count;
+    }
+
+    void reset() {
+        geom1 = null;
+        geom2 = null;
+        body1 = null;
+        body2 = null;
+        physBody1 = null;
+        physBody2 = null;
+        count = 0;
+    }
+}
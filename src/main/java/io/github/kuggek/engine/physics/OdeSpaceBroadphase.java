@@ -0,0 +1,50 @@
+package io.github.kuggek.engine.physics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DSpace;
+
+/**
+ * A broadphase backed by one of ODE's spaces.
+ */
+class OdeSpaceBroadphase implements Broadphase {
+
+    private final DSpace space;
+
+    OdeSpaceBroadphase(DSpace space) {
+        this.space = space;
+    }
+
+    @Override
+    public void add(DGeom geom) {
+        space.add(geom);
+    }
+
+    @Override
+    public void remove(DGeom geom) {
+        if (geom.getSpace() == space) {
+            space.remove(geom);
+        }
+    }
+
+    @Override
+    public void collide(DGeom.DNearCallback callback) {
+        space.collide(null, callback);
+    }
+
+    @Override
+    public List<DGeom> getGeoms() {
+        List<DGeom> geoms = new ArrayList<>(space.getNumGeoms());
+        for (DGeom geom : space.getGeoms()) {
+            geoms.add(geom);
+        }
+        return geoms;
+    }
+
+    @Override
+    public void destroy() {
+        space.destroy();
+    }
+}
@@ -2,6 +2,7 @@ package io.github.kuggek.engine.physics;
 
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
+import org.ode4j.math.DMatrix3C;
 import org.ode4j.ode.DBody;
 import org.ode4j.ode.DWorld;
 
@@ -111,6 +112,33 @@ public interface PhysicsBody {
      * @param newMass The mass to set.
      */
     void setMass(double newMass);
+
+    /**
+     * Get the inverse of the mass of the physics body, which is 0 for kinematic bodies.
+     * The value is cached whenever the mass or the kinematic state changes.
+     * @return The inverse mass.
+     */
+    double getInverseMass();
+
+    /**
+     * Get the inverse of the inertia tensor of the physics body in body space.
+     * The value is cached whenever the mass changes and is only valid while the body is linked to a world.
+     * @return The inverse inertia tensor.
+     */
+    DMatrix3C getInverseInertia();
+
+    /**
+     * Get the inverse of the inertia tensor of the physics body in world space, which is 0 for kinematic bodies.
+     * The value is only updated by {@link #updateWorldInverseInertia()}.
+     * @return The inverse inertia tensor in world space.
+     */
+    DMatrix3C getWorldInverseInertia();
+
+    /**
+     * Recompute the world space inverse inertia tensor from the current rotation of the physics body.
+     * Called by the physics engine once per step before the collisions are resolved.
+     */
+    void updateWorldInverseInertia();
     /**
      * Synchronize the position and rotation of the physics body to the position and rotation of the game object.
      */
@@ -121,6 +149,13 @@ public interface PhysicsBody {
      */
     void syncToPhysicsBody();
 
+    /**
+     * Check whether the game object was moved away from the physics body since they were last synced, e.g. by a script.
+     * Used to wake sleeping bodies, which are not synced.
+     * @return True if the position or rotation of the game object differs from the physics body.
+     */
+    boolean hasGameObjectMoved();
+
     void setLinearVel(float x, float y, float z);
     void setLinearVel(Vector3f vel);
 
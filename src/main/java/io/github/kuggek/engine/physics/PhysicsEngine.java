@@ -1,6 +1,7 @@
 package io.github.kuggek.engine.physics;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -8,22 +9,27 @@ import java.util.Map;
 import java.util.Set;
 
 import org.joml.Vector3f;
-import org.ode4j.math.DVector3;
 import org.ode4j.ode.DBody;
 import org.ode4j.ode.DGeom;
-import org.ode4j.ode.DSpace;
 import org.ode4j.ode.DWorld;
 import org.ode4j.ode.OdeHelper;
 
+import io.github.kuggek.engine.core.collections.IntObjectMap;
+
+import io.github.kuggek.engine.core.profiling.Profiler;
+import io.github.kuggek.engine.core.profiling.events.PhysicsStepEvent;
+
 public class PhysicsEngine implements PhysicsSettings {
     
     private DWorld world;
-    private DSpace space;
+    private BroadphaseSettings broadphaseSettings;
+    private Broadphase broadphase;
 
     private Set<PhysicsBody> bodies;
-    private Map<Integer, PhysicsCollider> colliders;
+    private IntObjectMap<PhysicsCollider> colliders;
 
-    private Map<PhysicsBody, DVector3> corrections;
+    private final Collisions collisions;
+    private final SleepManager sleepManager;
 
     private Vector3f gravity;
 
@@ -32,13 +38,18 @@ public class PhysicsEngine implements PhysicsSettings {
     private Set<DBody> bodiesToDestroy;
     private Set<DGeom> collidersToDestroy;
 
+    private double fixedTimeStep = 1 / 60.0;
+    private int maxStepsPerFrame = 5;
+
     public PhysicsEngine() {
         world = OdeHelper.createWorld();
-        space = OdeHelper.createSimpleSpace();
+        broadphaseSettings = BroadphaseSettings.simple();
+        broadphase = broadphaseSettings.createBroadphase();
 
         bodies = new HashSet<>();
-        colliders = new HashMap<>();
-        corrections = new HashMap<>();
+        colliders = new IntObjectMap<>();
+        sleepManager = new SleepManager();
+        collisions = new Collisions(sleepManager);
         
         gravity = new Vector3f(0, -9.81f, 0);
         world.setGravity(gravity.x, gravity.y, gravity.z);
@@ -70,7 +81,133 @@ public class PhysicsEngine implements PhysicsSettings {
         setGravity(gravity.x, gravity.y, gravity.z);
     }
 
+    @Override
+    public double getFixedTimeStep() {
+        return fixedTimeStep;
+    }
+
+    @Override
+    public void setFixedTimeStep(double timeStep) {
+        if (timeStep <= 0) {
+            throw new IllegalArgumentException("Fixed time step must be positive");
+        }
+        this.fixedTimeStep = timeStep;
+    }
+
+    @Override
+    public int getMaxStepsPerFrame() {
+        return maxStepsPerFrame;
+    }
+
+    @Override
+    public void setMaxStepsPerFrame(int maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("Max steps per frame must be at least 1");
+        }
+        this.maxStepsPerFrame = maxSteps;
+    }
+
+    @Override
+    public BroadphaseSettings getBroadphase() {
+        return broadphaseSettings;
+    }
+
+    @Override
+    public void setBroadphase(BroadphaseSettings settings) {
+        if (settings == null) {
+            throw new IllegalArgumentException("Broadphase settings must not be null");
+        }
+        destroyRemovedColliders();
+        Broadphase next = settings.createBroadphase();
+        for (DGeom geom : broadphase.getGeoms()) {
+            broadphase.remove(geom);
+            next.add(geom);
+        }
+        broadphase.destroy();
+        broadphase = next;
+        broadphaseSettings = settings;
+    }
+
+    @Override
+    public boolean isSleepingEnabled() {
+        return sleepManager.isEnabled();
+    }
+
+    @Override
+    public void setSleepingEnabled(boolean enabled) {
+        sleepManager.setEnabled(enabled);
+    }
+
+    @Override
+    public float getSleepLinearThreshold() {
+        return sleepManager.getLinearThreshold();
+    }
+
+    @Override
+    public float getSleepAngularThreshold() {
+        return sleepManager.getAngularThreshold();
+    }
+
+    @Override
+    public void setSleepThresholds(float linear, float angular) {
+        if (!(linear >= 0) || !(angular >= 0)) {
+            throw new IllegalArgumentException("Sleep thresholds must not be negative");
+        }
+        sleepManager.setThresholds(linear, angular);
+    }
+
+    @Override
+    public float getTimeToSleep() {
+        return sleepManager.getTimeToSleep();
+    }
+
+    @Override
+    public void setTimeToSleep(float seconds) {
+        if (!(seconds >= 0)) {
+            throw new IllegalArgumentException("Time to sleep must not be negative");
+        }
+        sleepManager.setTimeToSleep(seconds);
+    }
+
+    @Override
+    public boolean isSleeping(PhysicsBody body) {
+        return sleepManager.isSleeping(body);
+    }
+
+    @Override
+    public void wakeUp(PhysicsBody body) {
+        sleepManager.wake(body);
+    }
+
+    @Override
+    public int getSolverIterations() {
+        return collisions.getIterations();
+    }
+
+    @Override
+    public void setSolverIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Solver iterations must be at least 1");
+        }
+        collisions.setIterations(iterations);
+    }
+
+    private void destroyRemovedColliders() {
+        for (DGeom collider : collidersToDestroy) {
+            broadphase.remove(collider);
+            collider.destroy();
+        }
+        collidersToDestroy.clear();
+    }
+
+    /**
+     * Advances the simulation by a single step of the given length.
+     * @param timeStep The length of the step in seconds.
+     */
     public void updateSimulation(double timeStep) {
+        Profiler profiler = Profiler.getInstance();
+        PhysicsStepEvent stepEvent = new PhysicsStepEvent();
+        stepEvent.begin();
 
         // Destroy bodies and colliders
         for (DBody body : bodiesToDestroy) {
@@ -78,50 +215,68 @@ public class PhysicsEngine implements PhysicsSettings {
         }
         bodiesToDestroy.clear();
 
-        for (DGeom collider : collidersToDestroy) {
-            collider.destroy();
-        }
-        collidersToDestroy.clear();
+        destroyRemovedColliders();
+        sleepManager.beginStep();
 
         // Sync the physics bodies with the game objects
+        profiler.begin("Physics sync");
         for (PhysicsBody body : bodies) {
             if (body.isDisabled()) {
                 continue;
             }
+            if (sleepManager.isSleeping(body)) {
+                if (!body.hasGameObjectMoved()) {
+                    continue;
+                }
+                sleepManager.wake(body);
+            }
 
             body.syncToGameObject();
         }
 
-        for (PhysicsCollider collider : colliders.values()) {
-            if (collider.isDisabled()) {
-                continue;
+        colliders.forEachValue(collider -> {
+            if (!collider.isDisabled() && !sleepManager.isSleeping(collider.getCollider().getBody())) {
+                collider.syncToGameObject();
             }
-
-            collider.syncToGameObject();
-        }
+        });
+        profiler.end("Physics sync");
 
         // Step the world
+        profiler.begin("world.quickStep");
         world.quickStep(timeStep);
-        
-        // Collide the space
-        corrections = Collisions.collideSpace(space);
-        
-        // Apply positional corrections from collisions
-        for (Map.Entry<PhysicsBody, DVector3> entry : corrections.entrySet()) {
-            PhysicsBody physBody = entry.getKey();
-            if (physBody == null) {
-                System.out.println("Body not found");
-                continue;
+        profiler.end("world.quickStep");
+
+        // The collision response needs the inertia of the bodies in their new orientation
+        for (PhysicsBody body : bodies) {
+            if (!body.isDisabled() && !sleepManager.isSleeping(body)) {
+                body.updateWorldInverseInertia();
             }
-            DBody body = physBody.getBody();
-            DVector3 correction = entry.getValue();
-            body.setPosition(body.getPosition().reAdd(correction));
         }
-        corrections.clear();
+        sleepManager.findMovingBodies();
+        
+        // Find and resolve the collisions
+        profiler.begin("Collisions.collide");
+        collisions.collide(broadphase);
+        profiler.end("Collisions.collide");
 
         // Sync the game objects with the physics bodies
+        profiler.begin("Physics sync");
         for (PhysicsBody body : bodies) {
-            body.syncToPhysicsBody();
+            if (!sleepManager.isSleeping(body)) {
+                body.syncToPhysicsBody();
+            }
+        }
+        profiler.end("Physics sync");
+
+        sleepManager.endStep(timeStep);
+
+        stepEvent.end();
+        if (stepEvent.shouldCommit()) {
+            stepEvent.timeStep = (long) (timeStep * 1_000_000_000L);
+            stepEvent.bodies = bodies.size();
+            stepEvent.colliders = colliders.size();
+            stepEvent.sleepingBodies = sleepManager.getSleepingCount();
+            stepEvent.commit();
         }
     }
 
@@ -131,13 +286,40 @@ public class PhysicsEngine implements PhysicsSettings {
             linkBodyAndCollider(body, body.getColliderID());
         }
         bodies.add(body);
+        sleepManager.add(body);
+    }
+
+    /**
+     * Add many bodies at once. Bodies are linked to their colliders, so the colliders should be
+     * added first.
+     * @param bodies The bodies.
+     */
+    public void addBodies(Collection<? extends PhysicsBody> bodies) {
+        for (PhysicsBody body : bodies) {
+            body.linkToWorld(world);
+            if (body.getColliderID() != null) {
+                linkBodyAndCollider(body, body.getColliderID());
+            }
+            sleepManager.add(body);
+        }
+        this.bodies.addAll(bodies);
+    }
+
+    /**
+     * Add many colliders at once.
+     * @param colliders The colliders.
+     */
+    public void addColliders(Collection<? extends PhysicsCollider> colliders) {
+        for (PhysicsCollider collider : colliders) {
+            addCollider(collider);
+        }
     }
 
     public void addCollider(PhysicsCollider collider) {
         if (collider.getCollider() == null) {
             collider.setCollider(collider.getColliderType());
         }
-        space.add(collider.getCollider());
+        broadphase.add(collider.getCollider());
         colliders.put(collider.getID(), collider);
     }
 
@@ -174,6 +356,7 @@ public class PhysicsEngine implements PhysicsSettings {
         bodiesToDestroy.add(body.getBody());
         bodies.remove(body);
         bodyColliderLinks.remove(body);
+        sleepManager.remove(body);
     }
 
     public void removeCollider(PhysicsCollider collider) {
@@ -184,16 +367,17 @@ public class PhysicsEngine implements PhysicsSettings {
     public void clear() {
         bodies.clear();
         colliders.clear();
-        corrections.clear();
+        collisions.clear();
+        sleepManager.clear();
         bodyColliderLinks.clear();
         bodiesToDestroy.clear();
         collidersToDestroy.clear();
 
         world.destroy();
-        space.destroy();
+        broadphase.destroy();
 
         world = OdeHelper.createWorld();
-        space = OdeHelper.createSimpleSpace();
+        broadphase = broadphaseSettings.createBroadphase();
 
         world.setGravity(gravity.x, gravity.y, gravity.z);
         world.setDamping(0.005, 0.005);
@@ -15,4 +15,115 @@ public interface PhysicsSettings {
      */
     boolean linkBodyAndCollider(PhysicsBody body, PhysicsCollider collider);
     boolean linkBodyAndCollider(PhysicsBody body, int colliderID);
+
+    /**
+     * Get the fixed time step the simulation is advanced with, in seconds.
+     * @return The fixed time step in seconds.
+     */
+    double getFixedTimeStep();
+
+    /**
+     * Set the fixed time step the simulation is advanced with. The simulation is always stepped
+     * with exactly this value, no matter how long the actual frame took.
+     * @param timeStep The fixed time step in seconds. Must be positive.
+     */
+    void setFixedTimeStep(double timeStep);
+
+    /**
+     * Get the maximum amount of fixed steps that are taken during a single frame.
+     * @return The maximum amount of steps per frame.
+     */
+    int getMaxStepsPerFrame();
+
+    /**
+     * Set the maximum amount of fixed steps that are taken during a single frame. If a frame 
+     * takes longer than this many steps, the leftover time is discarded and the simulation 
+     * slows down instead of falling further and further behind.
+     * @param maxSteps The maximum amount of steps per frame. Must be at least 1.
+     */
+    void setMaxStepsPerFrame(int maxSteps);
+
+    /**
+     * Get the settings of the broadphase, which finds the pairs of colliders to test for
+     * contact.
+     * @return The broadphase settings.
+     */
+    BroadphaseSettings getBroadphase();
+
+    /**
+     * Select the broadphase, which finds the pairs of colliders to test for contact. The
+     * colliders already in the simulation are moved to the new broadphase. Best called while
+     * setting up a scene, since moving many colliders takes a while.
+     * @param settings The broadphase settings.
+     */
+    void setBroadphase(BroadphaseSettings settings);
+
+    /**
+     * Get whether bodies that are at rest are put to sleep.
+     * @return Whether sleeping is enabled.
+     */
+    boolean isSleepingEnabled();
+
+    /**
+     * Set whether bodies that are at rest are put to sleep. Sleeping bodies are not stepped,
+     * synced or tested for collisions until something touches them, so scenes where most
+     * bodies are at rest are much cheaper. Disabling sleeping wakes all bodies.
+     * @param enabled Whether sleeping is enabled.
+     */
+    void setSleepingEnabled(boolean enabled);
+
+    /**
+     * @return The linear velocity below which a body counts as at rest.
+     */
+    float getSleepLinearThreshold();
+
+    /**
+     * @return The angular velocity below which a body counts as at rest.
+     */
+    float getSleepAngularThreshold();
+
+    /**
+     * Set the velocities below which a body counts as at rest.
+     * @param linear The linear velocity in units per second. Must not be negative.
+     * @param angular The angular velocity in radians per second. Must not be negative.
+     */
+    void setSleepThresholds(float linear, float angular);
+
+    /**
+     * @return The time in seconds all bodies of an island have to be at rest before it falls asleep.
+     */
+    float getTimeToSleep();
+
+    /**
+     * Set the time all bodies touching each other have to be at rest before they fall asleep.
+     * @param seconds The time in seconds. Must not be negative.
+     */
+    void setTimeToSleep(float seconds);
+
+    /**
+     * Get whether a body is sleeping.
+     * @param body The body.
+     * @return True if the body is sleeping.
+     */
+    boolean isSleeping(PhysicsBody body);
+
+    /**
+     * Wake a sleeping body together with the bodies it touches. Changing the velocity of a body
+     * or moving its game object wakes it as well.
+     * @param body The body.
+     */
+    void wakeUp(PhysicsBody body);
+
+    /**
+     * Get the amount of iterations the contact solver runs per step.
+     * @return The amount of iterations.
+     */
+    int getSolverIterations();
+
+    /**
+     * Set the amount of iterations the contact solver runs per step. More iterations keep stacks
+     * and piles of bodies steadier, fewer make steps with many contacts cheaper.
+     * @param iterations The amount of iterations. Must be at least 1.
+     */
+    void setSolverIterations(int iterations);
 }
@@ -0,0 +1,406 @@
+package io.github.kuggek.engine.physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ode4j.math.DMatrix3C;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBody;
+
+/**
+ * Puts bodies that have been at rest for a while to sleep and wakes them when they are touched.
+ * Sleeping bodies are disabled in ODE, so they are not stepped, and they are skipped when
+ * syncing and resolving collisions. Bodies that touch each other form an island, which only
+ * falls asleep when all of its bodies are at rest and is woken as a whole. Kinematic bodies
+ * never sleep and don't connect islands, but wake the bodies they touch while they move.
+ */
+class SleepManager {
+
+    private static class SleepState {
+        final PhysicsBody body;
+        int index;
+        boolean sleeping;
+        // Seconds the body has been below the thresholds
+        float restTime;
+        // Whether a kinematic body moved since the last step
+        boolean moving;
+        final double[] lastPose = new double[12];
+        // The next body of the sleeping island, the islands are rings
+        SleepState nextInIsland;
+
+        SleepState(PhysicsBody body) {
+            this.body = body;
+        }
+    }
+
+    private final Map<PhysicsBody, SleepState> states;
+    private final List<SleepState> stateList;
+
+    // Pairs of touching awake bodies found by the last collision pass, as state indices
+    private int[] touching;
+    private int touchingCount;
+
+    // Union-find of the islands
+    private int[] parents;
+    private float[] islandRestTimes;
+    private SleepState[] islandHeads;
+
+    private boolean enabled = true;
+    private float linearThreshold = 0.1f;
+    private float angularThreshold = 0.1f;
+    private float timeToSleep = 0.5f;
+
+    private int sleepingCount;
+
+    SleepManager() {
+        states = new IdentityHashMap<>();
+        stateList = new ArrayList<>();
+        touching = new int[64];
+        parents = new int[0];
+        islandRestTimes = new float[0];
+        islandHeads = new SleepState[0];
+    }
+
+    void add(PhysicsBody body) {
+        if (states.containsKey(body)) {
+            return;
+        }
+        SleepState state = new SleepState(body);
+        state.index = stateList.size();
+        stateList.add(state);
+        states.put(body, state);
+        storePose(state);
+    }
+
+    void remove(PhysicsBody body) {
+        SleepState state = states.remove(body);
+        if (state == null) {
+            return;
+        }
+        // The bodies the removed one was supporting have to fall
+        wake(state);
+        SleepState last = stateList.remove(stateList.size() - 1);
+        if (last != state) {
+            last.index = state.index;
+            stateList.set(state.index, last);
+        }
+    }
+
+    void clear() {
+        states.clear();
+        stateList.clear();
+        touchingCount = 0;
+        sleepingCount = 0;
+    }
+
+    /**
+     * @param body The body.
+     * @return Whether the body is sleeping.
+     */
+    boolean isSleeping(PhysicsBody body) {
+        SleepState state = states.get(body);
+        return state != null && state.sleeping;
+    }
+
+    /**
+     * @param body The ODE body, may be null.
+     * @return Whether the body is sleeping. Cheap for awake bodies.
+     */
+    boolean isSleeping(DBody body) {
+        // Sleeping bodies are always disabled in ODE
+        if (body == null || body.isEnabled()) {
+            return false;
+        }
+        return isSleeping((PhysicsBody) body.getData());
+    }
+
+    /**
+     * Wake a body and the island it is sleeping in.
+     * @param body The body.
+     */
+    void wake(PhysicsBody body) {
+        SleepState state = states.get(body);
+        if (state != null) {
+            wake(state);
+        }
+    }
+
+    private void wake(SleepState state) {
+        if (!state.sleeping) {
+            return;
+        }
+        SleepState current = state;
+        do {
+            SleepState next = current.nextInIsland;
+            current.nextInIsland = null;
+            current.sleeping = false;
+            current.restTime = 0;
+            sleepingCount--;
+            if (!current.body.isDisabled()) {
+                current.body.getBody().enable();
+            }
+            current = next;
+        } while (current != state && current != null);
+    }
+
+    /**
+     * Prepare for a step. Wakes the sleeping bodies that were enabled from the outside, e.g. by
+     * setting their velocity.
+     */
+    void beginStep() {
+        touchingCount = 0;
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < stateList.size(); i++) {
+            SleepState state = stateList.get(i);
+            if (state.sleeping && state.body.getBody().isEnabled()) {
+                wake(state);
+            }
+        }
+    }
+
+    /**
+     * Find the kinematic bodies that moved since the last collision pass. Called right before
+     * the collision pass, after the bodies were synced and stepped.
+     */
+    void findMovingBodies() {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < stateList.size(); i++) {
+            SleepState state = stateList.get(i);
+            if (state.body.isKinematic()) {
+                state.moving = hasMoved(state);
+                storePose(state);
+            }
+        }
+    }
+
+    /**
+     * Decide whether the collision pass should test a pair of bodies. Pairs of sleeping bodies
+     * are never reported by the broadphase, pairs of a sleeping body and a body that can't wake
+     * it are skipped here.
+     * @param b1 The first body, may be null.
+     * @param b2 The second body, may be null.
+     * @return Whether the pair should be tested.
+     */
+    boolean shouldCollide(DBody b1, DBody b2) {
+        boolean sleeping1 = isSleeping(b1);
+        boolean sleeping2 = isSleeping(b2);
+        if (!sleeping1 && !sleeping2) {
+            return true;
+        }
+        DBody other = sleeping1 ? b2 : b1;
+        if (other == null || sleeping1 && sleeping2) {
+            return false;
+        }
+        if (!other.isKinematic()) {
+            return other.isEnabled();
+        }
+        SleepState state = states.get((PhysicsBody) other.getData());
+        return state != null && state.moving;
+    }
+
+    /**
+     * Record that two bodies touch in the current step. Wakes sleeping bodies that are touched
+     * and connects the islands of dynamic bodies.
+     * @param b1 The first body.
+     * @param b2 The second body.
+     */
+    void touch(DBody b1, DBody b2) {
+        if (!enabled) {
+            return;
+        }
+        SleepState state1 = states.get((PhysicsBody) b1.getData());
+        SleepState state2 = states.get((PhysicsBody) b2.getData());
+        if (state1 == null || state2 == null) {
+            return;
+        }
+        wake(state1);
+        wake(state2);
+        if (b1.isKinematic() || b2.isKinematic()) {
+            return;
+        }
+        if (touchingCount * 2 == touching.length) {
+            touching = Arrays.copyOf(touching, touching.length * 2);
+        }
+        touching[touchingCount * 2] = state1.index;
+        touching[touchingCount * 2 + 1] = state2.index;
+        touchingCount++;
+    }
+
+    /**
+     * Put the islands to sleep whose bodies have all been at rest for long enough.
+     * @param timeStep The length of the step in seconds.
+     */
+    void endStep(double timeStep) {
+        if (!enabled) {
+            return;
+        }
+        int count = stateList.size();
+        if (parents.length < count) {
+            int capacity = Math.max(count, parents.length * 2);
+            parents = new int[capacity];
+            islandRestTimes = new float[capacity];
+            islandHeads = new SleepState[capacity];
+        }
+        for (int i = 0; i < count; i++) {
+            parents[i] = i;
+            islandRestTimes[i] = Float.POSITIVE_INFINITY;
+        }
+        for (int i = 0; i < touchingCount; i++) {
+            int a = touching[i * 2];
+            int b = touching[i * 2 + 1];
+            // Bodies removed during the collision pass may have left stale indices
+            if (a < count && b < count) {
+                union(a, b);
+            }
+        }
+
+        float linearSq = linearThreshold * linearThreshold;
+        float angularSq = angularThreshold * angularThreshold;
+        for (int i = 0; i < count; i++) {
+            SleepState state = stateList.get(i);
+            int root = find(i);
+            if (state.sleeping || state.body.isDisabled()) {
+                continue;
+            }
+            if (state.body.isKinematic()) {
+                // Bodies touching a kinematic body rest on it, it doesn't keep them awake
+                continue;
+            }
+            DBody body = state.body.getBody();
+            if (body.getLinearVel().lengthSquared() < linearSq && body.getAngularVel().lengthSquared() < angularSq) {
+                state.restTime += (float) timeStep;
+            } else {
+                state.restTime = 0;
+            }
+            islandRestTimes[root] = Math.min(islandRestTimes[root], state.restTime);
+        }
+
+        for (int i = 0; i < count; i++) {
+            SleepState state = stateList.get(i);
+            if (state.sleeping || state.body.isDisabled() || state.body.isKinematic()) {
+                continue;
+            }
+            int root = find(i);
+            if (islandRestTimes[root] < timeToSleep) {
+                continue;
+            }
+            sleep(state);
+            SleepState head = islandHeads[root];
+            if (head == null) {
+                islandHeads[root] = state;
+                state.nextInIsland = state;
+            } else {
+                state.nextInIsland = head.nextInIsland;
+                head.nextInIsland = state;
+            }
+        }
+        Arrays.fill(islandHeads, 0, count, null);
+    }
+
+    private void sleep(SleepState state) {
+        DBody body = state.body.getBody();
+        body.setLinearVel(0, 0, 0);
+        body.setAngularVel(0, 0, 0);
+        body.disable();
+        // Sync once more so the sleeping game object isn't interpolated between two states
+        state.body.syncToPhysicsBody();
+        state.sleeping = true;
+        state.restTime = 0;
+        sleepingCount++;
+    }
+
+    private int find(int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA != rootB) {
+            parents[rootA] = rootB;
+        }
+    }
+
+    private boolean hasMoved(SleepState state) {
+        DBody body = state.body.getBody();
+        if (body.getLinearVel().lengthSquared() > 0 || body.getAngularVel().lengthSquared() > 0) {
+            return true;
+        }
+        DVector3C position = body.getPosition();
+        DMatrix3C rotation = body.getRotation();
+        double[] pose = state.lastPose;
+        for (int i = 0; i < 3; i++) {
+            if (pose[i] != position.get(i)) {
+                return true;
+            }
+        }
+        for (int i = 0; i < 9; i++) {
+            if (pose[3 + i] != rotation.get(i / 3, i % 3)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void storePose(SleepState state) {
+        DBody body = state.body.getBody();
+        DVector3C position = body.getPosition();
+        DMatrix3C rotation = body.getRotation();
+        double[] pose = state.lastPose;
+        for (int i = 0; i < 3; i++) {
+            pose[i] = position.get(i);
+        }
+        for (int i = 0; i < 9; i++) {
+            pose[3 + i] = rotation.get(i / 3, i % 3);
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        if (!enabled) {
+            for (int i = 0; i < stateList.size(); i++) {
+                wake(stateList.get(i));
+            }
+        }
+        this.enabled = enabled;
+    }
+
+    float getLinearThreshold() {
+        return linearThreshold;
+    }
+
+    float getAngularThreshold() {
+        return angularThreshold;
+    }
+
+    void setThresholds(float linear, float angular) {
+        this.linearThreshold = linear;
+        this.angularThreshold = angular;
+    }
+
+    float getTimeToSleep() {
+        return timeToSleep;
+    }
+
+    void setTimeToSleep(float timeToSleep) {
+        this.timeToSleep = timeToSleep;
+    }
+
+    int getSleepingCount() {
+        return sleepingCount;
+    }
+}
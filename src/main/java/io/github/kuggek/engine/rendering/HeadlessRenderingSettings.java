@@ -0,0 +1,56 @@
+package io.github.kuggek.engine.rendering;
+
+import org.joml.Vector4f;
+
+import io.github.kuggek.engine.rendering.objects.Camera;
+import io.github.kuggek.engine.rendering.objects.SkyBox;
+import io.github.kuggek.engine.rendering.objects.lights.DirectionalLight;
+
+/**
+ * Rendering settings used when the engine runs without a rendering engine. The settings are 
+ * only stored so that components and scripts can still read them back, nothing is rendered.
+ */
+public class HeadlessRenderingSettings implements RenderingSettings {
+
+    private Camera activeCamera;
+    private DirectionalLight directionalLight;
+    private Vector4f globalAmbient = new Vector4f(0.2f, 0.2f, 0.2f, 1.0f);
+
+    @Override
+    public void setActiveCamera(Camera camera) {
+        activeCamera = camera;
+    }
+
+    @Override
+    public Camera getActiveCamera() {
+        return activeCamera;
+    }
+
+    @Override
+    public void setSkyBox(SkyBox skyBox) {
+    }
+
+    @Override
+    public void setGlobalAmbient(float r, float g, float b, float a) {
+        globalAmbient.set(r, g, b, a);
+    }
+
+    @Override
+    public void setGlobalAmbient(Vector4f color) {
+        globalAmbient.set(color);
+    }
+
+    public Vector4f getGlobalAmbient() {
+        return globalAmbient;
+    }
+
+    @Override
+    public void setDirectionalLight(DirectionalLight light) {
+        directionalLight = light;
+    }
+
+    @Override
+    public DirectionalLight getDirectionalLight() {
+        return directionalLight;
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.kuggek.engine.rendering;
+
+import java.util.EventListener;
+
+import io.github.kuggek.engine.scripting.KeyInput;
+
+/**
+ * A window that does not display anything. Used when the engine runs headless, for example 
+ * on servers without a display or GPU. The key input of a headless window never receives 
+ * any key events.
+ */
+public class HeadlessWindow implements Window {
+
+    private WindowSettings settings;
+    private KeyInput keyInput;
+
+    public HeadlessWindow() {
+        keyInput = new KeyInput();
+    }
+
+    @Override
+    public void setWindowSettings(WindowSettings settings) {
+        this.settings = settings;
+    }
+
+    public WindowSettings getWindowSettings() {
+        return settings;
+    }
+
+    @Override
+    public void registerEventListener(EventListener listener) {
+    }
+
+    @Override
+    public void removeEventListener(EventListener listener) {
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public void toggleFullscreen() {
+    }
+
+    @Override
+    public KeyInput getKeyInput() {
+        return keyInput;
+    }
+
+    @Override
+    public void display() {
+    }
+}
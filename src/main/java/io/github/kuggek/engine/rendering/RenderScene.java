@@ -47,11 +47,12 @@ public interface RenderScene {
     Matrix4f getProjectionMatrix();
 
     /**
-     * Update and return the projection matrix of the scene for a given aspect ratio.
+     * Set the aspect ratio of the screen the scene is rendered to. The projection matrix is
+     * recalculated for the new aspect ratio when the next render snapshot is extracted, so
+     * {@link #getProjectionMatrix()} doesn't reflect it before then.
      * @param aspectRatio The aspect ratio of the screen.
-     * @return The projection matrix.
      */
-    Matrix4f updateProjectionMatrix(float aspectRatio);
+    void setAspectRatio(float aspectRatio);
 
     /**
      * Get the light space matrix of the scene. This is used for shadow mapping.
@@ -90,6 +91,14 @@ public interface RenderScene {
      */
     Material getMaterial(int materialID);
 
+    /**
+     * Get the latest render snapshot extracted from the scene. The renderer should only read
+     * per-frame state (instances, camera and lights) from the snapshot, never from the live scene
+     * objects, since those are mutated by the simulation at the same time.
+     * @return The latest render snapshot.
+     */
+    RenderSnapshot acquireSnapshot();
+
     /**
      * Sorts the render instances to ensure an optimal rendering order.
      */
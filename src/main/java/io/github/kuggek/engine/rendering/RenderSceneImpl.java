@@ -1,11 +1,14 @@
 package io.github.kuggek.engine.rendering;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 
 import org.joml.Matrix4f;
@@ -14,6 +17,7 @@ import org.joml.Vector4f;
 
 import io.github.kuggek.engine.core.assets.AssetManager;
 import io.github.kuggek.engine.core.assets.SQLiteAssetManager;
+import io.github.kuggek.engine.core.tasks.TaskScheduler;
 import io.github.kuggek.engine.rendering.objects.Camera;
 import io.github.kuggek.engine.rendering.objects.CameraFrustum;
 import io.github.kuggek.engine.rendering.objects.Material;
@@ -30,6 +34,9 @@ public class RenderSceneImpl implements RenderScene {
     private Map<Integer, Mesh> meshes;
     private Map<Integer, Texture> textures;
     private Set<RenderInstance> renderInstances;
+    private List<RenderInstance> renderInstanceList;
+    private boolean renderInstanceListDirty;
+    private Queue<RenderInstance> instancesToPrefetch;
     private Map<Integer, Material> materials;
     private Camera camera;
     private Matrix4f projectionMatrix;
@@ -39,7 +46,12 @@ public class RenderSceneImpl implements RenderScene {
     private Matrix4f lightSpaceMatrix;
     private List<PositionalLight> positionalLights;
     private AssetManager assetManager;
-    private float aspectRatio;
+    private volatile float aspectRatio = 1;
+
+    private RenderSnapshotBuffer snapshotBuffer;
+
+    // The smallest amount of instances extracted by one worker
+    private static final int EXTRACTION_CHUNK_SIZE = 256;
 
     private final Vector3f UP = new Vector3f(0, 1, 0);
 
@@ -47,14 +59,18 @@ public class RenderSceneImpl implements RenderScene {
     private int frustumMargin = 10;
 
     public RenderSceneImpl() {
-        meshes = new HashMap<>();
-        textures = new HashMap<>();
+        // Assets are fetched both by the render thread and by the asset prefetch task
+        meshes = new ConcurrentHashMap<>();
+        textures = new ConcurrentHashMap<>();
         renderInstances = new LinkedHashSet<>();
-        materials = new HashMap<>();
+        renderInstanceList = new ArrayList<>();
+        instancesToPrefetch = new ConcurrentLinkedQueue<>();
+        materials = new ConcurrentHashMap<>();
         projectionMatrix = new Matrix4f();
         globalAmbient = new Vector4f(0.2f, 0.2f, 0.2f, 1.0f);
         lightSpaceMatrix = new Matrix4f();
         positionalLights = new ArrayList<>();
+        snapshotBuffer = new RenderSnapshotBuffer();
         assetManager = SQLiteAssetManager.getInstance();
     }
 
@@ -72,7 +88,11 @@ public class RenderSceneImpl implements RenderScene {
         if (mesh == null) {
             try {
                 mesh = assetManager.fetchMesh(meshID);
-                meshes.put(meshID, mesh);
+                // Another thread may have fetched the same asset in the meantime
+                Mesh existing = meshes.putIfAbsent(meshID, mesh);
+                if (existing != null) {
+                    mesh = existing;
+                }
             } catch (Exception e) {
                 System.out.println(e.getMessage());
                 mesh = null;
@@ -95,7 +115,11 @@ public class RenderSceneImpl implements RenderScene {
         if (texture == null) {
             try {
                 texture = assetManager.fetchTexture(textureID);
-                textures.put(textureID, texture);
+                // Another thread may have fetched the same asset in the meantime
+                Texture existing = textures.putIfAbsent(textureID, texture);
+                if (existing != null) {
+                    texture = existing;
+                }
             } catch (Exception e) {
                 System.out.println(e.getMessage());
                 texture = null;
@@ -114,11 +138,49 @@ public class RenderSceneImpl implements RenderScene {
     }
 
     public void addRenderInstance(RenderInstance instance) {
-        renderInstances.add(instance);
+        if (renderInstances.add(instance)) {
+            renderInstanceListDirty = true;
+            instancesToPrefetch.add(instance);
+        }
+    }
+
+    /**
+     * Add many render instances at once. The instances are queued for asset prefetching
+     * together, and the instance list is rebuilt once at the next extraction.
+     * @param instances The instances to add.
+     */
+    public void addRenderInstances(Collection<? extends RenderInstance> instances) {
+        for (RenderInstance instance : instances) {
+            if (renderInstances.add(instance)) {
+                renderInstanceListDirty = true;
+                instancesToPrefetch.add(instance);
+            }
+        }
     }
 
     public void removeRenderInstance(RenderInstance instance) {
-        renderInstances.remove(instance);
+        if (renderInstances.remove(instance)) {
+            renderInstanceListDirty = true;
+        }
+    }
+
+    /**
+     * Fetches the mesh, material and textures of render instances that were added since the 
+     * last call, so that the render thread doesn't have to wait for the asset database. 
+     * Can run in parallel with the simulation.
+     */
+    public void prefetchAssets() {
+        RenderInstance instance;
+        while ((instance = instancesToPrefetch.poll()) != null) {
+            getMesh(instance.getMeshID());
+            getMaterial(instance.getMaterialID());
+            if (instance.isTexturingEnabled()) {
+                getTexture(instance.getTextureID());
+            }
+            if (instance.isNormalMapEnabled()) {
+                getTexture(instance.getNormalMapID());
+            }
+        }
     }
 
     @Override
@@ -135,13 +197,8 @@ public class RenderSceneImpl implements RenderScene {
     }
 
     @Override
-    public Matrix4f updateProjectionMatrix(float aspectRatio) {
+    public void setAspectRatio(float aspectRatio) {
         this.aspectRatio = aspectRatio;
-        if (camera == null) {
-            return new Matrix4f();
-        }
-        projectionMatrix = camera.getProjectionMatrix(aspectRatio);
-        return projectionMatrix;
     }
 
     @Override
@@ -299,7 +356,11 @@ public class RenderSceneImpl implements RenderScene {
         if (material == null) {
             try {
                 material = assetManager.fetchMaterial(materialID);
-                materials.put(materialID, material);
+                // Another thread may have fetched the same asset in the meantime
+                Material existing = materials.putIfAbsent(materialID, material);
+                if (existing != null) {
+                    material = existing;
+                }
             } catch (Exception e) {
                 material = Materials.DEFAULT;
             }
@@ -311,6 +372,65 @@ public class RenderSceneImpl implements RenderScene {
         materials.put(material.getID(), material);
     }
 
+    /**
+     * Copies the current state of the scene into a new render snapshot and publishes it to the 
+     * renderer. Must be called after the simulation has been updated, while nothing modifies
+     * the scene.
+     * @param alpha The factor used to interpolate render instances between the last two
+     * simulation states.
+     * @param scheduler The scheduler to copy the instances in parallel with, or null to copy
+     * them on the calling thread.
+     */
+    public void extractSnapshot(float alpha, TaskScheduler scheduler) {
+        if (renderInstanceListDirty) {
+            renderInstanceList.clear();
+            renderInstanceList.addAll(renderInstances);
+            renderInstanceListDirty = false;
+        }
+
+        RenderSnapshot snapshot = snapshotBuffer.getWriteSnapshot();
+        int count = renderInstanceList.size();
+        snapshot.beginInstances(count);
+        TaskScheduler.RangeAction copyInstances = (from, to) -> {
+            Matrix4f matrixHelper = new Matrix4f();
+            for (int i = from; i < to; i++) {
+                snapshot.setInstance(i, renderInstanceList.get(i), alpha, matrixHelper);
+            }
+        };
+        if (scheduler != null) {
+            scheduler.parallelFor(count, EXTRACTION_CHUNK_SIZE, copyInstances);
+        } else {
+            copyInstances.run(0, count);
+        }
+
+        if (camera != null) {
+            projectionMatrix = camera.getProjectionMatrix(aspectRatio);
+            snapshot.setCamera(camera, aspectRatio, getLightSpaceMatrix());
+        } else {
+            snapshot.setCamera(null, aspectRatio, null);
+        }
+
+        snapshot.setDirectionalLight(directionalLight);
+        snapshot.setGlobalAmbient(globalAmbient);
+        snapshot.setPositionalLights(positionalLights);
+
+        snapshotBuffer.publish();
+    }
+
+    @Override
+    public RenderSnapshot acquireSnapshot() {
+        return snapshotBuffer.acquire();
+    }
+
+    /**
+     * Check if a snapshot has been extracted since the renderer last acquired one. Only call
+     * from the thread that acquires the snapshots.
+     * @return True if the next {@link #acquireSnapshot()} returns a new snapshot.
+     */
+    public boolean hasNewSnapshot() {
+        return snapshotBuffer.hasNewSnapshot();
+    }
+
     @Override
     public void sortRenderInstances() {
         // Sort the render instances by mesh, material, and texture
@@ -0,0 +1,356 @@
+package io.github.kuggek.engine.rendering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+import io.github.kuggek.engine.rendering.objects.Camera;
+import io.github.kuggek.engine.rendering.objects.RenderInstance;
+import io.github.kuggek.engine.rendering.objects.lights.DirectionalLight;
+import io.github.kuggek.engine.rendering.objects.lights.PositionalLight;
+
+/**
+ * A copy of all the state the renderer needs to draw a single frame. Snapshots are extracted on
+ * the simulation thread at the end of each update and then read by the render thread, so the
+ * renderer never touches game objects, transforms or lights that the simulation is mutating.
+ * The arrays of a snapshot are reused between frames and only grow when needed.
+ */
+public class RenderSnapshot {
+
+    /**
+     * The amount of floats a single positional light takes in the positional light data array.
+     * The layout is ambient (4), diffuse (4), specular (4), position (3), constant, linear,
+     * quadratic and radius attenuation.
+     */
+    public static final int POSITIONAL_LIGHT_STRIDE = 19;
+    public static final int LIGHT_AMBIENT_OFFSET = 0;
+    public static final int LIGHT_DIFFUSE_OFFSET = 4;
+    public static final int LIGHT_SPECULAR_OFFSET = 8;
+    public static final int LIGHT_POSITION_OFFSET = 12;
+    public static final int LIGHT_CONSTANT_OFFSET = 15;
+    public static final int LIGHT_LINEAR_OFFSET = 16;
+    public static final int LIGHT_QUADRATIC_OFFSET = 17;
+    public static final int LIGHT_RADIUS_OFFSET = 18;
+
+    private static final int FLAG_LIT = 1;
+    private static final int FLAG_CASTS_SHADOWS = 1 << 1;
+    private static final int FLAG_TEXTURING_ENABLED = 1 << 2;
+    private static final int FLAG_NORMAL_MAP_ENABLED = 1 << 3;
+    private static final int FLAG_DISABLED = 1 << 4;
+
+    private int instanceCount;
+    private float[] modelMatrices;
+    private int[] meshIDs;
+    private int[] materialIDs;
+    private int[] textureIDs;
+    private int[] normalMapIDs;
+    private int[] flags;
+    // Sized to the instance capacity and only written with set, so distinct indices can be
+    // written from multiple threads like the arrays
+    private final List<Map<Integer, Integer>> textureParameters;
+
+    private boolean hasCamera;
+    private Matrix4f viewMatrix;
+    private Matrix4f projectionMatrix;
+    private Matrix4f lightSpaceMatrix;
+
+    private boolean hasDirectionalLight;
+    private float[] directionalLightAmbient;
+    private float[] directionalLightDiffuse;
+    private float[] directionalLightSpecular;
+    private float[] directionalLightDirection;
+
+    private float[] globalAmbient;
+
+    private int positionalLightCount;
+    private float[] positionalLightData;
+
+    public RenderSnapshot() {
+        this(64);
+    }
+
+    public RenderSnapshot(int initialCapacity) {
+        initialCapacity = Math.max(initialCapacity, 1);
+        modelMatrices = new float[initialCapacity * 16];
+        meshIDs = new int[initialCapacity];
+        materialIDs = new int[initialCapacity];
+        textureIDs = new int[initialCapacity];
+        normalMapIDs = new int[initialCapacity];
+        flags = new int[initialCapacity];
+        textureParameters = new ArrayList<>(Collections.nCopies(initialCapacity, null));
+
+        viewMatrix = new Matrix4f();
+        projectionMatrix = new Matrix4f();
+        lightSpaceMatrix = new Matrix4f();
+
+        directionalLightAmbient = new float[4];
+        directionalLightDiffuse = new float[4];
+        directionalLightSpecular = new float[4];
+        directionalLightDirection = new float[3];
+
+        globalAmbient = new float[4];
+
+        positionalLightData = new float[POSITIONAL_LIGHT_STRIDE * 8];
+    }
+
+    /**
+     * Prepares the snapshot for the given amount of instances. The instances are then copied
+     * with {@link #setInstance(int, RenderInstance, float, Matrix4f)}, which can be called from
+     * multiple threads at once as long as each index is only written by one thread.
+     * @param count The amount of instances.
+     */
+    void beginInstances(int count) {
+        ensureInstanceCapacity(count);
+        instanceCount = count;
+
+        // Don't keep references to texture parameters of removed instances alive
+        for (int i = count; i < textureParameters.size(); i++) {
+            textureParameters.set(i, null);
+        }
+    }
+
+    /**
+     * Copies a single instance into the snapshot. Disabled instances are only marked as
+     * disabled.
+     * @param index The index of the instance in the snapshot.
+     * @param instance The instance to copy.
+     * @param alpha The factor to interpolate the model matrix between the last two simulation
+     * states with.
+     * @param matrixHelper A matrix used for intermediate results, not shared between threads.
+     */
+    void setInstance(int index, RenderInstance instance, float alpha, Matrix4f matrixHelper) {
+        if (instance.isDisabled()) {
+            flags[index] = FLAG_DISABLED;
+            textureParameters.set(index, null);
+            return;
+        }
+        instance.getInterpolatedModelMatrix(alpha, matrixHelper).get(modelMatrices, index * 16);
+        meshIDs[index] = instance.getMeshID();
+        materialIDs[index] = instance.getMaterialID();
+        textureIDs[index] = instance.getTextureID();
+        normalMapIDs[index] = instance.getNormalMapID();
+        // Texture parameters are configuration rather than per-frame state, so they are shared
+        textureParameters.set(index, instance.getTextureParameters());
+
+        int instanceFlags = 0;
+        if (instance.isLit()) {
+            instanceFlags |= FLAG_LIT;
+        }
+        if (instance.castsShadows()) {
+            instanceFlags |= FLAG_CASTS_SHADOWS;
+        }
+        if (instance.isTexturingEnabled()) {
+            instanceFlags |= FLAG_TEXTURING_ENABLED;
+        }
+        if (instance.isNormalMapEnabled()) {
+            instanceFlags |= FLAG_NORMAL_MAP_ENABLED;
+        }
+        flags[index] = instanceFlags;
+    }
+
+    private void ensureInstanceCapacity(int capacity) {
+        if (capacity <= meshIDs.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, meshIDs.length * 2);
+        modelMatrices = Arrays.copyOf(modelMatrices, newCapacity * 16);
+        meshIDs = Arrays.copyOf(meshIDs, newCapacity);
+        materialIDs = Arrays.copyOf(materialIDs, newCapacity);
+        textureIDs = Arrays.copyOf(textureIDs, newCapacity);
+        normalMapIDs = Arrays.copyOf(normalMapIDs, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+        textureParameters.addAll(Collections.nCopies(newCapacity - textureParameters.size(), null));
+    }
+
+    /**
+     * Copies the view and projection state of the given camera into the snapshot.
+     * @param camera The active camera or null if there is none.
+     * @param aspectRatio The aspect ratio of the screen.
+     * @param lightSpace The light space matrix used for shadow mapping.
+     */
+    void setCamera(Camera camera, float aspectRatio, Matrix4f lightSpace) {
+        hasCamera = camera != null;
+        if (!hasCamera) {
+            return;
+        }
+        viewMatrix.set(camera.getViewMatrix());
+        projectionMatrix.set(camera.getProjectionMatrix(aspectRatio));
+        lightSpaceMatrix.set(lightSpace);
+    }
+
+    void setDirectionalLight(DirectionalLight light) {
+        hasDirectionalLight = light != null;
+        if (!hasDirectionalLight) {
+            return;
+        }
+        copy(light.getAmbient(), directionalLightAmbient, 0);
+        copy(light.getDiffuse(), directionalLightDiffuse, 0);
+        copy(light.getSpecular(), directionalLightSpecular, 0);
+        Vector3f direction = light.getDirection();
+        directionalLightDirection[0] = direction.x;
+        directionalLightDirection[1] = direction.y;
+        directionalLightDirection[2] = direction.z;
+    }
+
+    void setGlobalAmbient(Vector4f ambient) {
+        copy(ambient, globalAmbient, 0);
+    }
+
+    void setPositionalLights(List<PositionalLight> lights) {
+        int required = lights.size() * POSITIONAL_LIGHT_STRIDE;
+        if (positionalLightData.length < required) {
+            positionalLightData = new float[Math.max(required, positionalLightData.length * 2)];
+        }
+
+        positionalLightCount = 0;
+        for (PositionalLight light : lights) {
+            if (light.isDisabled()) {
+                continue;
+            }
+            int offset = positionalLightCount++ * POSITIONAL_LIGHT_STRIDE;
+            copy(light.getAmbient(), positionalLightData, offset + LIGHT_AMBIENT_OFFSET);
+            copy(light.getDiffuse(), positionalLightData, offset + LIGHT_DIFFUSE_OFFSET);
+            copy(light.getSpecular(), positionalLightData, offset + LIGHT_SPECULAR_OFFSET);
+            Vector3f position = light.getPosition();
+            positionalLightData[offset + LIGHT_POSITION_OFFSET] = position.x;
+            positionalLightData[offset + LIGHT_POSITION_OFFSET + 1] = position.y;
+            positionalLightData[offset + LIGHT_POSITION_OFFSET + 2] = position.z;
+            positionalLightData[offset + LIGHT_CONSTANT_OFFSET] = light.getConstant();
+            positionalLightData[offset + LIGHT_LINEAR_OFFSET] = light.getLinear();
+            positionalLightData[offset + LIGHT_QUADRATIC_OFFSET] = light.getQuadratic();
+            positionalLightData[offset + LIGHT_RADIUS_OFFSET] = light.getRadius();
+        }
+    }
+
+    private static void copy(Vector4f source, float[] dest, int offset) {
+        dest[offset] = source.x;
+        dest[offset + 1] = source.y;
+        dest[offset + 2] = source.z;
+        dest[offset + 3] = source.w;
+    }
+
+    /**
+     * @return The amount of instances in the snapshot, including disabled ones.
+     */
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    /**
+     * Get the model matrices of all instances. The matrix of instance i starts at index i * 16
+     * and is stored in column-major order.
+     * @return The model matrix array. Do not modify.
+     */
+    public float[] getModelMatrices() {
+        return modelMatrices;
+    }
+
+    public int getMeshID(int instance) {
+        return meshIDs[instance];
+    }
+
+    public int getMaterialID(int instance) {
+        return materialIDs[instance];
+    }
+
+    public int getTextureID(int instance) {
+        return textureIDs[instance];
+    }
+
+    public int getNormalMapID(int instance) {
+        return normalMapIDs[instance];
+    }
+
+    public Map<Integer, Integer> getTextureParameters(int instance) {
+        return textureParameters.get(instance);
+    }
+
+    /**
+     * @return True if the instance was disabled when the snapshot was taken. Disabled instances
+     * should not be rendered, and their other values are not valid.
+     */
+    public boolean isDisabled(int instance) {
+        return (flags[instance] & FLAG_DISABLED) != 0;
+    }
+
+    public boolean isLit(int instance) {
+        return (flags[instance] & FLAG_LIT) != 0;
+    }
+
+    public boolean castsShadows(int instance) {
+        return (flags[instance] & FLAG_CASTS_SHADOWS) != 0;
+    }
+
+    public boolean isTexturingEnabled(int instance) {
+        return (flags[instance] & FLAG_TEXTURING_ENABLED) != 0;
+    }
+
+    public boolean isNormalMapEnabled(int instance) {
+        return (flags[instance] & FLAG_NORMAL_MAP_ENABLED) != 0;
+    }
+
+    /**
+     * @return True if the scene had an active camera when the snapshot was taken.
+     */
+    public boolean hasCamera() {
+        return hasCamera;
+    }
+
+    public Matrix4f getViewMatrix() {
+        return viewMatrix;
+    }
+
+    public Matrix4f getProjectionMatrix() {
+        return projectionMatrix;
+    }
+
+    public Matrix4f getLightSpaceMatrix() {
+        return lightSpaceMatrix;
+    }
+
+    /**
+     * @return True if the scene had a directional light when the snapshot was taken.
+     */
+    public boolean hasDirectionalLight() {
+        return hasDirectionalLight;
+    }
+
+    public float[] getDirectionalLightAmbient() {
+        return directionalLightAmbient;
+    }
+
+    public float[] getDirectionalLightDiffuse() {
+        return directionalLightDiffuse;
+    }
+
+    public float[] getDirectionalLightSpecular() {
+        return directionalLightSpecular;
+    }
+
+    public float[] getDirectionalLightDirection() {
+        return directionalLightDirection;
+    }
+
+    public float[] getGlobalAmbient() {
+        return globalAmbient;
+    }
+
+    public int getPositionalLightCount() {
+        return positionalLightCount;
+    }
+
+    /**
+     * Get the data of all positional lights. Each light takes {@link #POSITIONAL_LIGHT_STRIDE}
+     * floats, see the LIGHT_*_OFFSET constants for the layout.
+     * @return The positional light data array. Do not modify.
+     */
+    public float[] getPositionalLightData() {
+        return positionalLightData;
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.kuggek.engine.rendering;
+
+/**
+ * A triple buffer of render snapshots. The simulation thread always writes into its own snapshot
+ * and the render thread always reads from its own, so neither ever waits for the other. The third
+ * snapshot holds the latest published frame and is swapped in when the reader asks for it.
+ */
+public class RenderSnapshotBuffer {
+
+    private final RenderSnapshot[] snapshots;
+
+    // The write index is only touched by the writer and the read index only by the reader.
+    // The pending index is shared, so it is guarded by this buffer's lock.
+    private int writeIndex;
+    private int pendingIndex;
+    private int readIndex;
+    private boolean pendingIsNew;
+
+    public RenderSnapshotBuffer() {
+        snapshots = new RenderSnapshot[] {
+            new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot()
+        };
+        writeIndex = 0;
+        pendingIndex = 1;
+        readIndex = 2;
+        pendingIsNew = false;
+    }
+
+    /**
+     * Get the snapshot that the writer should fill in next. Only call from the writer thread.
+     * @return The snapshot to write to.
+     */
+    public RenderSnapshot getWriteSnapshot() {
+        return snapshots[writeIndex];
+    }
+
+    /**
+     * Publish the snapshot returned by {@link #getWriteSnapshot()} to the reader. If the reader
+     * has not picked up the previously published snapshot yet, that one is overwritten.
+     */
+    public synchronized void publish() {
+        int published = writeIndex;
+        writeIndex = pendingIndex;
+        pendingIndex = published;
+        pendingIsNew = true;
+    }
+
+    /**
+     * Check if a snapshot has been published since the reader last acquired one. Only call from
+     * the reader thread, then the answer stays true until the reader calls {@link #acquire()}.
+     * @return True if {@link #acquire()} would return a new snapshot.
+     */
+    public synchronized boolean hasNewSnapshot() {
+        return pendingIsNew;
+    }
+
+    /**
+     * Get the latest published snapshot. The returned snapshot stays valid until the next call
+     * to this method. Only call from the reader thread.
+     * @return The latest snapshot.
+     */
+    public synchronized RenderSnapshot acquire() {
+        if (pendingIsNew) {
+            int latest = pendingIndex;
+            pendingIndex = readIndex;
+            readIndex = latest;
+            pendingIsNew = false;
+        }
+        return snapshots[readIndex];
+    }
+}
@@ -6,14 +6,14 @@ package io.github.kuggek.engine.rendering;
 public interface Renderer {
 
     /**
-     * Renders the current scene. If the previous render is still running, do nothing.
+     * Submits the current scene for rendering. If too many frames are already in flight, the
+     * frame is dropped or the call waits, depending on the renderer's configuration.
      */
     void render();
 
     /**
-     * Renders the current scene. If force is true and the previous render is still running, 
-     * it will interrupt the previous render and start a new one. If force is false and the
-     * previous render is still running, do nothing.
+     * Submits the current scene for rendering. If force is true and too many frames are already
+     * in flight, waits until there is room for the frame instead of dropping it. 
      * @param force Whether to force the render or not.
      */
     void render(boolean force);
@@ -1,7 +1,13 @@
 package io.github.kuggek.engine.rendering;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Queue;
+
 import org.joml.Vector4f;
 
+import io.github.kuggek.engine.core.profiling.Profiler;
+import io.github.kuggek.engine.core.tasks.TaskScheduler;
 import io.github.kuggek.engine.rendering.objects.Camera;
 import io.github.kuggek.engine.rendering.objects.RenderInstance;
 import io.github.kuggek.engine.rendering.objects.SkyBox;
@@ -11,26 +17,54 @@ import io.github.kuggek.engine.rendering.opengl.shaders.SkyBoxShaderProgram;
 
 public class RenderingEngine implements Renderer, RenderingSettings {
     private Window window;
-    private RenderSceneImpl scene;
+    // Read by the render thread, only replaced while no frame is in flight, see whileIdle
+    private volatile RenderSceneImpl scene;
 
-    private OpenGLBindings bindings;
+    private final OpenGLBindings bindings;
 
     private SkyBoxShaderProgram skyBoxShader;
     
+    /**
+     * A frame that has been submitted for rendering.
+     * @param frameNumber The running number of the frame.
+     * @param submitTime The time the frame was submitted at in nanoseconds.
+     */
+    private record FrameRequest(long frameNumber, long submitTime) {}
+
+    // The render thread lives as long as the engine and renders the frames submitted to the 
+    // frame queue. All fields below are guarded by frameLock.
     private Thread renderThread;
-    private final Runnable renderRunnable = () -> {
-        window.display();
-    };
+    private final Object frameLock = new Object();
+    private final Queue<FrameRequest> frameQueue;
+    private boolean renderThreadRunning;
+    private int framesInFlight;
+    private int maxFramesInFlight = 2;
+    private boolean blockWhenFull = false;
+    private long frameBudget = 0;
+
+    private long submittedFrames;
+    private long renderedFrames;
+    private long droppedFrames;
+    private long lateFrames;
 
     public RenderingEngine() {
         scene = new RenderSceneImpl();
         bindings = new OpenGLBindings(scene);
+        frameQueue = new ArrayDeque<>();
     }
 
     public void addInstance(RenderInstance instance) {
         scene.addRenderInstance(instance);
     }
     
+    /**
+     * Add many render instances at once, see {@link RenderSceneImpl#addRenderInstances(Collection)}.
+     * @param instances The instances.
+     */
+    public void addInstances(Collection<? extends RenderInstance> instances) {
+        scene.addRenderInstances(instances);
+    }
+
     public void removeInstance(RenderInstance instance) {
         scene.removeRenderInstance(instance);
     }
@@ -50,23 +84,233 @@ public class RenderingEngine implements Renderer, RenderingSettings {
 
     @Override
     public void render(boolean force) {
-        if (renderThread != null && renderThread.isAlive()) {
-            if (force) {
-                renderThread.interrupt();
-            } else {
+        synchronized (frameLock) {
+            if (!renderThreadRunning) {
                 return;
             }
+
+            boolean block = force || blockWhenFull;
+            while (framesInFlight >= maxFramesInFlight) {
+                if (!block) {
+                    ++droppedFrames;
+                    return;
+                }
+                try {
+                    frameLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    ++droppedFrames;
+                    return;
+                }
+                if (!renderThreadRunning) {
+                    return;
+                }
+            }
+
+            ++framesInFlight;
+            frameQueue.add(new FrameRequest(submittedFrames++, System.nanoTime()));
+            frameLock.notifyAll();
         }
+    }
+
+    /**
+     * The loop of the render thread. Waits for submitted frames and displays them one by one.
+     * A frame is only displayed if a new snapshot was published for it. When the simulation
+     * publishes twice before the render thread picks up the first snapshot, the second
+     * snapshot replaces the first and the frame left without a snapshot is counted as dropped.
+     */
+    private void renderLoop() {
+        Profiler profiler = Profiler.getInstance();
+        profiler.registerThread(Thread.currentThread());
+        while (true) {
+            FrameRequest frame;
+            synchronized (frameLock) {
+                while (frameQueue.isEmpty() && renderThreadRunning) {
+                    try {
+                        frameLock.wait();
+                    } catch (InterruptedException e) {
+                        renderThreadRunning = false;
+                    }
+                }
+                if (!renderThreadRunning) {
+                    frameQueue.clear();
+                    framesInFlight = 0;
+                    frameLock.notifyAll();
+                    return;
+                }
+                frame = frameQueue.poll();
+            }
+
+            if (!scene.hasNewSnapshot()) {
+                synchronized (frameLock) {
+                    --framesInFlight;
+                    ++droppedFrames;
+                    frameLock.notifyAll();
+                }
+                continue;
+            }
+
+            profiler.begin("Render");
+            try {
+                window.display();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            profiler.end("Render");
 
-        renderThread = new Thread(renderRunnable);
+            synchronized (frameLock) {
+                --framesInFlight;
+                ++renderedFrames;
+                if (frameBudget > 0 && System.nanoTime() - frame.submitTime() > frameBudget) {
+                    ++lateFrames;
+                }
+                frameLock.notifyAll();
+            }
+        }
+    }
+
+    private void startRenderThread() {
+        synchronized (frameLock) {
+            if (renderThreadRunning) {
+                return;
+            }
+            renderThreadRunning = true;
+        }
+        renderThread = new Thread(this::renderLoop, "Render thread");
+        renderThread.setDaemon(true);
         renderThread.start();
     }
 
+    /**
+     * Stops the render thread after the frame that is currently being rendered. Frames that are
+     * still queued are discarded.
+     */
+    public void shutdown() {
+        synchronized (frameLock) {
+            renderThreadRunning = false;
+            frameLock.notifyAll();
+        }
+    }
+
+    /**
+     * Set the maximum amount of frames that can be queued or in rendering at the same time. 
+     * With more than one frame in flight, the simulation of the next frame can run while the 
+     * previous one is still being rendered.
+     * @param maxFramesInFlight The maximum amount of frames in flight. Must be at least 1.
+     */
+    public void setMaxFramesInFlight(int maxFramesInFlight) {
+        if (maxFramesInFlight < 1) {
+            throw new IllegalArgumentException("At least one frame must be allowed in flight");
+        }
+        synchronized (frameLock) {
+            this.maxFramesInFlight = maxFramesInFlight;
+            frameLock.notifyAll();
+        }
+    }
+
+    public int getMaxFramesInFlight() {
+        synchronized (frameLock) {
+            return maxFramesInFlight;
+        }
+    }
+
+    /**
+     * Set what happens when a frame is submitted while the maximum amount of frames is already
+     * in flight. 
+     * @param blockWhenFull If true, the submitting thread waits until a frame has been rendered
+     * (back-pressure). If false, the new frame is dropped. 
+     */
+    public void setBlockWhenFull(boolean blockWhenFull) {
+        synchronized (frameLock) {
+            this.blockWhenFull = blockWhenFull;
+        }
+    }
+
+    /**
+     * Set the time budget of a single frame. Frames that take longer than this from being 
+     * submitted to being displayed are counted as late.
+     * @param frameBudget The frame budget in nanoseconds, or 0 to not track late frames.
+     */
+    public void setFrameBudget(long frameBudget) {
+        synchronized (frameLock) {
+            this.frameBudget = frameBudget;
+        }
+    }
+
+    /**
+     * @return The amount of frames that have been submitted for rendering.
+     */
+    public long getSubmittedFrames() {
+        synchronized (frameLock) {
+            return submittedFrames;
+        }
+    }
+
+    /**
+     * @return The amount of frames that have been rendered.
+     */
+    public long getRenderedFrames() {
+        synchronized (frameLock) {
+            return renderedFrames;
+        }
+    }
+
+    /**
+     * @return The amount of frames that were dropped because too many frames were in flight,
+     * or because a newer snapshot replaced theirs before they were rendered.
+     */
+    public long getDroppedFrames() {
+        synchronized (frameLock) {
+            return droppedFrames;
+        }
+    }
 
+    /**
+     * @return The amount of frames that took longer than the frame budget to be displayed.
+     */
+    public long getLateFrames() {
+        synchronized (frameLock) {
+            return lateFrames;
+        }
+    }
+
+
+    /**
+     * Runs an action while no frame is queued or being rendered, so the render thread never
+     * sees the scene or the GL locations half changed. Waits for the frames in flight to be
+     * rendered first, and frames submitted in the meantime wait until the action has run.
+     * @param action The action.
+     */
+    private void whileIdle(Runnable action) {
+        synchronized (frameLock) {
+            boolean interrupted = false;
+            while (framesInFlight > 0 && renderThreadRunning && Thread.currentThread() != renderThread) {
+                try {
+                    frameLock.wait();
+                } catch (InterruptedException e) {
+                    // The frames in flight have to finish either way
+                    interrupted = true;
+                }
+            }
+            action.run();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Replaces the scene that is rendered. Waits for the frames in flight to be rendered first.
+     * The window keeps listening to the same bindings, which are pointed at the new scene.
+     */
     @Override
     public void setRenderScene(RenderScene scene) {
-        this.scene = (RenderSceneImpl) scene;
-        bindings = new OpenGLBindings(this.scene);
+        RenderSceneImpl newScene = (RenderSceneImpl) scene;
+        whileIdle(() -> {
+            this.scene = newScene;
+            bindings.getLocations().reset();
+            bindings.setScene(newScene);
+        });
     }
 
 
@@ -74,15 +318,49 @@ public class RenderingEngine implements Renderer, RenderingSettings {
     public void linkToWindow(Window window) {
         this.window = window;
         window.registerEventListener(bindings);
+        startRenderThread();
     }
 
+    /**
+     * Replaces the scene with an empty one that keeps the sky box. Waits for the frames in
+     * flight to be rendered first.
+     */
     public void clear() {
-        SkyBox skyBox = scene.getSkyBox();
-        scene = new RenderSceneImpl();
-        scene.setSkyBox(skyBox);
+        RenderSceneImpl newScene = new RenderSceneImpl();
+        whileIdle(() -> {
+            newScene.setSkyBox(scene.getSkyBox());
+            scene = newScene;
+            bindings.getLocations().reset();
+            bindings.setScene(newScene);
+        });
+    }
+
+    /**
+     * Extracts the state of the scene into a render snapshot for the next frame to be rendered.
+     * Call this at the end of each simulation update, before {@link #render()}.
+     * @param alpha The factor used to interpolate render instances between the last two 
+     * simulation states, between 0 (previous state) and 1 (current state).
+     */
+    public void extractSnapshot(float alpha) {
+        scene.extractSnapshot(alpha, null);
+    }
+
+    /**
+     * Extracts the state of the scene into a render snapshot, copying the render instances in
+     * parallel on the given scheduler.
+     * @param alpha The interpolation factor, see {@link #extractSnapshot(float)}.
+     * @param scheduler The scheduler to run the extraction on.
+     */
+    public void extractSnapshot(float alpha, TaskScheduler scheduler) {
+        scene.extractSnapshot(alpha, scheduler);
+    }
 
-        bindings.getLocations().reset();
-        bindings.setScene(scene);
+    /**
+     * Fetches the assets of newly added render instances ahead of rendering.
+     * @see RenderSceneImpl#prefetchAssets()
+     */
+    public void prefetchAssets() {
+        scene.prefetchAssets();
     }
 
     public void setSkyBox(SkyBox skyBox) {
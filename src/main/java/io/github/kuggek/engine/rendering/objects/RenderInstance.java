@@ -15,6 +15,14 @@ public interface RenderInstance {
 
     Matrix4f getModelMatrix();
 
+    /**
+     * Calculates the model matrix interpolated between the last two simulation states.
+     * @param alpha The interpolation factor between 0 (previous state) and 1 (current state).
+     * @param dest The matrix to store the result in.
+     * @return The destination matrix.
+     */
+    Matrix4f getInterpolatedModelMatrix(float alpha, Matrix4f dest);
+
     int getMeshID();
 
     int getMaterialID();
@@ -1,11 +1,12 @@
 package io.github.kuggek.engine.rendering.opengl;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL4;
 
+import io.github.kuggek.engine.core.collections.IntIntMap;
+import io.github.kuggek.engine.core.profiling.events.GLUploadEvent;
 import io.github.kuggek.engine.rendering.objects.Mesh;
 import io.github.kuggek.engine.rendering.objects.Meshes;
 import io.github.kuggek.engine.rendering.objects.RenderInstance;
@@ -23,22 +24,22 @@ public class GLLocations {
     /**
      * Contains the vertex data locations for each mesh. The key is the mesh's ID.
      */
-    private Map<Integer, Integer> meshVBOs;
+    private IntIntMap meshVBOs;
 
     /**
      * Contains the index data locations for each mesh. The key is the mesh's ID.
      */
-    private Map<Integer, Integer> meshIndices;
+    private IntIntMap meshIndices;
 
     /**
      * Contains the tangent data locations for each mesh. The key is the mesh's ID.
      */
-    private Map<Integer, Integer> meshTangents;
+    private IntIntMap meshTangents;
 
     /**
      * Contains the texture IDs for each texture. The key is the texture's ID.
      */
-    private Map<Integer, Integer> textureLocations;
+    private IntIntMap textureLocations;
     
     /**
      * Contains the textures that are currently active per texture unit. 
@@ -52,11 +53,11 @@ public class GLLocations {
     private boolean resetOnNextFrame = false;
 
     public GLLocations(int textureUnitAmount) {
-        meshVBOs = new HashMap<>();
-        meshIndices = new HashMap<>();
-        meshTangents = new HashMap<>();
+        meshVBOs = new IntIntMap();
+        meshIndices = new IntIntMap();
+        meshTangents = new IntIntMap();
 
-        textureLocations = new HashMap<>();
+        textureLocations = new IntIntMap();
         activeTextureUnits = new int[textureUnitAmount];
         for (int i = 0; i < activeTextureUnits.length; ++i) {
             activeTextureUnits[i] = -1;
@@ -89,7 +90,7 @@ public class GLLocations {
      * @param meshID The ID of the mesh.
      * @return The VBO location or -1 if the mesh does not exist.
      */
-    public Integer getMeshVertexLoc(int meshID) {
+    public int getMeshVertexLoc(int meshID) {
         return meshVBOs.getOrDefault(meshID, -1);
     }
 
@@ -107,7 +108,7 @@ public class GLLocations {
      * @param meshID The ID of the mesh.
      * @return The VBO location or -1 if the mesh does not exist.
      */
-    public Integer getMeshIndexLoc(int meshID) {
+    public int getMeshIndexLoc(int meshID) {
         return meshIndices.getOrDefault(meshID, -1);
     }
 
@@ -125,7 +126,7 @@ public class GLLocations {
      * @param meshID The ID of the mesh.
      * @return The VBO location or -1 if the mesh does not exist.
      */
-    public Integer getMeshTangentLoc(int meshID) {
+    public int getMeshTangentLoc(int meshID) {
         return meshTangents.getOrDefault(meshID, -1);
     }
 
@@ -134,7 +135,7 @@ public class GLLocations {
      * @param textureID The ID of the texture.
      * @return The texture location or -1 if the texture does not exist.
      */
-    public Integer getTextureLocation(int textureID) {
+    public int getTextureLocation(int textureID) {
         return textureLocations.getOrDefault(textureID, -1);
     }
 
@@ -198,25 +199,25 @@ public class GLLocations {
         }
 
         if (!meshVBOs.isEmpty()) {
-            int[] meshVBOArray = meshVBOs.values().stream().mapToInt(Integer::intValue).toArray();
+            int[] meshVBOArray = meshVBOs.valuesToArray();
             gl.glDeleteBuffers(meshVBOArray.length, meshVBOArray, 0);
             meshVBOs.clear();
         }
 
         if (!meshIndices.isEmpty()) {
-            int[] meshIndexArray = meshIndices.values().stream().mapToInt(Integer::intValue).toArray();
+            int[] meshIndexArray = meshIndices.valuesToArray();
             gl.glDeleteBuffers(meshIndexArray.length, meshIndexArray, 0);
             meshIndices.clear();
         }
 
         if (!meshTangents.isEmpty()) {
-            int[] meshTangentArray = meshTangents.values().stream().mapToInt(Integer::intValue).toArray();
+            int[] meshTangentArray = meshTangents.valuesToArray();
             gl.glDeleteBuffers(meshTangentArray.length, meshTangentArray, 0);
             meshTangents.clear();
         }
 
         if (!textureLocations.isEmpty()) {
-            int[] textureArray = textureLocations.values().stream().mapToInt(Integer::intValue).toArray();
+            int[] textureArray = textureLocations.valuesToArray();
             gl.glDeleteTextures(textureArray.length, textureArray, 0);
             textureLocations.clear();
         }
@@ -231,6 +232,8 @@ public class GLLocations {
      * @param mesh The mesh to load.
      */
     public void loadMesh(GL4 gl, Mesh mesh) {
+        GLUploadEvent event = new GLUploadEvent();
+        event.begin();
         gl.glBindVertexArray(meshVAO);
 
         int[] VBO = new int[2];
@@ -259,9 +262,13 @@ public class GLLocations {
         // Add mesh data to locations
         setMeshVertexLoc(mesh.getID(), VBO[0]);
         setMeshIndexLoc(mesh.getID(), VBO[1]);
+
+        commitUploadEvent(event, "Mesh", mesh.getID(), (long) meshVertexData.length * Float.BYTES + (long) mesh.getIndices().length * Integer.BYTES);
     }
 
     public void loadMeshTangentData(GL4 gl, Mesh mesh) {
+        GLUploadEvent event = new GLUploadEvent();
+        event.begin();
         gl.glBindVertexArray(meshVAO);
 
         int[] VBO = new int[1];
@@ -280,6 +287,8 @@ public class GLLocations {
 
         // Add mesh data to locations
         meshTangents.put(mesh.getID(), VBO[0]);
+
+        commitUploadEvent(event, "Tangents", mesh.getID(), (long) tangents.length * Float.BYTES);
     }
 
     /**
@@ -288,6 +297,8 @@ public class GLLocations {
      * @param texture The texture to load.
      */
     public void loadTexture(GL4 gl, Texture texture) {
+        GLUploadEvent event = new GLUploadEvent();
+        event.begin();
         int[] textureName = new int[1];
         gl.glGenTextures(1, textureName, 0);
 
@@ -300,6 +311,18 @@ public class GLLocations {
         );
 
         setTextureLocation(texture.getID(), textureName[0]);
+
+        commitUploadEvent(event, "Texture", texture.getID(), (long) texture.getPixels().length * Integer.BYTES);
+    }
+
+    private void commitUploadEvent(GLUploadEvent event, String resourceType, int ID, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.resourceType = resourceType;
+            event.assetID = ID;
+            event.bytes = bytes;
+            event.commit();
+        }
     }
 
     /**
@@ -15,6 +15,7 @@ import com.jogamp.opengl.GLEventListener;
 import com.jogamp.opengl.GLException;
 
 import io.github.kuggek.engine.rendering.RenderScene;
+import io.github.kuggek.engine.rendering.RenderSnapshot;
 import io.github.kuggek.engine.rendering.opengl.shaders.BlinnPhongShaderProgram;
 import io.github.kuggek.engine.rendering.opengl.shaders.NormalMapShaderProgram;
 import io.github.kuggek.engine.rendering.opengl.shaders.ShaderProgram;
@@ -23,7 +24,8 @@ import io.github.kuggek.engine.rendering.opengl.shaders.UnlitShaderProgram;
 
 public class OpenGLBindings implements GLEventListener {
     
-    private RenderScene scene;
+    // Replaced by the rendering engine between frames, read by the thread that renders
+    private volatile RenderScene scene;
 
     private List<ShaderProgram> shaderPrograms;
 
@@ -94,17 +96,20 @@ public class OpenGLBindings implements GLEventListener {
         }
         newShaderPrograms.clear();
 
-        // Check if the view matrix is set
-        if (scene.getViewMatrix() == null) {
+        // Only read from the latest snapshot, the scene itself is being updated by the simulation
+        RenderSnapshot snapshot = scene.acquireSnapshot();
+
+        // Check if the snapshot has a camera to render from
+        if (!snapshot.hasCamera()) {
             return;
         }
 
         // Set render variables
-        renderVariables.setViewMatrix(scene.getViewMatrix());
-        renderVariables.setProjectionMatrix(scene.getProjectionMatrix());
-        renderVariables.setLightSpaceMatrix(scene.getLightSpaceMatrix());
+        renderVariables.setViewMatrix(snapshot.getViewMatrix());
+        renderVariables.setProjectionMatrix(snapshot.getProjectionMatrix());
+        renderVariables.setLightSpaceMatrix(snapshot.getLightSpaceMatrix());
         // TODO pass render instances through culling
-        renderVariables.setInstancesToRender(scene.getRenderInstances());
+        renderVariables.setSnapshot(snapshot);
 
 
         // RENDER PASSES
@@ -171,7 +176,7 @@ public class OpenGLBindings implements GLEventListener {
             viewportHeight = (int) (viewportHeight * sy);
         }
         gl.glViewport(0, 0, viewportWidth, viewportHeight);
-        scene.updateProjectionMatrix((float) viewportWidth / viewportHeight);
+        scene.setAspectRatio((float) viewportWidth / viewportHeight);
     }
 
     public RenderScene getRenderScene() {
@@ -1,28 +1,31 @@
 package io.github.kuggek.engine.rendering.opengl;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.IntPredicate;
 
 import org.joml.Matrix4f;
 
-import io.github.kuggek.engine.rendering.objects.RenderInstance;
+import io.github.kuggek.engine.rendering.RenderSnapshot;
 
 /**
- * Contains variables that are used by multiple shader programs per frame to avoid 
+ * Contains variables that are used by multiple shader programs per frame to avoid
  * calculating the same values multiple times.
  */
 public class RenderPassVariables {
-    
+
     private Matrix4f viewMatrix;
     private Matrix4f projectionMatrix;
     private Matrix4f lightSpaceMatrix;
-    private List<RenderInstance> instancesToRender;
+    private RenderSnapshot snapshot;
+    private int[] instancesToRender;
+    private int instancesToRenderCount;
+    private int[] filteredInstances;
 
     public RenderPassVariables() {
         viewMatrix = new Matrix4f();
         projectionMatrix = new Matrix4f();
         lightSpaceMatrix = new Matrix4f();
-        instancesToRender = new ArrayList<>();
+        instancesToRender = new int[64];
+        filteredInstances = new int[64];
     }
 
     public Matrix4f getViewMatrix() {
@@ -50,20 +53,72 @@ public class RenderPassVariables {
     }
 
     /**
-     * Returns a list of instances that should be rendered in the current frame. 
-     * This list should be populated with instances that pass culling tests.
-     * @return A list of instances to render
+     * Returns the render snapshot of the current frame. Shader programs should read all per-frame
+     * state from the snapshot instead of the scene.
+     * @return The render snapshot
+     */
+    public RenderSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Sets the render snapshot of the current frame and marks all of its enabled instances to 
+     * be rendered.
+     * @param snapshot The render snapshot
      */
-    public List<RenderInstance> getInstancesToRender() {
+    public void setSnapshot(RenderSnapshot snapshot) {
+        this.snapshot = snapshot;
+        int count = snapshot.getInstanceCount();
+        if (instancesToRender.length < count) {
+            instancesToRender = new int[Math.max(count, instancesToRender.length * 2)];
+            filteredInstances = new int[instancesToRender.length];
+        }
+        instancesToRenderCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (!snapshot.isDisabled(i)) {
+                instancesToRender[instancesToRenderCount++] = i;
+            }
+        }
+    }
+
+    /**
+     * Returns the snapshot indices of the instances that should be rendered in the current frame.
+     * Only the first {@link #getInstancesToRenderCount()} values are valid. This array should be
+     * populated with instances that pass culling tests.
+     * @return The snapshot indices of the instances to render
+     */
+    public int[] getInstancesToRender() {
         return instancesToRender;
     }
 
-    public void addInstanceToRender(RenderInstance instance) {
-        instancesToRender.add(instance);
+    public int getInstancesToRenderCount() {
+        return instancesToRenderCount;
     }
 
-    public void setInstancesToRender(List<RenderInstance> instancesToRender) {
-        this.instancesToRender = new ArrayList<>(instancesToRender);
+    /**
+     * Filters the instances to render with the given condition. The result is written to an array
+     * shared by all render passes, so it is only valid until the next call to this method.
+     * @param condition Condition on the snapshot index of an instance
+     * @return The amount of instances that passed the condition
+     * @see #getFilteredInstances()
+     */
+    public int filterInstancesToRender(IntPredicate condition) {
+        int count = 0;
+        for (int i = 0; i < instancesToRenderCount; i++) {
+            int instance = instancesToRender[i];
+            if (condition.test(instance)) {
+                filteredInstances[count++] = instance;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the result of the last {@link #filterInstancesToRender(IntPredicate)} call.
+     * @return The snapshot indices of the filtered instances
+     */
+    public int[] getFilteredInstances() {
+        return filteredInstances;
     }
 
     /**
@@ -73,6 +128,7 @@ public class RenderPassVariables {
         viewMatrix.identity();
         projectionMatrix.identity();
         lightSpaceMatrix.identity();
-        instancesToRender.clear();
+        snapshot = null;
+        instancesToRenderCount = 0;
     }
 }
@@ -1,7 +1,6 @@
 package io.github.kuggek.engine.rendering.opengl.shaders;
 
 import java.nio.FloatBuffer;
-import java.util.List;
 
 import org.joml.Matrix4f;
 import org.joml.Vector4f;
@@ -10,13 +9,10 @@ import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL4;
 
 import io.github.kuggek.engine.rendering.RenderScene;
+import io.github.kuggek.engine.rendering.RenderSnapshot;
 import io.github.kuggek.engine.rendering.objects.Material;
 import io.github.kuggek.engine.rendering.objects.Mesh;
-import io.github.kuggek.engine.rendering.objects.RenderInstance;
 import io.github.kuggek.engine.rendering.objects.Texture;
-import io.github.kuggek.engine.rendering.objects.lights.DirectionalLight;
-import io.github.kuggek.engine.rendering.objects.lights.EmptyDirectionalLight;
-import io.github.kuggek.engine.rendering.objects.lights.PositionalLight;
 import io.github.kuggek.engine.rendering.opengl.GLLocations;
 import io.github.kuggek.engine.rendering.opengl.RenderPassVariables;
 import io.github.kuggek.engine.rendering.opengl.shaders.Shaders.Shader;
@@ -29,7 +25,10 @@ public class BlinnPhongShaderProgram implements ShaderProgram {
 
     private FloatBuffer matrixValueHelper = Buffers.newDirectFloatBuffer(16);
 
-    private EmptyDirectionalLight emptyDirectionalLight = new EmptyDirectionalLight();
+    private Matrix4f viewMatrixInverseHelper = new Matrix4f();
+    private Vector4f viewPosHelper = new Vector4f();
+
+    private static final float[] EMPTY_LIGHT_VALUE = new float[4];
 
     private final String VERTEX_SHADER_FILE = "basic.vert";
     private final String FRAGMENT_SHADER_FILE = "basic.frag";
@@ -50,8 +49,10 @@ public class BlinnPhongShaderProgram implements ShaderProgram {
 
     @Override
     public void render(GL4 gl, RenderScene scene, GLLocations locations, RenderPassVariables renderVariables) {
-        List<RenderInstance> instancesToRender = renderVariables.getInstancesToRender().parallelStream().filter(i -> passesCondition(i)).toList();
-        if (instancesToRender.isEmpty()) {
+        RenderSnapshot snapshot = renderVariables.getSnapshot();
+        int instanceCount = renderVariables.filterInstancesToRender(i -> passesCondition(snapshot, i));
+        int[] instancesToRender = renderVariables.getFilteredInstances();
+        if (instanceCount == 0) {
             return;
         }
 
@@ -66,38 +67,39 @@ public class BlinnPhongShaderProgram implements ShaderProgram {
 
         gl.glUniformMatrix4fv(unif(gl, "lightSpaceMx"), 1, false, renderVariables.getLightSpaceMatrix().get(matrixValueHelper));
 
-        Vector4f viewPos = new Vector4f();
-        new Matrix4f(scene.getViewMatrix()).invert().getColumn(3, viewPos);
-        gl.glUniform3fv(unif(gl, "viewPos"), 1, viewPos.get(matrixValueHelper));
+        renderVariables.getViewMatrix().invert(viewMatrixInverseHelper).getColumn(3, viewPosHelper);
+        gl.glUniform3fv(unif(gl, "viewPos"), 1, viewPosHelper.get(matrixValueHelper));
 
         // Set the light uniforms
-        DirectionalLight dirLight = scene.getDirectionalLight();
-
-        if (dirLight == null) {
-            dirLight = emptyDirectionalLight;
+        if (snapshot.hasDirectionalLight()) {
+            gl.glUniform4fv(unif(gl, "dirLight.ambient"), 1, snapshot.getDirectionalLightAmbient(), 0);
+            gl.glUniform4fv(unif(gl, "dirLight.diffuse"), 1, snapshot.getDirectionalLightDiffuse(), 0);
+            gl.glUniform4fv(unif(gl, "dirLight.specular"), 1, snapshot.getDirectionalLightSpecular(), 0);
+            gl.glUniform3fv(unif(gl, "dirLight.direction"), 1, snapshot.getDirectionalLightDirection(), 0);
+        } else {
+            gl.glUniform4fv(unif(gl, "dirLight.ambient"), 1, EMPTY_LIGHT_VALUE, 0);
+            gl.glUniform4fv(unif(gl, "dirLight.diffuse"), 1, EMPTY_LIGHT_VALUE, 0);
+            gl.glUniform4fv(unif(gl, "dirLight.specular"), 1, EMPTY_LIGHT_VALUE, 0);
+            gl.glUniform3fv(unif(gl, "dirLight.direction"), 1, EMPTY_LIGHT_VALUE, 0);
         }
 
-        gl.glUniform4fv(unif(gl, "dirLight.ambient"), 1, dirLight.getAmbient().get(matrixValueHelper));
-        gl.glUniform4fv(unif(gl, "dirLight.diffuse"), 1, dirLight.getDiffuse().get(matrixValueHelper));
-        gl.glUniform4fv(unif(gl, "dirLight.specular"), 1, dirLight.getSpecular().get(matrixValueHelper));
-        gl.glUniform3fv(unif(gl, "dirLight.direction"), 1, dirLight.getDirection().get(matrixValueHelper));
-
-        gl.glUniform4fv(unif(gl, "globalAmbient"), 1, scene.getGlobalAmbient().get(matrixValueHelper));
+        gl.glUniform4fv(unif(gl, "globalAmbient"), 1, snapshot.getGlobalAmbient(), 0);
 
         // Set positional light unifforms
-        List<PositionalLight> posLights = scene.getPositionalLights();
+        float[] lightData = snapshot.getPositionalLightData();
+        int nLights = Math.min(locations.getMaxNLights(), snapshot.getPositionalLightCount());
         int nLightsLoc = unif(gl, "nLights");
-        gl.glUniform1i(nLightsLoc, Math.min(locations.getMaxNLights(), posLights.size()));
-        for (int i = 0; i < posLights.size(); ++i) {
-            PositionalLight light = posLights.get(i);
-            gl.glUniform4fv(unif(gl, "posLights[" + i + "].ambient"), 1, light.getAmbient().get(matrixValueHelper));
-            gl.glUniform4fv(unif(gl, "posLights[" + i + "].diffuse"), 1, light.getDiffuse().get(matrixValueHelper));
-            gl.glUniform4fv(unif(gl, "posLights[" + i + "].specular"), 1, light.getSpecular().get(matrixValueHelper));
-            gl.glUniform4fv(unif(gl, "posLights[" + i + "].position"), 1, light.getPosition().get(matrixValueHelper));
-            gl.glUniform1f(unif(gl, "posLights[" + i + "].attenuation.constant"), light.getConstant());
-            gl.glUniform1f(unif(gl, "posLights[" + i + "].attenuation.linear"), light.getLinear());
-            gl.glUniform1f(unif(gl, "posLights[" + i + "].attenuation.quadratic"), light.getQuadratic());
-            gl.glUniform1f(unif(gl, "posLights[" + i + "].attenuation.radius"), light.getRadius());
+        gl.glUniform1i(nLightsLoc, nLights);
+        for (int i = 0; i < nLights; ++i) {
+            int offset = i * RenderSnapshot.POSITIONAL_LIGHT_STRIDE;
+            gl.glUniform4fv(unif(gl, "posLights[" + i + "].ambient"), 1, lightData, offset + RenderSnapshot.LIGHT_AMBIENT_OFFSET);
+            gl.glUniform4fv(unif(gl, "posLights[" + i + "].diffuse"), 1, lightData, offset + RenderSnapshot.LIGHT_DIFFUSE_OFFSET);
+            gl.glUniform4fv(unif(gl, "posLights[" + i + "].specular"), 1, lightData, offset + RenderSnapshot.LIGHT_SPECULAR_OFFSET);
+            gl.glUniform3fv(unif(gl, "posLights[" + i + "].position"), 1, lightData, offset + RenderSnapshot.LIGHT_POSITION_OFFSET);
+            gl.glUniform1f(unif(gl, "posLights[" + i + "].attenuation.constant"), lightData[offset + RenderSnapshot.LIGHT_CONSTANT_OFFSET]);
+            gl.glUniform1f(unif(gl, "posLights[" + i + "].attenuation.linear"), lightData[offset + RenderSnapshot.LIGHT_LINEAR_OFFSET]);
+            gl.glUniform1f(unif(gl, "posLights[" + i + "].attenuation.quadratic"), lightData[offset + RenderSnapshot.LIGHT_QUADRATIC_OFFSET]);
+            gl.glUniform1f(unif(gl, "posLights[" + i + "].attenuation.radius"), lightData[offset + RenderSnapshot.LIGHT_RADIUS_OFFSET]);
         }
 
         // Bind the shadow map
@@ -112,8 +114,9 @@ public class BlinnPhongShaderProgram implements ShaderProgram {
         // Render all instances
         int previousMaterialID = -1;
         int previousMeshID = -1;
-        for (RenderInstance instance : instancesToRender) {
-            Mesh mesh = scene.getMesh(instance.getMeshID());
+        for (int k = 0; k < instanceCount; k++) {
+            int instance = instancesToRender[k];
+            Mesh mesh = scene.getMesh(snapshot.getMeshID(instance));
 
             // If mesh doesn't exist, skip this instance
             if (mesh == null) {
@@ -121,7 +124,7 @@ public class BlinnPhongShaderProgram implements ShaderProgram {
             }
 
             // If the mesh has changed, bind the new mesh and set the vertex attribute pointers        
-            if (previousMeshID != instance.getMeshID()) {
+            if (previousMeshID != snapshot.getMeshID(instance)) {
                 // Load the mesh into the GPU if it hasn't been loaded yet
                 if (locations.getMeshVertexLoc(mesh.getID()) == -1) {
                     locations.loadMesh(gl, mesh);
@@ -140,19 +143,19 @@ public class BlinnPhongShaderProgram implements ShaderProgram {
             }
 
                                 
-            if (previousMaterialID != instance.getMaterialID()) {
-                Material mat = scene.getMaterial(instance.getMaterialID());
+            if (previousMaterialID != snapshot.getMaterialID(instance)) {
+                Material mat = scene.getMaterial(snapshot.getMaterialID(instance));
                 gl.glUniform4fv(unif(gl, "material.ambient"), 1, mat.getAmbient().get(matrixValueHelper));
                 gl.glUniform4fv(unif(gl, "material.diffuse"), 1, mat.getDiffuse().get(matrixValueHelper));
                 gl.glUniform4fv(unif(gl, "material.specular"), 1, mat.getSpecular().get(matrixValueHelper));
                 gl.glUniform1f(unif(gl, "material.shininess"), mat.getShininess());
-                previousMaterialID = instance.getMaterialID();
+                previousMaterialID = snapshot.getMaterialID(instance);
             }
 
 
             Texture texture = null;
-            if (instance.isTexturingEnabled()){
-                texture = scene.getTexture(instance.getTextureID());
+            if (snapshot.isTexturingEnabled(instance)) {
+                texture = scene.getTexture(snapshot.getTextureID(instance));
             }
 
             if (texture != null) {
@@ -160,7 +163,7 @@ public class BlinnPhongShaderProgram implements ShaderProgram {
                     locations.loadTexture(gl, texture);
                 }
 
-                boolean textureActive = locations.setupTextureUnit(gl, instance, instanceTextureUnit);
+                boolean textureActive = locations.setupTextureUnit(gl, snapshot.getTextureParameters(instance), snapshot.getTextureID(instance), instanceTextureUnit);
 
                 if (!textureActive) {
                     gl.glUniform1i(unif(gl, "textured"), 0);
@@ -172,7 +175,7 @@ public class BlinnPhongShaderProgram implements ShaderProgram {
             }
 
             // Set the model matrix
-            gl.glUniformMatrix4fv(unif(gl, "modelMx"), 1, false, instance.getModelMatrix().get(matrixValueHelper));
+            gl.glUniformMatrix4fv(unif(gl, "modelMx"), 1, false, snapshot.getModelMatrices(), instance * 16);
 
             // Draw the mesh
             gl.glDrawElements(GL_TRIANGLES, mesh.getNumIndices(), GL_UNSIGNED_INT, 0);
@@ -200,7 +203,7 @@ public class BlinnPhongShaderProgram implements ShaderProgram {
         gl.glDeleteProgram(programID);
     }
 
-    public boolean passesCondition(RenderInstance instance) {
-        return instance.isLit() && !instance.isNormalMapEnabled();
+    public boolean passesCondition(RenderSnapshot snapshot, int instance) {
+        return snapshot.isLit(instance) && !snapshot.isNormalMapEnabled(instance);
     }
 }
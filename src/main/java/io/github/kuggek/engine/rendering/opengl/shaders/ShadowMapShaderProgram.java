@@ -3,14 +3,13 @@ package io.github.kuggek.engine.rendering.opengl.shaders;
 import static com.jogamp.opengl.GL4.*;
 
 import java.nio.FloatBuffer;
-import java.util.List;
 
 import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL4;
 
 import io.github.kuggek.engine.rendering.RenderScene;
+import io.github.kuggek.engine.rendering.RenderSnapshot;
 import io.github.kuggek.engine.rendering.objects.Mesh;
-import io.github.kuggek.engine.rendering.objects.RenderInstance;
 import io.github.kuggek.engine.rendering.opengl.GLLocations;
 import io.github.kuggek.engine.rendering.opengl.RenderPassVariables;
 import io.github.kuggek.engine.rendering.opengl.shaders.Shaders.Shader;
@@ -92,8 +91,10 @@ public class ShadowMapShaderProgram implements ShaderProgram {
      * @param locations The OpenGL locations
      */
     public void render(GL4 gl, RenderScene scene, GLLocations locations, RenderPassVariables renderVariables) {
-        List<RenderInstance> instancesToRender = renderVariables.getInstancesToRender().stream().filter(i -> passesCondition(i)).toList();
-        if (instancesToRender.isEmpty() || scene.getDirectionalLight() == null) {
+        RenderSnapshot snapshot = renderVariables.getSnapshot();
+        int instanceCount = renderVariables.filterInstancesToRender(i -> passesCondition(snapshot, i));
+        int[] instancesToRender = renderVariables.getFilteredInstances();
+        if (instanceCount == 0 || !snapshot.hasDirectionalLight()) {
             clearTexture(gl);
             return;
         }
@@ -114,8 +115,9 @@ public class ShadowMapShaderProgram implements ShaderProgram {
         gl.glUniformMatrix4fv(unif(gl, "lightSpaceMx"), 1, false, renderVariables.getLightSpaceMatrix().get(matrixValueHelper));
         
         int previousMeshID = -1;
-        for (RenderInstance instance : instancesToRender) {
-            Mesh mesh = scene.getMesh(instance.getMeshID());
+        for (int k = 0; k < instanceCount; k++) {
+            int instance = instancesToRender[k];
+            Mesh mesh = scene.getMesh(snapshot.getMeshID(instance));
 
             if (mesh == null) {
                 continue;
@@ -136,7 +138,7 @@ public class ShadowMapShaderProgram implements ShaderProgram {
             } 
 
             // Set the model matrix
-            gl.glUniformMatrix4fv(modelMxLoc, 1, false, instance.getModelMatrix().get(matrixValueHelper));
+            gl.glUniformMatrix4fv(modelMxLoc, 1, false, snapshot.getModelMatrices(), instance * 16);
             
             // Draw the mesh
             gl.glDrawElements(GL_TRIANGLES, mesh.getNumIndices(), GL_UNSIGNED_INT, 0);
@@ -177,7 +179,7 @@ public class ShadowMapShaderProgram implements ShaderProgram {
         gl.glDeleteTextures(1, new int[] {shadowTexture}, 0);
     }
 
-    public boolean passesCondition(RenderInstance instance) {
-        return instance.castsShadows();
+    public boolean passesCondition(RenderSnapshot snapshot, int instance) {
+        return snapshot.castsShadows(instance);
     }
 }
@@ -9,16 +9,15 @@ import static com.jogamp.opengl.GL.GL_FRAMEBUFFER;
 import static com.jogamp.opengl.GL4.*;
 
 import java.nio.FloatBuffer;
-import java.util.List;
 
 import org.joml.Vector4f;
 
 import com.jogamp.opengl.GLException;
 
 import io.github.kuggek.engine.rendering.RenderScene;
+import io.github.kuggek.engine.rendering.RenderSnapshot;
 import io.github.kuggek.engine.rendering.objects.Material;
 import io.github.kuggek.engine.rendering.objects.Mesh;
-import io.github.kuggek.engine.rendering.objects.RenderInstance;
 import io.github.kuggek.engine.rendering.objects.Texture;
 import io.github.kuggek.engine.rendering.opengl.GLLocations;
 import io.github.kuggek.engine.rendering.opengl.RenderPassVariables;
@@ -61,8 +60,10 @@ public class UnlitShaderProgram implements ShaderProgram {
 
     @Override
     public void render(GL4 gl, RenderScene scene, GLLocations locations, RenderPassVariables renderVariables) {
-        List<RenderInstance> instancesToRender = renderVariables.getInstancesToRender().stream().filter(i -> passesCondition(i)).toList();
-        if (instancesToRender.isEmpty()) {
+        RenderSnapshot snapshot = renderVariables.getSnapshot();
+        int instanceCount = renderVariables.filterInstancesToRender(i -> passesCondition(snapshot, i));
+        int[] instancesToRender = renderVariables.getFilteredInstances();
+        if (instanceCount == 0) {
             return;
         }
 
@@ -83,10 +84,11 @@ public class UnlitShaderProgram implements ShaderProgram {
         // Render all instances
         int previousMaterialID = -1;
         int previousMeshID = -1;
-        for (RenderInstance instance : instancesToRender) {
+        for (int k = 0; k < instanceCount; k++) {
+            int instance = instancesToRender[k];
         
-            if (previousMaterialID != instance.getMaterialID()) {
-                Material mat = scene.getMaterial(instance.getMaterialID());
+            if (previousMaterialID != snapshot.getMaterialID(instance)) {
+                Material mat = scene.getMaterial(snapshot.getMaterialID(instance));
 
                 // Calculate the average color of the material. 
                 Vector4f color = new Vector4f(mat.getAmbient());
@@ -97,7 +99,7 @@ public class UnlitShaderProgram implements ShaderProgram {
                 gl.glUniform4fv(unif(gl, "color"), 1, color.get(matrixValueHelper));
             }
 
-            Mesh mesh = scene.getMesh(instance.getMeshID());
+            Mesh mesh = scene.getMesh(snapshot.getMeshID(instance));
 
             if (mesh == null) {
                 continue;
@@ -119,8 +121,8 @@ public class UnlitShaderProgram implements ShaderProgram {
             }
 
             Texture texture = null;
-            if (instance.isTexturingEnabled()) {
-                texture = scene.getTexture(instance.getTextureID());
+            if (snapshot.isTexturingEnabled(instance)) {
+                texture = scene.getTexture(snapshot.getTextureID(instance));
             }
 
             if (texture != null) {
@@ -128,7 +130,7 @@ public class UnlitShaderProgram implements ShaderProgram {
                     locations.loadTexture(gl, texture);
                 }
 
-                boolean textureActive = locations.setupTextureUnit(gl, instance, instanceTextureUnit);
+                boolean textureActive = locations.setupTextureUnit(gl, snapshot.getTextureParameters(instance), snapshot.getTextureID(instance), instanceTextureUnit);
 
                 if (!textureActive) {
                     gl.glUniform1i(unif(gl, "textured"), 0);
@@ -139,7 +141,7 @@ public class UnlitShaderProgram implements ShaderProgram {
                 gl.glUniform1i(unif(gl, "textured"), 0);
             }
 
-            gl.glUniformMatrix4fv(unif(gl, "modelMx"), 1, false, instance.getModelMatrix().get(matrixValueHelper));
+            gl.glUniformMatrix4fv(unif(gl, "modelMx"), 1, false, snapshot.getModelMatrices(), instance * 16);
 
             gl.glDrawElements(GL_TRIANGLES, mesh.getNumIndices(), GL_UNSIGNED_INT, 0);
         }
@@ -160,7 +162,7 @@ public class UnlitShaderProgram implements ShaderProgram {
         return loc;
     }
 
-    public boolean passesCondition(RenderInstance instance) {
-        return !instance.isLit();
+    public boolean passesCondition(RenderSnapshot snapshot, int instance) {
+        return !snapshot.isLit(instance);
     }
 }
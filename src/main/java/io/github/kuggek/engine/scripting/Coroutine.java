@@ -0,0 +1,172 @@
+package io.github.kuggek.engine.scripting;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A piece of script logic that runs over several frames, started with
+ * {@link Script#startCoroutine(Runnable)}. The body of a coroutine runs on its own thread but
+ * never at the same time as the engine or another coroutine: the scripting engine hands control
+ * to the coroutine and waits until it suspends with one of the wait methods of {@link Script}
+ * or finishes. A suspended coroutine is blocked on its thread and is only looked at again by
+ * the engine when it is due, so waiting costs no time per frame, except for
+ * {@link Script#waitUntil(BooleanSupplier)} which checks its condition every frame.
+ * <p>
+ * Coroutines run on virtual threads when the runtime supports them and on daemon threads
+ * otherwise.
+ */
+public final class Coroutine {
+
+    enum Wait { NONE, FRAMES, SECONDS, CONDITION, FUTURE }
+
+    private static final ThreadLocal<Coroutine> CURRENT = new ThreadLocal<>();
+
+    private static final ThreadFactory THREAD_FACTORY = createThreadFactory();
+
+    private final Script script;
+    private final Runnable body;
+    private final int sequence;
+
+    private final Semaphore resumeSignal;
+    private final Semaphore yieldSignal;
+    private Thread thread;
+
+    private volatile boolean cancelled;
+    private volatile boolean done;
+
+    // What the coroutine is waiting for, set by the coroutine before it suspends
+    Wait wait;
+    int waitFrames;
+    float waitSeconds;
+    BooleanSupplier waitCondition;
+    CompletableFuture<?> waitFuture;
+
+    // Bumped each time the coroutine suspends, so stale queue entries can be skipped
+    int version;
+
+    Coroutine(Script script, Runnable body, int sequence) {
+        this.script = script;
+        this.body = body;
+        this.sequence = sequence;
+        resumeSignal = new Semaphore(0);
+        yieldSignal = new Semaphore(0);
+        wait = Wait.NONE;
+    }
+
+    private static ThreadFactory createThreadFactory() {
+        try {
+            // Virtual threads are a preview feature before Java 21, so they are looked up at runtime
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return runnable -> {
+                Thread thread = new Thread(runnable, "Coroutine");
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * @return The coroutine running on the current thread or null if the current thread is not
+     * running a coroutine.
+     */
+    static Coroutine current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return The script that started the coroutine.
+     */
+    public Script getScript() {
+        return script;
+    }
+
+    int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return True if the coroutine has finished, failed or was cancelled.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return True if the coroutine was cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the coroutine. If the coroutine is suspended, the wait it is suspended in throws
+     * a {@link CancellationException} the next time the engine resumes coroutines, which ends
+     * the coroutine unless it is caught.
+     */
+    public void cancel() {
+        if (done || cancelled) {
+            return;
+        }
+        cancelled = true;
+        ScriptingEngine engine = script.engine;
+        if (engine != null) {
+            engine.getCoroutines().wake(this);
+        }
+    }
+
+    /**
+     * Runs the coroutine until it suspends or finishes. Called by the engine.
+     */
+    void resume() {
+        if (done) {
+            return;
+        }
+        wait = Wait.NONE;
+        if (thread == null) {
+            if (cancelled) {
+                done = true;
+                return;
+            }
+            thread = THREAD_FACTORY.newThread(this::run);
+            thread.start();
+        } else {
+            resumeSignal.release();
+        }
+        yieldSignal.acquireUninterruptibly();
+    }
+
+    private void run() {
+        CURRENT.set(this);
+        try {
+            body.run();
+        } catch (CancellationException e) {
+            // Cancelled while suspended
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            done = true;
+            CURRENT.remove();
+            yieldSignal.release();
+        }
+    }
+
+    /**
+     * Hands control back to the engine until it resumes the coroutine. Called on the thread of
+     * the coroutine after the wait has been set.
+     */
+    void suspend() {
+        ++version;
+        yieldSignal.release();
+        resumeSignal.acquireUninterruptibly();
+        if (cancelled) {
+            throw new CancellationException("Coroutine was cancelled");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.kuggek.engine.scripting;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps the suspended coroutines of the scripting engine and resumes the ones that are due.
+ * Coroutines waiting for frames or seconds wait in queues ordered by when they are due, and
+ * coroutines waiting for a future are not kept anywhere until the future completes. All due
+ * coroutines are resumed one after another, ordered by their script like the scripts
+ * themselves and then by the order they were started in.
+ */
+class CoroutineScheduler {
+
+    private record Waiting(Coroutine coroutine, int version, long frame, double time) {}
+
+    private final Comparator<Coroutine> order;
+
+    private final PriorityQueue<Waiting> frameQueue;
+    private final PriorityQueue<Waiting> timeQueue;
+    private final List<Coroutine> conditions;
+
+    // Coroutines that were started, cancelled or whose future completed, from any thread
+    private final Queue<Coroutine> ready;
+
+    private final List<Coroutine> due;
+
+    CoroutineScheduler(Comparator<Script> scriptOrder) {
+        order = Comparator.comparing(Coroutine::getScript, scriptOrder)
+            .thenComparingInt(Coroutine::getSequence);
+        frameQueue = new PriorityQueue<>(Comparator.comparingLong(Waiting::frame));
+        timeQueue = new PriorityQueue<>(Comparator.comparingDouble(Waiting::time));
+        conditions = new ArrayList<>();
+        ready = new ConcurrentLinkedQueue<>();
+        due = new ArrayList<>();
+    }
+
+    /**
+     * Queues a coroutine to be resumed the next time coroutines are resumed. Safe to call from
+     * any thread.
+     * @param coroutine The coroutine.
+     */
+    void wake(Coroutine coroutine) {
+        ready.add(coroutine);
+    }
+
+    /**
+     * Resumes all coroutines that are due and queues them again according to what they wait
+     * for next.
+     * @param frame The current frame of the scripting engine.
+     * @param time The current time of the scripting engine in seconds.
+     */
+    void resume(long frame, double time) {
+        Coroutine coroutine;
+        while ((coroutine = ready.poll()) != null) {
+            due.add(coroutine);
+        }
+        Waiting next;
+        while ((next = frameQueue.peek()) != null && next.frame() <= frame) {
+            frameQueue.poll();
+            addDue(next);
+        }
+        while ((next = timeQueue.peek()) != null && next.time() <= time) {
+            timeQueue.poll();
+            addDue(next);
+        }
+        for (int i = conditions.size() - 1; i >= 0; i--) {
+            if (conditionMet(conditions.get(i))) {
+                conditions.remove(i);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        due.sort(order);
+        for (int i = 0; i < due.size(); i++) {
+            Coroutine current = due.get(i);
+            // A coroutine can be due twice, e.g. when it is cancelled and its wait ends
+            if (i > 0 && due.get(i - 1) == current) {
+                continue;
+            }
+            current.resume();
+            if (!current.isDone()) {
+                suspend(current, frame, time);
+            } else {
+                current.getScript().removeCoroutine(current);
+            }
+        }
+        due.clear();
+    }
+
+    private void addDue(Waiting waiting) {
+        if (waiting.version() == waiting.coroutine().version && !waiting.coroutine().isDone()) {
+            due.add(waiting.coroutine());
+        }
+    }
+
+    private boolean conditionMet(Coroutine coroutine) {
+        if (coroutine.isDone()) {
+            return true;
+        }
+        boolean met;
+        try {
+            met = coroutine.isCancelled() || coroutine.waitCondition.getAsBoolean();
+        } catch (Exception e) {
+            e.printStackTrace();
+            coroutine.cancel();
+            met = true;
+        }
+        if (met && !coroutine.isCancelled()) {
+            // Cancelled coroutines are in the ready queue already
+            due.add(coroutine);
+        }
+        return met;
+    }
+
+    private void suspend(Coroutine coroutine, long frame, double time) {
+        int version = coroutine.version;
+        switch (coroutine.wait) {
+            case FRAMES -> frameQueue.add(new Waiting(coroutine, version, frame + coroutine.waitFrames, 0));
+            case SECONDS -> timeQueue.add(new Waiting(coroutine, version, 0, time + coroutine.waitSeconds));
+            case CONDITION -> conditions.add(coroutine);
+            case FUTURE -> coroutine.waitFuture.whenComplete((result, failure) -> wake(coroutine));
+            case NONE -> {
+                // Resumed to unwind after being cancelled
+            }
+        }
+    }
+
+    /**
+     * Cancels all coroutines of a script and lets them unwind.
+     * @param script The script.
+     */
+    void cancel(Script script) {
+        List<Coroutine> coroutines = script.getCoroutines();
+        if (coroutines.isEmpty()) {
+            return;
+        }
+        for (Coroutine coroutine : new ArrayList<>(coroutines)) {
+            coroutine.cancel();
+            coroutine.resume();
+        }
+        coroutines.clear();
+    }
+
+    void clear() {
+        frameQueue.clear();
+        timeQueue.clear();
+        conditions.clear();
+        ready.clear();
+        due.clear();
+    }
+}
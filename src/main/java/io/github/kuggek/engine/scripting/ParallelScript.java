@@ -0,0 +1,25 @@
+package io.github.kuggek.engine.scripting;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a script class as safe to update in parallel with other scripts. The scripting engine
+ * updates scripts of marked classes in batches on several threads before the other scripts,
+ * which are updated one after another on a single thread.
+ * <p>
+ * The {@link Script#update update} method of a marked script may only change its own game
+ * object and components. Everything else, like spawning game objects, changing components or
+ * touching shared state, must go through the command buffer or be deferred with
+ * {@link io.github.kuggek.engine.subsystems.EngineRuntimeSettings#defer(Runnable)}.
+ * {@link Script#start start} is always called on a single thread.
+ * <p>
+ * The annotation is not inherited, so every subclass has to opt in itself.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ParallelScript {
+
+}
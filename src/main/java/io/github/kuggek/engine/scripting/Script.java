@@ -1,10 +1,257 @@
 package io.github.kuggek.engine.scripting;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
 import io.github.kuggek.engine.ecs.GameComponent;
 import io.github.kuggek.engine.subsystems.EngineRuntimeSettings;
 
+/**
+ * A component with custom behaviour. Scripts are started once and then updated every frame,
+ * unless they set a tick interval with {@link #setTickInterval(int)} or
+ * {@link #setTickInterval(float)}, or are put to sleep with {@link #sleep()} or
+ * {@link #sleep(float)}. Scripts that are not due in a frame are not visited by the scripting
+ * engine at all, so scripts that only need to run a few times per second should set an
+ * interval. The delta time passed to {@link #update} is always the time since the last update
+ * of the script.
+ * <p>
+ * Logic that spans several frames can be written as a coroutine with
+ * {@link #startCoroutine(Runnable)} instead of a state machine in {@link #update}. Coroutines
+ * are resumed after all scripts have been updated.
+ */
 public abstract class Script extends GameComponent {
+
+    // Scheduling state, managed by the scripting engine
+    int tickFrames = 1;
+    float tickSeconds;
+    boolean sleeping;
+    float sleepSeconds;
+    boolean woken;
+    ScriptingEngine engine;
+    boolean scheduled;
+    int scheduleVersion;
+    boolean everyFrame;
+    boolean inFrameList;
+    double lastUpdateTime = Double.NaN;
+
+    private List<Coroutine> coroutines = Collections.emptyList();
+    private int coroutineSequence;
+
     public abstract void start(EngineRuntimeSettings settings);
 
     public abstract void update(KeyInput keyInput, float deltaTime, EngineRuntimeSettings settings);
+
+    /**
+     * Update the script every given amount of frames. The frames scripts are updated in are
+     * staggered, so scripts with the same interval are spread evenly across frames.
+     * @param frames The amount of frames between updates, 1 to update every frame.
+     */
+    public void setTickInterval(int frames) {
+        if (frames < 1) {
+            throw new IllegalArgumentException("Tick interval must be at least one frame");
+        }
+        tickFrames = frames;
+        tickSeconds = 0;
+        reschedule();
+    }
+
+    /**
+     * Update the script every given amount of seconds, or on the first frame after that time
+     * has passed. The times scripts are updated at are staggered, so scripts with the same
+     * interval are spread evenly across frames.
+     * @param seconds The time between updates, 0 to update every frame.
+     */
+    public void setTickInterval(float seconds) {
+        if (!(seconds >= 0) || Float.isInfinite(seconds)) {
+            throw new IllegalArgumentException("Tick interval must be a positive amount of seconds");
+        }
+        tickFrames = 1;
+        tickSeconds = seconds;
+        reschedule();
+    }
+
+    /**
+     * @return The amount of frames between updates, 1 if the script is updated every frame or
+     * the interval is set in seconds.
+     */
+    public int getTickFrames() {
+        return tickFrames;
+    }
+
+    /**
+     * @return The amount of seconds between updates, 0 if the interval is set in frames.
+     */
+    public float getTickSeconds() {
+        return tickSeconds;
+    }
+
+    /**
+     * Stop updating the script until {@link #wake()} is called.
+     */
+    public void sleep() {
+        sleep(Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Stop updating the script for the given amount of seconds or until {@link #wake()} is
+     * called, whichever happens first.
+     * @param seconds The time to sleep for.
+     */
+    public void sleep(float seconds) {
+        if (!(seconds >= 0)) {
+            throw new IllegalArgumentException("Sleep time must be a positive amount of seconds");
+        }
+        sleeping = true;
+        sleepSeconds = seconds;
+        reschedule();
+    }
+
+    /**
+     * Wake the script up if it is sleeping, so it is updated again from the next frame on. Can
+     * be called by other scripts or event handlers; parallel scripts have to defer the call.
+     */
+    public void wake() {
+        if (sleeping) {
+            sleeping = false;
+            woken = true;
+            reschedule();
+        }
+    }
+
+    /**
+     * @return True if the script is sleeping.
+     */
+    public boolean isSleeping() {
+        return sleeping;
+    }
+
+    /**
+     * Starts a coroutine. The coroutine first runs the next time the scripting engine resumes
+     * coroutines, which is after the scripts have been updated in the current frame, or in the
+     * next frame if it is started by another coroutine. Inside the coroutine, the wait methods
+     * of this class suspend it. The coroutine is cancelled when the script is removed.
+     * @param body The code of the coroutine.
+     * @return The coroutine.
+     */
+    public Coroutine startCoroutine(Runnable body) {
+        if (body == null) {
+            throw new IllegalArgumentException("Coroutine body must not be null");
+        }
+        ScriptingEngine current = engine;
+        if (current == null) {
+            throw new IllegalStateException("Coroutines can only be started once the script has been added to the engine");
+        }
+        Coroutine coroutine = new Coroutine(this, body, coroutineSequence++);
+        if (coroutines.isEmpty()) {
+            coroutines = new ArrayList<>();
+        }
+        coroutines.add(coroutine);
+        current.getCoroutines().wake(coroutine);
+        return coroutine;
+    }
+
+    /**
+     * Cancels all coroutines started by this script.
+     */
+    public void stopCoroutines() {
+        for (Coroutine coroutine : new ArrayList<>(coroutines)) {
+            coroutine.cancel();
+        }
+    }
+
+    List<Coroutine> getCoroutines() {
+        return coroutines;
+    }
+
+    void removeCoroutine(Coroutine coroutine) {
+        coroutines.remove(coroutine);
+    }
+
+    /**
+     * Suspends the current coroutine for the given amount of frames.
+     * @param frames The amount of frames, 1 to continue in the next frame.
+     */
+    protected final void waitFrames(int frames) {
+        if (frames < 1) {
+            throw new IllegalArgumentException("Amount of frames must be at least one");
+        }
+        Coroutine coroutine = getCurrentCoroutine();
+        coroutine.wait = Coroutine.Wait.FRAMES;
+        coroutine.waitFrames = frames;
+        coroutine.suspend();
+    }
+
+    /**
+     * Suspends the current coroutine until the given amount of seconds has passed. The 
+     * coroutine is resumed in the first frame after that time.
+     * @param seconds The time to wait for.
+     */
+    protected final void waitSeconds(float seconds) {
+        if (!(seconds >= 0)) {
+            throw new IllegalArgumentException("Wait time must be a positive amount of seconds");
+        }
+        Coroutine coroutine = getCurrentCoroutine();
+        coroutine.wait = Coroutine.Wait.SECONDS;
+        coroutine.waitSeconds = seconds;
+        coroutine.suspend();
+    }
+
+    /**
+     * Suspends the current coroutine until the condition is true. The condition is checked
+     * by the engine once per frame, so prefer the other wait methods where possible.
+     * @param condition The condition.
+     */
+    protected final void waitUntil(BooleanSupplier condition) {
+        if (condition == null) {
+            throw new IllegalArgumentException("Condition must not be null");
+        }
+        Coroutine coroutine = getCurrentCoroutine();
+        if (condition.getAsBoolean()) {
+            return;
+        }
+        coroutine.wait = Coroutine.Wait.CONDITION;
+        coroutine.waitCondition = condition;
+        coroutine.suspend();
+        coroutine.waitCondition = null;
+    }
+
+    /**
+     * Suspends the current coroutine until the future completes. The coroutine is resumed in
+     * the first frame after the future completed.
+     * @param <T> The type of the result.
+     * @param future The future.
+     * @return The result of the future.
+     * @throws java.util.concurrent.CompletionException If the future completed exceptionally.
+     */
+    protected final <T> T await(CompletableFuture<T> future) {
+        if (future == null) {
+            throw new IllegalArgumentException("Future must not be null");
+        }
+        Coroutine coroutine = getCurrentCoroutine();
+        if (!future.isDone()) {
+            coroutine.wait = Coroutine.Wait.FUTURE;
+            coroutine.waitFuture = future;
+            coroutine.suspend();
+            coroutine.waitFuture = null;
+        }
+        return future.join();
+    }
+
+    private Coroutine getCurrentCoroutine() {
+        Coroutine coroutine = Coroutine.current();
+        if (coroutine == null) {
+            throw new IllegalStateException("Can only wait inside a coroutine");
+        }
+        return coroutine;
+    }
+
+    private void reschedule() {
+        ScriptingEngine current = engine;
+        if (current != null) {
+            current.reschedule(this);
+        }
+    }
 }
@@ -1,60 +1,471 @@
 package io.github.kuggek.engine.scripting;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
+import io.github.kuggek.engine.core.profiling.Profiler;
+import io.github.kuggek.engine.core.profiling.events.ScriptUpdateEvent;
+import io.github.kuggek.engine.core.tasks.TaskScheduler;
+import io.github.kuggek.engine.ecs.GameObject;
 import io.github.kuggek.engine.subsystems.EngineRuntimeSettings;
+
+/**
+ * Starts and updates the scripts of the scene. Scripts are run in a deterministic order, by the
+ * ID of their game object and then by class name. Scripts of classes marked with
+ * {@link ParallelScript} are updated first, split into batches that run in parallel on the
+ * task scheduler. The other scripts are updated after them on the calling thread.
+ * <p>
+ * Only scripts that tick every frame are kept in the lists iterated each frame. Scripts with a
+ * tick interval or a timed sleep wait in queues ordered by the frame or time they are due at,
+ * and scripts sleeping until woken are only kept in a set, so they cost nothing until then.
+ * Intervals are aligned to a phase derived from the ID of the game object, which spreads
+ * scripts with the same interval evenly across frames.
+ * <p>
+ * Coroutines started by scripts are resumed after the scripts have been updated, see
+ * {@link Script#startCoroutine(Runnable)}.
+ * <p>
+ * Actions deferred with {@link #defer(Runnable)} are run on the calling thread once all scripts
+ * have been updated, ordered by the script that deferred them, so the result does not depend on
+ * how the parallel scripts were scheduled.
+ */
 public class ScriptingEngine {
 
-    private Set<Script> scripts;
-    private Set<Script> newScripts;
+    // Parallel scripts are run in chunks of at least this many scripts
+    private static final int PARALLEL_BATCH_SIZE = 64;
+
+    // Spreads consecutive IDs evenly over the interval
+    private static final double PHASE_STEP = 0.6180339887498949;
+
+    private static final Comparator<Script> SCRIPT_ORDER = Comparator
+        .comparingInt(ScriptingEngine::getGameObjectID)
+        .thenComparing(script -> script.getClass().getName());
+
+    private static final ClassValue<Boolean> PARALLEL = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return type.isAnnotationPresent(ParallelScript.class);
+        }
+    };
+
+    private record DeferredAction(int scriptIndex, long sequence, Runnable action) {}
+
+    private static final Comparator<DeferredAction> DEFERRED_ORDER = Comparator
+        .comparingInt(DeferredAction::scriptIndex)
+        .thenComparingLong(DeferredAction::sequence);
+
+    // Entries are left in the queues when a script is rescheduled and skipped once the version
+    // of the script has moved on
+    private record Scheduled(Script script, int version, long frame, double time) {}
+
+    // Scripts ticking every frame
+    private List<Script> serialScripts;
+    private List<Script> parallelScripts;
+    private List<Script> newScripts;
+    private boolean orderChanged;
+    private boolean frameScriptsRemoved;
+
+    // Scripts ticking at an interval or sleeping for a set time
+    private final PriorityQueue<Scheduled> frameQueue;
+    private final PriorityQueue<Scheduled> timeQueue;
+    private final Queue<Script> rescheduled;
+
+    // Scripts sleeping until woken, which are in none of the lists or queues
+    private final Set<Script> sleepingScripts;
+
+    // Scripts from the queues that are due in the current frame
+    private final List<Script> dueSerial;
+    private final List<Script> dueParallel;
+
+    private final CoroutineScheduler coroutines;
+
+    private long frame;
+    private double time;
 
     private KeyInput keyInput;
 
     private Set<Script> toRemove;
     private Set<Script> toAdd;
 
+    private final Queue<DeferredAction> deferredActions;
+    private final AtomicLong deferredSequence;
+
+    // The index of the script being updated on each thread, used to order deferred actions
+    private final ThreadLocal<int[]> currentScriptIndex;
+
     public ScriptingEngine(KeyInput keyInput) {
-        scripts = new HashSet<>();
-        newScripts = new HashSet<>();
+        serialScripts = new ArrayList<>();
+        parallelScripts = new ArrayList<>();
+        newScripts = new ArrayList<>();
+
+        frameQueue = new PriorityQueue<>(Comparator.comparingLong(Scheduled::frame));
+        timeQueue = new PriorityQueue<>(Comparator.comparingDouble(Scheduled::time));
+        rescheduled = new ConcurrentLinkedQueue<>();
+        sleepingScripts = new HashSet<>();
+        dueSerial = new ArrayList<>();
+        dueParallel = new ArrayList<>();
+        coroutines = new CoroutineScheduler(SCRIPT_ORDER);
 
         this.keyInput = keyInput;
-        
+
         toRemove = new HashSet<>();
         toAdd = new HashSet<>();
+
+        deferredActions = new ConcurrentLinkedQueue<>();
+        deferredSequence = new AtomicLong();
+        currentScriptIndex = ThreadLocal.withInitial(() -> new int[] { Integer.MAX_VALUE });
+    }
+
+    private static int getGameObjectID(Script script) {
+        GameObject gameObject = script.getGameObject();
+        return gameObject == null ? Integer.MAX_VALUE : gameObject.getID();
+    }
+
+    /**
+     * @param script The script.
+     * @return True if the class of the script is marked with {@link ParallelScript}.
+     */
+    public static boolean isParallel(Script script) {
+        return PARALLEL.get(script.getClass());
     }
 
     public void updateScripts(float dt, EngineRuntimeSettings settings) {
+        updateScripts(dt, settings, null);
+    }
+
+    /**
+     * Starts the new scripts, updates the scripts that are due and runs the deferred actions.
+     * @param dt The time since the last update in seconds.
+     * @param settings The engine settings passed to the scripts.
+     * @param scheduler The scheduler to update parallel scripts on, or null to update all
+     * scripts on the calling thread.
+     */
+    public void updateScripts(float dt, EngineRuntimeSettings settings, TaskScheduler scheduler) {
+        Profiler profiler = Profiler.getInstance();
+        int[] scriptIndex = currentScriptIndex.get();
+        ++frame;
+        time += dt;
+
         // Start new scripts (excluding disabled ones)
+        profiler.begin("Script start");
+        newScripts.sort(SCRIPT_ORDER);
         for (Script script : newScripts) {
             if (!script.isDisabled()) {
+                ScriptUpdateEvent event = new ScriptUpdateEvent();
+                event.begin();
                 script.start(settings);
+                commitScriptEvent(event, script, true);
+                script.scheduled = true;
+                schedule(script, frame);
             }
         }
         // Don't remove disabled scripts because they haven't been started yet
         newScripts.removeIf(script -> !script.isDisabled());
+        profiler.end("Script start");
+
+        // Scripts woken or rescheduled since the last update
+        processRescheduled(frame);
+        collectDueScripts();
+
+        removeFrameScripts();
+        if (orderChanged) {
+            serialScripts.sort(SCRIPT_ORDER);
+            parallelScripts.sort(SCRIPT_ORDER);
+            orderChanged = false;
+        }
 
         // Update scripts (excluding disabled ones)
-        for (Script script : scripts) {
-            if (!script.isDisabled()) {
-                script.update(keyInput, dt, settings);
+        profiler.begin("Script update");
+        int frameParallelCount = parallelScripts.size();
+        int parallelCount = frameParallelCount + dueParallel.size();
+        TaskScheduler.RangeAction updateParallel = (from, to) -> {
+            int[] index = currentScriptIndex.get();
+            for (int i = from; i < to; i++) {
+                index[0] = i;
+                if (i < frameParallelCount) {
+                    updateScript(parallelScripts.get(i), dt, settings);
+                } else {
+                    updateDueScript(dueParallel.get(i - frameParallelCount), dt, settings);
+                }
             }
+            index[0] = Integer.MAX_VALUE;
+        };
+        if (scheduler != null) {
+            scheduler.parallelFor(parallelCount, PARALLEL_BATCH_SIZE, updateParallel);
+        } else {
+            updateParallel.run(0, parallelCount);
+        }
+        for (int i = 0; i < serialScripts.size(); i++) {
+            scriptIndex[0] = parallelCount + i;
+            updateScript(serialScripts.get(i), dt, settings);
+        }
+        for (int i = 0; i < dueSerial.size(); i++) {
+            scriptIndex[0] = parallelCount + serialScripts.size() + i;
+            updateDueScript(dueSerial.get(i), dt, settings);
+        }
+        scriptIndex[0] = Integer.MAX_VALUE;
+        profiler.end("Script update");
+
+        profiler.begin("Coroutines");
+        coroutines.resume(frame, time);
+        profiler.end("Coroutines");
+
+        runDeferredActions();
+
+        // Queue the scripts that were due for their next tick
+        for (Script script : dueParallel) {
+            schedule(script, frame + 1);
+        }
+        for (Script script : dueSerial) {
+            schedule(script, frame + 1);
         }
+        dueParallel.clear();
+        dueSerial.clear();
+        processRescheduled(frame + 1);
 
         // Remove scripts
-        for (Script script : toRemove) {
-            scripts.remove(script);
+        if (!toRemove.isEmpty()) {
+            for (Script script : toRemove) {
+                unschedule(script);
+            }
+            removeFrameScripts();
+            newScripts.removeIf(toRemove::contains);
+            toRemove.clear();
         }
-        toRemove.clear();
 
-        // Add scripts
+        // Add scripts, they are scheduled once they have been started
         for (Script script : toAdd) {
-            scripts.add(script);
+            script.engine = this;
             newScripts.add(script);
         }
         toAdd.clear();
     }
 
+    private void updateScript(Script script, float dt, EngineRuntimeSettings settings) {
+        if (!script.isDisabled()) {
+            ScriptUpdateEvent event = new ScriptUpdateEvent();
+            event.begin();
+            script.update(keyInput, dt, settings);
+            script.lastUpdateTime = time;
+            commitScriptEvent(event, script, false);
+        }
+    }
+
+    private void updateDueScript(Script script, float dt, EngineRuntimeSettings settings) {
+        // Pass the time since the last update of the script instead of the last frame
+        float elapsed = Double.isNaN(script.lastUpdateTime) ? dt : (float) (time - script.lastUpdateTime);
+        updateScript(script, elapsed, settings);
+    }
+
+    /**
+     * Moves the scripts that are due in the current frame from the queues to the due lists,
+     * ordered like the scripts ticking every frame.
+     */
+    private void collectDueScripts() {
+        Scheduled next;
+        while ((next = frameQueue.peek()) != null && next.frame() <= frame) {
+            frameQueue.poll();
+            addDue(next);
+        }
+        while ((next = timeQueue.peek()) != null && next.time() <= time) {
+            timeQueue.poll();
+            addDue(next);
+        }
+        dueParallel.sort(SCRIPT_ORDER);
+        dueSerial.sort(SCRIPT_ORDER);
+    }
+
+    private void addDue(Scheduled scheduled) {
+        Script script = scheduled.script();
+        if (scheduled.version() != script.scheduleVersion) {
+            return;
+        }
+        // Invalidate the entry, so the script is only due once even if it is queued again
+        ++script.scheduleVersion;
+        script.sleeping = false;
+        if (isParallel(script)) {
+            dueParallel.add(script);
+        } else {
+            dueSerial.add(script);
+        }
+    }
+
+    private void processRescheduled(long nextFrame) {
+        Script script;
+        while ((script = rescheduled.poll()) != null) {
+            if (script.engine == this && script.scheduled) {
+                schedule(script, nextFrame);
+            }
+        }
+    }
+
+    /**
+     * Puts a started script where it belongs according to its tick interval and sleep state,
+     * replacing any earlier entry.
+     * @param script The script.
+     * @param nextFrame The earliest frame the script may be updated in.
+     */
+    private void schedule(Script script, long nextFrame) {
+        ++script.scheduleVersion;
+        boolean everyFrame = !script.sleeping && script.tickFrames == 1 && script.tickSeconds == 0;
+        if (everyFrame != script.everyFrame) {
+            script.everyFrame = everyFrame;
+            if (everyFrame && !script.inFrameList) {
+                script.inFrameList = true;
+                if (isParallel(script)) {
+                    parallelScripts.add(script);
+                } else {
+                    serialScripts.add(script);
+                }
+                orderChanged = true;
+            } else if (!everyFrame) {
+                frameScriptsRemoved = true;
+            }
+        }
+        boolean woken = script.woken;
+        script.woken = false;
+        if (everyFrame) {
+            sleepingScripts.remove(script);
+            return;
+        }
+
+        int version = script.scheduleVersion;
+        double phase = getPhase(script);
+        if (script.sleeping && Float.isInfinite(script.sleepSeconds)) {
+            sleepingScripts.add(script);
+            return;
+        }
+        sleepingScripts.remove(script);
+        if (script.sleeping) {
+            timeQueue.add(new Scheduled(script, version, 0, time + script.sleepSeconds));
+        } else if (woken) {
+            // Woken scripts are updated right away and fall back into their interval after
+            frameQueue.add(new Scheduled(script, version, nextFrame, 0));
+        } else if (script.tickSeconds > 0) {
+            double interval = script.tickSeconds;
+            double slot = Math.floor(time / interval - phase) + 1;
+            timeQueue.add(new Scheduled(script, version, 0, (slot + phase) * interval));
+        } else {
+            long interval = script.tickFrames;
+            long offset = (long) (phase * interval);
+            long dueFrame = nextFrame + Math.floorMod(offset - nextFrame, interval);
+            frameQueue.add(new Scheduled(script, version, dueFrame, 0));
+        }
+    }
+
+    private void unschedule(Script script) {
+        coroutines.cancel(script);
+        sleepingScripts.remove(script);
+        ++script.scheduleVersion;
+        script.scheduled = false;
+        if (script.everyFrame) {
+            script.everyFrame = false;
+            frameScriptsRemoved = true;
+        }
+        script.lastUpdateTime = Double.NaN;
+        script.engine = null;
+    }
+
+    private void release(Script script) {
+        if (script.engine == this) {
+            unschedule(script);
+        }
+    }
+
+    /**
+     * Removes the scripts that no longer tick every frame from the frame lists. Done in one
+     * pass before the scripts are iterated instead of each time a script changes.
+     */
+    private void removeFrameScripts() {
+        if (frameScriptsRemoved) {
+            serialScripts.removeIf(ScriptingEngine::leavesFrameList);
+            parallelScripts.removeIf(ScriptingEngine::leavesFrameList);
+            frameScriptsRemoved = false;
+        }
+    }
+
+    private static boolean leavesFrameList(Script script) {
+        if (script.everyFrame) {
+            return false;
+        }
+        script.inFrameList = false;
+        return true;
+    }
+
+    private static double getPhase(Script script) {
+        double phase = getGameObjectID(script) * PHASE_STEP;
+        return phase - Math.floor(phase);
+    }
+
+    /**
+     * Called by scripts whose tick interval or sleep state has changed. They are scheduled
+     * again on the engine's thread before or after the next update of the scripts.
+     * @param script The script.
+     */
+    void reschedule(Script script) {
+        rescheduled.add(script);
+    }
+
+    CoroutineScheduler getCoroutines() {
+        return coroutines;
+    }
+
+    private void runDeferredActions() {
+        if (deferredActions.isEmpty()) {
+            return;
+        }
+        List<DeferredAction> actions = new ArrayList<>();
+        DeferredAction deferred;
+        while ((deferred = deferredActions.poll()) != null) {
+            actions.add(deferred);
+        }
+        actions.sort(DEFERRED_ORDER);
+        for (DeferredAction action : actions) {
+            try {
+                action.action().run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void commitScriptEvent(ScriptUpdateEvent event, Script script, boolean start) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.scriptClass = script.getClass();
+            event.start = start;
+            event.commit();
+        }
+    }
+
+    /**
+     * Queues an action to run on the engine's thread after all scripts have been updated. Safe
+     * to call from parallel scripts. Actions deferred by the same script run in the order they
+     * were deferred in, and actions of different scripts in the order of the scripts. Actions
+     * deferred by the actions themselves run after the next update.
+     * @param action The action to run.
+     */
+    public void defer(Runnable action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action must not be null");
+        }
+        int scriptIndex = currentScriptIndex.get()[0];
+        deferredActions.add(new DeferredAction(scriptIndex, deferredSequence.getAndIncrement(), action));
+    }
+
+    /**
+     * @return The amount of started scripts that are updated every frame.
+     */
+    public int getFrameScriptCount() {
+        return serialScripts.size() + parallelScripts.size();
+    }
+
     /**
      * Sets a script to be added to the engine after the next update cycle
      * @param script The script to add
@@ -71,10 +482,53 @@ public class ScriptingEngine {
         toRemove.add(script);
     }
 
+    /**
+     * Removes all scripts from the engine. Their coroutines are cancelled and they are detached
+     * from the engine, so waking them later has no effect.
+     */
     public void clear() {
-        scripts.clear();
+        // Every script of the engine is in at least one of these, queue entries may be stale
+        for (Script script : serialScripts) {
+            release(script);
+        }
+        for (Script script : parallelScripts) {
+            release(script);
+        }
+        for (Script script : newScripts) {
+            release(script);
+        }
+        for (Scheduled scheduled : frameQueue) {
+            release(scheduled.script());
+        }
+        for (Scheduled scheduled : timeQueue) {
+            release(scheduled.script());
+        }
+        for (Script script : new ArrayList<>(sleepingScripts)) {
+            release(script);
+        }
+        for (Script script : rescheduled) {
+            release(script);
+        }
+        for (Script script : serialScripts) {
+            script.inFrameList = false;
+        }
+        for (Script script : parallelScripts) {
+            script.inFrameList = false;
+        }
+        serialScripts.clear();
+        parallelScripts.clear();
         newScripts.clear();
+        frameQueue.clear();
+        frameScriptsRemoved = false;
+        orderChanged = false;
+        timeQueue.clear();
+        rescheduled.clear();
+        sleepingScripts.clear();
+        coroutines.clear();
         toRemove.clear();
         toAdd.clear();
+        deferredActions.clear();
+        frame = 0;
+        time = 0;
     }
 }
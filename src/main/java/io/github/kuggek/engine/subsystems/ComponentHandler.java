@@ -0,0 +1,86 @@
+package io.github.kuggek.engine.subsystems;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Hands components of a type over to a subsystem when they are created and takes them back
+ * when they are disposed. Handlers are registered in a {@link ComponentHandlerRegistry}.
+ * @param <T> The type of components handled. Can be an interface implemented by components.
+ */
+public interface ComponentHandler<T> {
+
+    /**
+     * Called when a component is added to the engine.
+     * @param component The component.
+     */
+    void create(T component);
+
+    /**
+     * Called when many components are added to the engine at once, e.g. when the spawns of the
+     * {@link EntityCommandBuffer} are applied. Handlers can override this to insert the
+     * components in bulk. Creates the components one by one by default.
+     * @param components The components, in the order they were added.
+     */
+    default void createAll(Collection<? extends T> components) {
+        for (T component : components) {
+            create(component);
+        }
+    }
+
+    /**
+     * Called when a component is removed from the engine.
+     * @param component The component.
+     */
+    void dispose(T component);
+
+    /**
+     * Creates a handler from two actions.
+     * @param <T> The type of components handled.
+     * @param onCreate Run when a component is added to the engine.
+     * @param onDispose Run when a component is removed from the engine.
+     * @return The handler.
+     */
+    static <T> ComponentHandler<T> of(Consumer<? super T> onCreate, Consumer<? super T> onDispose) {
+        return new ComponentHandler<T>() {
+            @Override
+            public void create(T component) {
+                onCreate.accept(component);
+            }
+
+            @Override
+            public void dispose(T component) {
+                onDispose.accept(component);
+            }
+        };
+    }
+
+    /**
+     * Creates a handler from three actions, with a separate action for adding many components
+     * at once.
+     * @param <T> The type of components handled.
+     * @param onCreate Run when a component is added to the engine.
+     * @param onCreateAll Run when many components are added to the engine at once.
+     * @param onDispose Run when a component is removed from the engine.
+     * @return The handler.
+     */
+    static <T> ComponentHandler<T> of(Consumer<? super T> onCreate, Consumer<Collection<? extends T>> onCreateAll,
+            Consumer<? super T> onDispose) {
+        return new ComponentHandler<T>() {
+            @Override
+            public void create(T component) {
+                onCreate.accept(component);
+            }
+
+            @Override
+            public void createAll(Collection<? extends T> components) {
+                onCreateAll.accept(components);
+            }
+
+            @Override
+            public void dispose(T component) {
+                onDispose.accept(component);
+            }
+        };
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.kuggek.engine.subsystems;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import io.github.kuggek.engine.ecs.ComponentTypes;
+import io.github.kuggek.engine.ecs.GameComponent;
+
+/**
+ * Maps component classes to the subsystem handlers that should receive them. A component is
+ * given to every handler whose type it is an instance of, in the order the handlers were
+ * registered, so a component can belong to several subsystems.
+ * <p>
+ * The handlers of a component class are resolved the first time a component of that class is
+ * seen and cached by its {@link ComponentTypes} ID, so dispatching a component is a single
+ * array lookup. Registering a handler clears the cache.
+ */
+public class ComponentHandlerRegistry {
+
+    private static final ComponentHandler<?>[] NO_HANDLERS = new ComponentHandler<?>[0];
+
+    private record Registration(Class<?> type, CheckedHandler<?> handler) {}
+
+    /**
+     * Wraps a handler so that it can be called with any component of its type, and remembers
+     * its position in the registration order.
+     */
+    private static class CheckedHandler<T> implements ComponentHandler<GameComponent> {
+        private final Class<T> type;
+        private final ComponentHandler<? super T> handler;
+        private final int index;
+
+        private CheckedHandler(Class<T> type, ComponentHandler<? super T> handler, int index) {
+            this.type = type;
+            this.handler = handler;
+            this.index = index;
+        }
+
+        @Override
+        public void create(GameComponent component) {
+            handler.create(type.cast(component));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void createAll(Collection<? extends GameComponent> components) {
+            // The registry only batches components that are instances of the type
+            handler.createAll((Collection<? extends T>) components);
+        }
+
+        @Override
+        public void dispose(GameComponent component) {
+            handler.dispose(type.cast(component));
+        }
+    }
+
+    private final List<Registration> registrations;
+
+    // Indexed by component type ID, null if not resolved yet
+    private ComponentHandler<?>[][] resolved;
+
+    public ComponentHandlerRegistry() {
+        registrations = new ArrayList<>();
+        resolved = new ComponentHandler<?>[16][];
+    }
+
+    /**
+     * Registers a handler for all components that are instances of the given type.
+     * @param <T> The type of components handled.
+     * @param type The component class or an interface implemented by components.
+     * @param handler The handler.
+     */
+    public <T> void register(Class<T> type, ComponentHandler<? super T> handler) {
+        if (type == null || handler == null) {
+            throw new IllegalArgumentException("Type and handler must not be null");
+        }
+        registrations.add(new Registration(type, new CheckedHandler<>(type, handler, registrations.size())));
+        Arrays.fill(resolved, null);
+    }
+
+    /**
+     * Get the handlers of a component class.
+     * @param componentClass The exact class of the component.
+     * @return The handlers in registration order. Must not be modified.
+     */
+    public ComponentHandler<?>[] getHandlers(Class<? extends GameComponent> componentClass) {
+        int typeID = ComponentTypes.getID(componentClass);
+        if (typeID >= resolved.length) {
+            resolved = Arrays.copyOf(resolved, Math.max(typeID + 1, resolved.length * 2));
+        }
+        ComponentHandler<?>[] handlers = resolved[typeID];
+        if (handlers == null) {
+            handlers = resolve(componentClass);
+            resolved[typeID] = handlers;
+        }
+        return handlers;
+    }
+
+    private ComponentHandler<?>[] resolve(Class<?> componentClass) {
+        List<ComponentHandler<?>> handlers = new ArrayList<>();
+        for (Registration registration : registrations) {
+            if (registration.type().isAssignableFrom(componentClass)) {
+                handlers.add(registration.handler());
+            }
+        }
+        return handlers.isEmpty() ? NO_HANDLERS : handlers.toArray(NO_HANDLERS);
+    }
+
+    /**
+     * Gives the component to all of its handlers.
+     * @param component The component that was added to the engine.
+     */
+    @SuppressWarnings("unchecked")
+    public void create(GameComponent component) {
+        for (ComponentHandler<?> handler : getHandlers(component.getClass())) {
+            ((ComponentHandler<GameComponent>) handler).create(component);
+        }
+    }
+
+    /**
+     * Gives many components to their handlers at once. Each handler receives all of its
+     * components in one {@link ComponentHandler#createAll(Collection)} call, keeping the order
+     * of the list, and the handlers are called in registration order.
+     * @param components The components that were added to the engine.
+     */
+    public void createAll(List<? extends GameComponent> components) {
+        if (components.isEmpty()) {
+            return;
+        }
+        // Local, so handlers that add components while creating them don't disturb the batches
+        List<List<GameComponent>> batches = new ArrayList<>(registrations.size());
+        for (int i = 0; i < registrations.size(); i++) {
+            batches.add(null);
+        }
+        for (GameComponent component : components) {
+            for (ComponentHandler<?> handler : getHandlers(component.getClass())) {
+                int index = ((CheckedHandler<?>) handler).index;
+                List<GameComponent> batch = batches.get(index);
+                if (batch == null) {
+                    batch = new ArrayList<>();
+                    batches.set(index, batch);
+                }
+                batch.add(component);
+            }
+        }
+        for (int i = 0; i < batches.size(); i++) {
+            List<GameComponent> batch = batches.get(i);
+            if (batch != null) {
+                registrations.get(i).handler().createAll(batch);
+            }
+        }
+    }
+
+    /**
+     * Takes the component from all of its handlers.
+     * @param component The component that was removed from the engine.
+     */
+    @SuppressWarnings("unchecked")
+    public void dispose(GameComponent component) {
+        for (ComponentHandler<?> handler : getHandlers(component.getClass())) {
+            ((ComponentHandler<GameComponent>) handler).dispose(component);
+        }
+    }
+}
@@ -7,4 +7,19 @@ public interface EngineRuntimeSettings {
     PhysicsSettings getPhysicsSettings();
     RenderingSettings getRenderingSettings();
     GameSceneSettings getGameSceneSettings();
+
+    /**
+     * Get the buffer for spawning and destroying game objects and changing their components
+     * during the frame. The recorded changes are applied together after the scripts have run.
+     * @return The command buffer of the engine
+     */
+    EntityCommandBuffer getCommandBuffer();
+
+    /**
+     * Queue an action to run on the engine's thread after all scripts have been updated. Safe to
+     * call from scripts that are updated in parallel, see 
+     * {@link io.github.kuggek.engine.scripting.ParallelScript}.
+     * @param action The action to run
+     */
+    void defer(Runnable action);
 }
@@ -1,5 +1,12 @@
 package io.github.kuggek.engine.subsystems;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.kuggek.engine.core.profiling.Profiler;
+import io.github.kuggek.engine.core.profiling.events.FrameEvent;
+import io.github.kuggek.engine.core.tasks.TaskGraph;
+import io.github.kuggek.engine.core.tasks.TaskScheduler;
 import io.github.kuggek.engine.ecs.GameComponent;
 import io.github.kuggek.engine.ecs.GameObject;
 import io.github.kuggek.engine.ecs.GameObjectManager;
@@ -8,13 +15,21 @@ import io.github.kuggek.engine.physics.PhysicsBody;
 import io.github.kuggek.engine.physics.PhysicsCollider;
 import io.github.kuggek.engine.physics.PhysicsEngine;
 import io.github.kuggek.engine.physics.PhysicsSettings;
+import io.github.kuggek.engine.rendering.HeadlessRenderingSettings;
 import io.github.kuggek.engine.rendering.RenderingEngine;
+import io.github.kuggek.engine.rendering.RenderSnapshot;
 import io.github.kuggek.engine.rendering.RenderingSettings;
+import io.github.kuggek.engine.rendering.objects.Camera;
+import io.github.kuggek.engine.rendering.objects.Material;
+import io.github.kuggek.engine.rendering.objects.Mesh;
 import io.github.kuggek.engine.rendering.objects.RenderInstance;
+import io.github.kuggek.engine.rendering.objects.Texture;
+import io.github.kuggek.engine.rendering.objects.lights.Light;
 import io.github.kuggek.engine.rendering.objects.lights.PositionalLight;
 import io.github.kuggek.engine.scripting.KeyInput;
 import io.github.kuggek.engine.scripting.Script;
 import io.github.kuggek.engine.scripting.ScriptingEngine;
+import io.github.kuggek.engine.core.Transform;
 
 /**
  * Handles the engine that are used to update the engine. Provides an interface
@@ -23,34 +38,228 @@ import io.github.kuggek.engine.scripting.ScriptingEngine;
 public class EngineSubsystems implements EngineRuntimeSettings, GameObjectManager {
 
     private RenderingEngine renderingEngine;
+    private RenderingSettings renderingSettings;
     private PhysicsEngine physicsEngine;
     private ScriptingEngine scriptingEngine;
 
     private GameScene scene;
 
+    // Simulation time that has passed but has not yet been consumed by fixed physics steps.
+    private double accumulator;
+
+    private long frameNumber;
+
+    private ComponentHandlerRegistry componentHandlers;
+    private EntityCommandBuffer commandBuffer;
+
+    private TaskScheduler scheduler;
+    // Created on first use, so the tasks don't capture this before construction is done
+    private TaskGraph frameGraph;
+
+    // Frame state shared between the tasks of the frame graph
+    private float frameDeltaTime;
+    private int physicsSteps;
+
     public EngineSubsystems(KeyInput keyInput) {
-        renderingEngine = new RenderingEngine();
+        this(keyInput, false);
+    }
+
+    /**
+     * Creates the engine subsystems. A headless engine has no rendering engine and only runs 
+     * physics and scripts, so it does not need a display or OpenGL.
+     * @param keyInput The key input passed to scripts.
+     * @param headless True if no rendering engine should be created.
+     */
+    public EngineSubsystems(KeyInput keyInput, boolean headless) {
+        if (headless) {
+            renderingSettings = new HeadlessRenderingSettings();
+        } else {
+            renderingEngine = new RenderingEngine();
+            renderingSettings = renderingEngine;
+        }
         physicsEngine = new PhysicsEngine();
         scriptingEngine = new ScriptingEngine(keyInput);
+        componentHandlers = new ComponentHandlerRegistry();
+        commandBuffer = new EntityCommandBuffer();
+        registerComponentHandlers();
+        scheduler = new TaskScheduler();
+    }
+
+    /**
+     * Registers the handlers that hand components over to the built-in subsystems.
+     */
+    private void registerComponentHandlers() {
+        componentHandlers.register(Script.class, 
+            ComponentHandler.of(scriptingEngine::setToBeAdded, scriptingEngine::setForRemoval));
+        // Colliders before bodies, so bodies created in the same batch find their colliders
+        componentHandlers.register(PhysicsCollider.class, 
+            ComponentHandler.<PhysicsCollider>of(physicsEngine::addCollider, physicsEngine::addColliders, physicsEngine::removeCollider));
+        componentHandlers.register(PhysicsBody.class, 
+            ComponentHandler.<PhysicsBody>of(physicsEngine::addBody, physicsEngine::addBodies, physicsEngine::removeBody));
+
+        if (renderingEngine != null) {
+            componentHandlers.register(RenderInstance.class, 
+                ComponentHandler.<RenderInstance>of(renderingEngine::addInstance, renderingEngine::addInstances, renderingEngine::removeInstance));
+            // The scene is replaced when the engine is cleared, so it is looked up on each call
+            componentHandlers.register(PositionalLight.class, ComponentHandler.of(
+                light -> renderingEngine.getScene().addPositionalLight(light),
+                light -> renderingEngine.getScene().removePositionalLight(light)));
+        }
+    }
+
+    /**
+     * Registers a handler that is given every component of the given type when it is created
+     * or disposed, in addition to the handlers registered before it. Used to connect custom
+     * subsystems to the engine.
+     * @param <T> The type of components handled.
+     * @param type The component class or an interface implemented by components.
+     * @param handler The handler.
+     */
+    public <T> void registerComponentHandler(Class<T> type, ComponentHandler<? super T> handler) {
+        componentHandlers.register(type, handler);
+    }
+
+    public ComponentHandlerRegistry getComponentHandlers() {
+        return componentHandlers;
     }
 
     /**
-     * Updates the engine returning the time it took to update in nanoseconds
-     * @param dt the time since the last update
+     * Creates the tasks run each frame. The order of the tasks follows the order they are added
+     * in, unless two tasks access disjoint data, in which case they may run at the same time.
+     */
+    private TaskGraph createFrameGraph() {
+        TaskGraph graph = new TaskGraph();
+        graph.addTask("Physics", this::updatePhysics)
+            .writes(Transform.class, PhysicsBody.class, PhysicsCollider.class);
+
+        if (renderingEngine != null) {
+            // Only reads the render instances added so far, so it can overlap the simulation
+            graph.addTask("Asset prefetch", renderingEngine::prefetchAssets)
+                .reads(RenderInstance.class)
+                .writes(Mesh.class, Texture.class, Material.class);
+        }
+
+        // Scripts can touch anything
+        graph.addTask("Scripts", () -> scriptingEngine.updateScripts(frameDeltaTime, this, scheduler))
+            .writes(Object.class);
+
+        // The sync point where structural changes recorded during the frame are applied
+        graph.addTask("Apply commands", this::applyCommands)
+            .writes(Object.class);
+
+        // Updated once after all changes of the frame, so rendering only reads cached matrices
+        graph.addTask("Transforms", this::updateTransforms)
+            .writes(Transform.class);
+
+        if (renderingEngine != null) {
+            graph.addTask("Render extract", () -> renderingEngine.extractSnapshot(getInterpolationAlpha(), scheduler))
+                .reads(Transform.class, RenderInstance.class, Camera.class, Light.class)
+                .writes(RenderSnapshot.class);
+            graph.addTask("Render submit", () -> renderingEngine.render(false))
+                .writes(RenderSnapshot.class);
+        }
+        return graph;
+    }
+
+    /**
+     * @return How far the time left over after the last physics step is into the next step, 
+     * between 0 and 1.
+     */
+    private float getInterpolationAlpha() {
+        return (float) (accumulator / physicsEngine.getFixedTimeStep());
+    }
+
+    private void updateTransforms() {
+        if (scene != null) {
+            scene.updateTransforms(getInterpolationAlpha(), scheduler);
+        }
+    }
+
+    private void updatePhysics() {
+        double timeStep = physicsEngine.getFixedTimeStep();
+        int maxSteps = physicsEngine.getMaxStepsPerFrame();
+
+        // Never try to catch up more than the maximum amount of steps, otherwise a slow frame 
+        // leads to even slower frames.
+        accumulator = Math.min(accumulator + frameDeltaTime, timeStep * maxSteps);
+        physicsSteps = 0;
+        while (accumulator >= timeStep) {
+            physicsEngine.updateSimulation(timeStep);
+            accumulator -= timeStep;
+            ++physicsSteps;
+        }
+    }
+
+    /**
+     * Updates the engine returning the time it took to update in nanoseconds. The physics 
+     * simulation is advanced in fixed steps (see {@link PhysicsSettings#getFixedTimeStep()}), 
+     * as many as fit into the time that has passed. The time left over is used to interpolate 
+     * the rendered transforms between the last two simulation states.
+     * <p>
+     * The work of a frame is run as a task graph on the engine's {@link TaskScheduler}, see
+     * {@link #getFrameGraph()}.
+     * @param dt the time since the last update in seconds
      * @return the time it took to update in nanoseconds
      */
     public long update(float dt) {
         long start = System.nanoTime();
-        renderingEngine.render(false);
-        physicsEngine.updateSimulation(1 / 60.0);
-        scriptingEngine.updateScripts(dt, this);
+        Profiler profiler = Profiler.getInstance();
+        profiler.beginFrame();
+        FrameEvent frameEvent = new FrameEvent();
+        frameEvent.begin();
+
+        frameDeltaTime = dt;
+        scheduler.run(getFrameGraph());
+
+        profiler.endFrame();
+        frameEvent.end();
+        if (frameEvent.shouldCommit()) {
+            frameEvent.frameNumber = frameNumber;
+            frameEvent.physicsSteps = physicsSteps;
+            frameEvent.commit();
+        }
+        ++frameNumber;
         return System.nanoTime() - start;
     }
     
+    /**
+     * @return The rendering engine or null if the engine is headless.
+     */
     public RenderingEngine getRenderingEngine() {
         return renderingEngine;
     }
 
+    /**
+     * @return The scheduler the frame tasks are run on. Can also be used to run other work
+     * in parallel.
+     */
+    public TaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Get the tasks run each frame. The duration of each task in the latest frames is available
+     * from {@link io.github.kuggek.engine.core.tasks.Task#getStatistics()}.
+     * @return The frame task graph.
+     */
+    public TaskGraph getFrameGraph() {
+        if (frameGraph == null) {
+            frameGraph = createFrameGraph();
+        }
+        return frameGraph;
+    }
+
+    /**
+     * Stops the worker threads of the engine.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    public boolean isHeadless() {
+        return renderingEngine == null;
+    }
+
     public PhysicsEngine getPhysicsEngine() {
         return physicsEngine;
     }
@@ -61,7 +270,7 @@ public class EngineSubsystems implements EngineRuntimeSettings, GameObjectManage
 
     @Override
     public RenderingSettings getRenderingSettings() {
-        return renderingEngine;
+        return renderingSettings;
     }
 
     @Override
@@ -74,26 +283,117 @@ public class EngineSubsystems implements EngineRuntimeSettings, GameObjectManage
         return scene;
     }
     
+    @Override
+    public EntityCommandBuffer getCommandBuffer() {
+        return commandBuffer;
+    }
+
+    @Override
+    public void defer(Runnable action) {
+        scriptingEngine.defer(action);
+    }
+
+    /**
+     * Applies the commands recorded in the command buffer. Spawned game objects are added to
+     * the scene first and all of their components are handed to the subsystems in one batch
+     * (see {@link ComponentHandler#createAll(java.util.Collection)}), then they are awoken,
+     * followed by the component changes and destroys. Must not be called while the scene or the
+     * subsystems are being iterated.
+     * @throws RuntimeException If a command fails, e.g. a spawned game object has the ID of a
+     * game object already in the scene. The other commands of the batch are still applied and
+     * the first failure is thrown afterwards, with the later ones attached as suppressed.
+     */
+    public void applyCommands() {
+        if (commandBuffer.isEmpty()) {
+            return;
+        }
+        List<EntityCommandBuffer.Command> batch = commandBuffer.drain();
+        List<GameComponent> spawnedComponents = new ArrayList<>();
+        RuntimeException failure = null;
+
+        // Spawns are sorted first
+        int index = 0;
+        for (; index < batch.size() && batch.get(index).type() == EntityCommandBuffer.CommandType.SPAWN; index++) {
+            GameObject gameObject = batch.get(index).gameObject();
+            try {
+                // Checks the IDs of the whole subtree before adding anything
+                scene.addGameObject(gameObject);
+                collectSubtreeComponents(gameObject, spawnedComponents);
+            } catch (RuntimeException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        componentHandlers.createAll(spawnedComponents);
+        for (GameComponent component : spawnedComponents) {
+            GameComponent.awake(component, this);
+        }
+
+        for (; index < batch.size(); index++) {
+            EntityCommandBuffer.Command command = batch.get(index);
+            GameObject gameObject = command.gameObject();
+            try {
+                switch (command.type()) {
+                    case ADD_COMPONENT -> gameObject.addComponent(command.component(), true);
+                    case REMOVE_COMPONENT -> {
+                        if (gameObject.getComponent(command.component().getClass()) == command.component()) {
+                            gameObject.removeComponent(command.component());
+                        }
+                    }
+                    case DESTROY -> {
+                        // The game object may have been destroyed already, e.g. as a child
+                        if (gameObject.getTransform() != null) {
+                            gameObject.destroy();
+                        }
+                    }
+                    default -> throw new IllegalStateException("Unexpected command " + command.type());
+                }
+            } catch (RuntimeException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static RuntimeException addFailure(RuntimeException failure, RuntimeException e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    /**
+     * Sets this as the manager of the game object and its children and collects their
+     * components.
+     */
+    private void collectSubtreeComponents(GameObject gameObject, List<GameComponent> components) {
+        gameObject.setManager(this);
+        gameObject.forEachComponent(components::add);
+        gameObject.forEachChild(child -> collectSubtreeComponents(child, components));
+    }
+
     public void setupScene(GameScene scene) {
         clearSubsystems();
+        accumulator = 0;
         this.scene = scene;
         
-        for (GameObject gameObject : scene.getGameObjects()) {
+        List<GameComponent> components = new ArrayList<>();
+        scene.forEachGameObject(gameObject -> {
             gameObject.setManager(this);
-            addGOComponents(gameObject, false);
-        }
+            gameObject.forEachComponent(components::add);
+        });
+        componentHandlers.createAll(components);
 
-        for (GameObject gameObject : scene.getGameObjects()) {
-            for (GameComponent component : gameObject.getComponents()) {
-                GameComponent.awake(component, this);
-            }
+        for (GameComponent component : components) {
+            GameComponent.awake(component, this);
         }
     }
 
     private void addGOComponents(GameObject gameObject, boolean awake) {
-        for (GameComponent component : gameObject.getComponents()) {
-            createComponent(component, awake);
-        }
+        gameObject.forEachComponent(component -> createComponent(component, awake));
     }
 
     @Override
@@ -115,21 +415,7 @@ public class EngineSubsystems implements EngineRuntimeSettings, GameObjectManage
 
     @Override
     public void disposeComponent(GameComponent component) {
-        if (component instanceof Script) {
-            scriptingEngine.setForRemoval((Script) component);
-        }
-        else if (component instanceof PhysicsBody) {
-            physicsEngine.removeBody((PhysicsBody) component);
-        }
-        else if (component instanceof PhysicsCollider) {
-            physicsEngine.removeCollider((PhysicsCollider) component);
-        }
-        else if (component instanceof RenderInstance) {
-            renderingEngine.removeInstance((RenderInstance) component);
-        }
-        else if (component instanceof PositionalLight) {
-            renderingEngine.getScene().removePositionalLight((PositionalLight) component);
-        }
+        componentHandlers.dispose(component);
         GameComponent.dispose(component, this);
     }
     
@@ -139,21 +425,7 @@ public class EngineSubsystems implements EngineRuntimeSettings, GameObjectManage
     }
 
     public GameComponent createComponent(GameComponent component, boolean awake) {
-        if (component instanceof Script) {
-            scriptingEngine.setToBeAdded((Script) component);
-        }
-        else if (component instanceof PhysicsBody) {
-            physicsEngine.addBody((PhysicsBody) component);
-        }
-        else if (component instanceof PhysicsCollider) {
-            physicsEngine.addCollider((PhysicsCollider) component);
-        }
-        else if (component instanceof RenderInstance) {
-            renderingEngine.addInstance((RenderInstance) component);
-        }
-        else if (component instanceof PositionalLight) {
-            renderingEngine.getScene().addPositionalLight((PositionalLight) component);
-        }
+        componentHandlers.create(component);
         if (awake) {
             GameComponent.awake(component, this);
         }
@@ -161,9 +433,14 @@ public class EngineSubsystems implements EngineRuntimeSettings, GameObjectManage
     }
 
     public void clearSubsystems() {
+        commandBuffer.clear();
         scriptingEngine.clear();
         physicsEngine.clear();
-        renderingEngine.clear();
+        if (renderingEngine != null) {
+            renderingEngine.clear();
+        } else {
+            renderingSettings = new HeadlessRenderingSettings();
+        }
     }
 
     public GameScene getScene() {
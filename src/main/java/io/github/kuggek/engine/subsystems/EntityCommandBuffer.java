@@ -0,0 +1,127 @@
+package io.github.kuggek.engine.subsystems;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.kuggek.engine.ecs.GameComponent;
+import io.github.kuggek.engine.ecs.GameObject;
+
+/**
+ * Records structural changes to the scene so that they can be applied later in one batch.
+ * Spawning and destroying game objects or adding and removing components through the buffer
+ * is safe while the scene and the subsystems are being iterated, and commands can be recorded
+ * from several threads at once.
+ * <p>
+ * The engine applies the recorded commands once per frame after the scripts have been updated.
+ * Commands are applied grouped by kind: spawns first, then component additions, component
+ * removals and finally destroys. Within a kind, commands are ordered by game object ID, so the
+ * result does not depend on which thread recorded a command first.
+ */
+public class EntityCommandBuffer {
+
+    /**
+     * The kinds of commands in the order they are applied in.
+     */
+    enum CommandType {
+        SPAWN, ADD_COMPONENT, REMOVE_COMPONENT, DESTROY
+    }
+
+    record Command(CommandType type, GameObject gameObject, GameComponent component, long sequence) {}
+
+    private static final Comparator<Command> APPLY_ORDER = Comparator
+        .comparing(Command::type)
+        .thenComparingInt(command -> command.gameObject().getID())
+        .thenComparingLong(Command::sequence);
+
+    private final Queue<Command> commands;
+    private final AtomicLong sequence;
+
+    public EntityCommandBuffer() {
+        commands = new ConcurrentLinkedQueue<>();
+        sequence = new AtomicLong();
+    }
+
+    private void record(CommandType type, GameObject gameObject, GameComponent component) {
+        if (gameObject == null) {
+            throw new IllegalArgumentException("Game object must not be null");
+        }
+        commands.add(new Command(type, gameObject, component, sequence.getAndIncrement()));
+    }
+
+    /**
+     * Adds a game object and its children to the scene. The components of all spawned game
+     * objects are created before any of them are awoken, so they can find each other in
+     * their awake callbacks.
+     * @param gameObject The game object to add.
+     */
+    public void spawn(GameObject gameObject) {
+        record(CommandType.SPAWN, gameObject, null);
+    }
+
+    /**
+     * Destroys a game object and its children.
+     * @param gameObject The game object to destroy.
+     * @see GameObject#destroy()
+     */
+    public void destroy(GameObject gameObject) {
+        record(CommandType.DESTROY, gameObject, null);
+    }
+
+    /**
+     * Adds a component to a game object, replacing a previous component of the same type.
+     * @param gameObject The game object.
+     * @param component The component to add.
+     */
+    public void addComponent(GameObject gameObject, GameComponent component) {
+        if (component == null) {
+            throw new IllegalArgumentException("Component must not be null");
+        }
+        record(CommandType.ADD_COMPONENT, gameObject, component);
+    }
+
+    /**
+     * Removes a component from a game object and disposes it.
+     * @param gameObject The game object.
+     * @param component The component to remove.
+     */
+    public void removeComponent(GameObject gameObject, GameComponent component) {
+        if (component == null) {
+            throw new IllegalArgumentException("Component must not be null");
+        }
+        record(CommandType.REMOVE_COMPONENT, gameObject, component);
+    }
+
+    /**
+     * @return True if no commands are waiting to be applied.
+     */
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Removes the commands recorded so far and returns them in the order they should be
+     * applied in. Commands recorded while the returned commands are applied are kept for the
+     * next batch.
+     * @return The commands to apply.
+     */
+    List<Command> drain() {
+        List<Command> batch = new ArrayList<>();
+        Command command;
+        while ((command = commands.poll()) != null) {
+            batch.add(command);
+        }
+        batch.sort(APPLY_ORDER);
+        return batch;
+    }
+
+    /**
+     * Discards all recorded commands.
+     */
+    public void clear() {
+        commands.clear();
+    }
+}
@@ -1,5 +1,10 @@
 package io.github.kuggek.engine.subsystems;
 
+import java.util.Set;
+import java.util.function.Consumer;
+
+import io.github.kuggek.engine.ecs.ComponentQuery;
+import io.github.kuggek.engine.ecs.GameComponent;
 import io.github.kuggek.engine.ecs.GameObject;
 
 public interface GameSceneSettings {
@@ -9,4 +14,51 @@ public interface GameSceneSettings {
      * @return The game object with the given ID or null if it does not exist
      */
     GameObject getGameObject(int ID);
+
+    /**
+     * Generate an ID that is not used by any game object or component ID field in the scene,
+     * and that has not been generated before. Safe to call from several threads.
+     * @return The new ID
+     */
+    int generateID();
+
+    /**
+     * Get a read-only view of the game objects in the scene with the given tag. The view is
+     * kept up to date as tags change, so it can be stored and reused.
+     * @param tag The tag
+     * @return A read-only view of the game objects with the tag
+     */
+    Set<GameObject> getGameObjectsWithTag(String tag);
+
+    /**
+     * Get a read-only view of the game objects in the scene with the given tag.
+     * @param tagID The ID of the tag, see {@link io.github.kuggek.engine.ecs.Tags}
+     * @return A read-only view of the game objects with the tag
+     */
+    Set<GameObject> getGameObjectsWithTag(int tagID);
+
+    /**
+     * Run an action for each game object in the scene with the given tag. The action must not
+     * change the tags of game objects.
+     * @param tag The tag
+     * @param action The action to run
+     */
+    void forEachGameObjectWithTag(String tag, Consumer<? super GameObject> action);
+
+    /**
+     * Run an action for each game object in the scene with the given tag. The action must not
+     * change the tags of game objects.
+     * @param tagID The ID of the tag, see {@link io.github.kuggek.engine.ecs.Tags}
+     * @param action The action to run
+     */
+    void forEachGameObjectWithTag(int tagID, Consumer<? super GameObject> action);
+
+    /**
+     * Create a query over the game objects of the scene that have components of all the given 
+     * types. Queries are updated as the scene changes, so they should be created once and reused.
+     * @param types The exact classes of the components
+     * @return The query
+     */
+    @SuppressWarnings("unchecked")
+    ComponentQuery query(Class<? extends GameComponent>... types);
 }
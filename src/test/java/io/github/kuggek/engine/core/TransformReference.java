@@ -0,0 +1,112 @@
+package io.github.kuggek.engine.core;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+
+/**
+ * Calculates the matrices of transforms directly with JOML, as the expected results of the
+ * cached and batched ones.
+ */
+class TransformReference {
+
+    private static final float DELTA = 1e-4f;
+
+    private final Random random;
+    private final List<Transform> transforms;
+    private final Map<Transform, Transform> previousStates;
+
+    TransformReference(long seed) {
+        this.random = new Random(seed);
+        this.transforms = new ArrayList<>();
+        this.previousStates = new IdentityHashMap<>();
+    }
+
+    /**
+     * Creates a random forest of transforms, parents before their children.
+     * @return The root transforms.
+     */
+    Transform[] createHierarchy(int count) {
+        List<Transform> roots = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Transform transform = new Transform();
+            randomize(transform);
+            if (i > 0 && random.nextInt(4) != 0) {
+                transform.setParent(transforms.get(random.nextInt(i)));
+            } else {
+                roots.add(transform);
+            }
+            transforms.add(transform);
+        }
+        return roots.toArray(new Transform[0]);
+    }
+
+    List<Transform> getTransforms() {
+        return transforms;
+    }
+
+    Transform getRandomTransform() {
+        return transforms.get(random.nextInt(transforms.size()));
+    }
+
+    void randomize(Transform transform) {
+        transform.setPosition(nextFloat(), nextFloat(), nextFloat());
+        transform.setRotation(new Quaternionf().rotateXYZ(nextFloat(), nextFloat(), nextFloat()));
+        transform.setScale(0.5f + random.nextFloat(), 0.5f + random.nextFloat(), 0.5f + random.nextFloat());
+    }
+
+    void storePreviousState(Transform transform) {
+        Transform previous = new Transform();
+        previous.set(transform);
+        previousStates.put(transform, previous);
+        transform.storePreviousState();
+    }
+
+    Matrix4f world(Transform transform) {
+        Matrix4f local = new Matrix4f().translation(transform.getPosition())
+            .rotate(transform.getRotation()).scale(transform.getScale());
+        return transform.getParent() == null ? local : world(transform.getParent()).mul(local);
+    }
+
+    Matrix4f interpolated(Transform transform, float alpha) {
+        Transform previous = previousStates.get(transform);
+        Matrix4f local;
+        if (previous == null) {
+            local = new Matrix4f().translation(transform.getPosition())
+                .rotate(transform.getRotation()).scale(transform.getScale());
+        } else {
+            local = new Matrix4f()
+                .translation(previous.getPosition().lerp(transform.getPosition(), alpha))
+                .rotate(previous.getRotation().slerp(transform.getRotation(), alpha))
+                .scale(previous.getScale().lerp(transform.getScale(), alpha));
+        }
+        return transform.getParent() == null ? local : interpolated(transform.getParent(), alpha).mul(local);
+    }
+
+    /**
+     * Checks the world and interpolated world matrices of all transforms.
+     */
+    void assertMatrices(float alpha) {
+        Matrix4f actual = new Matrix4f();
+        for (int i = 0; i < transforms.size(); i++) {
+            Transform transform = transforms.get(i);
+            assertMatrix(world(transform), transform.getModelMatrix(), i);
+            assertMatrix(interpolated(transform, alpha), transform.getInterpolatedModelMatrix(alpha, actual), i);
+        }
+    }
+
+    static void assertMatrix(Matrix4f expected, Matrix4f actual, int index) {
+        assertTrue(expected.equals(actual, DELTA), () -> "transform " + index + ": expected\n" + expected + "but was\n" + actual);
+    }
+
+    private float nextFloat() {
+        return random.nextFloat() * 4 - 2;
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.kuggek.engine.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.kuggek.engine.core.tasks.TaskScheduler;
+
+public class TransformStoreTest {
+
+    private static TransformStore build(Transform[] roots) {
+        TransformStore store = new TransformStore();
+        store.rebuild(roots, roots.length);
+        return store;
+    }
+
+    @Test
+    public void testUpdateMatchesJoml() {
+        TransformReference reference = new TransformReference(1);
+        TransformStore store = build(reference.createHierarchy(300));
+        assertEquals(300, store.size());
+        for (int i = 0; i < 50; i++) {
+            reference.storePreviousState(reference.getRandomTransform());
+            reference.randomize(reference.getRandomTransform());
+        }
+        store.update(0.25f, null);
+        reference.assertMatrices(0.25f);
+        // A different interpolation factor without other changes
+        store.update(0.75f, null);
+        reference.assertMatrices(0.75f);
+    }
+
+    @Test
+    public void testReadsOfChangedTransformsMatchJoml() {
+        TransformReference reference = new TransformReference(2);
+        TransformStore store = build(reference.createHierarchy(300));
+        store.update(0.5f, null);
+        for (int i = 0; i < 100; i++) {
+            Transform transform = reference.getRandomTransform();
+            if (i % 3 == 0) {
+                reference.storePreviousState(transform);
+            }
+            reference.randomize(transform);
+            // Calculated on read, before the next update
+            reference.assertMatrices(0.5f);
+        }
+    }
+
+    @Test
+    public void testReadsDoNotClearChanges() {
+        TransformReference reference = new TransformReference(3);
+        TransformStore store = build(reference.createHierarchy(50));
+        store.update(1, null);
+        for (Transform transform : reference.getTransforms()) {
+            reference.randomize(transform);
+            // Reading must not mark the transform or its parent as up to date
+            transform.getModelMatrix();
+            if (transform.getParent() != null) {
+                transform.getParent().getModelMatrix();
+            }
+        }
+        store.update(1, null);
+        reference.assertMatrices(1);
+    }
+
+    @Test
+    public void testParallelUpdateMatchesJoml() {
+        TransformReference reference = new TransformReference(4);
+        TransformStore store = build(reference.createHierarchy(20_000));
+        TaskScheduler scheduler = new TaskScheduler(2);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                reference.storePreviousState(reference.getRandomTransform());
+                reference.randomize(reference.getRandomTransform());
+            }
+            store.update(0.5f, scheduler);
+            reference.assertMatrices(0.5f);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvalidStoreFallsBack() {
+        TransformReference reference = new TransformReference(5);
+        TransformStore store = build(reference.createHierarchy(20));
+        store.update(0, null);
+        Transform moved = reference.getTransforms().stream()
+            .filter(transform -> transform.getParent() != null).findFirst().orElseThrow();
+        moved.setParent(null);
+        assertFalse(store.isValid());
+        reference.assertMatrices(0);
+    }
+}
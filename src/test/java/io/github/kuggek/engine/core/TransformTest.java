@@ -0,0 +1,69 @@
+package io.github.kuggek.engine.core;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+public class TransformTest {
+
+    private static TransformHierarchy build(Transform[] roots) {
+        TransformHierarchy hierarchy = new TransformHierarchy();
+        hierarchy.clear();
+        for (Transform root : roots) {
+            hierarchy.add(root);
+        }
+        return hierarchy;
+    }
+
+    @Test
+    public void testUpdateMatchesJoml() {
+        TransformReference reference = new TransformReference(11);
+        TransformHierarchy hierarchy = build(reference.createHierarchy(300));
+        for (int i = 0; i < 50; i++) {
+            reference.storePreviousState(reference.getRandomTransform());
+            reference.randomize(reference.getRandomTransform());
+        }
+        hierarchy.update(0.25f);
+        reference.assertMatrices(0.25f);
+        hierarchy.update(0.75f);
+        reference.assertMatrices(0.75f);
+    }
+
+    @Test
+    public void testReadsOfChangedTransformsMatchJoml() {
+        TransformReference reference = new TransformReference(12);
+        TransformHierarchy hierarchy = build(reference.createHierarchy(300));
+        hierarchy.update(0.5f);
+        for (int i = 0; i < 100; i++) {
+            Transform transform = reference.getRandomTransform();
+            if (i % 3 == 0) {
+                reference.storePreviousState(transform);
+            }
+            reference.randomize(transform);
+            reference.assertMatrices(0.5f);
+        }
+        hierarchy.update(0.5f);
+        reference.assertMatrices(0.5f);
+    }
+
+    @Test
+    public void testOnlyTheUpdateChangesTheCache() {
+        Transform parent = new Transform();
+        Transform child = new Transform();
+        child.setParent(parent);
+        TransformHierarchy hierarchy = build(new Transform[] { parent });
+        hierarchy.update(1);
+        Matrix4f cached = child.getModelMatrix();
+
+        parent.setPosition(1, 2, 3);
+        Matrix4f read = child.getModelMatrix();
+        // Calculated into scratch, the cached matrix is left for the update
+        TransformReference.assertMatrix(new Matrix4f().translation(1, 2, 3), read, 1);
+        TransformReference.assertMatrix(new Matrix4f(), cached, 1);
+
+        hierarchy.update(1);
+        assertSame(cached, child.getModelMatrix());
+        TransformReference.assertMatrix(new Matrix4f().translation(1, 2, 3), cached, 1);
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.kuggek.engine.core.collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class IntIntMapTest {
+
+    @Test
+    public void testMissingValue() {
+        IntIntMap map = new IntIntMap();
+        assertEquals(-1, map.get(7));
+        assertEquals(-1, map.remove(7));
+        assertEquals(5, map.getOrDefault(7, 5));
+
+        IntIntMap zeroMissing = new IntIntMap(4, 0);
+        assertEquals(0, zeroMissing.get(7));
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        IntIntMap map = new IntIntMap();
+        assertEquals(-1, map.put(3, 30));
+        assertEquals(30, map.put(3, 31));
+        map.put(4, -1);
+        // A stored value equal to the missing value is still a contained key
+        assertTrue(map.containsKey(4));
+        assertEquals(31, map.get(3));
+        assertEquals(31, map.remove(3));
+        assertFalse(map.containsKey(3));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testRemoveKeepsProbeSequences() {
+        IntIntMap map = new IntIntMap(0, -1);
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i * 2);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertEquals(i * 2, map.remove(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? -1 : i * 2, map.get(i), "key " + i);
+        }
+        assertEquals(500, map.size());
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        Random random = new Random(7);
+        IntIntMap map = new IntIntMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(512) - 256;
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    Integer previous = expected.put(key, i);
+                    assertEquals(previous == null ? -1 : previous, map.put(key, i));
+                }
+                case 1 -> {
+                    Integer removed = expected.remove(key);
+                    assertEquals(removed == null ? -1 : removed, map.remove(key));
+                }
+                default -> assertEquals(expected.getOrDefault(key, -1), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        int[] values = map.valuesToArray();
+        int[] expectedValues = expected.values().stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(values);
+        Arrays.sort(expectedValues);
+        assertArrayEquals(expectedValues, values);
+    }
+
+    @Test
+    public void testClear() {
+        IntIntMap map = new IntIntMap();
+        map.put(1, 10);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(1));
+        map.put(1, 11);
+        assertEquals(11, map.get(1));
+    }
+}
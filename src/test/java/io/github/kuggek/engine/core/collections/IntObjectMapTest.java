@@ -0,0 +1,121 @@
+package io.github.kuggek.engine.core.collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class IntObjectMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        assertNull(map.put(1, "a"));
+        assertNull(map.put(-5, "b"));
+        assertEquals("a", map.put(1, "c"));
+        assertEquals(2, map.size());
+        assertEquals("c", map.get(1));
+        assertEquals("b", map.get(-5));
+        assertNull(map.get(2));
+
+        assertEquals("c", map.remove(1));
+        assertNull(map.remove(1));
+        assertFalse(map.containsKey(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testNullValueThrows() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+    }
+
+    @Test
+    public void testRemoveKeepsProbeSequences() {
+        // A small table with many sequential keys forces long probe sequences, removing from
+        // their middle must keep the following keys reachable
+        IntObjectMap<Integer> map = new IntObjectMap<>(0);
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            assertEquals(i, map.remove(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            if (i % 3 == 0) {
+                assertNull(map.get(i), "key " + i);
+            } else {
+                assertEquals(i, map.get(i), "key " + i);
+            }
+        }
+        assertEquals(666, map.size());
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        Random random = new Random(42);
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(512) - 256;
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, i), map.put(key, i));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = -256; key < 256; key++) {
+            assertEquals(expected.get(key), map.get(key), "key " + key);
+        }
+        List<Integer> values = new ArrayList<>(map.values());
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(values));
+        assertEquals(expected.size(), values.size());
+    }
+
+    @Test
+    public void testClear() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        map.put(1, "a");
+        map.put(2, "b");
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        map.put(2, "c");
+        assertEquals("c", map.get(2));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testForEach() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        for (int i = 0; i < 50; i++) {
+            map.put(i, "v" + i);
+        }
+        Map<Integer, String> seen = new HashMap<>();
+        map.forEach((key, value) -> seen.put(key, value));
+        assertEquals(50, seen.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("v" + i, seen.get(i));
+        }
+    }
+
+    @Test
+    public void testModificationDuringIterationThrows() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        map.put(1, "a");
+        map.put(2, "b");
+        assertThrows(ConcurrentModificationException.class, () -> map.forEach((key, value) -> map.remove(key)));
+    }
+}
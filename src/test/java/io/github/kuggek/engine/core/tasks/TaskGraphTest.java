@@ -0,0 +1,145 @@
+package io.github.kuggek.engine.core.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TaskGraphTest {
+
+    private static class A {}
+    private static class B {}
+
+    private TaskScheduler scheduler;
+
+    @BeforeEach
+    public void setUp() {
+        scheduler = new TaskScheduler(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testConflicts() {
+        TaskGraph graph = new TaskGraph();
+        Task readA = graph.addTask("readA", () -> {}).reads(A.class);
+        Task readA2 = graph.addTask("readA2", () -> {}).reads(A.class);
+        Task writeA = graph.addTask("writeA", () -> {}).writes(A.class);
+        Task writeB = graph.addTask("writeB", () -> {}).writes(B.class);
+        Task all = graph.addTask("all", () -> {}).reads(Object.class);
+
+        assertFalse(readA.conflictsWith(readA2));
+        assertTrue(readA.conflictsWith(writeA));
+        assertTrue(writeA.conflictsWith(readA));
+        assertFalse(writeA.conflictsWith(writeB));
+        assertTrue(all.conflictsWith(writeB));
+        assertFalse(all.conflictsWith(readA));
+    }
+
+    @Test
+    public void testBuildOrdersConflictingTasksByInsertion() {
+        TaskGraph graph = new TaskGraph();
+        graph.addTask("readA", () -> {}).reads(A.class);
+        graph.addTask("writeA", () -> {}).writes(A.class);
+        graph.addTask("writeB", () -> {}).writes(B.class);
+        Task readBoth = graph.addTask("readBoth", () -> {}).reads(A.class, B.class);
+        graph.addTask("last", () -> {}).after(readBoth);
+        graph.build();
+
+        assertArrayEquals(new int[] { 0, 1, 0, 2, 1 }, graph.getDependencyCounts());
+        assertArrayEquals(new int[] { 1 }, graph.getSuccessors()[0]);
+        assertArrayEquals(new int[] { 3 }, graph.getSuccessors()[1]);
+        assertArrayEquals(new int[] { 3 }, graph.getSuccessors()[2]);
+        assertArrayEquals(new int[] { 4 }, graph.getSuccessors()[3]);
+    }
+
+    @Test
+    public void testDependencyAddedLaterThrows() {
+        TaskGraph graph = new TaskGraph();
+        Task first = graph.addTask("first", () -> {});
+        Task second = graph.addTask("second", () -> {});
+        first.after(second);
+        assertThrows(IllegalStateException.class, graph::build);
+    }
+
+    @Test
+    public void testRunRespectsOrder() {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        TaskGraph graph = new TaskGraph();
+        graph.addTask("write", () -> order.add("write")).writes(A.class);
+        graph.addTask("read", () -> order.add("read")).reads(A.class);
+        graph.addTask("rewrite", () -> order.add("rewrite")).writes(A.class);
+
+        for (int i = 0; i < 100; i++) {
+            order.clear();
+            scheduler.run(graph);
+            assertEquals(List.of("write", "read", "rewrite"), order);
+        }
+    }
+
+    @Test
+    public void testEveryTaskRunsOncePerRun() {
+        // Many independent roots with a shared successor, which becomes ready while the roots
+        // are still being submitted
+        TaskGraph graph = new TaskGraph();
+        AtomicInteger rootRuns = new AtomicInteger();
+        AtomicInteger joinRuns = new AtomicInteger();
+        Task[] roots = new Task[16];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = graph.addTask("root" + i, rootRuns::incrementAndGet);
+        }
+        graph.addTask("join", joinRuns::incrementAndGet).after(roots);
+
+        int runs = 500;
+        for (int i = 0; i < runs; i++) {
+            scheduler.run(graph);
+            // run() must not return before the join has run
+            assertEquals(i + 1, joinRuns.get());
+        }
+        assertEquals(runs * roots.length, rootRuns.get());
+    }
+
+    @Test
+    public void testFailureSkipsDependentsAndIsRethrown() {
+        RuntimeException exception = new RuntimeException("task failed");
+        AtomicInteger dependentRuns = new AtomicInteger();
+        TaskGraph graph = new TaskGraph();
+        graph.addTask("fail", () -> { throw exception; }).writes(A.class);
+        graph.addTask("dependent", dependentRuns::incrementAndGet).reads(A.class);
+
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> scheduler.run(graph));
+        assertSame(exception, thrown);
+        assertEquals(0, dependentRuns.get());
+    }
+
+    @Test
+    public void testParallelForCoversRange() {
+        int count = 10_000;
+        AtomicInteger[] hits = new AtomicInteger[count];
+        for (int i = 0; i < count; i++) {
+            hits[i] = new AtomicInteger();
+        }
+        scheduler.parallelFor(count, 64, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                hits[i].incrementAndGet();
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            assertEquals(1, hits[i].get(), "index " + i);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.kuggek.engine.ecs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class ComponentStoreTest {
+
+    public static class First extends GameComponent {}
+    public static class Second extends GameComponent {}
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    private static Set<Integer> queryIDs(ComponentStore store, Class<? extends GameComponent>... types) {
+        Set<Integer> ids = new HashSet<>();
+        store.query(types).forEachEntity(gameObject -> ids.add(gameObject.getID()));
+        return ids;
+    }
+
+    @Test
+    public void testArchetypesAreInterned() {
+        assertSame(Archetype.of(First.class, Second.class), Archetype.of(Second.class, First.class));
+        Archetype first = Archetype.of(First.class);
+        assertSame(Archetype.of(First.class, Second.class), first.with(ComponentTypes.getID(Second.class)));
+        assertSame(Archetype.EMPTY, first.without(ComponentTypes.getID(First.class)));
+    }
+
+    @Test
+    public void testQueryFollowsComponentChanges() {
+        ComponentStore store = new ComponentStore();
+        GameObject a = new GameObject(1);
+        GameObject b = new GameObject(2);
+        a.addComponent(new First(), false);
+        b.addComponent(new First(), false);
+        b.addComponent(new Second(), false);
+        store.add(a);
+        store.add(b);
+
+        assertEquals(Set.of(1, 2), queryIDs(store, First.class));
+        assertEquals(Set.of(2), queryIDs(store, First.class, Second.class));
+
+        a.addComponent(new Second(), false);
+        b.removeComponentOfType(First.class);
+        assertEquals(Set.of(1), queryIDs(store, First.class));
+        assertEquals(Set.of(1, 2), queryIDs(store, Second.class));
+        assertEquals(2, store.getEntityCount());
+    }
+
+    @Test
+    public void testRemoveMovesLastRowIntoGap() {
+        ComponentStore store = new ComponentStore();
+        GameObject[] gameObjects = new GameObject[10];
+        for (int i = 0; i < gameObjects.length; i++) {
+            gameObjects[i] = new GameObject(i);
+            gameObjects[i].addComponent(new First(), false);
+            store.add(gameObjects[i]);
+        }
+
+        store.remove(gameObjects[0]);
+        store.remove(gameObjects[5]);
+        store.remove(gameObjects[9]);
+        assertEquals(Set.of(1, 2, 3, 4, 6, 7, 8), queryIDs(store, First.class));
+        assertEquals(7, store.getEntityCount());
+
+        // Every remaining row still holds the components of its own game object
+        store.query(First.class).forEachTable(table -> {
+            int column = table.getArchetype().getColumn(ComponentTypes.getID(First.class));
+            for (int row = 0; row < table.size(); row++) {
+                GameObject gameObject = table.getEntities()[row];
+                assertSame(gameObject.getComponent(First.class), table.getColumn(column)[row]);
+            }
+        });
+
+        // Removed game objects can be added again
+        store.add(gameObjects[5]);
+        assertTrue(queryIDs(store, First.class).contains(5));
+    }
+
+    @Test
+    public void testReplacingComponentUpdatesTable() {
+        ComponentStore store = new ComponentStore();
+        GameObject gameObject = new GameObject(1);
+        gameObject.addComponent(new First(), false);
+        store.add(gameObject);
+
+        First replacement = new First();
+        gameObject.addComponent(replacement, true);
+        store.query(First.class).forEach(First.class, component -> assertSame(replacement, component));
+    }
+}
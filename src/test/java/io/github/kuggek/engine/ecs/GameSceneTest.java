@@ -0,0 +1,73 @@
+package io.github.kuggek.engine.ecs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class GameSceneTest {
+
+    @Test
+    public void testViewOfUnusedTagPicksUpLaterChanges() {
+        GameScene scene = new GameScene(0, "test");
+        int tagID = Tags.getID("GameSceneTest.unused");
+        Set<GameObject> view = scene.getGameObjectsWithTag(tagID);
+        assertTrue(view.isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> view.add(new GameObject(99)));
+
+        GameObject gameObject = new GameObject(1);
+        scene.addGameObject(gameObject);
+        gameObject.addTag(tagID);
+        assertEquals(Set.of(gameObject), view);
+        assertEquals(Set.of(gameObject), scene.getGameObjectsWithTag("GameSceneTest.unused"));
+
+        gameObject.removeTag(tagID);
+        assertTrue(view.isEmpty());
+    }
+
+    @Test
+    public void testTaggedGameObjectsFollowTheScene() {
+        GameScene scene = new GameScene(0, "test");
+        GameObject gameObject = new GameObject(1);
+        gameObject.addTag("GameSceneTest.enemy");
+        scene.addGameObject(gameObject);
+
+        Set<GameObject> view = scene.getGameObjectsWithTag("GameSceneTest.enemy");
+        assertEquals(Set.of(gameObject), view);
+        assertSame(view, scene.getGameObjectsWithTag(Tags.find("GameSceneTest.enemy")));
+
+        scene.removeGameObject(gameObject);
+        assertTrue(view.isEmpty());
+    }
+
+    @Test
+    public void testReadingTagsDoesNotChangeTheScene() throws InterruptedException {
+        GameScene scene = new GameScene(0, "test");
+        // Reads of many unused tags from several threads, like parallel scripts do
+        Thread[] threads = new Thread[4];
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = offset; i < 1000; i += threads.length) {
+                        assertTrue(scene.getGameObjectsWithTag(i).isEmpty());
+                        scene.forEachGameObjectWithTag(i, gameObject -> {});
+                    }
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure[0]);
+    }
+}
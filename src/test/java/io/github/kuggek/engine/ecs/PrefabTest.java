@@ -0,0 +1,51 @@
+package io.github.kuggek.engine.ecs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+public class PrefabTest {
+
+    @Test
+    public void testResetRestoresNamesTagsAndTransforms() {
+        GameObject root = new GameObject(1);
+        root.setName("bullet");
+        root.addTag("projectile");
+        root.getTransform().setPosition(new Vector3f(1, 2, 3));
+        GameObject child = new GameObject(2);
+        child.setName("trail");
+        GameObject.link(root, child);
+
+        Prefab prefab = Prefab.capture(root);
+        AtomicInteger nextID = new AtomicInteger(100);
+        GameObject[] instance = prefab.instantiateAll(nextID::getAndIncrement);
+        assertEquals(2, instance.length);
+        assertNotEquals(root.getID(), instance[0].getID());
+
+        instance[0].setName("renamed");
+        instance[0].removeTag("projectile");
+        instance[0].addTag("spent");
+        instance[0].getTransform().setPosition(new Vector3f(-5, 0, 0));
+        instance[1].setName(null);
+        instance[1].addTag("spent");
+
+        prefab.reset(instance, new Vector3f(0, 10, 0));
+
+        assertEquals("bullet", instance[0].getName());
+        assertEquals(Set.of("projectile"), instance[0].getTags());
+        assertEquals(new Vector3f(0, 10, 0), instance[0].getTransform().getPosition());
+        assertEquals("trail", instance[1].getName());
+        assertTrue(instance[1].getTags().isEmpty());
+
+        prefab.reset(instance, null);
+        assertEquals(new Vector3f(1, 2, 3), instance[0].getTransform().getPosition());
+        assertFalse(instance[0].hasTag("spent"));
+    }
+}
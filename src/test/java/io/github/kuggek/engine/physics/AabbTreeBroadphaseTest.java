@@ -0,0 +1,155 @@
+package io.github.kuggek.engine.physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+public class AabbTreeBroadphaseTest {
+
+    private final Random random = new Random(7);
+    private final AabbTreeBroadphase broadphase = new AabbTreeBroadphase(0.1);
+    private final List<DGeom> geoms = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        broadphase.destroy();
+    }
+
+    private DGeom addSphere(double x, double y, double z, double radius) {
+        DGeom geom = OdeHelper.createSphere(radius);
+        geom.setPosition(x, y, z);
+        broadphase.add(geom);
+        geoms.add(geom);
+        return geom;
+    }
+
+    private void moveRandomly(DGeom geom, double range) {
+        geom.setPosition(random.nextDouble() * range, random.nextDouble() * range, random.nextDouble() * range);
+    }
+
+    private static String key(DGeom geom1, DGeom geom2) {
+        int hash1 = System.identityHashCode(geom1);
+        int hash2 = System.identityHashCode(geom2);
+        return Math.min(hash1, hash2) + ":" + Math.max(hash1, hash2);
+    }
+
+    private Set<String> collide() {
+        Set<String> pairs = new HashSet<>();
+        broadphase.collide((data, geom1, geom2) -> {
+            // Every pair is reported once
+            assertTrue(pairs.add(key(geom1, geom2)), "pair reported twice");
+        });
+        return pairs;
+    }
+
+    /**
+     * The pairs found by testing every pair of geoms.
+     */
+    private Set<String> bruteForce() {
+        Set<String> pairs = new HashSet<>();
+        for (int i = 0; i < geoms.size(); i++) {
+            for (int j = i + 1; j < geoms.size(); j++) {
+                DGeom geom1 = geoms.get(i);
+                DGeom geom2 = geoms.get(j);
+                DBody body1 = geom1.getBody();
+                DBody body2 = geom2.getBody();
+                boolean sameBody = body1 != null && body1 == body2;
+                boolean bothDisabled = body1 != null && body2 != null && !body1.isEnabled() && !body2.isEnabled();
+                if (!sameBody && !bothDisabled && !geom1.getAABB().isDisjoint(geom2.getAABB())) {
+                    pairs.add(key(geom1, geom2));
+                }
+            }
+        }
+        return pairs;
+    }
+
+    @Test
+    public void testPairsMatchBruteForce() {
+        for (int i = 0; i < 300; i++) {
+            addSphere(0, 0, 0, 0.2 + random.nextDouble());
+            moveRandomly(geoms.get(i), 20);
+        }
+        assertEquals(bruteForce(), collide());
+
+        for (int step = 0; step < 20; step++) {
+            // Small moves stay inside the enlarged bounds, large ones move the leaves
+            for (int i = 0; i < 30; i++) {
+                DGeom geom = geoms.get(random.nextInt(geoms.size()));
+                if (random.nextBoolean()) {
+                    double[] position = geom.getPosition().toDoubleArray();
+                    geom.setPosition(position[0] + 0.05, position[1], position[2] - 0.05);
+                } else {
+                    moveRandomly(geom, 20);
+                }
+            }
+            assertEquals(bruteForce(), collide());
+        }
+    }
+
+    @Test
+    public void testRemovedGeomsAreNotReported() {
+        for (int i = 0; i < 100; i++) {
+            addSphere(0, 0, 0, 1);
+            moveRandomly(geoms.get(i), 5);
+        }
+        for (int i = 0; i < 50; i++) {
+            DGeom geom = geoms.remove(random.nextInt(geoms.size()));
+            broadphase.remove(geom);
+            geom.destroy();
+        }
+        assertEquals(geoms.size(), broadphase.getGeoms().size());
+        assertEquals(bruteForce(), collide());
+
+        // Re-adding is a no-op for geoms already in the tree
+        broadphase.add(geoms.get(0));
+        assertEquals(geoms.size(), broadphase.getGeoms().size());
+    }
+
+    @Test
+    public void testBodyFiltering() {
+        DWorld world = OdeHelper.createWorld();
+        try {
+            DBody sleeping1 = OdeHelper.createBody(world);
+            DBody sleeping2 = OdeHelper.createBody(world);
+            DBody awake = OdeHelper.createBody(world);
+            sleeping1.disable();
+            sleeping2.disable();
+
+            DGeom a = addSphere(0, 0, 0, 1);
+            DGeom b = addSphere(0.5, 0, 0, 1);
+            DGeom c = addSphere(1, 0, 0, 1);
+            DGeom d = addSphere(1.5, 0, 0, 1);
+            a.setBody(sleeping1);
+            b.setBody(sleeping2);
+            c.setBody(awake);
+            d.setBody(awake);
+            // Setting the body moves the geom to the body
+            a.setOffsetWorldPosition(0, 0, 0);
+            b.setOffsetWorldPosition(0.5, 0, 0);
+            c.setOffsetWorldPosition(1, 0, 0);
+            d.setOffsetWorldPosition(1.5, 0, 0);
+
+            // Both sleeping and the same body are left out, sleeping with awake is reported
+            Set<String> expected = Set.of(key(a, c), key(a, d), key(b, c), key(b, d));
+            assertEquals(expected, bruteForce());
+            assertEquals(expected, collide());
+        } finally {
+            for (DGeom geom : geoms) {
+                geom.setBody(null);
+            }
+            world.destroy();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.kuggek.engine.physics;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+import com.sun.management.ThreadMXBean;
+
+import io.github.kuggek.engine.ecs.GameObject;
+import io.github.kuggek.engine.ecs.components.physics.PhysicsBodyComponent;
+
+public class CollisionsAllocationTest {
+
+    // Allows for the profiling event of each pass, everything else must not allocate
+    private static final long BYTES_PER_PASS = 256;
+
+    private static PhysicsBodyComponent createBody(DWorld world, int ID, boolean kinematic) {
+        GameObject gameObject = new GameObject(ID);
+        PhysicsBodyComponent body = new PhysicsBodyComponent();
+        gameObject.addComponent(body, true);
+        body.linkToWorld(world);
+        if (kinematic) {
+            body.setKinematic(true);
+        }
+        return body;
+    }
+
+    @Test
+    public void testSettledPassesDoNotAllocate() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        DWorld world = OdeHelper.createWorld();
+        Broadphase broadphase = BroadphaseSettings.aabbTree().createBroadphase();
+        try {
+            // A grid of spheres resting on a kinematic ground, touching their neighbours
+            PhysicsBodyComponent ground = createBody(world, 0, true);
+            DGeom groundGeom = OdeHelper.createBox(100, 1, 100);
+            groundGeom.setBody(ground.getBody());
+            ground.getBody().setPosition(0, -0.5, 0);
+            broadphase.add(groundGeom);
+            int size = 10;
+            for (int i = 0; i < size * size; i++) {
+                PhysicsBodyComponent body = createBody(world, i + 1, false);
+                body.getBody().setPosition((i % size) * 0.99, 0.49, (i / size) * 0.99);
+                body.updateWorldInverseInertia();
+                DGeom geom = OdeHelper.createSphere(0.5);
+                geom.setBody(body.getBody());
+                broadphase.add(geom);
+            }
+            ground.updateWorldInverseInertia();
+
+            Collisions collisions = new Collisions();
+            // Let the contacts settle and the passes get compiled
+            for (int i = 0; i < 5000; i++) {
+                collisions.collide(broadphase);
+            }
+
+            int passes = 1000;
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < passes; i++) {
+                collisions.collide(broadphase);
+            }
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            assertTrue(allocated <= passes * BYTES_PER_PASS,
+                "allocated " + allocated / passes + " bytes per pass");
+        } finally {
+            broadphase.destroy();
+            world.destroy();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.kuggek.engine.physics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+import io.github.kuggek.engine.ecs.GameObject;
+import io.github.kuggek.engine.ecs.components.physics.PhysicsBodyComponent;
+
+public class SleepManagerTest {
+
+    private static final double STEP = 1 / 60.0;
+
+    private DWorld world;
+    private SleepManager sleepManager;
+    private int nextID;
+
+    @BeforeEach
+    public void setUp() {
+        world = OdeHelper.createWorld();
+        sleepManager = new SleepManager();
+        sleepManager.setTimeToSleep(0.5f);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        world.destroy();
+    }
+
+    private PhysicsBodyComponent addBody(boolean kinematic) {
+        GameObject gameObject = new GameObject(nextID++);
+        PhysicsBodyComponent body = new PhysicsBodyComponent();
+        gameObject.addComponent(body, true);
+        body.linkToWorld(world);
+        if (kinematic) {
+            body.setKinematic(true);
+        }
+        sleepManager.add(body);
+        return body;
+    }
+
+    private static void setMoving(PhysicsBody body, boolean moving) {
+        body.getBody().setLinearVel(moving ? 1 : 0, 0, 0);
+    }
+
+    /**
+     * Runs steps for the given time, with the given pairs of bodies touching in every step.
+     */
+    private void run(double seconds, PhysicsBody... touchingPairs) {
+        for (double time = 0; time < seconds; time += STEP) {
+            sleepManager.beginStep();
+            sleepManager.findMovingBodies();
+            for (int i = 0; i < touchingPairs.length; i += 2) {
+                DBody body1 = touchingPairs[i].getBody();
+                DBody body2 = touchingPairs[i + 1].getBody();
+                if (sleepManager.shouldCollide(body1, body2)) {
+                    sleepManager.touch(body1, body2);
+                }
+            }
+            sleepManager.endStep(STEP);
+        }
+    }
+
+    private boolean isSleeping(PhysicsBody body) {
+        boolean sleeping = sleepManager.isSleeping(body);
+        // Sleeping bodies are disabled in ODE and only those
+        assertEquals(sleeping, !body.getBody().isEnabled());
+        return sleeping;
+    }
+
+    @Test
+    public void testIslandSleepsWhenAllBodiesRest() {
+        PhysicsBodyComponent a = addBody(false);
+        PhysicsBodyComponent b = addBody(false);
+        PhysicsBodyComponent c = addBody(false);
+        PhysicsBodyComponent alone = addBody(false);
+        setMoving(c, true);
+
+        run(1, a, b, b, c);
+        // c keeps the bodies it touches awake, even through b
+        assertFalse(isSleeping(a));
+        assertFalse(isSleeping(b));
+        assertFalse(isSleeping(c));
+        assertTrue(isSleeping(alone));
+
+        setMoving(c, false);
+        run(0.25, a, b, b, c);
+        assertFalse(isSleeping(a));
+        run(0.5, a, b, b, c);
+        assertTrue(isSleeping(a));
+        assertTrue(isSleeping(b));
+        assertTrue(isSleeping(c));
+        assertEquals(4, sleepManager.getSleepingCount());
+    }
+
+    @Test
+    public void testTouchWakesTheWholeIsland() {
+        PhysicsBodyComponent a = addBody(false);
+        PhysicsBodyComponent b = addBody(false);
+        PhysicsBodyComponent c = addBody(false);
+        PhysicsBodyComponent other = addBody(false);
+        PhysicsBodyComponent falling = addBody(false);
+        setMoving(falling, true);
+        run(1, a, b, b, c);
+        assertTrue(isSleeping(a));
+        assertTrue(isSleeping(other));
+
+        // A moving body hits the end of the chain
+        run(STEP / 2, falling, c);
+        assertFalse(isSleeping(a));
+        assertFalse(isSleeping(b));
+        assertFalse(isSleeping(c));
+        // Islands that weren't touched keep sleeping
+        assertTrue(isSleeping(other));
+        assertEquals(1, sleepManager.getSleepingCount());
+    }
+
+    @Test
+    public void testEnablingABodyWakesItsIsland() {
+        PhysicsBodyComponent a = addBody(false);
+        PhysicsBodyComponent b = addBody(false);
+        run(1, a, b);
+        assertTrue(isSleeping(b));
+
+        // E.g. a velocity set directly on the ODE body
+        a.getBody().enable();
+        run(STEP / 2);
+        assertFalse(isSleeping(a));
+        assertFalse(isSleeping(b));
+    }
+
+    @Test
+    public void testKinematicBodiesDoNotConnectIslands() {
+        PhysicsBodyComponent ground = addBody(true);
+        PhysicsBodyComponent resting = addBody(false);
+        PhysicsBodyComponent moving = addBody(false);
+        setMoving(moving, true);
+
+        run(1, ground, resting, ground, moving);
+        assertTrue(isSleeping(resting));
+        assertFalse(isSleeping(moving));
+        assertFalse(isSleeping(ground));
+
+        // A moving kinematic body wakes what it touches
+        setMoving(ground, true);
+        run(STEP / 2, ground, resting);
+        assertFalse(isSleeping(resting));
+    }
+
+    @Test
+    public void testRemovingABodyWakesItsIsland() {
+        PhysicsBodyComponent a = addBody(false);
+        PhysicsBodyComponent b = addBody(false);
+        run(1, a, b);
+        assertTrue(isSleeping(b));
+
+        sleepManager.remove(a);
+        assertFalse(isSleeping(b));
+        assertEquals(0, sleepManager.getSleepingCount());
+    }
+}
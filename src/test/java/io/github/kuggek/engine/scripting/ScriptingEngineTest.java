@@ -0,0 +1,74 @@
+package io.github.kuggek.engine.scripting;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.kuggek.engine.subsystems.EngineRuntimeSettings;
+
+public class ScriptingEngineTest {
+
+    private static class SleepingScript extends Script {
+        private Coroutine coroutine;
+        private int updates;
+
+        @Override
+        public void start(EngineRuntimeSettings settings) {
+            coroutine = startCoroutine(() -> waitUntil(() -> false));
+            sleep();
+        }
+
+        @Override
+        public void update(KeyInput keyInput, float deltaTime, EngineRuntimeSettings settings) {
+            ++updates;
+        }
+    }
+
+    private static SleepingScript addSleepingScript(ScriptingEngine engine) {
+        SleepingScript script = new SleepingScript();
+        script.setDisabled(false);
+        engine.setToBeAdded(script);
+        // Added after the first update, started in the second
+        engine.updateScripts(0.1f, null);
+        engine.updateScripts(0.1f, null);
+        return script;
+    }
+
+    @Test
+    public void testWokenScriptIsUpdatedAgain() {
+        ScriptingEngine engine = new ScriptingEngine(new KeyInput());
+        SleepingScript script = addSleepingScript(engine);
+        engine.updateScripts(0.1f, null);
+        assertTrue(script.isSleeping());
+        assertEquals(0, script.updates);
+
+        script.wake();
+        engine.updateScripts(0.1f, null);
+        assertEquals(1, script.updates);
+        assertEquals(1, engine.getFrameScriptCount());
+    }
+
+    @Test
+    public void testClearDetachesSleepingScripts() {
+        ScriptingEngine engine = new ScriptingEngine(new KeyInput());
+        SleepingScript script = addSleepingScript(engine);
+        assertSame(engine, script.engine);
+        assertFalse(script.coroutine.isDone());
+
+        engine.clear();
+        assertTrue(script.coroutine.isCancelled());
+        assertTrue(script.coroutine.isDone());
+        assertNull(script.engine);
+        assertFalse(script.scheduled);
+
+        // Waking it after the scene was cleared must not put it back into the engine
+        script.wake();
+        engine.updateScripts(0.1f, null);
+        assertEquals(0, script.updates);
+        assertEquals(0, engine.getFrameScriptCount());
+    }
+}
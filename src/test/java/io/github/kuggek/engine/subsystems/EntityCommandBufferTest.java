@@ -0,0 +1,135 @@
+package io.github.kuggek.engine.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.kuggek.engine.ecs.GameComponent;
+import io.github.kuggek.engine.ecs.GameObject;
+import io.github.kuggek.engine.ecs.GameScene;
+import io.github.kuggek.engine.scripting.KeyInput;
+
+public class EntityCommandBufferTest {
+
+    public static class Marker extends GameComponent {}
+
+    private EngineSubsystems subsystems;
+    private GameScene scene;
+    private List<List<Marker>> createdBatches;
+    private List<Marker> created;
+
+    @BeforeEach
+    public void setUp() {
+        subsystems = new EngineSubsystems(new KeyInput(), true);
+        createdBatches = new ArrayList<>();
+        created = new ArrayList<>();
+        subsystems.registerComponentHandler(Marker.class, new ComponentHandler<Marker>() {
+            @Override
+            public void create(Marker component) {
+                created.add(component);
+            }
+
+            @Override
+            public void createAll(Collection<? extends Marker> components) {
+                createdBatches.add(new ArrayList<>(components));
+                created.addAll(components);
+            }
+
+            @Override
+            public void dispose(Marker component) {
+                created.remove(component);
+            }
+        });
+        scene = new GameScene(0, "test");
+        subsystems.setupScene(scene);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        subsystems.shutdown();
+    }
+
+    private static GameObject withMarker(int ID) {
+        GameObject gameObject = new GameObject(ID);
+        gameObject.addComponent(new Marker(), false);
+        return gameObject;
+    }
+
+    @Test
+    public void testSpawnsAreCreatedInOneBatch() {
+        GameObject parent = withMarker(1);
+        GameObject child = withMarker(2);
+        GameObject.link(parent, child);
+        GameObject other = withMarker(3);
+
+        EntityCommandBuffer buffer = subsystems.getCommandBuffer();
+        buffer.spawn(other);
+        buffer.spawn(parent);
+        subsystems.applyCommands();
+
+        assertEquals(1, createdBatches.size());
+        // Sorted by ID, children right after their parent
+        assertEquals(List.of(parent.getComponent(Marker.class), child.getComponent(Marker.class),
+            other.getComponent(Marker.class)), createdBatches.get(0));
+        assertSame(child, scene.getGameObject(2));
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testFailedSpawnLeavesSceneUnchanged() {
+        GameObject existing = withMarker(5);
+        subsystems.addGameObject(existing);
+        created.clear();
+
+        GameObject parent = withMarker(10);
+        GameObject.link(parent, withMarker(5));
+        GameObject other = withMarker(11);
+
+        EntityCommandBuffer buffer = subsystems.getCommandBuffer();
+        buffer.spawn(parent);
+        buffer.spawn(other);
+        assertThrows(IllegalArgumentException.class, subsystems::applyCommands);
+
+        // The failed subtree isn't added at all, the rest of the batch is still applied
+        assertNull(scene.getGameObject(10));
+        assertSame(existing, scene.getGameObject(5));
+        assertSame(other, scene.getGameObject(11));
+        assertEquals(List.of(other.getComponent(Marker.class)), created);
+        assertFalse(scene.getGameObjectsView().contains(parent));
+    }
+
+    @Test
+    public void testDuplicateIDsWithinSubtreeAreRejected() {
+        GameObject parent = withMarker(20);
+        GameObject.link(parent, withMarker(21));
+        GameObject.link(parent, withMarker(21));
+
+        assertThrows(IllegalArgumentException.class, () -> scene.addGameObject(parent));
+        assertNull(scene.getGameObject(20));
+        assertNull(scene.getGameObject(21));
+    }
+
+    @Test
+    public void testCommandsAreAppliedByKindThenID() {
+        GameObject gameObject = withMarker(30);
+        EntityCommandBuffer buffer = subsystems.getCommandBuffer();
+        // Recorded before the spawn, but applied after it
+        buffer.destroy(gameObject);
+        buffer.spawn(gameObject);
+        subsystems.applyCommands();
+
+        assertNull(scene.getGameObject(30));
+        assertTrue(created.isEmpty());
+    }
+}